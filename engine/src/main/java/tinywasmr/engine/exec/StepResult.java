@@ -12,5 +12,31 @@ public enum StepResult {
 	 * The virtual machine is trapped.
 	 * </p>
 	 */
-	TRAP;
+	TRAP,
+	/**
+	 * <p>
+	 * The virtual machine is suspended, waiting for an asynchronous host function.
+	 * Stepping the machine again returns this result until
+	 * {@link tinywasmr.engine.exec.vm.Machine#getSuspension()} is completed.
+	 * </p>
+	 */
+	SUSPENDED,
+	/**
+	 * <p>
+	 * The fuel of virtual machine is not enough to execute next instruction, and
+	 * the instruction is not executed. Stepping the machine again continues the
+	 * execution after adding fuel to
+	 * {@link tinywasmr.engine.exec.vm.Machine#getFuelMeter()}.
+	 * </p>
+	 */
+	OUT_OF_FUEL,
+	/**
+	 * <p>
+	 * The epoch reached the deadline of virtual machine when entering a function or
+	 * starting an iteration of loop, and the step is not executed. Stepping the
+	 * machine again continues the execution after extending
+	 * {@link tinywasmr.engine.exec.vm.Machine#getEpochDeadline()}.
+	 * </p>
+	 */
+	INTERRUPTED;
 }
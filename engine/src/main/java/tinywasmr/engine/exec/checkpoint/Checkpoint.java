@@ -0,0 +1,428 @@
+package tinywasmr.engine.exec.checkpoint;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import tinywasmr.engine.exec.frame.BlockFrame;
+import tinywasmr.engine.exec.frame.ExternalFrame;
+import tinywasmr.engine.exec.frame.Frame;
+import tinywasmr.engine.exec.frame.FunctionFrame;
+import tinywasmr.engine.exec.frame.IfFrame;
+import tinywasmr.engine.exec.frame.LoopFrame;
+import tinywasmr.engine.exec.global.Global;
+import tinywasmr.engine.exec.instance.Function;
+import tinywasmr.engine.exec.instance.Instance;
+import tinywasmr.engine.exec.memory.Memory;
+import tinywasmr.engine.exec.memory.SparseMemory;
+import tinywasmr.engine.exec.table.Table;
+import tinywasmr.engine.exec.trap.ExternalTrap;
+import tinywasmr.engine.exec.trap.ModuleTrap;
+import tinywasmr.engine.exec.trap.Trap;
+import tinywasmr.engine.exec.value.FuncRefValue;
+import tinywasmr.engine.exec.value.NumberF32Value;
+import tinywasmr.engine.exec.value.NumberF64Value;
+import tinywasmr.engine.exec.value.NumberI32Value;
+import tinywasmr.engine.exec.value.NumberI64Value;
+import tinywasmr.engine.exec.value.RefValue;
+import tinywasmr.engine.exec.value.Value;
+import tinywasmr.engine.exec.value.Vector128Value;
+import tinywasmr.engine.exec.vm.Machine;
+import tinywasmr.engine.insn.Instruction;
+import tinywasmr.engine.insn.control.BlockInsn;
+import tinywasmr.engine.insn.control.IfInsn;
+import tinywasmr.engine.insn.control.LoopInsn;
+import tinywasmr.engine.module.func.ModuleFunctionDecl;
+
+/**
+ * <p>
+ * Save and restore the state of a machine that is executing an instance. The
+ * checkpoint holds the frame stack (with step indices, operands and locals), the
+ * trap and the memories, tables and globals of the instance. The code is not
+ * included, so the checkpoint must be restored to an instance of the same
+ * module.
+ * </p>
+ * <p>
+ * The checkpoint is a stream of bytes, so it can be written directly to files
+ * with {@link #save(Machine, Instance, WritableByteChannel)}. Only the memory
+ * pages with non-zero bytes are written.
+ * </p>
+ * <p>
+ * Checkpoints can only be saved between the steps of an interpreting executor,
+ * like {@link tinywasmr.engine.exec.executor.DefaultExecutor}, because functions
+ * executed by compiling executors don't have frames. All module function frames
+ * must belong to the instance. Only null references and references to the
+ * functions of the instance can be saved. External traps are restored with an
+ * {@link IllegalStateException} that holds the message of original throwable.
+ * </p>
+ */
+public class Checkpoint {
+	private static final int MAGIC = 0x5457434B; // TWCK
+	private static final int VERSION = 1;
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private static final byte TRAP_NONE = 0;
+	private static final byte TRAP_MODULE = 1;
+	private static final byte TRAP_EXTERNAL = 2;
+
+	private static final byte FRAME_FUNCTION = 0;
+	private static final byte FRAME_BLOCK = 1;
+	private static final byte FRAME_LOOP = 2;
+	private static final byte FRAME_IF = 3;
+
+	private static final byte VALUE_I32 = 0;
+	private static final byte VALUE_I64 = 1;
+	private static final byte VALUE_F32 = 2;
+	private static final byte VALUE_F64 = 3;
+	private static final byte VALUE_V128 = 4;
+	private static final byte VALUE_FUNCREF = 5;
+	private static final byte VALUE_NULL_FUNCREF = 6;
+	private static final byte VALUE_NULL_EXTERNREF = 7;
+
+	/**
+	 * <p>
+	 * Write the checkpoint of the machine and instance to the stream.
+	 * </p>
+	 *
+	 * @param vm       The machine, which must be executing functions of the
+	 *                 instance or idle.
+	 * @param instance The instance.
+	 * @param stream   The stream to write to.
+	 * @throws IOException                   if I/O operation failed.
+	 * @throws UnsupportedOperationException if the state can't be saved.
+	 */
+	public static void save(Machine vm, Instance instance, OutputStream stream) throws IOException {
+		if (vm.getSuspension() != null) throw new UnsupportedOperationException("Can't save suspended machine");
+		DataOutputStream out = new DataOutputStream(stream);
+		Map<Function, Integer> functions = new HashMap<>();
+		for (int i = 0; i < instance.functions().size(); i++) functions.put(instance.functions().get(i), i);
+
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+
+		out.writeInt(instance.memories().size());
+		for (Memory memory : instance.memories()) saveMemory(memory, out);
+
+		out.writeInt(instance.tables().size());
+
+		for (Table table : instance.tables()) {
+			out.writeInt(table.size());
+			for (int i = 0; i < table.size(); i++) saveValue(table.get(i), functions, out);
+		}
+
+		out.writeInt(instance.globals().size());
+		for (Global global : instance.globals()) saveValue(global.get(), functions, out);
+
+		Trap trap = vm.getTrap();
+
+		if (trap == null) out.writeByte(TRAP_NONE);
+		else if (trap instanceof ModuleTrap) out.writeByte(TRAP_MODULE);
+		else if (trap instanceof ExternalTrap external) {
+			out.writeByte(TRAP_EXTERNAL);
+			out.writeUTF(String.valueOf(external.throwable()));
+		} else throw new UnsupportedOperationException("Can't save trap %s".formatted(trap));
+
+		List<Frame> frames = vm.getFrameStack();
+		out.writeInt(frames.size());
+		saveValues(frames.get(0).getOperandStack(), functions, out);
+
+		for (int i = 1; i < frames.size(); i++) {
+			Frame frame = frames.get(i);
+
+			if (frame instanceof FunctionFrame function) {
+				Integer index = functions.get(function.getFunction());
+				if (index == null || (function.getDeclaration() instanceof ModuleFunctionDecl
+					&& function.getFunction().instance() != instance))
+					throw new UnsupportedOperationException("%s is not a function of the instance"
+						.formatted(function.getFunction()));
+				out.writeByte(FRAME_FUNCTION);
+				out.writeInt(index);
+				out.writeBoolean(function.isBranched());
+				saveValues(List.of(function.getLocals()), functions, out);
+			} else if (frame instanceof BlockFrame block) {
+				out.writeByte(FRAME_BLOCK);
+				out.writeInt(indexOf(frames.get(i - 1), block.getBlock()));
+			} else if (frame instanceof LoopFrame loop) {
+				out.writeByte(FRAME_LOOP);
+				out.writeInt(indexOf(frames.get(i - 1), loop.getBlock()));
+			} else if (frame instanceof IfFrame ifFrame) {
+				out.writeByte(FRAME_IF);
+				out.writeInt(indexOf(frames.get(i - 1), ifFrame.getBlock()));
+				out.writeBoolean(ifFrame.isTrueBranch());
+			} else {
+				throw new UnsupportedOperationException("Can't save %s".formatted(frame.getClass().getName()));
+			}
+
+			out.writeInt(frame.getStep());
+			saveValues(frame.getOperandStack(), functions, out);
+		}
+
+		out.flush();
+	}
+
+	/**
+	 * <p>
+	 * Write the checkpoint of the machine and instance to the channel, like a
+	 * {@link java.nio.channels.FileChannel}. The channel is not closed.
+	 * </p>
+	 *
+	 * @see #save(Machine, Instance, OutputStream)
+	 */
+	public static void save(Machine vm, Instance instance, WritableByteChannel channel) throws IOException {
+		save(vm, instance, new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE));
+	}
+
+	/**
+	 * <p>
+	 * Read the checkpoint from the stream and restore it to the machine and
+	 * instance. The machine must not be executing anything, and the memories,
+	 * tables and globals of the instance are overwritten, so the instance doesn't
+	 * need to be initialized.
+	 * </p>
+	 *
+	 * @param vm       The machine to restore the frames to.
+	 * @param instance The instance of the module that the checkpoint was saved
+	 *                 from.
+	 * @param stream   The stream to read from.
+	 * @throws IOException if I/O operation failed, or the checkpoint is invalid or
+	 *                     doesn't match the instance.
+	 */
+	public static void restore(Machine vm, Instance instance, InputStream stream) throws IOException {
+		if (vm.getFrameStack().size() != 1) throw new IllegalStateException("Machine is executing");
+		DataInputStream in = new DataInputStream(stream);
+		if (in.readInt() != MAGIC) throw new IOException("Not a checkpoint");
+		int version = in.readInt();
+		if (version != VERSION) throw new IOException("Unsupported checkpoint version %d".formatted(version));
+
+		checkCount("memories", in.readInt(), instance.memories().size());
+		for (Memory memory : instance.memories()) restoreMemory(memory, in);
+
+		checkCount("tables", in.readInt(), instance.tables().size());
+
+		for (Table table : instance.tables()) {
+			int size = in.readInt();
+			if (table.size() < size && table.grow(size - table.size(), table.refType().zero()) == -1)
+				throw new IOException("Can't grow table to %d elements".formatted(size));
+			if (table.size() != size) throw new IOException("Table has %d elements, but checkpoint has %d"
+				.formatted(table.size(), size));
+			for (int i = 0; i < size; i++) table.set(i, (RefValue) restoreValue(instance, in));
+		}
+
+		checkCount("globals", in.readInt(), instance.globals().size());
+		for (Global global : instance.globals()) global.set(restoreValue(instance, in), true);
+
+		byte trap = in.readByte();
+		vm.setTrap(switch (trap) {
+		case TRAP_NONE -> null;
+		case TRAP_MODULE -> new ModuleTrap();
+		case TRAP_EXTERNAL -> new ExternalTrap(new IllegalStateException(in.readUTF()));
+		default -> throw new IOException("Unknown trap type %d".formatted(trap));
+		});
+
+		int frameCount = in.readInt();
+		ExternalFrame extern = vm.getExternalFrame();
+		for (Value value : restoreValues(instance, in)) extern.pushOperand(value);
+
+		for (int i = 1; i < frameCount; i++) {
+			Frame parent = vm.peekFrame();
+			byte type = in.readByte();
+			Frame frame;
+
+			switch (type) {
+			case FRAME_FUNCTION: {
+				Function function = instance.functions().get(in.readInt());
+				boolean branched = in.readBoolean();
+				Value[] locals = restoreValues(instance, in).toArray(Value[]::new);
+				int step = in.readInt();
+				frame = new FunctionFrame(function, locals, branched, restoreValues(instance, in), step);
+				break;
+			}
+			case FRAME_BLOCK: {
+				BlockInsn block = (BlockInsn) instructionAt(parent, in.readInt());
+				frame = new BlockFrame(block, List.of(), in.readInt());
+				restoreOperands(frame, instance, in);
+				break;
+			}
+			case FRAME_LOOP: {
+				LoopInsn block = (LoopInsn) instructionAt(parent, in.readInt());
+				frame = new LoopFrame(block, List.of(), in.readInt());
+				restoreOperands(frame, instance, in);
+				break;
+			}
+			case FRAME_IF: {
+				IfInsn block = (IfInsn) instructionAt(parent, in.readInt());
+				boolean trueBranch = in.readBoolean();
+				frame = new IfFrame(block, trueBranch, List.of(), in.readInt());
+				restoreOperands(frame, instance, in);
+				break;
+			}
+			default:
+				throw new IOException("Unknown frame type %d".formatted(type));
+			}
+
+			// Locals and operands are moved to the value stack when the frame is pushed
+			vm.pushFrame(frame);
+		}
+	}
+
+	/**
+	 * <p>
+	 * Read the checkpoint from the channel and restore it. The channel is not
+	 * closed.
+	 * </p>
+	 *
+	 * @see #restore(Machine, Instance, InputStream)
+	 */
+	public static void restore(Machine vm, Instance instance, ReadableByteChannel channel) throws IOException {
+		restore(vm, instance, new BufferedInputStream(Channels.newInputStream(channel), BUFFER_SIZE));
+	}
+
+	private static void checkCount(String name, int actual, int expected) throws IOException {
+		if (actual != expected) throw new IOException("Instance has %d %s, but checkpoint has %d"
+			.formatted(expected, name, actual));
+	}
+
+	private static List<Instruction> instructionsOf(Frame frame) {
+		if (frame instanceof FunctionFrame function && function.getDeclaration() instanceof ModuleFunctionDecl)
+			return function.getBody();
+		if (frame instanceof BlockFrame block) return block.getBlock().instructions();
+		if (frame instanceof LoopFrame loop) return loop.getBlock().instructions();
+		if (frame instanceof IfFrame ifFrame)
+			return ifFrame.isTrueBranch() ? ifFrame.getBlock().truePath() : ifFrame.getBlock().falsePath();
+		throw new UnsupportedOperationException("%s can't have blocks".formatted(frame.getClass().getName()));
+	}
+
+	private static int indexOf(Frame parent, Instruction block) {
+		List<Instruction> instructions = instructionsOf(parent);
+		for (int i = 0; i < instructions.size(); i++) if (instructions.get(i) == block) return i;
+		throw new UnsupportedOperationException("Block is not in the instructions of parent frame");
+	}
+
+	private static Instruction instructionAt(Frame parent, int index) throws IOException {
+		List<Instruction> instructions = instructionsOf(parent);
+		if (index < 0 || index >= instructions.size()) throw new IOException("Invalid block index %d".formatted(index));
+		return instructions.get(index);
+	}
+
+	private static void saveMemory(Memory memory, DataOutputStream out) throws IOException {
+		byte[] page = new byte[Memory.PAGE_SIZE];
+		out.writeInt(memory.pageCount());
+
+		for (int i = 0; i < memory.pageCount(); i++) {
+			if (memory instanceof SparseMemory sparse && !sparse.isCommitted(i)) continue;
+			memory.read((long) i * Memory.PAGE_SIZE, page, 0, page.length);
+			if (isZero(page)) continue;
+			out.writeInt(i);
+			out.write(page);
+		}
+
+		out.writeInt(-1);
+	}
+
+	private static boolean isZero(byte[] page) {
+		for (byte b : page) if (b != 0) return false;
+		return true;
+	}
+
+	private static void restoreMemory(Memory memory, DataInputStream in) throws IOException {
+		int pages = in.readInt();
+		if (memory.pageCount() < pages && memory.grow(pages - memory.pageCount()) == -1)
+			throw new IOException("Can't grow memory to %d pages".formatted(pages));
+		if (memory.pageCount() != pages) throw new IOException("Memory has %d pages, but checkpoint has %d"
+			.formatted(memory.pageCount(), pages));
+
+		byte[] page = new byte[Memory.PAGE_SIZE];
+		int next = 0;
+		int index;
+
+		while ((index = in.readInt()) != -1) {
+			if (index < next || index >= pages) throw new IOException("Invalid page index %d".formatted(index));
+			// Pages that are not in checkpoint are zeros
+			for (; next < index; next++) memory.fill((long) next * Memory.PAGE_SIZE, 0, Memory.PAGE_SIZE);
+			in.readFully(page);
+			memory.write((long) index * Memory.PAGE_SIZE, page, 0, page.length);
+			next = index + 1;
+		}
+
+		for (; next < pages; next++) memory.fill((long) next * Memory.PAGE_SIZE, 0, Memory.PAGE_SIZE);
+	}
+
+	private static void saveValues(List<Value> values, Map<Function, Integer> functions, DataOutputStream out)
+		throws IOException {
+		out.writeInt(values.size());
+		for (Value value : values) saveValue(value, functions, out);
+	}
+
+	private static void saveValue(Value value, Map<Function, Integer> functions, DataOutputStream out)
+		throws IOException {
+		if (value instanceof NumberI32Value i32) {
+			out.writeByte(VALUE_I32);
+			out.writeInt(i32.i32());
+		} else if (value instanceof NumberI64Value i64) {
+			out.writeByte(VALUE_I64);
+			out.writeLong(i64.i64());
+		} else if (value instanceof NumberF32Value f32) {
+			out.writeByte(VALUE_F32);
+			out.writeInt(Float.floatToRawIntBits(f32.f32()));
+		} else if (value instanceof NumberF64Value f64) {
+			out.writeByte(VALUE_F64);
+			out.writeLong(Double.doubleToRawLongBits(f64.f64()));
+		} else if (value instanceof Vector128Value v128) {
+			out.writeByte(VALUE_V128);
+			out.writeLong(v128.msb());
+			out.writeLong(v128.lsb());
+		} else if (value instanceof FuncRefValue ref) {
+			if (ref.function() == null) {
+				out.writeByte(VALUE_NULL_FUNCREF);
+				return;
+			}
+
+			Integer index = functions.get(ref.function());
+			if (index == null) throw new UnsupportedOperationException("%s is not a function of the instance"
+				.formatted(ref.function()));
+			out.writeByte(VALUE_FUNCREF);
+			out.writeInt(index);
+		} else if (value instanceof RefValue ref && ref.get() == null) {
+			out.writeByte(VALUE_NULL_EXTERNREF);
+		} else {
+			throw new UnsupportedOperationException("Can't save %s".formatted(value));
+		}
+	}
+
+	private static List<Value> restoreValues(Instance instance, DataInputStream in) throws IOException {
+		int count = in.readInt();
+		if (count < 0) throw new IOException("Invalid number of values %d".formatted(count));
+		Value[] values = new Value[count];
+		for (int i = 0; i < count; i++) values[i] = restoreValue(instance, in);
+		return List.of(values);
+	}
+
+	private static void restoreOperands(Frame frame, Instance instance, DataInputStream in) throws IOException {
+		for (Value value : restoreValues(instance, in)) frame.pushOperand(value);
+	}
+
+	private static Value restoreValue(Instance instance, DataInputStream in) throws IOException {
+		byte type = in.readByte();
+		return switch (type) {
+		case VALUE_I32 -> new NumberI32Value(in.readInt());
+		case VALUE_I64 -> new NumberI64Value(in.readLong());
+		case VALUE_F32 -> new NumberF32Value(Float.intBitsToFloat(in.readInt()));
+		case VALUE_F64 -> new NumberF64Value(Double.longBitsToDouble(in.readLong()));
+		case VALUE_V128 -> new Vector128Value(in.readLong(), in.readLong());
+		case VALUE_FUNCREF -> new FuncRefValue(instance.functions().get(in.readInt()));
+		case VALUE_NULL_FUNCREF -> RefValue.NULL_FUNC;
+		case VALUE_NULL_EXTERNREF -> RefValue.NULL_EXTERN;
+		default -> throw new IOException("Unknown value type %d".formatted(type));
+		};
+	}
+}
@@ -0,0 +1,14 @@
+package tinywasmr.engine.exec.epoch;
+
+/**
+ * <p>
+ * The virtual machine is trapped because the epoch reached its deadline.
+ * </p>
+ */
+public class DeadlineExceededException extends RuntimeException {
+	private static final long serialVersionUID = 4471932804617732190L;
+
+	public DeadlineExceededException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,48 @@
+package tinywasmr.engine.exec.epoch;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * A counter that is incremented by the host, usually by a timer. Machines that
+ * have an {@link EpochDeadline} on this epoch are interrupted when the counter
+ * reaches the deadline. Checking the counter is a single volatile read, so the
+ * same epoch can be shared by all machines of an engine.
+ * </p>
+ */
+public class Epoch {
+	/**
+	 * <p>
+	 * The epoch that is shared by the whole process. It is not incremented unless
+	 * the host increments it.
+	 * </p>
+	 */
+	public static final Epoch GLOBAL = new Epoch();
+
+	private final AtomicLong counter = new AtomicLong(0);
+
+	public long get() {
+		return counter.get();
+	}
+
+	public long increment() {
+		return counter.incrementAndGet();
+	}
+
+	/**
+	 * <p>
+	 * Increment this epoch periodically.
+	 * </p>
+	 *
+	 * @param service The service to run the timer.
+	 * @param period  The period between increments.
+	 * @param unit    The unit of period.
+	 * @return The future to cancel the timer.
+	 */
+	public ScheduledFuture<?> tick(ScheduledExecutorService service, long period, TimeUnit unit) {
+		return service.scheduleAtFixedRate(this::increment, period, period, unit);
+	}
+}
@@ -0,0 +1,63 @@
+package tinywasmr.engine.exec.epoch;
+
+/**
+ * <p>
+ * The deadline of a virtual machine. Unlike {@link tinywasmr.engine.exec.fuel.FuelMeter},
+ * the deadline is only checked when a function is entered and when a loop
+ * starts an iteration, so straight-line code runs without any checks.
+ * </p>
+ * <p>
+ * Compiled code and flat code check the deadline at every loop header. The
+ * compiled function that is entered by the executor leaves to interpreter when
+ * the deadline is reached, so it can be interrupted like interpreted code. The
+ * frames of functions called from compiled code and the frames of flat code
+ * can't be restored to interpreter frames, so they trap the machine with
+ * {@link DeadlineExceededException} even if the action is
+ * {@link InterruptAction#YIELD}. Use an interpreting executor for guests that
+ * must be resumed after yielding.
+ * </p>
+ *
+ * @see tinywasmr.engine.exec.vm.Machine#setEpochDeadline(EpochDeadline)
+ */
+public class EpochDeadline {
+	private final Epoch epoch;
+	private final InterruptAction action;
+	private volatile long deadline;
+
+	/**
+	 * <p>
+	 * Create a deadline that is reached after the epoch is incremented by given
+	 * number of times.
+	 * </p>
+	 */
+	public EpochDeadline(Epoch epoch, long delta, InterruptAction action) {
+		this.epoch = epoch;
+		this.action = action;
+		extend(delta);
+	}
+
+	public EpochDeadline(Epoch epoch, long delta) {
+		this(epoch, delta, InterruptAction.YIELD);
+	}
+
+	public Epoch getEpoch() { return epoch; }
+
+	public InterruptAction getAction() { return action; }
+
+	public long getDeadline() { return deadline; }
+
+	public void setDeadline(long deadline) { this.deadline = deadline; }
+
+	/**
+	 * <p>
+	 * Set the deadline to be reached after the epoch is incremented by given number
+	 * of times from now.
+	 * </p>
+	 */
+	public void extend(long delta) {
+		if (delta < 0) throw new IllegalArgumentException("Delta must not be negative");
+		deadline = epoch.get() + delta;
+	}
+
+	public boolean isExpired() { return epoch.get() >= deadline; }
+}
@@ -0,0 +1,22 @@
+package tinywasmr.engine.exec.epoch;
+
+/**
+ * <p>
+ * What to do when the epoch reaches the deadline of virtual machine.
+ * </p>
+ */
+public enum InterruptAction {
+	/**
+	 * <p>
+	 * Return {@link tinywasmr.engine.exec.StepResult#INTERRUPTED} without
+	 * executing the step. The execution can be resumed by extending the deadline.
+	 * </p>
+	 */
+	YIELD,
+	/**
+	 * <p>
+	 * Trap the virtual machine with {@link DeadlineExceededException}.
+	 * </p>
+	 */
+	TRAP;
+}
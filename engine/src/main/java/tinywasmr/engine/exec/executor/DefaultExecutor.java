@@ -3,8 +3,21 @@ package tinywasmr.engine.exec.executor;
 import java.util.List;
 
 import tinywasmr.engine.exec.StepResult;
+import tinywasmr.engine.exec.TrapException;
 import tinywasmr.engine.exec.ValidationException;
+import tinywasmr.engine.exec.epoch.DeadlineExceededException;
+import tinywasmr.engine.exec.epoch.EpochDeadline;
+import tinywasmr.engine.exec.epoch.InterruptAction;
+import tinywasmr.engine.exec.frame.ExternalFrame;
+import tinywasmr.engine.exec.frame.BlockFrame;
 import tinywasmr.engine.exec.frame.Frame;
+import tinywasmr.engine.exec.frame.FunctionFrame;
+import tinywasmr.engine.exec.frame.IfFrame;
+import tinywasmr.engine.exec.frame.LoopFrame;
+import tinywasmr.engine.exec.fuel.FuelExhaustion;
+import tinywasmr.engine.exec.fuel.FuelMeter;
+import tinywasmr.engine.exec.fuel.OutOfFuelException;
+import tinywasmr.engine.exec.limit.ResourceLimitException;
 import tinywasmr.engine.exec.value.Value;
 import tinywasmr.engine.exec.vm.Machine;
 import tinywasmr.engine.type.value.ValueType;
@@ -18,36 +31,91 @@ public class DefaultExecutor implements Executor {
 	@Override
 	public StepResult step(Machine vm) {
 		if (vm.getTrap() != null) return StepResult.TRAP;
-		if (vm.peekFrame() == vm.getExternalFrame()) {
+		if (vm.getSuspension() != null && !vm.getSuspension().isDone()) return StepResult.SUSPENDED;
+		if (vm.peekFrame() instanceof ExternalFrame) {
 			vm.setExternalTrap(new IllegalStateException("Currently in external frame"));
 			return StepResult.TRAP;
 		}
 
-		while (vm.peekFrame() != vm.getExternalFrame() && vm.peekFrame().isFrameFinished()) {
+		// Executing function from host pushes an external frame, which must not be
+		// popped by this executor
+		while (!(vm.peekFrame() instanceof ExternalFrame) && vm.peekFrame().isFrameFinished()) {
 			List<ValueType> resultTypes = vm.peekFrame().getBranchResultTypes().blockResults();
-			Value[] results = new Value[resultTypes.size()];
 
-			for (int i = results.length - 1; i >= 0; i--) {
-				Value val = vm.peekFrame().popOprand();
+			if (vm.hasRuntimeValidation() && !isValidated(vm)) {
+				List<Value> operands = vm.peekFrame().getOperandStack();
 
-				if (vm.hasRuntimeValidation() && !val.type().equals(resultTypes.get(i))) {
-					vm.setExternalTrap(new ValidationException("Type mismatch: %s (stack) != %s (block)"
-						.formatted(val.type(), resultTypes.get(i))));
-					return StepResult.TRAP;
-				}
+				for (int i = 0; i < resultTypes.size(); i++) {
+					Value val = operands.get(operands.size() - resultTypes.size() + i);
 
-				results[i] = val;
+					if (!val.type().equals(resultTypes.get(i))) {
+						vm.setExternalTrap(new ValidationException("Type mismatch: %s (stack) != %s (block)"
+							.formatted(val.type(), resultTypes.get(i))));
+						return StepResult.TRAP;
+					}
+				}
 			}
 
-			vm.popFrame();
-			for (Value val : results) vm.peekFrame().pushOperand(val);
+			// Unwinding to the frame below discards the finished frame, so the machine can
+			// reuse it
+			vm.unwind(vm.getFrameStack().size() - 2, resultTypes.size());
 		}
 
-		if (vm.peekFrame() == vm.getExternalFrame()) return StepResult.NORMAL;
+		if (vm.peekFrame() instanceof ExternalFrame) return StepResult.NORMAL;
 
 		Frame frame = vm.peekFrame();
-		frame.executeStep(vm);
+		EpochDeadline deadline = vm.getEpochDeadline();
+
+		// Only check at function entries and loop back-edges, where the control flow
+		// can come back without bound
+		if (deadline != null
+			&& frame.getStep() == 0
+			&& (frame instanceof FunctionFrame || frame instanceof LoopFrame)
+			&& deadline.isExpired()) {
+			if (deadline.getAction() == InterruptAction.YIELD) return StepResult.INTERRUPTED;
+			vm.setExternalTrap(new DeadlineExceededException("Epoch reached deadline %d"
+				.formatted(deadline.getDeadline())));
+			return StepResult.TRAP;
+		}
+
+		FuelMeter meter = vm.getFuelMeter();
+
+		if (meter != null && !meter.consume(vm, frame.getCurrentInstruction())) {
+			if (meter.getExhaustion() == FuelExhaustion.YIELD) return StepResult.OUT_OF_FUEL;
+			vm.setExternalTrap(new OutOfFuelException("%d fuel remaining is not enough".formatted(meter.getFuel())));
+			return StepResult.TRAP;
+		}
+
+		try {
+			frame.executeStep(vm);
+		} catch (TrapException e) {
+			// Exceeding call depth or stack slots traps the machine like other traps, so
+			// the callers stepping the machine get the trap result
+			if (!(e.getCause() instanceof ResourceLimitException limit)) throw e;
+			vm.setExternalTrap(limit);
+			return StepResult.TRAP;
+		}
+
 		frame.nextStep();
 		return null;
 	}
+
+	/**
+	 * <p>
+	 * Check whether the frames on top of the stack belong to a function from a
+	 * validated module. The frames of blocks inside that function are already
+	 * validated as well.
+	 * </p>
+	 */
+	private static boolean isValidated(Machine vm) {
+		List<Frame> frames = vm.getFrameStack();
+
+		for (int i = frames.size() - 1; i >= 0; i--) {
+			Frame frame = frames.get(i);
+			if (frame instanceof FunctionFrame function) return function.getFunction().isValidated();
+			if (!(frame instanceof BlockFrame || frame instanceof LoopFrame || frame instanceof IfFrame)) return false;
+		}
+
+		return false;
+	}
 }
@@ -5,8 +5,11 @@ import java.util.List;
 import tinywasmr.engine.exec.StepResult;
 import tinywasmr.engine.exec.TrapException;
 import tinywasmr.engine.exec.ValidationException;
+import tinywasmr.engine.exec.epoch.DeadlineExceededException;
+import tinywasmr.engine.exec.frame.ExternalFrame;
 import tinywasmr.engine.exec.frame.Frame;
 import tinywasmr.engine.exec.frame.FunctionFrame;
+import tinywasmr.engine.exec.fuel.OutOfFuelException;
 import tinywasmr.engine.exec.instance.Function;
 import tinywasmr.engine.exec.trap.ExternalTrap;
 import tinywasmr.engine.exec.value.Value;
@@ -45,7 +48,9 @@ public interface Executor {
 	 * @param clearStack Whether to clear the stack after execution. Usually this
 	 *                   value should be {@code true} to ensure that the code won't
 	 *                   crash, but during trace session, sometime you want to keep
-	 *                   the results around.
+	 *                   the results around. If the virtual machine is executing a
+	 *                   function, the results are kept in the operand stack of the
+	 *                   current frame.
 	 * @return The results from executing the function. The length of this array is
 	 *         equals to the number of outputs declared in the type of provided
 	 *         function.
@@ -53,8 +58,22 @@ public interface Executor {
 	 */
 	default Value[] execute(Machine vm, Function function, Value[] params, boolean clearStack) throws TrapException {
 		FunctionFrame frame = FunctionFrame.createCall(function, params);
-		Frame marker = vm.peekFrame();
-		vm.pushFrame(frame);
+		Frame current = vm.peekFrame();
+
+		// When the function is called from host while executing another function (like
+		// calling from compiled code), the current frame must not be stepped after
+		// the function returns, so a new external frame is pushed as a boundary
+		Frame marker = current instanceof ExternalFrame ? current : new ExternalFrame();
+		if (marker != current) vm.pushFrame(marker);
+
+		try {
+			vm.pushFrame(frame);
+		} catch (TrapException e) {
+			// The call exceeded the limits of the machine before executing anything
+			if (marker != current) vm.popFrame();
+			if (e.getCause() != null) vm.setExternalTrap(e.getCause());
+			throw e;
+		}
 
 		while (vm.peekFrame() != marker) {
 			StepResult stepResult = step(vm);
@@ -63,16 +82,33 @@ public interface Executor {
 				if (vm.getTrap() instanceof ExternalTrap extern) throw new TrapException(extern.throwable());
 				throw new TrapException();
 			}
+
+			// The caller is waiting for the results, so there is nothing else to do
+			if (stepResult == StepResult.SUSPENDED) vm.awaitSuspension();
+
+			// The fuel can't be added while waiting for the results
+			if (stepResult == StepResult.OUT_OF_FUEL) {
+				OutOfFuelException e = new OutOfFuelException("Out of fuel");
+				vm.setExternalTrap(e);
+				throw new TrapException(e);
+			}
+
+			if (stepResult == StepResult.INTERRUPTED) {
+				DeadlineExceededException e = new DeadlineExceededException("Interrupted by epoch");
+				vm.setExternalTrap(e);
+				throw new TrapException(e);
+			}
 		}
 
 		List<ValueType> resultTypes = function.declaration().type().outputs().types();
 		Value[] results = new Value[resultTypes.size()];
+		boolean validate = vm.hasRuntimeValidation() && !function.isValidated();
 
 		if (clearStack) {
 			for (int i = results.length - 1; i >= 0; i--) {
 				Value val = marker.popOprand();
 
-				if (vm.hasRuntimeValidation() && !val.type().equals(resultTypes.get(i)))
+				if (validate && !val.type().equals(resultTypes.get(i)))
 					throw new TrapException(new ValidationException("Type mismatch: %s (stack) != %s (declared)"
 						.formatted(val.type(), resultTypes.get(i))));
 
@@ -84,7 +120,7 @@ public interface Executor {
 			for (int i = 0; i < results.length; i++) {
 				Value val = marker.getOperandStack().get(stackSize - results.length + i);
 
-				if (vm.hasRuntimeValidation() && !val.type().equals(resultTypes.get(i)))
+				if (validate && !val.type().equals(resultTypes.get(i)))
 					throw new TrapException(new ValidationException("Type mismatch: %s (stack) != %s (declared)"
 						.formatted(val.type(), resultTypes.get(i))));
 
@@ -92,6 +128,11 @@ public interface Executor {
 			}
 		}
 
+		if (marker != current) {
+			vm.popFrame();
+			if (!clearStack) for (Value val : results) current.pushOperand(val);
+		}
+
 		return results;
 	}
 
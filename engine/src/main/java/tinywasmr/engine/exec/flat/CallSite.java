@@ -0,0 +1,23 @@
+package tinywasmr.engine.exec.flat;
+
+import tinywasmr.engine.exec.instance.Function;
+
+/**
+ * <p>
+ * A direct call from flat code. The flat code of the callee is resolved on the
+ * first call, so functions that are never called are never lowered.
+ * </p>
+ */
+final class CallSite {
+	final Function function;
+	final int paramCount;
+	final int resultCount;
+	boolean resolved = false;
+	FlatCode target;
+
+	CallSite(Function function) {
+		this.function = function;
+		this.paramCount = function.type().inputs().types().size();
+		this.resultCount = function.type().outputs().types().size();
+	}
+}
@@ -0,0 +1,35 @@
+package tinywasmr.engine.exec.flat;
+
+import tinywasmr.engine.exec.instance.Function;
+import tinywasmr.engine.exec.value.Value;
+import tinywasmr.engine.type.value.ValueType;
+
+/**
+ * <p>
+ * A function that has been lowered to flat code by {@link FlatCompiler}. The
+ * code is bound to the instance of the function: memories, globals, tables and
+ * functions referenced by the code are stored in {@link #objects()}.
+ * </p>
+ * <p>
+ * When executing, the locals of the function occupy the first
+ * {@link #localCount()} slots of the frame, followed by the operand stack,
+ * which never grows above {@link #maxStackHeight()}.
+ * </p>
+ *
+ * @param function       The function that was lowered.
+ * @param code           The opcodes and immediates, see {@link FlatOpcodes}.
+ * @param longs          The 64-bit constants.
+ * @param objects        The objects referenced by the code.
+ * @param paramCount     The number of parameters.
+ * @param localCount     The number of locals, including the parameters.
+ * @param maxStackHeight The maximum height of the operand stack.
+ * @param localZeros     The initial values of reference and vector locals, or
+ *                       {@code null} for number locals.
+ * @param resultTypes    The result types of the function.
+ */
+record FlatCode(Function function, int[] code, long[] longs, Object[] objects, int paramCount, int localCount,
+	int maxStackHeight, Value[] localZeros, ValueType[] resultTypes) {
+	public int frameSize() {
+		return localCount + maxStackHeight;
+	}
+}
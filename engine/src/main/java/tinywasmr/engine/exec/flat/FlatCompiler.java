@@ -0,0 +1,676 @@
+package tinywasmr.engine.exec.flat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import tinywasmr.engine.exec.instance.Function;
+import tinywasmr.engine.exec.instance.Instance;
+import tinywasmr.engine.exec.value.FuncRefValue;
+import tinywasmr.engine.exec.value.NumberF32Value;
+import tinywasmr.engine.exec.value.NumberF64Value;
+import tinywasmr.engine.exec.value.NumberI32Value;
+import tinywasmr.engine.exec.value.NumberI64Value;
+import tinywasmr.engine.exec.value.RefValue;
+import tinywasmr.engine.exec.value.Value;
+import tinywasmr.engine.insn.ConstInsn;
+import tinywasmr.engine.insn.Instruction;
+import tinywasmr.engine.insn.LinkedInsn;
+import tinywasmr.engine.insn.control.BlockInsn;
+import tinywasmr.engine.insn.control.BranchIfInsn;
+import tinywasmr.engine.insn.control.BranchInsn;
+import tinywasmr.engine.insn.control.BranchTableInsn;
+import tinywasmr.engine.insn.control.CallIndirectInsn;
+import tinywasmr.engine.insn.control.CallInsn;
+import tinywasmr.engine.insn.control.ControlInsn;
+import tinywasmr.engine.insn.control.IfInsn;
+import tinywasmr.engine.insn.control.LoopInsn;
+import tinywasmr.engine.insn.fused.FusedInsn;
+import tinywasmr.engine.insn.memory.DataDropInsn;
+import tinywasmr.engine.insn.memory.LoadInsn;
+import tinywasmr.engine.insn.memory.LoadType;
+import tinywasmr.engine.insn.memory.MemoryInitInsn;
+import tinywasmr.engine.insn.memory.MemoryInsn;
+import tinywasmr.engine.insn.memory.StoreInsn;
+import tinywasmr.engine.insn.memory.StoreType;
+import tinywasmr.engine.insn.numeric.NumericBinaryOpInsn;
+import tinywasmr.engine.insn.numeric.NumericConvertInsn;
+import tinywasmr.engine.insn.numeric.NumericUnaryOpInsn;
+import tinywasmr.engine.insn.parametric.ParametricInsn;
+import tinywasmr.engine.insn.parametric.SelectExplictInsn;
+import tinywasmr.engine.insn.ref.RefFuncInsn;
+import tinywasmr.engine.insn.ref.RefInsn;
+import tinywasmr.engine.insn.table.TableInsn;
+import tinywasmr.engine.insn.variable.GlobalInsn;
+import tinywasmr.engine.insn.variable.LocalInsn;
+import tinywasmr.engine.module.func.ModuleFunctionDecl;
+import tinywasmr.engine.module.memory.MemoryDecl;
+import tinywasmr.engine.type.BlockType;
+import tinywasmr.engine.type.value.NumberType;
+import tinywasmr.engine.type.value.ValueType;
+
+/**
+ * <p>
+ * Lower the instruction tree of a module function into flat code. The operand
+ * stack height is tracked statically, so branches are resolved to a target
+ * index in code array, the height to unwind to and the number of values to
+ * keep. Blocks and loops themselves does not produce any opcode.
+ * </p>
+ * <p>
+ * Code after unconditional control transfer ({@code br}, {@code br_table},
+ * {@code return} and {@code unreachable}) can never be executed and will not be
+ * lowered.
+ * </p>
+ */
+final class FlatCompiler {
+	private final Function function;
+	private final Instance instance;
+	private final ModuleFunctionDecl declaration;
+	private final List<ValueType> locals;
+
+	private int[] code = new int[64];
+	private int pc = 0;
+	private long[] longs = new long[8];
+	private int longCount = 0;
+	private final List<Object> objects = new ArrayList<>();
+	private final Map<Object, Integer> objectIndices = new IdentityHashMap<>();
+
+	private final List<Label> labels = new ArrayList<>();
+	private int height = 0;
+	private int maxHeight = 0;
+	private boolean unreachable = false;
+
+	private FlatCompiler(Function function) {
+		if (!(function.declaration() instanceof ModuleFunctionDecl declaration))
+			throw new UnsupportedOperationException("Not a module function: %s".formatted(function));
+		this.function = function;
+		this.instance = function.instance();
+		this.declaration = declaration;
+		this.locals = declaration.allLocals();
+	}
+
+	/**
+	 * <p>
+	 * Lower the function into flat code.
+	 * </p>
+	 *
+	 * @param function The module function to lower.
+	 * @return The flat code.
+	 * @throws UnsupportedOperationException if the function is not a module
+	 *                                       function, or the function contains
+	 *                                       instructions that can't be lowered.
+	 */
+	static FlatCode compile(Function function) {
+		return new FlatCompiler(function).compile();
+	}
+
+	private static class Label {
+		final boolean loop;
+		final int height;
+		final int arity;
+		final int start;
+		final List<Integer> fixups = new ArrayList<>();
+		boolean endReachable = false;
+
+		Label(boolean loop, int height, int arity, int start) {
+			this.loop = loop;
+			this.height = height;
+			this.arity = arity;
+			this.start = start;
+		}
+
+		int branchArity() {
+			return loop ? 0 : arity;
+		}
+	}
+
+	private FlatCode compile() {
+		List<ValueType> resultTypes = declaration.type().outputs().types();
+		labels.add(new Label(false, 0, resultTypes.size(), 0));
+		lowerAll(function.body());
+		if (!unreachable) emit(FlatOpcodes.RETURN);
+
+		int paramCount = declaration.type().inputs().types().size();
+		Value[] localZeros = new Value[locals.size()];
+
+		for (int i = paramCount; i < locals.size(); i++) {
+			ValueType type = locals.get(i);
+			if (!(type instanceof NumberType)) localZeros[i] = type.zero();
+		}
+
+		return new FlatCode(
+			function,
+			Arrays.copyOf(code, pc),
+			Arrays.copyOf(longs, longCount),
+			objects.toArray(),
+			paramCount,
+			locals.size(),
+			maxHeight,
+			localZeros,
+			resultTypes.toArray(ValueType[]::new));
+	}
+
+	private void emit(int value) {
+		if (pc == code.length) code = Arrays.copyOf(code, pc * 2);
+		code[pc++] = value;
+	}
+
+	private void emit(int opcode, int immediate) {
+		emit(opcode);
+		emit(immediate);
+	}
+
+	private int longConstant(long value) {
+		for (int i = 0; i < longCount; i++) if (longs[i] == value) return i;
+		if (longCount == longs.length) longs = Arrays.copyOf(longs, longCount * 2);
+		longs[longCount] = value;
+		return longCount++;
+	}
+
+	private int object(Object object) {
+		Integer index = objectIndices.get(object);
+
+		if (index == null) {
+			index = objects.size();
+			objects.add(object);
+			objectIndices.put(object, index);
+		}
+
+		return index;
+	}
+
+	private void pop(int count) {
+		height -= count;
+	}
+
+	private void push(int count) {
+		height += count;
+		if (height > maxHeight) maxHeight = height;
+	}
+
+	private void lowerAll(List<Instruction> instructions) {
+		for (Instruction insn : instructions) {
+			if (unreachable) return;
+			lower(insn);
+		}
+	}
+
+	private void lower(Instruction insn) {
+		// Flat code resolves the declarations of linked instructions once when lowering
+		if (insn instanceof LinkedInsn linked) insn = linked.unlinked();
+
+		if (insn instanceof FusedInsn fused) {
+			lowerAll(fused.instructions());
+		} else if (insn instanceof ConstInsn constInsn) {
+			lowerConst(constInsn.value());
+		} else if (insn instanceof NumericBinaryOpInsn op) {
+			emit(opcode(op));
+			pop(1);
+		} else if (insn instanceof NumericUnaryOpInsn op) {
+			emit(opcode(op));
+		} else if (insn instanceof NumericConvertInsn op) {
+			// Reinterpretation does not change the bits in slot
+			if (!isReinterpret(op)) emit(opcode(op));
+		} else if (insn instanceof LocalInsn local) {
+			lowerLocal(local);
+		} else if (insn instanceof GlobalInsn global) {
+			switch (global.type()) {
+			case GET -> {
+				emit(FlatOpcodes.GLOBAL_GET, object(instance.global(global.global())));
+				push(1);
+			}
+			case SET -> {
+				emit(FlatOpcodes.GLOBAL_SET, object(instance.global(global.global())));
+				pop(1);
+			}
+			}
+		} else if (insn instanceof LoadInsn load) {
+			requireMemory32(load.memory());
+			emit(opcode(load.type()), object(instance.memory(load.memory())));
+			emit(load.memarg().offset());
+		} else if (insn instanceof StoreInsn store) {
+			requireMemory32(store.memory());
+			emit(opcode(store.type()), object(instance.memory(store.memory())));
+			emit(store.memarg().offset());
+			pop(2);
+		} else if (insn instanceof MemoryInsn memory) {
+			lowerMemory(memory);
+		} else if (insn instanceof MemoryInitInsn init) {
+			requireMemory32(init.memory());
+			emit(FlatOpcodes.MEMORY_INIT, object(instance.memory(init.memory())));
+			emit(object(init.segment()));
+			pop(3);
+		} else if (insn instanceof DataDropInsn) {
+			// Do nothing, just like DataDropInsn
+		} else if (insn instanceof TableInsn table) {
+			lowerTable(table);
+		} else if (insn instanceof ParametricInsn parametric) {
+			switch (parametric) {
+			case DROP -> emit(FlatOpcodes.DROP);
+			case SELECT_AUTO -> emit(FlatOpcodes.SELECT);
+			}
+
+			pop(parametric == ParametricInsn.DROP ? 1 : 2);
+		} else if (insn instanceof SelectExplictInsn) {
+			emit(FlatOpcodes.SELECT);
+			pop(2);
+		} else if (insn instanceof RefInsn ref) {
+			switch (ref) {
+			case NULL_EXTERN -> lowerConst(RefValue.NULL_EXTERN);
+			case NULL_FUNC -> lowerConst(RefValue.NULL_FUNC);
+			case IS_NULL -> emit(FlatOpcodes.REF_IS_NULL);
+			}
+		} else if (insn instanceof RefFuncInsn ref) {
+			lowerConst(new FuncRefValue(instance.function(ref.function())));
+		} else if (insn instanceof BlockInsn block) {
+			lowerBlock(block.blockType(), block.instructions(), false);
+		} else if (insn instanceof LoopInsn loop) {
+			lowerBlock(loop.blockType(), loop.instructions(), true);
+		} else if (insn instanceof IfInsn ifInsn) {
+			lowerIf(ifInsn);
+		} else if (insn instanceof BranchIfInsn branch) {
+			lowerBranchIf(branch.nestIndex());
+		} else if (insn instanceof BranchInsn branch) {
+			lowerBranch(branch.nestIndex());
+		} else if (insn instanceof BranchTableInsn branch) {
+			lowerBranchTable(branch);
+		} else if (insn instanceof ControlInsn control) {
+			switch (control) {
+			case NOP -> {}
+			case UNREACHABLE -> {
+				emit(FlatOpcodes.UNREACHABLE);
+				unreachable = true;
+			}
+			case RETURN -> {
+				emit(FlatOpcodes.RETURN);
+				unreachable = true;
+			}
+			}
+		} else if (insn instanceof CallInsn call) {
+			CallSite site = new CallSite(instance.function(call.function()));
+			emit(FlatOpcodes.CALL, object(site));
+			pop(site.paramCount);
+			push(site.resultCount);
+		} else if (insn instanceof CallIndirectInsn call) {
+			emit(FlatOpcodes.CALL_INDIRECT, object(instance.table(call.table())));
+			emit(object(call.type()));
+			pop(1 + call.type().inputs().types().size());
+			push(call.type().outputs().types().size());
+		} else {
+			throw new UnsupportedOperationException("Cannot lower %s".formatted(insn.getClass().getName()));
+		}
+	}
+
+	private void lowerConst(Value value) {
+		if (value instanceof NumberI32Value i32) emit(FlatOpcodes.I32_CONST, i32.i32());
+		else if (value instanceof NumberF32Value f32) emit(FlatOpcodes.I32_CONST, Float.floatToRawIntBits(f32.f32()));
+		else if (value instanceof NumberI64Value i64) emit(FlatOpcodes.I64_CONST, longConstant(i64.i64()));
+		else if (value instanceof NumberF64Value f64)
+			emit(FlatOpcodes.I64_CONST, longConstant(Double.doubleToRawLongBits(f64.f64())));
+		else emit(FlatOpcodes.REF_CONST, object(value));
+		push(1);
+	}
+
+	private void lowerLocal(LocalInsn local) {
+		boolean number = locals.get(local.index()) instanceof NumberType;
+
+		switch (local.type()) {
+		case GET -> {
+			emit(number ? FlatOpcodes.LOCAL_GET : FlatOpcodes.LOCAL_GET_REF, local.index());
+			push(1);
+		}
+		case SET -> {
+			emit(number ? FlatOpcodes.LOCAL_SET : FlatOpcodes.LOCAL_SET_REF, local.index());
+			pop(1);
+		}
+		case TEE -> emit(number ? FlatOpcodes.LOCAL_TEE : FlatOpcodes.LOCAL_TEE_REF, local.index());
+		}
+	}
+
+	private static void requireMemory32(MemoryDecl memory) {
+		if (memory.type().memory64()) throw new UnsupportedOperationException("64-bit memory is not supported");
+	}
+
+	private void lowerMemory(MemoryInsn memory) {
+		requireMemory32(memory.memory());
+		int index = object(instance.memory(memory.memory()));
+
+		switch (memory.type()) {
+		case SIZE -> {
+			emit(FlatOpcodes.MEMORY_SIZE, index);
+			push(1);
+		}
+		case GROW -> emit(FlatOpcodes.MEMORY_GROW, index);
+		case COPY -> {
+			emit(FlatOpcodes.MEMORY_COPY, index);
+			pop(3);
+		}
+		case FILL -> {
+			emit(FlatOpcodes.MEMORY_FILL, index);
+			pop(3);
+		}
+		}
+	}
+
+	private void lowerTable(TableInsn table) {
+		int index = object(instance.table(table.table()));
+
+		switch (table.type()) {
+		case GET -> emit(FlatOpcodes.TABLE_GET, index);
+		case SET -> {
+			emit(FlatOpcodes.TABLE_SET, index);
+			pop(2);
+		}
+		case GROW -> {
+			emit(FlatOpcodes.TABLE_GROW, index);
+			pop(1);
+		}
+		case SIZE -> {
+			emit(FlatOpcodes.TABLE_SIZE, index);
+			push(1);
+		}
+		case FILL -> {
+			emit(FlatOpcodes.TABLE_FILL, index);
+			pop(3);
+		}
+		}
+	}
+
+	private void lowerBlock(BlockType type, List<Instruction> instructions, boolean loop) {
+		Label label = new Label(loop, height, type.blockResults().size(), pc);
+		if (loop) emit(FlatOpcodes.LOOP);
+		labels.add(label);
+		lowerAll(instructions);
+		endBlock(label);
+	}
+
+	private void lowerIf(IfInsn insn) {
+		pop(1);
+		Label label = new Label(false, height, insn.blockType().blockResults().size(), pc);
+		labels.add(label);
+		emit(FlatOpcodes.JUMP_IF_ZERO);
+		int elseFixup = pc;
+		emit(-1);
+		lowerAll(insn.truePath());
+
+		if (insn.falsePath().isEmpty()) {
+			label.fixups.add(elseFixup);
+			label.endReachable = true;
+		} else {
+			if (!unreachable) {
+				emit(FlatOpcodes.JUMP);
+				label.fixups.add(pc);
+				label.endReachable = true;
+				emit(-1);
+			}
+
+			code[elseFixup] = pc;
+			height = label.height;
+			unreachable = false;
+			lowerAll(insn.falsePath());
+		}
+
+		endBlock(label);
+	}
+
+	private void endBlock(Label label) {
+		labels.remove(labels.size() - 1);
+		for (int fixup : label.fixups) code[fixup] = pc;
+		unreachable = unreachable && !label.endReachable;
+		height = label.height + label.arity;
+		if (height > maxHeight) maxHeight = height;
+	}
+
+	private Label label(int nestIndex) {
+		if (nestIndex < 0 || nestIndex >= labels.size())
+			throw new IllegalArgumentException("Illegal br label: %d".formatted(nestIndex));
+		return labels.get(labels.size() - 1 - nestIndex);
+	}
+
+	private void emitTarget(Label label) {
+		if (label.loop) {
+			emit(label.start);
+		} else {
+			label.fixups.add(pc);
+			label.endReachable = true;
+			emit(-1);
+		}
+	}
+
+	private void lowerBranch(int nestIndex) {
+		Label label = label(nestIndex);
+
+		if (label == labels.get(0)) {
+			emit(FlatOpcodes.RETURN);
+		} else if (label.height + label.branchArity() == height) {
+			emit(FlatOpcodes.JUMP);
+			emitTarget(label);
+		} else {
+			emit(FlatOpcodes.BR);
+			emitTarget(label);
+			emit(label.height);
+			emit(label.branchArity());
+		}
+
+		unreachable = true;
+	}
+
+	private void lowerBranchIf(int nestIndex) {
+		pop(1);
+		Label label = label(nestIndex);
+
+		if (label == labels.get(0)) {
+			emit(FlatOpcodes.JUMP_IF_ZERO, pc + 3);
+			emit(FlatOpcodes.RETURN);
+		} else if (label.height + label.branchArity() == height) {
+			emit(FlatOpcodes.JUMP_IF_NOT_ZERO);
+			emitTarget(label);
+		} else {
+			emit(FlatOpcodes.BR_IF);
+			emitTarget(label);
+			emit(label.height);
+			emit(label.branchArity());
+		}
+	}
+
+	private void lowerBranchTable(BranchTableInsn insn) {
+		pop(1);
+		int[] nestIndices = Arrays.copyOf(insn.labels(), insn.labels().length + 1);
+		nestIndices[insn.labels().length] = insn.defaultLabel();
+		emit(FlatOpcodes.BR_TABLE, insn.labels().length);
+
+		for (int nestIndex : nestIndices) {
+			Label label = label(nestIndex);
+
+			if (label == labels.get(0)) {
+				// Negative target means returning from function
+				emit(-1);
+				emit(0);
+				emit(0);
+			} else {
+				emitTarget(label);
+				emit(label.height);
+				emit(label.branchArity());
+			}
+		}
+
+		unreachable = true;
+	}
+
+	private static int opcode(LoadType type) {
+		return switch (type) {
+		case I32 -> FlatOpcodes.I32_LOAD;
+		case I64 -> FlatOpcodes.I64_LOAD;
+		case F32 -> FlatOpcodes.F32_LOAD;
+		case F64 -> FlatOpcodes.F64_LOAD;
+		case I32_S8 -> FlatOpcodes.I32_LOAD8_S;
+		case I32_U8 -> FlatOpcodes.I32_LOAD8_U;
+		case I32_S16 -> FlatOpcodes.I32_LOAD16_S;
+		case I32_U16 -> FlatOpcodes.I32_LOAD16_U;
+		case I64_S8 -> FlatOpcodes.I64_LOAD8_S;
+		case I64_U8 -> FlatOpcodes.I64_LOAD8_U;
+		case I64_S16 -> FlatOpcodes.I64_LOAD16_S;
+		case I64_U16 -> FlatOpcodes.I64_LOAD16_U;
+		case I64_S32 -> FlatOpcodes.I64_LOAD32_S;
+		case I64_U32 -> FlatOpcodes.I64_LOAD32_U;
+		};
+	}
+
+	private static int opcode(StoreType type) {
+		return switch (type) {
+		case I32 -> FlatOpcodes.I32_STORE;
+		case I64 -> FlatOpcodes.I64_STORE;
+		case F32 -> FlatOpcodes.F32_STORE;
+		case F64 -> FlatOpcodes.F64_STORE;
+		case I32_I8 -> FlatOpcodes.I32_STORE8;
+		case I32_I16 -> FlatOpcodes.I32_STORE16;
+		case I64_I8 -> FlatOpcodes.I64_STORE8;
+		case I64_I16 -> FlatOpcodes.I64_STORE16;
+		case I64_I32 -> FlatOpcodes.I64_STORE32;
+		};
+	}
+
+	private static int opcode(NumericBinaryOpInsn insn) {
+		return switch (insn) {
+		case I32_EQ -> FlatOpcodes.I32_EQ;
+		case I32_NE -> FlatOpcodes.I32_NE;
+		case I32_LT_S -> FlatOpcodes.I32_LT_S;
+		case I32_LT_U -> FlatOpcodes.I32_LT_U;
+		case I32_GT_S -> FlatOpcodes.I32_GT_S;
+		case I32_GT_U -> FlatOpcodes.I32_GT_U;
+		case I32_LE_S -> FlatOpcodes.I32_LE_S;
+		case I32_LE_U -> FlatOpcodes.I32_LE_U;
+		case I32_GE_S -> FlatOpcodes.I32_GE_S;
+		case I32_GE_U -> FlatOpcodes.I32_GE_U;
+		case I32_ADD -> FlatOpcodes.I32_ADD;
+		case I32_SUB -> FlatOpcodes.I32_SUB;
+		case I32_MUL -> FlatOpcodes.I32_MUL;
+		case I32_DIV_S -> FlatOpcodes.I32_DIV_S;
+		case I32_DIV_U -> FlatOpcodes.I32_DIV_U;
+		case I32_REM_S -> FlatOpcodes.I32_REM_S;
+		case I32_REM_U -> FlatOpcodes.I32_REM_U;
+		case I32_AND -> FlatOpcodes.I32_AND;
+		case I32_OR -> FlatOpcodes.I32_OR;
+		case I32_XOR -> FlatOpcodes.I32_XOR;
+		case I32_SHL -> FlatOpcodes.I32_SHL;
+		case I32_SHR_S -> FlatOpcodes.I32_SHR_S;
+		case I32_SHR_U -> FlatOpcodes.I32_SHR_U;
+		case I32_ROTL -> FlatOpcodes.I32_ROTL;
+		case I32_ROTR -> FlatOpcodes.I32_ROTR;
+		case I64_EQ -> FlatOpcodes.I64_EQ;
+		case I64_NE -> FlatOpcodes.I64_NE;
+		case I64_LT_S -> FlatOpcodes.I64_LT_S;
+		case I64_LT_U -> FlatOpcodes.I64_LT_U;
+		case I64_GT_S -> FlatOpcodes.I64_GT_S;
+		case I64_GT_U -> FlatOpcodes.I64_GT_U;
+		case I64_LE_S -> FlatOpcodes.I64_LE_S;
+		case I64_LE_U -> FlatOpcodes.I64_LE_U;
+		case I64_GE_S -> FlatOpcodes.I64_GE_S;
+		case I64_GE_U -> FlatOpcodes.I64_GE_U;
+		case I64_ADD -> FlatOpcodes.I64_ADD;
+		case I64_SUB -> FlatOpcodes.I64_SUB;
+		case I64_MUL -> FlatOpcodes.I64_MUL;
+		case I64_DIV_S -> FlatOpcodes.I64_DIV_S;
+		case I64_DIV_U -> FlatOpcodes.I64_DIV_U;
+		case I64_REM_S -> FlatOpcodes.I64_REM_S;
+		case I64_REM_U -> FlatOpcodes.I64_REM_U;
+		case I64_AND -> FlatOpcodes.I64_AND;
+		case I64_OR -> FlatOpcodes.I64_OR;
+		case I64_XOR -> FlatOpcodes.I64_XOR;
+		case I64_SHL -> FlatOpcodes.I64_SHL;
+		case I64_SHR_S -> FlatOpcodes.I64_SHR_S;
+		case I64_SHR_U -> FlatOpcodes.I64_SHR_U;
+		case I64_ROTL -> FlatOpcodes.I64_ROTL;
+		case I64_ROTR -> FlatOpcodes.I64_ROTR;
+		case F32_EQ -> FlatOpcodes.F32_EQ;
+		case F32_NE -> FlatOpcodes.F32_NE;
+		case F32_LT -> FlatOpcodes.F32_LT;
+		case F32_GT -> FlatOpcodes.F32_GT;
+		case F32_LE -> FlatOpcodes.F32_LE;
+		case F32_GE -> FlatOpcodes.F32_GE;
+		case F32_ADD -> FlatOpcodes.F32_ADD;
+		case F32_SUB -> FlatOpcodes.F32_SUB;
+		case F32_MUL -> FlatOpcodes.F32_MUL;
+		case F32_DIV -> FlatOpcodes.F32_DIV;
+		case F32_MIN -> FlatOpcodes.F32_MIN;
+		case F32_MAX -> FlatOpcodes.F32_MAX;
+		case F32_COPYSIGN -> FlatOpcodes.F32_COPYSIGN;
+		case F64_EQ -> FlatOpcodes.F64_EQ;
+		case F64_NE -> FlatOpcodes.F64_NE;
+		case F64_LT -> FlatOpcodes.F64_LT;
+		case F64_GT -> FlatOpcodes.F64_GT;
+		case F64_LE -> FlatOpcodes.F64_LE;
+		case F64_GE -> FlatOpcodes.F64_GE;
+		case F64_ADD -> FlatOpcodes.F64_ADD;
+		case F64_SUB -> FlatOpcodes.F64_SUB;
+		case F64_MUL -> FlatOpcodes.F64_MUL;
+		case F64_DIV -> FlatOpcodes.F64_DIV;
+		case F64_MIN -> FlatOpcodes.F64_MIN;
+		case F64_MAX -> FlatOpcodes.F64_MAX;
+		case F64_COPYSIGN -> FlatOpcodes.F64_COPYSIGN;
+		};
+	}
+
+	private static int opcode(NumericUnaryOpInsn insn) {
+		return switch (insn) {
+		case I32_CLZ -> FlatOpcodes.I32_CLZ;
+		case I32_CTZ -> FlatOpcodes.I32_CTZ;
+		case I32_POPCNT -> FlatOpcodes.I32_POPCNT;
+		case I32_EQZ -> FlatOpcodes.I32_EQZ;
+		case I64_CLZ -> FlatOpcodes.I64_CLZ;
+		case I64_CTZ -> FlatOpcodes.I64_CTZ;
+		case I64_POPCNT -> FlatOpcodes.I64_POPCNT;
+		case I64_EQZ -> FlatOpcodes.I64_EQZ;
+		case F32_ABS -> FlatOpcodes.F32_ABS;
+		case F32_NEG -> FlatOpcodes.F32_NEG;
+		case F32_SQRT -> FlatOpcodes.F32_SQRT;
+		case F32_CEIL -> FlatOpcodes.F32_CEIL;
+		case F32_FLOOR -> FlatOpcodes.F32_FLOOR;
+		case F32_TRUNC -> FlatOpcodes.F32_TRUNC;
+		case F32_NEAREST -> FlatOpcodes.F32_NEAREST;
+		case F64_ABS -> FlatOpcodes.F64_ABS;
+		case F64_NEG -> FlatOpcodes.F64_NEG;
+		case F64_SQRT -> FlatOpcodes.F64_SQRT;
+		case F64_CEIL -> FlatOpcodes.F64_CEIL;
+		case F64_FLOOR -> FlatOpcodes.F64_FLOOR;
+		case F64_TRUNC -> FlatOpcodes.F64_TRUNC;
+		case F64_NEAREST -> FlatOpcodes.F64_NEAREST;
+		};
+	}
+
+	private static int opcode(NumericConvertInsn insn) {
+		return switch (insn) {
+		case I32_WRAP_I64 -> FlatOpcodes.I32_WRAP_I64;
+		case I32_TRUNC_F32_S -> FlatOpcodes.I32_TRUNC_F32_S;
+		case I32_TRUNC_F32_U -> FlatOpcodes.I32_TRUNC_F32_U;
+		case I32_TRUNC_F64_S -> FlatOpcodes.I32_TRUNC_F64_S;
+		case I32_TRUNC_F64_U -> FlatOpcodes.I32_TRUNC_F64_U;
+		case I64_EXTEND_I32_S -> FlatOpcodes.I64_EXTEND_I32_S;
+		case I64_EXTEND_I32_U -> FlatOpcodes.I64_EXTEND_I32_U;
+		case I64_TRUNC_F32_S -> FlatOpcodes.I64_TRUNC_F32_S;
+		case I64_TRUNC_F32_U -> FlatOpcodes.I64_TRUNC_F32_U;
+		case I64_TRUNC_F64_S -> FlatOpcodes.I64_TRUNC_F64_S;
+		case I64_TRUNC_F64_U -> FlatOpcodes.I64_TRUNC_F64_U;
+		case F32_CONVERT_I32_S -> FlatOpcodes.F32_CONVERT_I32_S;
+		case F32_CONVERT_I32_U -> FlatOpcodes.F32_CONVERT_I32_U;
+		case F32_CONVERT_I64_S -> FlatOpcodes.F32_CONVERT_I64_S;
+		case F32_CONVERT_I64_U -> FlatOpcodes.F32_CONVERT_I64_U;
+		case F32_DEMOTE_F64 -> FlatOpcodes.F32_DEMOTE_F64;
+		case F64_CONVERT_I32_S -> FlatOpcodes.F64_CONVERT_I32_S;
+		case F64_CONVERT_I32_U -> FlatOpcodes.F64_CONVERT_I32_U;
+		case F64_CONVERT_I64_S -> FlatOpcodes.F64_CONVERT_I64_S;
+		case F64_CONVERT_I64_U -> FlatOpcodes.F64_CONVERT_I64_U;
+		case F64_PROMOTE_F32 -> FlatOpcodes.F64_PROMOTE_F32;
+		default -> throw new UnsupportedOperationException("No opcode for %s".formatted(insn));
+		};
+	}
+
+	private static boolean isReinterpret(NumericConvertInsn insn) {
+		return switch (insn) {
+		case I32_REINTERPRET_F32, F32_REINTERPRET_I32, I64_REINTERPRET_F64, F64_REINTERPRET_I64 -> true;
+		default -> false;
+		};
+	}
+}
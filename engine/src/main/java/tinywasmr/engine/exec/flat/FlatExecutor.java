@@ -0,0 +1,145 @@
+package tinywasmr.engine.exec.flat;
+
+import java.util.Optional;
+
+import tinywasmr.engine.exec.StepResult;
+import tinywasmr.engine.exec.TrapException;
+import tinywasmr.engine.exec.executor.DefaultExecutor;
+import tinywasmr.engine.exec.executor.Executor;
+import tinywasmr.engine.exec.frame.FunctionFrame;
+import tinywasmr.engine.exec.instance.Function;
+import tinywasmr.engine.exec.jit.FunctionProfile;
+import tinywasmr.engine.exec.value.Value;
+import tinywasmr.engine.exec.vm.Machine;
+import tinywasmr.engine.module.func.ModuleFunctionDecl;
+
+/**
+ * <p>
+ * An executor that lowers module functions into flat code, where branch targets
+ * and result arities are resolved ahead of time, and executes them in a single
+ * dispatch loop without pushing a frame for each nested block.
+ * </p>
+ * <p>
+ * When the current frame is a function frame of a module function that is
+ * about to execute its first instruction, the whole call is executed in flat
+ * code and counts as a single step. All other frames (init frames, external
+ * functions and module functions that can't be lowered) are stepped by the
+ * fallback executor. As a result, this executor is not suitable for stepping
+ * through module functions in debugger.
+ * </p>
+ * <p>
+ * Flat code checks the epoch deadline of the machine at loop headers. Reaching
+ * the deadline in flat code traps the machine with
+ * {@link tinywasmr.engine.exec.epoch.DeadlineExceededException}, because the
+ * flat frames can't be restored to interpreter frames for yielding.
+ * </p>
+ * <p>
+ * The flat code is cached in the {@link FunctionProfile} of the function, so it
+ * is shared by all flat executors and garbage collected with the instance.
+ * Functions without profile are lowered again on each call. Each thread reuses
+ * its interpreter and slot arrays between calls.
+ * </p>
+ */
+public class FlatExecutor implements Executor {
+	private final Executor fallback;
+	private final ThreadLocal<FlatInterpreter> interpreters;
+
+	/**
+	 * <p>
+	 * Create a new flat executor.
+	 * </p>
+	 *
+	 * @param fallback The executor for stepping frames that can't be executed in
+	 *                 flat code.
+	 */
+	public FlatExecutor(Executor fallback) {
+		this.fallback = fallback;
+		this.interpreters = ThreadLocal.withInitial(() -> new FlatInterpreter(this));
+	}
+
+	public FlatExecutor() {
+		this(new DefaultExecutor());
+	}
+
+	public Executor getFallback() { return fallback; }
+
+	/**
+	 * <p>
+	 * Check whether the function can be executed in flat code. The function will
+	 * be lowered if it wasn't lowered before.
+	 * </p>
+	 */
+	public boolean canExecute(Function function) {
+		return code(function) != null;
+	}
+
+	/**
+	 * <p>
+	 * Get the flat code of the function, or {@code null} if the function can't be
+	 * lowered.
+	 * </p>
+	 */
+	FlatCode code(Function function) {
+		if (!(function.declaration() instanceof ModuleFunctionDecl)) return null;
+		FunctionProfile profile = function.instance() != null ? function.instance().profile(function) : null;
+		if (profile == null) return lower(function).orElse(null);
+
+		// Lowering the same function on 2 threads gives the same code, so there is no
+		// need to lock
+		Optional<?> code = (Optional<?>) profile.getFlatCode();
+
+		if (code == null) {
+			code = lower(function);
+			profile.setFlatCode(code);
+		}
+
+		return (FlatCode) code.orElse(null);
+	}
+
+	private static Optional<FlatCode> lower(Function function) {
+		try {
+			return Optional.of(FlatCompiler.compile(function));
+		} catch (UnsupportedOperationException e) {
+			return Optional.empty();
+		}
+	}
+
+	@Override
+	public StepResult step(Machine vm) {
+		if (vm.getTrap() == null
+			&& vm.getFuelMeter() == null
+			&& !vm.isDeadlineExpired()
+			&& vm.peekFrame() instanceof FunctionFrame frame
+			&& frame.getStep() == 0
+			&& !frame.isBranched()
+			&& frame.getOperandStack().isEmpty()) {
+			FlatCode code = code(frame.getFunction());
+			if (code != null) return run(vm, code, frame.getLocals());
+		}
+
+		return fallback.step(vm);
+	}
+
+	private StepResult run(Machine vm, FlatCode code, Value[] locals) {
+		try {
+			FlatInterpreter interpreter = interpreters.get();
+
+			// Host functions called from flat code may execute functions on this executor
+			// again, which must not overwrite the slots of the outer call
+			if (interpreter.isRunning()) interpreter = new FlatInterpreter(this);
+			Value[] results = interpreter.invoke(vm, code, locals);
+			vm.exitFunction(results);
+			return null;
+		} catch (FlatInterpreter.TrapSignal e) {
+			vm.setTrap(e.trap);
+			return StepResult.TRAP;
+		} catch (TrapException e) {
+			// Trapped while executing function on virtual machine
+			if (vm.getTrap() == null) vm.setExternalTrap(e.getCause() != null ? e.getCause() : e);
+			return StepResult.TRAP;
+		} catch (StackOverflowError e) {
+			vm.setExternalTrap(e);
+			return StepResult.TRAP;
+		}
+	}
+}
@@ -0,0 +1,790 @@
+package tinywasmr.engine.exec.flat;
+
+import static tinywasmr.engine.exec.flat.FlatOpcodes.*;
+
+import java.io.Serial;
+import java.util.Arrays;
+import java.util.List;
+
+import tinywasmr.engine.exec.TrapException;
+import tinywasmr.engine.exec.ValidationException;
+import tinywasmr.engine.exec.epoch.DeadlineExceededException;
+import tinywasmr.engine.exec.epoch.EpochDeadline;
+import tinywasmr.engine.exec.global.Global;
+import tinywasmr.engine.exec.instance.Function;
+import tinywasmr.engine.exec.memory.Memory;
+import tinywasmr.engine.exec.table.Table;
+import tinywasmr.engine.exec.trap.ModuleTrap;
+import tinywasmr.engine.exec.trap.Trap;
+import tinywasmr.engine.exec.value.FuncRefValue;
+import tinywasmr.engine.exec.value.NumberF32Value;
+import tinywasmr.engine.exec.value.NumberF64Value;
+import tinywasmr.engine.exec.value.NumberI32Value;
+import tinywasmr.engine.exec.value.NumberI64Value;
+import tinywasmr.engine.exec.value.RefValue;
+import tinywasmr.engine.exec.value.Value;
+import tinywasmr.engine.exec.vm.Machine;
+import tinywasmr.engine.insn.memory.MemoryArg;
+import tinywasmr.engine.module.func.extern.HostOnlyFunctionDecl;
+import tinywasmr.engine.module.memory.DataSegment;
+import tinywasmr.engine.type.FunctionType;
+import tinywasmr.engine.type.value.NumberType;
+import tinywasmr.engine.type.value.ValueType;
+
+/**
+ * <p>
+ * Execute flat code. Number values are stored as raw bits in a {@code long[]}
+ * slot array ({@code f32} and {@code f64} are stored as their raw bits), while
+ * reference and vector values are stored in a parallel {@code Object[]} array.
+ * Each call gets a frame in the same arrays, starting at the first argument of
+ * the call, and leaves its results at the start of the frame when it returns.
+ * </p>
+ * <p>
+ * Calls between flat functions are executed recursively on the Java stack.
+ * Calls to other functions are executed on the virtual machine by the owning
+ * {@link FlatExecutor}.
+ * </p>
+ */
+final class FlatInterpreter {
+	private final FlatExecutor executor;
+	private Machine vm;
+	private EpochDeadline deadline;
+	private long[] slots = new long[256];
+	private Object[] refs = new Object[256];
+	private int used = 0;
+
+	FlatInterpreter(FlatExecutor executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * <p>
+	 * Check whether this interpreter is executing flat code. A running interpreter
+	 * can't be reused for another call.
+	 * </p>
+	 */
+	boolean isRunning() {
+		return vm != null;
+	}
+
+	/**
+	 * <p>
+	 * Thrown when the flat code traps the virtual machine.
+	 * </p>
+	 */
+	static final class TrapSignal extends RuntimeException {
+		@Serial
+		private static final long serialVersionUID = -2716014553410412310L;
+
+		final transient Trap trap;
+
+		TrapSignal(Trap trap) {
+			super(null, null, false, false);
+			this.trap = trap;
+		}
+	}
+
+	/**
+	 * <p>
+	 * Execute the flat code. The references left in the slots are cleared when
+	 * the call ends, so the interpreter can be kept for the next call.
+	 * </p>
+	 *
+	 * @param vm     The virtual machine to execute calls to other functions.
+	 * @param code   The flat code to execute.
+	 * @param params The parameters. Extra elements are ignored.
+	 * @return The results.
+	 */
+	Value[] invoke(Machine vm, FlatCode code, Value[] params) {
+		this.vm = vm;
+		this.deadline = vm.getEpochDeadline();
+
+		try {
+			ensureCapacity(code.frameSize());
+			for (int i = 0; i < code.paramCount(); i++) store(slots, refs, i, params[i]);
+			run(code, 0);
+			ValueType[] resultTypes = code.resultTypes();
+			Value[] results = new Value[resultTypes.length];
+			for (int i = 0; i < results.length; i++) results[i] = load(slots, refs, i, resultTypes[i]);
+			return results;
+		} finally {
+			Arrays.fill(refs, 0, used, null);
+			used = 0;
+			this.vm = null;
+			this.deadline = null;
+		}
+	}
+
+	private void ensureCapacity(int size) {
+		if (size > used) used = size;
+		if (size <= slots.length) return;
+		int newSize = Math.max(size, slots.length * 2);
+		slots = Arrays.copyOf(slots, newSize);
+		refs = Arrays.copyOf(refs, newSize);
+	}
+
+	private void call(CallSite site, int fp) {
+		if (!site.resolved) {
+			site.target = executor.code(site.function);
+			site.resolved = true;
+		}
+
+		if (site.target != null) run(site.target, fp);
+		else callVirtual(site.function, fp);
+	}
+
+	private void call(Function function, int fp) {
+		FlatCode code = executor.code(function);
+		if (code != null) run(code, fp);
+		else callVirtual(function, fp);
+	}
+
+	private void callVirtual(Function function, int fp) {
+		List<ValueType> paramTypes = function.type().inputs().types();
+		Value[] params = new Value[paramTypes.size()];
+		for (int i = 0; i < params.length; i++) params[i] = load(slots, refs, fp + i, paramTypes.get(i));
+		Value[] results;
+
+		if (function.declaration() instanceof HostOnlyFunctionDecl host && host.localVariables().isEmpty())
+			results = host.onExec(function.instance(), params);
+		else
+			results = executor.execute(vm, function, params);
+
+		ensureCapacity(fp + results.length);
+		for (int i = 0; i < results.length; i++) store(slots, refs, fp + i, results[i]);
+	}
+
+	private static int branch(long[] s, Object[] r, int sp, int destination, int arity) {
+		System.arraycopy(s, sp - arity, s, destination, arity);
+		System.arraycopy(r, sp - arity, r, destination, arity);
+		return destination + arity;
+	}
+
+	private static int address(long address, int offset) {
+		return MemoryArg.effectiveAddress((int) address, offset);
+	}
+
+	private void run(FlatCode frame, int fp) {
+		ensureCapacity(fp + frame.frameSize());
+		int[] code = frame.code();
+		long[] longs = frame.longs();
+		Object[] objects = frame.objects();
+		Value[] zeros = frame.localZeros();
+		int resultCount = frame.resultTypes().length;
+		long[] s = slots;
+		Object[] r = refs;
+
+		for (int i = frame.paramCount(); i < frame.localCount(); i++) {
+			s[fp + i] = 0L;
+			r[fp + i] = zeros[i];
+		}
+
+		int base = fp + frame.localCount();
+		int sp = base;
+		int pc = 0;
+
+		while (true) {
+			switch (code[pc++]) {
+			case UNREACHABLE -> throw new TrapSignal(new ModuleTrap());
+			case JUMP -> pc = code[pc];
+			case JUMP_IF_ZERO -> pc = (int) s[--sp] == 0 ? code[pc] : pc + 1;
+			case JUMP_IF_NOT_ZERO -> pc = (int) s[--sp] != 0 ? code[pc] : pc + 1;
+			case BR -> {
+				sp = branch(s, r, sp, base + code[pc + 1], code[pc + 2]);
+				pc = code[pc];
+			}
+			case BR_IF -> {
+				if ((int) s[--sp] != 0) {
+					sp = branch(s, r, sp, base + code[pc + 1], code[pc + 2]);
+					pc = code[pc];
+				} else {
+					pc += 3;
+				}
+			}
+			case BR_TABLE -> {
+				int count = code[pc];
+				int index = (int) s[--sp];
+				int entry = pc + 1 + 3 * (Integer.compareUnsigned(index, count) < 0 ? index : count);
+
+				if (code[entry] < 0) {
+					branch(s, r, sp, fp, resultCount);
+					return;
+				}
+
+				sp = branch(s, r, sp, base + code[entry + 1], code[entry + 2]);
+				pc = code[entry];
+			}
+			case RETURN -> {
+				branch(s, r, sp, fp, resultCount);
+				return;
+			}
+			case LOOP -> {
+				// The flat frames can't be restored to interpreter frames, so reaching the
+				// deadline traps even if the action is yield
+				if (deadline != null && deadline.isExpired()) throw new TrapException(
+					new DeadlineExceededException("Epoch reached deadline %d in flat code"
+						.formatted(deadline.getDeadline())));
+			}
+			case CALL -> {
+				CallSite site = (CallSite) objects[code[pc++]];
+				int callee = sp - site.paramCount;
+				call(site, callee);
+				s = slots;
+				r = refs;
+				sp = callee + site.resultCount;
+			}
+			case CALL_INDIRECT -> {
+				Table table = (Table) objects[code[pc++]];
+				FunctionType type = (FunctionType) objects[code[pc++]];
+				RefValue ref = table.get((int) s[--sp]);
+				if (!(ref instanceof FuncRefValue funcRef))
+					throw new ValidationException("Reference type mismatch: %s != funcref".formatted(ref.type()));
+				Function function = funcRef.function();
+				if (function == null) throw new NullPointerException("funcref is null");
+				if (!function.type().equals(type))
+					throw new ValidationException("Function type mismatch: %s != %s (declared)"
+						.formatted(function.type(), type));
+				int callee = sp - type.inputs().types().size();
+				call(function, callee);
+				s = slots;
+				r = refs;
+				sp = callee + type.outputs().types().size();
+			}
+			case LOCAL_GET -> s[sp++] = s[fp + code[pc++]];
+			case LOCAL_SET -> s[fp + code[pc++]] = s[--sp];
+			case LOCAL_TEE -> s[fp + code[pc++]] = s[sp - 1];
+			case LOCAL_GET_REF -> r[sp++] = r[fp + code[pc++]];
+			case LOCAL_SET_REF -> r[fp + code[pc++]] = r[--sp];
+			case LOCAL_TEE_REF -> r[fp + code[pc++]] = r[sp - 1];
+			case GLOBAL_GET -> store(s, r, sp++, ((Global) objects[code[pc++]]).get());
+			case GLOBAL_SET -> {
+				Global global = (Global) objects[code[pc++]];
+				global.set(load(s, r, --sp, global.type()));
+			}
+			case I32_CONST -> s[sp++] = code[pc++];
+			case I64_CONST -> s[sp++] = longs[code[pc++]];
+			case REF_CONST -> r[sp++] = objects[code[pc++]];
+			case DROP -> sp--;
+			case SELECT -> {
+				int condition = (int) s[--sp];
+				sp--;
+
+				if (condition == 0) {
+					s[sp - 1] = s[sp];
+					r[sp - 1] = r[sp];
+				}
+			}
+			case REF_IS_NULL -> s[sp - 1] = ((RefValue) r[sp - 1]).get() == null ? 1 : 0;
+			case I32_LOAD -> {
+				Memory memory = (Memory) objects[code[pc++]];
+				s[sp - 1] = memory.readI32(address(s[sp - 1], code[pc++]));
+			}
+			case I64_LOAD -> {
+				Memory memory = (Memory) objects[code[pc++]];
+				s[sp - 1] = memory.readI64(address(s[sp - 1], code[pc++]));
+			}
+			case F32_LOAD -> {
+				Memory memory = (Memory) objects[code[pc++]];
+				s[sp - 1] = bits(memory.readF32(address(s[sp - 1], code[pc++])));
+			}
+			case F64_LOAD -> {
+				Memory memory = (Memory) objects[code[pc++]];
+				s[sp - 1] = bits(memory.readF64(address(s[sp - 1], code[pc++])));
+			}
+			case I32_LOAD8_S, I64_LOAD8_S -> {
+				Memory memory = (Memory) objects[code[pc++]];
+				s[sp - 1] = memory.readS8(address(s[sp - 1], code[pc++]));
+			}
+			case I32_LOAD8_U, I64_LOAD8_U -> {
+				Memory memory = (Memory) objects[code[pc++]];
+				s[sp - 1] = memory.readU8(address(s[sp - 1], code[pc++]));
+			}
+			case I32_LOAD16_S, I64_LOAD16_S -> {
+				Memory memory = (Memory) objects[code[pc++]];
+				s[sp - 1] = memory.readS16(address(s[sp - 1], code[pc++]));
+			}
+			case I32_LOAD16_U, I64_LOAD16_U -> {
+				Memory memory = (Memory) objects[code[pc++]];
+				s[sp - 1] = memory.readU16(address(s[sp - 1], code[pc++]));
+			}
+			case I64_LOAD32_S -> {
+				Memory memory = (Memory) objects[code[pc++]];
+				s[sp - 1] = memory.readS32(address(s[sp - 1], code[pc++]));
+			}
+			case I64_LOAD32_U -> {
+				Memory memory = (Memory) objects[code[pc++]];
+				s[sp - 1] = memory.readU32(address(s[sp - 1], code[pc++]));
+			}
+			case I32_STORE, I64_STORE32 -> {
+				Memory memory = (Memory) objects[code[pc++]];
+				int offset = code[pc++];
+				long value = s[--sp];
+				memory.writeI32(address(s[--sp], offset), (int) value);
+			}
+			case I64_STORE -> {
+				Memory memory = (Memory) objects[code[pc++]];
+				int offset = code[pc++];
+				long value = s[--sp];
+				memory.writeI64(address(s[--sp], offset), value);
+			}
+			case F32_STORE -> {
+				Memory memory = (Memory) objects[code[pc++]];
+				int offset = code[pc++];
+				long value = s[--sp];
+				memory.writeF32(address(s[--sp], offset), f32(value));
+			}
+			case F64_STORE -> {
+				Memory memory = (Memory) objects[code[pc++]];
+				int offset = code[pc++];
+				long value = s[--sp];
+				memory.writeF64(address(s[--sp], offset), f64(value));
+			}
+			case I32_STORE8, I64_STORE8 -> {
+				Memory memory = (Memory) objects[code[pc++]];
+				int offset = code[pc++];
+				long value = s[--sp];
+				memory.writeI8(address(s[--sp], offset), (int) value);
+			}
+			case I32_STORE16, I64_STORE16 -> {
+				Memory memory = (Memory) objects[code[pc++]];
+				int offset = code[pc++];
+				long value = s[--sp];
+				memory.writeI16(address(s[--sp], offset), (int) value);
+			}
+			case MEMORY_SIZE -> s[sp++] = ((Memory) objects[code[pc++]]).pageCount();
+			case MEMORY_GROW -> s[sp - 1] = ((Memory) objects[code[pc++]]).grow((int) s[sp - 1]);
+			case MEMORY_COPY -> {
+				Memory memory = (Memory) objects[code[pc++]];
+				int count = (int) s[--sp];
+				int source = (int) s[--sp];
+				int destination = (int) s[--sp];
+				memory.write(destination, memory.read(source, count));
+			}
+			case MEMORY_FILL -> {
+				Memory memory = (Memory) objects[code[pc++]];
+				int count = (int) s[--sp];
+				int value = (int) s[--sp];
+				int offset = (int) s[--sp];
+				memory.fill(offset, value, count);
+			}
+			case MEMORY_INIT -> {
+				Memory memory = (Memory) objects[code[pc++]];
+				DataSegment segment = (DataSegment) objects[code[pc++]];
+				int count = (int) s[--sp];
+				int dataOffset = (int) s[--sp];
+				int memoryOffset = (int) s[--sp];
+				memory.write(memoryOffset, segment.data(), dataOffset, count);
+			}
+			case TABLE_GET -> r[sp - 1] = ((Table) objects[code[pc++]]).get((int) s[sp - 1]);
+			case TABLE_SET -> {
+				Table table = (Table) objects[code[pc++]];
+				RefValue value = (RefValue) r[--sp];
+				table.set((int) s[--sp], value);
+			}
+			case TABLE_GROW -> {
+				Table table = (Table) objects[code[pc++]];
+				RefValue value = (RefValue) r[--sp];
+				s[sp - 1] = table.grow((int) s[sp - 1], value);
+			}
+			case TABLE_SIZE -> s[sp++] = ((Table) objects[code[pc++]]).size();
+			case TABLE_FILL -> {
+				Table table = (Table) objects[code[pc++]];
+				int count = (int) s[--sp];
+				RefValue value = (RefValue) r[--sp];
+				table.fill((int) s[--sp], value, count);
+			}
+			case I32_EQ -> {
+				sp--;
+				s[sp - 1] = (int) s[sp - 1] == (int) s[sp] ? 1 : 0;
+			}
+			case I32_NE -> {
+				sp--;
+				s[sp - 1] = (int) s[sp - 1] != (int) s[sp] ? 1 : 0;
+			}
+			case I32_LT_S -> {
+				sp--;
+				s[sp - 1] = (int) s[sp - 1] < (int) s[sp] ? 1 : 0;
+			}
+			case I32_LT_U -> {
+				sp--;
+				s[sp - 1] = Integer.compareUnsigned((int) s[sp - 1], (int) s[sp]) < 0 ? 1 : 0;
+			}
+			case I32_GT_S -> {
+				sp--;
+				s[sp - 1] = (int) s[sp - 1] > (int) s[sp] ? 1 : 0;
+			}
+			case I32_GT_U -> {
+				sp--;
+				s[sp - 1] = Integer.compareUnsigned((int) s[sp - 1], (int) s[sp]) > 0 ? 1 : 0;
+			}
+			case I32_LE_S -> {
+				sp--;
+				s[sp - 1] = (int) s[sp - 1] <= (int) s[sp] ? 1 : 0;
+			}
+			case I32_LE_U -> {
+				sp--;
+				s[sp - 1] = Integer.compareUnsigned((int) s[sp - 1], (int) s[sp]) <= 0 ? 1 : 0;
+			}
+			case I32_GE_S -> {
+				sp--;
+				s[sp - 1] = (int) s[sp - 1] >= (int) s[sp] ? 1 : 0;
+			}
+			case I32_GE_U -> {
+				sp--;
+				s[sp - 1] = Integer.compareUnsigned((int) s[sp - 1], (int) s[sp]) >= 0 ? 1 : 0;
+			}
+			case I32_ADD -> {
+				sp--;
+				s[sp - 1] = (int) s[sp - 1] + (int) s[sp];
+			}
+			case I32_SUB -> {
+				sp--;
+				s[sp - 1] = (int) s[sp - 1] - (int) s[sp];
+			}
+			case I32_MUL -> {
+				sp--;
+				s[sp - 1] = (int) s[sp - 1] * (int) s[sp];
+			}
+			case I32_DIV_S -> {
+				sp--;
+				s[sp - 1] = (int) s[sp - 1] / (int) s[sp];
+			}
+			case I32_DIV_U -> {
+				sp--;
+				s[sp - 1] = Integer.divideUnsigned((int) s[sp - 1], (int) s[sp]);
+			}
+			case I32_REM_S -> {
+				sp--;
+				s[sp - 1] = (int) s[sp - 1] % (int) s[sp];
+			}
+			case I32_REM_U -> {
+				sp--;
+				s[sp - 1] = Integer.remainderUnsigned((int) s[sp - 1], (int) s[sp]);
+			}
+			case I32_AND -> {
+				sp--;
+				s[sp - 1] = (int) s[sp - 1] & (int) s[sp];
+			}
+			case I32_OR -> {
+				sp--;
+				s[sp - 1] = (int) s[sp - 1] | (int) s[sp];
+			}
+			case I32_XOR -> {
+				sp--;
+				s[sp - 1] = (int) s[sp - 1] ^ (int) s[sp];
+			}
+			case I32_SHL -> {
+				sp--;
+				s[sp - 1] = (int) s[sp - 1] << (int) s[sp];
+			}
+			case I32_SHR_S -> {
+				sp--;
+				s[sp - 1] = (int) s[sp - 1] >> (int) s[sp];
+			}
+			case I32_SHR_U -> {
+				sp--;
+				s[sp - 1] = (int) s[sp - 1] >>> (int) s[sp];
+			}
+			case I32_ROTL -> {
+				sp--;
+				s[sp - 1] = Integer.rotateLeft((int) s[sp - 1], (int) s[sp]);
+			}
+			case I32_ROTR -> {
+				sp--;
+				s[sp - 1] = Integer.rotateRight((int) s[sp - 1], (int) s[sp]);
+			}
+			case I64_EQ -> {
+				sp--;
+				s[sp - 1] = s[sp - 1] == s[sp] ? 1 : 0;
+			}
+			case I64_NE -> {
+				sp--;
+				s[sp - 1] = s[sp - 1] != s[sp] ? 1 : 0;
+			}
+			case I64_LT_S -> {
+				sp--;
+				s[sp - 1] = s[sp - 1] < s[sp] ? 1 : 0;
+			}
+			case I64_LT_U -> {
+				sp--;
+				s[sp - 1] = Long.compareUnsigned(s[sp - 1], s[sp]) < 0 ? 1 : 0;
+			}
+			case I64_GT_S -> {
+				sp--;
+				s[sp - 1] = s[sp - 1] > s[sp] ? 1 : 0;
+			}
+			case I64_GT_U -> {
+				sp--;
+				s[sp - 1] = Long.compareUnsigned(s[sp - 1], s[sp]) > 0 ? 1 : 0;
+			}
+			case I64_LE_S -> {
+				sp--;
+				s[sp - 1] = s[sp - 1] <= s[sp] ? 1 : 0;
+			}
+			case I64_LE_U -> {
+				sp--;
+				s[sp - 1] = Long.compareUnsigned(s[sp - 1], s[sp]) <= 0 ? 1 : 0;
+			}
+			case I64_GE_S -> {
+				sp--;
+				s[sp - 1] = s[sp - 1] >= s[sp] ? 1 : 0;
+			}
+			case I64_GE_U -> {
+				sp--;
+				s[sp - 1] = Long.compareUnsigned(s[sp - 1], s[sp]) >= 0 ? 1 : 0;
+			}
+			case I64_ADD -> {
+				sp--;
+				s[sp - 1] = s[sp - 1] + s[sp];
+			}
+			case I64_SUB -> {
+				sp--;
+				s[sp - 1] = s[sp - 1] - s[sp];
+			}
+			case I64_MUL -> {
+				sp--;
+				s[sp - 1] = s[sp - 1] * s[sp];
+			}
+			case I64_DIV_S -> {
+				sp--;
+				s[sp - 1] = s[sp - 1] / s[sp];
+			}
+			case I64_DIV_U -> {
+				sp--;
+				s[sp - 1] = Long.divideUnsigned(s[sp - 1], s[sp]);
+			}
+			case I64_REM_S -> {
+				sp--;
+				s[sp - 1] = s[sp - 1] % s[sp];
+			}
+			case I64_REM_U -> {
+				sp--;
+				s[sp - 1] = Long.remainderUnsigned(s[sp - 1], s[sp]);
+			}
+			case I64_AND -> {
+				sp--;
+				s[sp - 1] = s[sp - 1] & s[sp];
+			}
+			case I64_OR -> {
+				sp--;
+				s[sp - 1] = s[sp - 1] | s[sp];
+			}
+			case I64_XOR -> {
+				sp--;
+				s[sp - 1] = s[sp - 1] ^ s[sp];
+			}
+			case I64_SHL -> {
+				sp--;
+				s[sp - 1] = s[sp - 1] << s[sp];
+			}
+			case I64_SHR_S -> {
+				sp--;
+				s[sp - 1] = s[sp - 1] >> s[sp];
+			}
+			case I64_SHR_U -> {
+				sp--;
+				s[sp - 1] = s[sp - 1] >>> s[sp];
+			}
+			case I64_ROTL -> {
+				sp--;
+				s[sp - 1] = Long.rotateLeft(s[sp - 1], (int) s[sp]);
+			}
+			case I64_ROTR -> {
+				sp--;
+				s[sp - 1] = Long.rotateRight(s[sp - 1], (int) s[sp]);
+			}
+			case F32_EQ -> {
+				sp--;
+				s[sp - 1] = f32(s[sp - 1]) == f32(s[sp]) ? 1 : 0;
+			}
+			case F32_NE -> {
+				sp--;
+				s[sp - 1] = f32(s[sp - 1]) != f32(s[sp]) ? 1 : 0;
+			}
+			case F32_LT -> {
+				sp--;
+				s[sp - 1] = f32(s[sp - 1]) < f32(s[sp]) ? 1 : 0;
+			}
+			case F32_GT -> {
+				sp--;
+				s[sp - 1] = f32(s[sp - 1]) > f32(s[sp]) ? 1 : 0;
+			}
+			case F32_LE -> {
+				sp--;
+				s[sp - 1] = f32(s[sp - 1]) <= f32(s[sp]) ? 1 : 0;
+			}
+			case F32_GE -> {
+				sp--;
+				s[sp - 1] = f32(s[sp - 1]) >= f32(s[sp]) ? 1 : 0;
+			}
+			case F32_ADD -> {
+				sp--;
+				s[sp - 1] = bits(f32(s[sp - 1]) + f32(s[sp]));
+			}
+			case F32_SUB -> {
+				sp--;
+				s[sp - 1] = bits(f32(s[sp - 1]) - f32(s[sp]));
+			}
+			case F32_MUL -> {
+				sp--;
+				s[sp - 1] = bits(f32(s[sp - 1]) * f32(s[sp]));
+			}
+			case F32_DIV -> {
+				sp--;
+				s[sp - 1] = bits(f32(s[sp - 1]) / f32(s[sp]));
+			}
+			case F32_MIN -> {
+				sp--;
+				s[sp - 1] = bits(Math.min(f32(s[sp - 1]), f32(s[sp])));
+			}
+			case F32_MAX -> {
+				sp--;
+				s[sp - 1] = bits(Math.max(f32(s[sp - 1]), f32(s[sp])));
+			}
+			case F32_COPYSIGN -> {
+				sp--;
+				s[sp - 1] = bits(Math.abs(f32(s[sp - 1])) * Math.signum(f32(s[sp])));
+			}
+			case F64_EQ -> {
+				sp--;
+				s[sp - 1] = f64(s[sp - 1]) == f64(s[sp]) ? 1 : 0;
+			}
+			case F64_NE -> {
+				sp--;
+				s[sp - 1] = f64(s[sp - 1]) != f64(s[sp]) ? 1 : 0;
+			}
+			case F64_LT -> {
+				sp--;
+				s[sp - 1] = f64(s[sp - 1]) < f64(s[sp]) ? 1 : 0;
+			}
+			case F64_GT -> {
+				sp--;
+				s[sp - 1] = f64(s[sp - 1]) > f64(s[sp]) ? 1 : 0;
+			}
+			case F64_LE -> {
+				sp--;
+				s[sp - 1] = f64(s[sp - 1]) <= f64(s[sp]) ? 1 : 0;
+			}
+			case F64_GE -> {
+				sp--;
+				s[sp - 1] = f64(s[sp - 1]) >= f64(s[sp]) ? 1 : 0;
+			}
+			case F64_ADD -> {
+				sp--;
+				s[sp - 1] = bits(f64(s[sp - 1]) + f64(s[sp]));
+			}
+			case F64_SUB -> {
+				sp--;
+				s[sp - 1] = bits(f64(s[sp - 1]) - f64(s[sp]));
+			}
+			case F64_MUL -> {
+				sp--;
+				s[sp - 1] = bits(f64(s[sp - 1]) * f64(s[sp]));
+			}
+			case F64_DIV -> {
+				sp--;
+				s[sp - 1] = bits(f64(s[sp - 1]) / f64(s[sp]));
+			}
+			case F64_MIN -> {
+				sp--;
+				s[sp - 1] = bits(Math.min(f64(s[sp - 1]), f64(s[sp])));
+			}
+			case F64_MAX -> {
+				sp--;
+				s[sp - 1] = bits(Math.max(f64(s[sp - 1]), f64(s[sp])));
+			}
+			case F64_COPYSIGN -> {
+				sp--;
+				s[sp - 1] = bits(Math.abs(f64(s[sp - 1])) * Math.signum(f64(s[sp])));
+			}
+			case I32_CLZ -> s[sp - 1] = Integer.numberOfLeadingZeros((int) s[sp - 1]);
+			case I32_CTZ -> s[sp - 1] = Integer.numberOfTrailingZeros((int) s[sp - 1]);
+			case I32_POPCNT -> s[sp - 1] = Integer.bitCount((int) s[sp - 1]);
+			case I32_EQZ -> s[sp - 1] = (int) s[sp - 1] == 0 ? 1 : 0;
+			case I64_CLZ -> s[sp - 1] = Long.numberOfLeadingZeros(s[sp - 1]);
+			case I64_CTZ -> s[sp - 1] = Long.numberOfTrailingZeros(s[sp - 1]);
+			case I64_POPCNT -> s[sp - 1] = Long.bitCount(s[sp - 1]);
+			case I64_EQZ -> s[sp - 1] = s[sp - 1] == 0L ? 1 : 0;
+			case F32_ABS -> s[sp - 1] = bits(Math.abs(f32(s[sp - 1])));
+			case F32_NEG -> s[sp - 1] = bits(-f32(s[sp - 1]));
+			case F32_SQRT -> s[sp - 1] = bits((float) Math.sqrt(f32(s[sp - 1])));
+			case F32_CEIL -> s[sp - 1] = bits((float) Math.ceil(f32(s[sp - 1])));
+			case F32_FLOOR -> s[sp - 1] = bits((float) Math.floor(f32(s[sp - 1])));
+			case F32_TRUNC -> s[sp - 1] = bits((float) (long) f32(s[sp - 1]));
+			case F32_NEAREST -> s[sp - 1] = bits((float) Math.round(f32(s[sp - 1])));
+			case F64_ABS -> s[sp - 1] = bits(Math.abs(f64(s[sp - 1])));
+			case F64_NEG -> s[sp - 1] = bits(-f64(s[sp - 1]));
+			case F64_SQRT -> s[sp - 1] = bits(Math.sqrt(f64(s[sp - 1])));
+			case F64_CEIL -> s[sp - 1] = bits(Math.ceil(f64(s[sp - 1])));
+			case F64_FLOOR -> s[sp - 1] = bits(Math.floor(f64(s[sp - 1])));
+			case F64_TRUNC -> s[sp - 1] = bits((double) (long) f64(s[sp - 1]));
+			case F64_NEAREST -> s[sp - 1] = bits((double) Math.round(f64(s[sp - 1])));
+			case I32_WRAP_I64 -> s[sp - 1] = (int) s[sp - 1];
+			case I32_TRUNC_F32_S -> s[sp - 1] = (int) f32(s[sp - 1]);
+			case I32_TRUNC_F32_U -> s[sp - 1] = (int) f32(s[sp - 1]);
+			case I32_TRUNC_F64_S -> s[sp - 1] = (int) f64(s[sp - 1]);
+			case I32_TRUNC_F64_U -> s[sp - 1] = (int) f64(s[sp - 1]);
+			case I64_EXTEND_I32_S -> s[sp - 1] = (int) s[sp - 1];
+			case I64_EXTEND_I32_U -> s[sp - 1] = s[sp - 1] & 0xFFFFFFFFL;
+			case I64_TRUNC_F32_S -> s[sp - 1] = (long) f32(s[sp - 1]);
+			case I64_TRUNC_F32_U -> s[sp - 1] = (long) f32(s[sp - 1]);
+			case I64_TRUNC_F64_S -> s[sp - 1] = (long) f64(s[sp - 1]);
+			case I64_TRUNC_F64_U -> s[sp - 1] = (long) f64(s[sp - 1]);
+			case F32_CONVERT_I32_S -> s[sp - 1] = bits((float) (int) s[sp - 1]);
+			case F32_CONVERT_I32_U -> s[sp - 1] = bits((float) (s[sp - 1] & 0xFFFFFFFFL));
+			case F32_CONVERT_I64_S -> s[sp - 1] = bits((float) s[sp - 1]);
+			case F32_CONVERT_I64_U -> s[sp - 1] = bits(unsignedToFloat(s[sp - 1]));
+			case F32_DEMOTE_F64 -> s[sp - 1] = bits((float) f64(s[sp - 1]));
+			case F64_CONVERT_I32_S -> s[sp - 1] = bits((double) (int) s[sp - 1]);
+			case F64_CONVERT_I32_U -> s[sp - 1] = bits((double) (s[sp - 1] & 0xFFFFFFFFL));
+			case F64_CONVERT_I64_S -> s[sp - 1] = bits((double) s[sp - 1]);
+			case F64_CONVERT_I64_U -> s[sp - 1] = bits(unsignedToDouble(s[sp - 1]));
+			case F64_PROMOTE_F32 -> s[sp - 1] = bits((double) f32(s[sp - 1]));
+			default -> throw new IllegalStateException("Unknown opcode %d at %d".formatted(code[pc - 1], pc - 1));
+			}
+		}
+	}
+
+	static float f32(long bits) {
+		return Float.intBitsToFloat((int) bits);
+	}
+
+	static double f64(long bits) {
+		return Double.longBitsToDouble(bits);
+	}
+
+	static long bits(float value) {
+		return Float.floatToRawIntBits(value);
+	}
+
+	static long bits(double value) {
+		return Double.doubleToRawLongBits(value);
+	}
+
+	static float unsignedToFloat(long value) {
+		if (value >= 0L) return value;
+		// Halve while keeping the lowest bit for correct rounding
+		return ((float) ((value >>> 1) | (value & 1L))) * 2f;
+	}
+
+	static double unsignedToDouble(long value) {
+		if (value >= 0L) return value;
+		return ((double) ((value >>> 1) | (value & 1L))) * 2d;
+	}
+
+	static void store(long[] s, Object[] r, int index, Value value) {
+		if (value instanceof NumberI32Value i32) s[index] = i32.i32();
+		else if (value instanceof NumberI64Value i64) s[index] = i64.i64();
+		else if (value instanceof NumberF32Value f32) s[index] = bits(f32.f32());
+		else if (value instanceof NumberF64Value f64) s[index] = bits(f64.f64());
+		else r[index] = value;
+	}
+
+	static Value load(long[] s, Object[] r, int index, ValueType type) {
+		if (type == NumberType.I32) return new NumberI32Value((int) s[index]);
+		if (type == NumberType.I64) return new NumberI64Value(s[index]);
+		if (type == NumberType.F32) return new NumberF32Value(f32(s[index]));
+		if (type == NumberType.F64) return new NumberF64Value(f64(s[index]));
+		return (Value) r[index];
+	}
+}
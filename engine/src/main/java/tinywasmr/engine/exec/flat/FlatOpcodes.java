@@ -0,0 +1,217 @@
+package tinywasmr.engine.exec.flat;
+
+/**
+ * <p>
+ * Opcodes of the flat code produced by {@link FlatCompiler}. Each opcode is
+ * followed by its immediates in the code array. Immediates named "object" and
+ * "long" are indices into {@link FlatCode#objects()} and
+ * {@link FlatCode#longs()}, "height" is the operand stack height relative to
+ * the operand base of the function and "target" is an index into the code
+ * array.
+ * </p>
+ * <p>
+ * Numeric instructions have the same names as their {@code Numeric*Insn}
+ * counterparts and operate on the value stack without immediates.
+ * </p>
+ */
+final class FlatOpcodes {
+	private FlatOpcodes() {}
+
+	// Control: target; target; target; target, height, arity; count, (target,
+	// height, arity) * (count + 1)
+	static final int UNREACHABLE = 0;
+	static final int JUMP = 1;
+	static final int JUMP_IF_ZERO = 2;
+	static final int JUMP_IF_NOT_ZERO = 3;
+	static final int BR = 4;
+	static final int BR_IF = 5;
+	static final int BR_TABLE = 6;
+	static final int RETURN = 7;
+
+	// Calls: object (call site); object (table), object (function type)
+	static final int CALL = 8;
+	static final int CALL_INDIRECT = 9;
+
+	// Variables: local index; object (global)
+	static final int LOCAL_GET = 10;
+	static final int LOCAL_SET = 11;
+	static final int LOCAL_TEE = 12;
+	static final int LOCAL_GET_REF = 13;
+	static final int LOCAL_SET_REF = 14;
+	static final int LOCAL_TEE_REF = 15;
+	static final int GLOBAL_GET = 16;
+	static final int GLOBAL_SET = 17;
+
+	// Constants: value; long; object
+	static final int I32_CONST = 18;
+	static final int I64_CONST = 19;
+	static final int REF_CONST = 20;
+
+	// Parametric and references
+	static final int DROP = 21;
+	static final int SELECT = 22;
+	static final int REF_IS_NULL = 23;
+
+	// Loop header, which checks the epoch deadline
+	static final int LOOP = 24;
+
+	// Memory: object (memory), offset
+	static final int I32_LOAD = 30;
+	static final int I64_LOAD = 31;
+	static final int F32_LOAD = 32;
+	static final int F64_LOAD = 33;
+	static final int I32_LOAD8_S = 34;
+	static final int I32_LOAD8_U = 35;
+	static final int I32_LOAD16_S = 36;
+	static final int I32_LOAD16_U = 37;
+	static final int I64_LOAD8_S = 38;
+	static final int I64_LOAD8_U = 39;
+	static final int I64_LOAD16_S = 40;
+	static final int I64_LOAD16_U = 41;
+	static final int I64_LOAD32_S = 42;
+	static final int I64_LOAD32_U = 43;
+	static final int I32_STORE = 44;
+	static final int I64_STORE = 45;
+	static final int F32_STORE = 46;
+	static final int F64_STORE = 47;
+	static final int I32_STORE8 = 48;
+	static final int I32_STORE16 = 49;
+	static final int I64_STORE8 = 50;
+	static final int I64_STORE16 = 51;
+	static final int I64_STORE32 = 52;
+
+	// Memory: object (memory); object (memory), object (data segment)
+	static final int MEMORY_SIZE = 53;
+	static final int MEMORY_GROW = 54;
+	static final int MEMORY_COPY = 55;
+	static final int MEMORY_FILL = 56;
+	static final int MEMORY_INIT = 57;
+
+	// Tables: object (table)
+	static final int TABLE_GET = 60;
+	static final int TABLE_SET = 61;
+	static final int TABLE_GROW = 62;
+	static final int TABLE_SIZE = 63;
+	static final int TABLE_FILL = 64;
+
+	// Numeric
+	static final int I32_EQ = 100;
+	static final int I32_NE = 101;
+	static final int I32_LT_S = 102;
+	static final int I32_LT_U = 103;
+	static final int I32_GT_S = 104;
+	static final int I32_GT_U = 105;
+	static final int I32_LE_S = 106;
+	static final int I32_LE_U = 107;
+	static final int I32_GE_S = 108;
+	static final int I32_GE_U = 109;
+	static final int I32_ADD = 110;
+	static final int I32_SUB = 111;
+	static final int I32_MUL = 112;
+	static final int I32_DIV_S = 113;
+	static final int I32_DIV_U = 114;
+	static final int I32_REM_S = 115;
+	static final int I32_REM_U = 116;
+	static final int I32_AND = 117;
+	static final int I32_OR = 118;
+	static final int I32_XOR = 119;
+	static final int I32_SHL = 120;
+	static final int I32_SHR_S = 121;
+	static final int I32_SHR_U = 122;
+	static final int I32_ROTL = 123;
+	static final int I32_ROTR = 124;
+	static final int I64_EQ = 125;
+	static final int I64_NE = 126;
+	static final int I64_LT_S = 127;
+	static final int I64_LT_U = 128;
+	static final int I64_GT_S = 129;
+	static final int I64_GT_U = 130;
+	static final int I64_LE_S = 131;
+	static final int I64_LE_U = 132;
+	static final int I64_GE_S = 133;
+	static final int I64_GE_U = 134;
+	static final int I64_ADD = 135;
+	static final int I64_SUB = 136;
+	static final int I64_MUL = 137;
+	static final int I64_DIV_S = 138;
+	static final int I64_DIV_U = 139;
+	static final int I64_REM_S = 140;
+	static final int I64_REM_U = 141;
+	static final int I64_AND = 142;
+	static final int I64_OR = 143;
+	static final int I64_XOR = 144;
+	static final int I64_SHL = 145;
+	static final int I64_SHR_S = 146;
+	static final int I64_SHR_U = 147;
+	static final int I64_ROTL = 148;
+	static final int I64_ROTR = 149;
+	static final int F32_EQ = 150;
+	static final int F32_NE = 151;
+	static final int F32_LT = 152;
+	static final int F32_GT = 153;
+	static final int F32_LE = 154;
+	static final int F32_GE = 155;
+	static final int F32_ADD = 156;
+	static final int F32_SUB = 157;
+	static final int F32_MUL = 158;
+	static final int F32_DIV = 159;
+	static final int F32_MIN = 160;
+	static final int F32_MAX = 161;
+	static final int F32_COPYSIGN = 162;
+	static final int F64_EQ = 163;
+	static final int F64_NE = 164;
+	static final int F64_LT = 165;
+	static final int F64_GT = 166;
+	static final int F64_LE = 167;
+	static final int F64_GE = 168;
+	static final int F64_ADD = 169;
+	static final int F64_SUB = 170;
+	static final int F64_MUL = 171;
+	static final int F64_DIV = 172;
+	static final int F64_MIN = 173;
+	static final int F64_MAX = 174;
+	static final int F64_COPYSIGN = 175;
+	static final int I32_CLZ = 176;
+	static final int I32_CTZ = 177;
+	static final int I32_POPCNT = 178;
+	static final int I32_EQZ = 179;
+	static final int I64_CLZ = 180;
+	static final int I64_CTZ = 181;
+	static final int I64_POPCNT = 182;
+	static final int I64_EQZ = 183;
+	static final int F32_ABS = 184;
+	static final int F32_NEG = 185;
+	static final int F32_SQRT = 186;
+	static final int F32_CEIL = 187;
+	static final int F32_FLOOR = 188;
+	static final int F32_TRUNC = 189;
+	static final int F32_NEAREST = 190;
+	static final int F64_ABS = 191;
+	static final int F64_NEG = 192;
+	static final int F64_SQRT = 193;
+	static final int F64_CEIL = 194;
+	static final int F64_FLOOR = 195;
+	static final int F64_TRUNC = 196;
+	static final int F64_NEAREST = 197;
+	static final int I32_WRAP_I64 = 198;
+	static final int I32_TRUNC_F32_S = 199;
+	static final int I32_TRUNC_F32_U = 200;
+	static final int I32_TRUNC_F64_S = 201;
+	static final int I32_TRUNC_F64_U = 202;
+	static final int I64_EXTEND_I32_S = 203;
+	static final int I64_EXTEND_I32_U = 204;
+	static final int I64_TRUNC_F32_S = 205;
+	static final int I64_TRUNC_F32_U = 206;
+	static final int I64_TRUNC_F64_S = 207;
+	static final int I64_TRUNC_F64_U = 208;
+	static final int F32_CONVERT_I32_S = 209;
+	static final int F32_CONVERT_I32_U = 210;
+	static final int F32_CONVERT_I64_S = 211;
+	static final int F32_CONVERT_I64_U = 212;
+	static final int F32_DEMOTE_F64 = 213;
+	static final int F64_CONVERT_I32_S = 214;
+	static final int F64_CONVERT_I32_U = 215;
+	static final int F64_CONVERT_I64_S = 216;
+	static final int F64_CONVERT_I64_U = 217;
+	static final int F64_PROMOTE_F32 = 218;
+}
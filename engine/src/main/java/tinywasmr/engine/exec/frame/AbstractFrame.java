@@ -1,36 +1,139 @@
 package tinywasmr.engine.exec.frame;
 
+import java.util.AbstractList;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Stack;
 
 import tinywasmr.engine.exec.value.Value;
+import tinywasmr.engine.exec.vm.ValueStack;
 
+/**
+ * <p>
+ * The base of all frames. The operands are stored in a list until the frame is
+ * pushed to a machine. After that, the operands are stored in the value stack
+ * of the machine and {@link #getOperandStack()} is a view of the region owned
+ * by this frame. Like the {@link java.util.Stack} this frame used to return,
+ * the view can be modified, but only at the top of the operand stack.
+ * </p>
+ */
 public abstract class AbstractFrame implements Frame {
-	private Stack<Value> operands;
+	private List<Value> detached;
+	private ValueStack stack;
+	private int depth;
+	private int operandBase;
+	private List<Value> view;
 	private int step;
+	FramePool pool;
 
 	public AbstractFrame(List<Value> operands, int step) {
 		this.step = step;
-		this.operands = new Stack<>();
-		this.operands.addAll(operands);
+		this.detached = operands.isEmpty() ? null : new ArrayList<>(operands);
+	}
+
+	/**
+	 * <p>
+	 * Get the value stack this frame is bound to, or {@code null} if this frame is
+	 * not in a machine.
+	 * </p>
+	 */
+	public ValueStack getValueStack() { return stack; }
+
+	/**
+	 * <p>
+	 * Get the index of the first value owned by this frame in the value stack.
+	 * </p>
+	 */
+	protected int getBase() { return stack.base(depth); }
+
+	/**
+	 * <p>
+	 * Get the number of values on top of the value stack that will be owned by
+	 * this frame when it is pushed, like the parameters of a call.
+	 * </p>
+	 */
+	protected int getArgumentCount() { return 0; }
+
+	/**
+	 * <p>
+	 * Push the values that are stored below the operands of this frame, like the
+	 * locals of a function.
+	 * </p>
+	 */
+	protected void pushLocals(ValueStack stack) {
+	}
+
+	@Override
+	public void attach(ValueStack stack) {
+		if (this.stack != null) throw new IllegalStateException("Frame is already pushed to a machine");
+		this.stack = stack;
+		depth = stack.enter(stack.size() - getArgumentCount());
+
+		try {
+			pushLocals(stack);
+			operandBase = stack.size();
+
+			if (detached != null) {
+				for (Value value : detached) stack.push(value);
+				detached = null;
+			}
+		} catch (RuntimeException e) {
+			// The stack can't hold the locals, so the frame is not pushed
+			stack.leave(depth);
+			this.stack = null;
+			throw e;
+		}
+	}
+
+	@Override
+	public void detach() {
+		if (stack == null) throw new IllegalStateException("Frame is not pushed to a machine");
+		stack.leave(depth);
+		stack = null;
+	}
+
+	/**
+	 * <p>
+	 * Reset this popped frame before it is reused by {@link FramePool}.
+	 * </p>
+	 */
+	void reset() {
+		if (stack != null) throw new IllegalStateException("Frame is still in a machine");
+		detached = null;
+		step = 0;
 	}
 
 	@Override
-	public Stack<Value> getOperandStack() { return operands; }
+	public List<Value> getOperandStack() {
+		if (stack == null) {
+			if (detached == null) detached = new ArrayList<>();
+			return detached;
+		}
+
+		if (view == null) view = new OperandView();
+		return view;
+	}
 
 	@Override
 	public void pushOperand(Value value) {
-		operands.push(value);
+		if (stack != null) stack.push(value);
+		else {
+			if (detached == null) detached = new ArrayList<>();
+			detached.add(value);
+		}
 	}
 
 	@Override
 	public Value popOprand() {
-		return operands.pop();
+		if (stack != null) return stack.pop();
+		if (detached == null || detached.isEmpty()) throw new IndexOutOfBoundsException("Operand stack is empty");
+		return detached.remove(detached.size() - 1);
 	}
 
 	@Override
 	public Value peekOperand() {
-		return operands.peek();
+		if (stack != null) return stack.peek();
+		if (detached == null || detached.isEmpty()) throw new IndexOutOfBoundsException("Operand stack is empty");
+		return detached.get(detached.size() - 1);
 	}
 
 	@Override
@@ -38,4 +141,43 @@ public abstract class AbstractFrame implements Frame {
 
 	@Override
 	public void setStep(int index) { step = index; }
+
+	private class OperandView extends AbstractList<Value> {
+		@Override
+		public Value get(int index) {
+			if (index < 0 || index >= size()) throw new IndexOutOfBoundsException(index);
+			return stack.get(operandBase + index);
+		}
+
+		@Override
+		public int size() {
+			return Math.max(stack.end(depth) - operandBase, 0);
+		}
+
+		@Override
+		public Value set(int index, Value value) {
+			Value old = get(index);
+			stack.set(operandBase + index, value);
+			return old;
+		}
+
+		@Override
+		public void add(int index, Value value) {
+			if (index != size()) throw new UnsupportedOperationException("Can only add to the top");
+			stack.push(value);
+		}
+
+		@Override
+		public Value remove(int index) {
+			if (index != size() - 1) throw new UnsupportedOperationException("Can only remove from the top");
+			return stack.pop();
+		}
+
+		@Override
+		protected void removeRange(int fromIndex, int toIndex) {
+			// Only the values at the top can be removed
+			if (toIndex != size()) throw new UnsupportedOperationException("Can only remove from the top");
+			stack.truncate(operandBase + fromIndex);
+		}
+	}
 }
@@ -5,6 +5,7 @@ import java.util.List;
 
 import tinywasmr.engine.exec.value.Value;
 import tinywasmr.engine.exec.vm.Machine;
+import tinywasmr.engine.insn.Instruction;
 import tinywasmr.engine.insn.control.BlockInsn;
 import tinywasmr.engine.type.BlockType;
 
@@ -20,6 +21,11 @@ public class BlockFrame extends AbstractFrame {
 		this(block, Collections.emptyList(), 0);
 	}
 
+	void reset(BlockInsn block) {
+		reset();
+		this.block = block;
+	}
+
 	public BlockInsn getBlock() { return block; }
 
 	@Override
@@ -37,4 +43,9 @@ public class BlockFrame extends AbstractFrame {
 	public void executeStep(Machine vm) {
 		block.instructions().get(getStep()).execute(vm);
 	}
+
+	@Override
+	public Instruction getCurrentInstruction() {
+		return isFrameFinished() ? null : block.instructions().get(getStep());
+	}
 }
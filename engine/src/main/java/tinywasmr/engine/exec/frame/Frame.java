@@ -4,6 +4,8 @@ import java.util.List;
 
 import tinywasmr.engine.exec.value.Value;
 import tinywasmr.engine.exec.vm.Machine;
+import tinywasmr.engine.exec.vm.ValueStack;
+import tinywasmr.engine.insn.Instruction;
 import tinywasmr.engine.type.BlockType;
 
 /**
@@ -74,11 +76,37 @@ public interface Frame {
 
 	Value peekOperand();
 
+	/**
+	 * <p>
+	 * Bind this frame to the value stack of a machine. This is called by the
+	 * machine when the frame is pushed; the operands and locals that the frame had
+	 * before pushing are moved to the value stack. Only the frame at the top of the
+	 * machine may push or pop its operands.
+	 * </p>
+	 * <p>
+	 * The default implementation does nothing, for frames that keep their operands
+	 * by themselves. These frames must not execute instructions, because the
+	 * instructions push and pop the value stack of the machine.
+	 * </p>
+	 */
+	default void attach(ValueStack stack) {}
+
+	/**
+	 * <p>
+	 * Unbind this frame from the value stack. This is called by the machine when
+	 * the frame is popped, and the operands and locals of this frame are discarded.
+	 * The default implementation does nothing.
+	 * </p>
+	 */
+	default void detach() {}
+
 	/**
 	 * <p>
 	 * Get the current step of this frame. The step index will be stored when saving
 	 * the machine states.
 	 * </p>
+	 * 
+	 * @see tinywasmr.engine.exec.checkpoint.Checkpoint
 	 */
 	int getStep();
 
@@ -126,6 +154,17 @@ public interface Frame {
 
 	void executeStep(Machine vm);
 
+	/**
+	 * <p>
+	 * Get the instruction that will be executed by next
+	 * {@link #executeStep(Machine)}. Returns {@code null} if the step doesn't
+	 * execute an instruction, like the steps of host functions.
+	 * </p>
+	 */
+	default Instruction getCurrentInstruction() {
+		return null;
+	}
+
 	/**
 	 * <p>
 	 * Modify the state of this frame after execution. The default implementation is
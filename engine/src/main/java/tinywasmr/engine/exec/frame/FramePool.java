@@ -0,0 +1,109 @@
+package tinywasmr.engine.exec.frame;
+
+import java.util.Arrays;
+
+import tinywasmr.engine.exec.instance.Function;
+import tinywasmr.engine.insn.control.BlockInsn;
+import tinywasmr.engine.insn.control.IfInsn;
+import tinywasmr.engine.insn.control.LoopInsn;
+
+/**
+ * <p>
+ * Recycle frames of a machine, so entering blocks and calling functions don't
+ * allocate new frames. Frames obtained from this pool are returned to the pool
+ * by the machine when they are discarded by
+ * {@link tinywasmr.engine.exec.vm.Machine#unwind(int, int)}, so they must not be
+ * used after unwinding. Frames returned by
+ * {@link tinywasmr.engine.exec.vm.Machine#popFrame()} and frames created with
+ * constructors are never recycled.
+ * </p>
+ */
+public final class FramePool {
+	/**
+	 * <p>
+	 * The maximum number of idle frames of each kind. Frames popped after
+	 * returning from deep recursion above this limit are left to garbage
+	 * collector.
+	 * </p>
+	 */
+	public static final int MAX_IDLE = 1024;
+
+	private final Idle<BlockFrame> blocks = new Idle<>();
+	private final Idle<LoopFrame> loops = new Idle<>();
+	private final Idle<IfFrame> ifs = new Idle<>();
+	private final Idle<FunctionFrame> calls = new Idle<>();
+
+	public BlockFrame obtainBlock(BlockInsn block) {
+		BlockFrame frame = blocks.poll();
+		if (frame == null) frame = owned(new BlockFrame(block));
+		else frame.reset(block);
+		return frame;
+	}
+
+	public LoopFrame obtainLoop(LoopInsn block) {
+		LoopFrame frame = loops.poll();
+		if (frame == null) frame = owned(new LoopFrame(block));
+		else frame.reset(block);
+		return frame;
+	}
+
+	public IfFrame obtainIf(IfInsn block, boolean trueBranch) {
+		IfFrame frame = ifs.poll();
+		if (frame == null) frame = owned(new IfFrame(block, trueBranch));
+		else frame.reset(block, trueBranch);
+		return frame;
+	}
+
+	/**
+	 * <p>
+	 * Obtain a frame for calling module function with the parameters on the top of
+	 * value stack.
+	 * </p>
+	 *
+	 * @see FunctionFrame#createCall(Function)
+	 */
+	public FunctionFrame obtainCall(Function function) {
+		FunctionFrame frame = calls.poll();
+		if (frame == null) frame = owned(FunctionFrame.createCall(function));
+		else frame.reset(function);
+		return frame;
+	}
+
+	/**
+	 * <p>
+	 * Return the popped frame to this pool. Frames that are not obtained from this
+	 * pool are ignored.
+	 * </p>
+	 */
+	public void recycle(Frame frame) {
+		if (!(frame instanceof AbstractFrame abstractFrame) || abstractFrame.pool != this) return;
+		if (frame instanceof BlockFrame block) blocks.offer(block);
+		else if (frame instanceof LoopFrame loop) loops.offer(loop);
+		else if (frame instanceof IfFrame ifFrame) ifs.offer(ifFrame);
+		else if (frame instanceof FunctionFrame function) calls.offer(function);
+	}
+
+	private <T extends AbstractFrame> T owned(T frame) {
+		frame.pool = this;
+		return frame;
+	}
+
+	private static class Idle<T> {
+		private Object[] frames = new Object[16];
+		private int size = 0;
+
+		@SuppressWarnings("unchecked")
+		T poll() {
+			if (size == 0) return null;
+			T frame = (T) frames[--size];
+			frames[size] = null;
+			return frame;
+		}
+
+		void offer(T frame) {
+			if (size == MAX_IDLE) return;
+			if (size == frames.length) frames = Arrays.copyOf(frames, size * 2);
+			frames[size++] = frame;
+		}
+	}
+}
@@ -7,6 +7,8 @@ import tinywasmr.engine.exec.instance.Function;
 import tinywasmr.engine.exec.instance.Instance;
 import tinywasmr.engine.exec.value.Value;
 import tinywasmr.engine.exec.vm.Machine;
+import tinywasmr.engine.exec.vm.ValueStack;
+import tinywasmr.engine.insn.Instruction;
 import tinywasmr.engine.module.func.FunctionDecl;
 import tinywasmr.engine.module.func.ModuleFunctionDecl;
 import tinywasmr.engine.module.func.extern.ExternalFunctionDecl;
@@ -16,7 +18,9 @@ import tinywasmr.engine.type.value.ValueType;
 public class FunctionFrame extends AbstractFrame implements InstancedFrame {
 	private Function function;
 	private Value[] locals;
+	private int localCount;
 	private boolean branched = false;
+	private List<Instruction> body;
 
 	public FunctionFrame(Function function, Value[] locals, boolean branched, List<Value> operands, int insn) {
 		super(operands, insn);
@@ -25,6 +29,21 @@ public class FunctionFrame extends AbstractFrame implements InstancedFrame {
 		this.branched = branched;
 	}
 
+	/**
+	 * <p>
+	 * Create a frame for calling module function with the parameters on the top of
+	 * value stack. The parameters are moved from the operand stack of current frame
+	 * to the locals of the new frame when it is pushed, without creating
+	 * {@link Value} objects.
+	 * </p>
+	 */
+	public static FunctionFrame createCall(Function function) {
+		if (!(function.declaration() instanceof ModuleFunctionDecl))
+			throw new IllegalArgumentException("Cannot create function frame of %s with parameters on stack".formatted(
+				function.declaration().getClass().getName()));
+		return new FunctionFrame(function, null, false, Collections.emptyList(), 0);
+	}
+
 	public static FunctionFrame createCall(Function function, Value[] parameters) {
 		List<ValueType> allLocals;
 		List<ValueType> extras;
@@ -44,10 +63,32 @@ public class FunctionFrame extends AbstractFrame implements InstancedFrame {
 		return out;
 	}
 
+	void reset(Function function) {
+		reset();
+		this.function = function;
+		locals = null;
+		localCount = 0;
+		branched = false;
+		body = null;
+	}
+
 	public Function getFunction() { return function; }
 
 	public FunctionDecl getDeclaration() { return function.declaration(); }
 
+	/**
+	 * <p>
+	 * Get the instructions executed by this frame, which may be linked to the
+	 * instance of function.
+	 * </p>
+	 * 
+	 * @see Function#body()
+	 */
+	public List<Instruction> getBody() {
+		if (body == null) body = function.body();
+		return body;
+	}
+
 	@Override
 	public Instance getInstance() { return function.instance(); }
 
@@ -56,14 +97,104 @@ public class FunctionFrame extends AbstractFrame implements InstancedFrame {
 	 * Get all local variables. The local variables are ordered from function
 	 * parameters first to explicitly declared variables.
 	 * </p>
+	 * <p>
+	 * The locals of module function are stored in the value stack of machine once
+	 * the frame is pushed, in which case the returned array is a copy; use
+	 * {@link #setLocal(int, Value)} to modify them.
+	 * </p>
 	 */
-	public Value[] getLocals() { return locals; }
+	public Value[] getLocals() {
+		if (!isStackLocals()) {
+			if (locals == null) throw new IllegalStateException("Frame is popped from machine");
+			return locals;
+		}
+
+		Value[] out = new Value[localCount];
+		int base = getBase();
+		for (int i = 0; i < out.length; i++) out[i] = getValueStack().get(base + i);
+		return out;
+	}
+
+	public Value getLocal(int index) {
+		if (!isStackLocals()) return getLocals()[index];
+		if (index < 0 || index >= localCount) throw new IndexOutOfBoundsException(index);
+		return getValueStack().get(getBase() + index);
+	}
+
+	public void setLocal(int index, Value value) {
+		if (!isStackLocals()) {
+			getLocals()[index] = value;
+			return;
+		}
+
+		if (index < 0 || index >= localCount) throw new IndexOutOfBoundsException(index);
+		getValueStack().set(getBase() + index, value);
+	}
+
+	/**
+	 * <p>
+	 * Push the local to the operand stack. This frame must be the current frame or
+	 * the function frame of current frame.
+	 * </p>
+	 */
+	public void loadLocal(int index) {
+		if (isStackLocals()) getValueStack().load(getBase() + index);
+		else getValueStack().push(getLocals()[index]);
+	}
+
+	/**
+	 * <p>
+	 * Pop the value from operand stack and store it to the local.
+	 * </p>
+	 */
+	public void storeLocal(int index) {
+		if (isStackLocals()) getValueStack().store(getBase() + index);
+		else getLocals()[index] = getValueStack().pop();
+	}
+
+	/**
+	 * <p>
+	 * Store the value at the top of operand stack to the local without popping it.
+	 * </p>
+	 */
+	public void teeLocal(int index) {
+		if (isStackLocals()) getValueStack().tee(getBase() + index);
+		else getLocals()[index] = getValueStack().peek();
+	}
+
+	private boolean isStackLocals() {
+		// Locals of external functions are given to the host as an array
+		return getValueStack() != null && function.declaration() instanceof ModuleFunctionDecl;
+	}
+
+	@Override
+	protected int getArgumentCount() {
+		if (locals != null || !(function.declaration() instanceof ModuleFunctionDecl)) return 0;
+		return function.type().inputs().types().size();
+	}
+
+	@Override
+	protected void pushLocals(ValueStack stack) {
+		if (!(function.declaration() instanceof ModuleFunctionDecl module)) return;
+
+		if (locals != null) {
+			for (Value value : locals) stack.push(value);
+			localCount = locals.length;
+			locals = null;
+		} else {
+			for (ValueType type : module.extraLocals()) stack.pushZero(type);
+			localCount = getArgumentCount() + module.extraLocals().size();
+		}
+
+		// Validated functions know how many operands they need at most
+		if (module.validation() != null) stack.reserve(module.validation().maxStackHeight());
+	}
 
 	@Override
 	public boolean isFrameFinished() {
 		// TODO Improve external function handling
 		if (function.declaration() instanceof ExternalFunctionDecl) return branched;
-		if (function.declaration() instanceof ModuleFunctionDecl module) return getStep() >= module.body().size();
+		if (function.declaration() instanceof ModuleFunctionDecl) return getStep() >= getBody().size();
 		return true;
 	}
 
@@ -72,7 +203,7 @@ public class FunctionFrame extends AbstractFrame implements InstancedFrame {
 	@Override
 	public void branchThis() {
 		branched = true;
-		if (function.declaration() instanceof ModuleFunctionDecl module) setStep(module.body().size());
+		if (function.declaration() instanceof ModuleFunctionDecl) setStep(getBody().size());
 	}
 
 	@Override
@@ -81,13 +212,21 @@ public class FunctionFrame extends AbstractFrame implements InstancedFrame {
 	@Override
 	public void executeStep(Machine vm) {
 		if (function.declaration() instanceof ExternalFunctionDecl extern) {
-			extern.onStep(vm, this, locals, getStep());
+			extern.onStep(vm, this, getLocals(), getStep());
 			return;
 		}
 
-		if (function.declaration() instanceof ModuleFunctionDecl module) {
-			if (getStep() < module.body().size()) module.body().get(getStep()).execute(vm);
+		if (function.declaration() instanceof ModuleFunctionDecl) {
+			List<Instruction> body = getBody();
+			if (getStep() < body.size()) body.get(getStep()).execute(vm);
 			return;
 		}
 	}
+
+	@Override
+	public Instruction getCurrentInstruction() {
+		if (!(function.declaration() instanceof ModuleFunctionDecl)) return null;
+		List<Instruction> body = getBody();
+		return getStep() < body.size() ? body.get(getStep()) : null;
+	}
 }
@@ -5,6 +5,7 @@ import java.util.List;
 
 import tinywasmr.engine.exec.value.Value;
 import tinywasmr.engine.exec.vm.Machine;
+import tinywasmr.engine.insn.Instruction;
 import tinywasmr.engine.insn.control.IfInsn;
 import tinywasmr.engine.type.BlockType;
 
@@ -22,6 +23,12 @@ public class IfFrame extends AbstractFrame {
 		this(block, trueBranch, Collections.emptyList(), 0);
 	}
 
+	void reset(IfInsn block, boolean trueBranch) {
+		reset();
+		this.block = block;
+		this.trueBranch = trueBranch;
+	}
+
 	public IfInsn getBlock() { return block; }
 
 	public boolean isTrueBranch() { return trueBranch; }
@@ -42,4 +49,9 @@ public class IfFrame extends AbstractFrame {
 		if (isFrameFinished()) return;
 		(trueBranch ? block.truePath() : block.falsePath()).get(getStep()).execute(vm);
 	}
+
+	@Override
+	public Instruction getCurrentInstruction() {
+		return isFrameFinished() ? null : (trueBranch ? block.truePath() : block.falsePath()).get(getStep());
+	}
 }
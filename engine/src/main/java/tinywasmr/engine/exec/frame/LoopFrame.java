@@ -5,6 +5,7 @@ import java.util.List;
 
 import tinywasmr.engine.exec.value.Value;
 import tinywasmr.engine.exec.vm.Machine;
+import tinywasmr.engine.insn.Instruction;
 import tinywasmr.engine.insn.control.LoopInsn;
 import tinywasmr.engine.type.BlockType;
 
@@ -21,6 +22,12 @@ public class LoopFrame extends AbstractFrame {
 		this(block, Collections.emptyList(), 0);
 	}
 
+	void reset(LoopInsn block) {
+		reset();
+		this.block = block;
+		lastBranched = false;
+	}
+
 	public LoopInsn getBlock() { return block; }
 
 	@Override
@@ -48,4 +55,9 @@ public class LoopFrame extends AbstractFrame {
 		if (!lastBranched) incStep();
 		else lastBranched = false;
 	}
+
+	@Override
+	public Instruction getCurrentInstruction() {
+		return isFrameFinished() ? null : block.instructions().get(getStep());
+	}
 }
@@ -45,7 +45,8 @@ public class DataSegmentInitFrame extends AbstractFrame {
 	public void executeStep(Machine vm) {
 		if (isFrameFinished()) return;
 		if (getStep() == dataMode.offsetExpr().size()) {
-			int memOffset = popOprand().i32();
+			// The offset of 64-bit memory is i64
+			long memOffset = dataMode.memory().type().memory64() ? popOprand().i64() : popOprand().i32();
 			MemoryInitInsn.execute(vm, segment, 0, dataMode.memory(), memOffset, segment.data().length);
 		} else {
 			dataMode.offsetExpr().get(getStep()).execute(vm);
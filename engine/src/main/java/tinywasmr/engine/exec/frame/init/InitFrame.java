@@ -49,7 +49,7 @@ public class InitFrame extends AbstractFrame implements InstancedFrame {
 				.filter(segment -> segment.mode() instanceof ActiveElementMode)
 				.toList());
 			startFunction = instance.module().startFunction() != null
-				? new Function(instance, instance.module().startFunction())
+				? instance.function(instance.module().startFunction())
 				: null;
 		}
 	}
@@ -60,7 +60,8 @@ public class InitFrame extends AbstractFrame implements InstancedFrame {
 
 	@Override
 	public boolean isFrameFinished() {
-		return getStep() >= (globals.size() + activeData.size() + activeElement.size());
+		int steps = globals.size() + activeData.size() + activeElement.size();
+		return getStep() >= (startFunction != null ? steps + 1 : steps);
 	}
 
 	public void executeStep(Machine vm, int step) {
@@ -0,0 +1,38 @@
+package tinywasmr.engine.exec.fuel;
+
+import tinywasmr.engine.exec.vm.Machine;
+import tinywasmr.engine.insn.Instruction;
+
+/**
+ * <p>
+ * The table of fuel costs of instructions. The cost must only depend on the
+ * instruction and the state of machine, so that the same execution always
+ * consumes the same amount of fuel.
+ * </p>
+ *
+ * @see WeightedFuelCosts
+ */
+@FunctionalInterface
+public interface FuelCosts {
+	/**
+	 * <p>
+	 * The default costs, which charges 1 for each instruction, 10 more for calls
+	 * and 1 more for every 64 bytes or elements of bulk memory and table
+	 * instructions.
+	 * </p>
+	 */
+	static final FuelCosts DEFAULT = new WeightedFuelCosts(1, 10, 64);
+
+	/**
+	 * <p>
+	 * Get the cost of the instruction that is about to be executed. The operands
+	 * of instruction are on the top of operand stack of current frame.
+	 * </p>
+	 *
+	 * @param vm   The virtual machine.
+	 * @param insn The instruction, or {@code null} if the step doesn't execute an
+	 *             instruction (like the steps of host functions).
+	 * @return The cost, which must not be negative.
+	 */
+	long cost(Machine vm, Instruction insn);
+}
@@ -0,0 +1,22 @@
+package tinywasmr.engine.exec.fuel;
+
+/**
+ * <p>
+ * What to do when the fuel is not enough to execute next instruction.
+ * </p>
+ */
+public enum FuelExhaustion {
+	/**
+	 * <p>
+	 * Return {@link tinywasmr.engine.exec.StepResult#OUT_OF_FUEL} without executing
+	 * the instruction. The execution can be resumed by adding more fuel.
+	 * </p>
+	 */
+	YIELD,
+	/**
+	 * <p>
+	 * Trap the virtual machine with {@link OutOfFuelException}.
+	 * </p>
+	 */
+	TRAP;
+}
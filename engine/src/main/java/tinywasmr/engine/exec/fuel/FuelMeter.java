@@ -0,0 +1,84 @@
+package tinywasmr.engine.exec.fuel;
+
+import tinywasmr.engine.exec.vm.Machine;
+import tinywasmr.engine.insn.Instruction;
+
+/**
+ * <p>
+ * Count the fuel of a virtual machine. Before executing each step, the executor
+ * consumes the fuel according to the {@link FuelCosts}. Unlike limiting the
+ * execution by time, the fuel consumed by the same execution is always the
+ * same, which makes the budget reproducible.
+ * </p>
+ * <p>
+ * Compiled executors like {@link tinywasmr.engine.exec.jit.JitExecutor} can't
+ * count the fuel for each instruction, so they interpret the functions when
+ * the machine has a fuel meter.
+ * </p>
+ *
+ * @see Machine#setFuelMeter(FuelMeter)
+ */
+public class FuelMeter {
+	private final FuelCosts costs;
+	private final FuelExhaustion exhaustion;
+	private long fuel;
+	private long consumed = 0;
+
+	public FuelMeter(long fuel, FuelCosts costs, FuelExhaustion exhaustion) {
+		if (fuel < 0) throw new IllegalArgumentException("Fuel must not be negative");
+		this.costs = costs;
+		this.exhaustion = exhaustion;
+		this.fuel = fuel;
+	}
+
+	public FuelMeter(long fuel) {
+		this(fuel, FuelCosts.DEFAULT, FuelExhaustion.YIELD);
+	}
+
+	public FuelCosts getCosts() { return costs; }
+
+	public FuelExhaustion getExhaustion() { return exhaustion; }
+
+	/**
+	 * <p>
+	 * Get the remaining fuel.
+	 * </p>
+	 */
+	public long getFuel() { return fuel; }
+
+	public void setFuel(long fuel) {
+		if (fuel < 0) throw new IllegalArgumentException("Fuel must not be negative");
+		this.fuel = fuel;
+	}
+
+	public void addFuel(long fuel) {
+		if (fuel < 0) throw new IllegalArgumentException("Fuel must not be negative");
+		this.fuel = Math.addExact(this.fuel, fuel);
+	}
+
+	/**
+	 * <p>
+	 * Get the total fuel consumed by this meter.
+	 * </p>
+	 */
+	public long getConsumed() { return consumed; }
+
+	/**
+	 * <p>
+	 * Consume the fuel for the instruction. The fuel is not consumed if it is not
+	 * enough.
+	 * </p>
+	 *
+	 * @param vm   The virtual machine.
+	 * @param insn The instruction that is about to be executed, or {@code null} if
+	 *             the step doesn't execute an instruction.
+	 * @return {@code true} if the fuel is consumed.
+	 */
+	public boolean consume(Machine vm, Instruction insn) {
+		long cost = costs.cost(vm, insn);
+		if (cost > fuel) return false;
+		fuel -= cost;
+		consumed += cost;
+		return true;
+	}
+}
@@ -0,0 +1,14 @@
+package tinywasmr.engine.exec.fuel;
+
+/**
+ * <p>
+ * The virtual machine is trapped because there is not enough fuel.
+ * </p>
+ */
+public class OutOfFuelException extends RuntimeException {
+	private static final long serialVersionUID = -6152409932281745371L;
+
+	public OutOfFuelException(String message) {
+		super(message);
+	}
+}
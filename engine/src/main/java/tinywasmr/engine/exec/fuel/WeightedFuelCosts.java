@@ -0,0 +1,89 @@
+package tinywasmr.engine.exec.fuel;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import tinywasmr.engine.exec.value.Value;
+import tinywasmr.engine.exec.vm.Machine;
+import tinywasmr.engine.insn.Instruction;
+import tinywasmr.engine.insn.LinkedInsn;
+import tinywasmr.engine.insn.control.CallIndirectInsn;
+import tinywasmr.engine.insn.control.CallInsn;
+import tinywasmr.engine.insn.fused.FusedInsn;
+import tinywasmr.engine.insn.memory.MemoryInitInsn;
+import tinywasmr.engine.insn.memory.MemoryInsn;
+import tinywasmr.engine.insn.memory.MemoryInsnType;
+import tinywasmr.engine.insn.table.TableInsn;
+import tinywasmr.engine.insn.table.TableInsnType;
+import tinywasmr.engine.type.value.NumberType;
+
+/**
+ * <p>
+ * Fuel costs with a base cost for each instruction, which can be overridden
+ * for each type of instruction, an extra cost for calls and an extra cost for
+ * the number of bytes or elements processed by {@code memory.copy},
+ * {@code memory.fill}, {@code memory.init} and {@code table.fill}. Linked
+ * instructions have the same costs as the instructions before linking.
+ * {@code table.init} is not charged by the number of elements, because it
+ * initializes one element per step.
+ * </p>
+ *
+ * @param base         The cost of each instruction, and each step of host
+ *                     functions.
+ * @param call         The extra cost of {@code call} and
+ *                     {@code call_indirect}.
+ * @param bytesPerFuel The number of bytes or elements per 1 extra fuel for bulk
+ *                     instructions.
+ * @param overrides    The costs that replace the base cost for the types of
+ *                     instruction.
+ */
+public record WeightedFuelCosts(long base, long call, long bytesPerFuel,
+	Map<Class<? extends Instruction>, Long> overrides) implements FuelCosts {
+
+	public WeightedFuelCosts {
+		if (base < 0 || call < 0) throw new IllegalArgumentException("Costs must not be negative");
+		if (bytesPerFuel <= 0) throw new IllegalArgumentException("Bytes per fuel must be positive");
+		overrides = Map.copyOf(overrides);
+	}
+
+	public WeightedFuelCosts(long base, long call, long bytesPerFuel) {
+		this(base, call, bytesPerFuel, Map.of());
+	}
+
+	/**
+	 * <p>
+	 * Create new costs that replace the base cost for given type of instruction.
+	 * </p>
+	 */
+	public WeightedFuelCosts withCost(Class<? extends Instruction> type, long cost) {
+		if (cost < 0) throw new IllegalArgumentException("Costs must not be negative");
+		Map<Class<? extends Instruction>, Long> overrides = new HashMap<>(this.overrides);
+		overrides.put(type, cost);
+		return new WeightedFuelCosts(base, call, bytesPerFuel, overrides);
+	}
+
+	@Override
+	public long cost(Machine vm, Instruction insn) {
+		if (insn == null) return base;
+		if (insn instanceof LinkedInsn linked) insn = linked.unlinked();
+		// Fused instructions cost the same as the instructions they are fused from
+		if (insn instanceof FusedInsn fused) return fused.instructions().stream().mapToLong(i -> cost(vm, i)).sum();
+		long cost = overrides.getOrDefault(insn.getClass(), base);
+
+		if (insn instanceof CallInsn || insn instanceof CallIndirectInsn) cost += call;
+		else if (insn instanceof MemoryInitInsn) cost += bulk(vm);
+		else if (insn instanceof MemoryInsn memory
+			&& (memory.type() == MemoryInsnType.COPY || memory.type() == MemoryInsnType.FILL))
+			cost += bulk(vm);
+		else if (insn instanceof TableInsn table && table.type() == TableInsnType.FILL) cost += bulk(vm);
+
+		return cost;
+	}
+
+	private long bulk(Machine vm) {
+		// The number of bytes or elements is the last operand
+		Value count = vm.peekFrame().peekOperand();
+		long bytes = count.type() == NumberType.I64 ? count.i64() : Integer.toUnsignedLong(count.i32());
+		return Long.divideUnsigned(bytes, bytesPerFuel);
+	}
+}
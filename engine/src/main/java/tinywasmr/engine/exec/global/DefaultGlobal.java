@@ -1,5 +1,7 @@
 package tinywasmr.engine.exec.global;
 
+import java.util.function.UnaryOperator;
+
 import tinywasmr.engine.exec.value.Value;
 import tinywasmr.engine.module.global.GlobalDecl;
 import tinywasmr.engine.type.Mutability;
@@ -24,6 +26,18 @@ public class DefaultGlobal implements Global {
 		this.value = init;
 	}
 
+	/**
+	 * <p>
+	 * Create a copy of this global, mapping the value with given function if this
+	 * global is initialized.
+	 * </p>
+	 */
+	public DefaultGlobal copy(UnaryOperator<Value> mapper) {
+		DefaultGlobal global = new DefaultGlobal(mutability, valType, value != null ? mapper.apply(value) : null);
+		global.declaration = declaration;
+		return global;
+	}
+
 	@Override
 	public GlobalDecl declaration() {
 		return declaration;
@@ -1,17 +1,27 @@
 package tinywasmr.engine.exec.instance;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import tinywasmr.engine.exec.global.DefaultGlobal;
 import tinywasmr.engine.exec.global.Global;
-import tinywasmr.engine.exec.memory.DefaultMemory;
+import tinywasmr.engine.exec.jit.FunctionProfile;
+import tinywasmr.engine.exec.limit.ResourceLimitException;
+import tinywasmr.engine.exec.limit.ResourceLimiter;
 import tinywasmr.engine.exec.memory.Memory;
+import tinywasmr.engine.exec.memory.MemoryFactory;
 import tinywasmr.engine.exec.table.DefaultTable;
 import tinywasmr.engine.exec.table.Table;
+import tinywasmr.engine.exec.value.FuncRefValue;
+import tinywasmr.engine.exec.value.RefValue;
+import tinywasmr.engine.exec.value.Value;
+import tinywasmr.engine.insn.Instruction;
 import tinywasmr.engine.module.WasmModule;
 import tinywasmr.engine.module.export.ExportDecl;
 import tinywasmr.engine.module.export.FunctionExportDescription;
@@ -20,6 +30,7 @@ import tinywasmr.engine.module.export.MemoryExportDescription;
 import tinywasmr.engine.module.export.TableExportDescription;
 import tinywasmr.engine.module.func.FunctionDecl;
 import tinywasmr.engine.module.func.ImportFunctionDecl;
+import tinywasmr.engine.module.func.ModuleFunctionDecl;
 import tinywasmr.engine.module.global.GlobalDecl;
 import tinywasmr.engine.module.global.ImportGlobalDecl;
 import tinywasmr.engine.module.memory.ImportMemoryDecl;
@@ -42,9 +53,48 @@ public class DefaultInstance implements Instance {
 	private Map<MemoryDecl, Memory> declToMemory;
 	private Map<GlobalDecl, Global> declToGlobal;
 	private Map<String, Export> exports;
+	private Map<Function, FunctionProfile> profiles;
+	private Map<ModuleFunctionDecl, List<Instruction>> bodies;
+
+	/**
+	 * <p>
+	 * Instantiate the module.
+	 * </p>
+	 * 
+	 * @param module   The module to instantiate.
+	 * @param importer The importer to resolve imports, or {@code null} if the
+	 *                 module doesn't have imports.
+	 * @param memories The factory to create the memories declared in module.
+	 * @param limiter  The limiter of the memories and tables declared in module.
+	 *                 The initial sizes are counted by the limiter.
+	 * @throws ResourceLimitException if the limiter rejects the initial sizes.
+	 */
+	public DefaultInstance(WasmModule module, Importer importer, MemoryFactory memories, ResourceLimiter limiter) {
+		this.module = module;
+		this.allFunctions = new ArrayList<>();
+		this.allTables = new ArrayList<>();
+		this.allMemories = new ArrayList<>();
+		this.allGlobals = new ArrayList<>();
+		this.declToFunction = new HashMap<>();
+		this.declToTable = new HashMap<>();
+		this.declToMemory = new HashMap<>();
+		this.declToGlobal = new HashMap<>();
+		this.exports = new HashMap<>();
+		this.profiles = new HashMap<>();
+		this.bodies = new ConcurrentHashMap<>();
+		setup(importer, memories, limiter);
+	}
+
+	public DefaultInstance(WasmModule module, Importer importer, MemoryFactory memories) {
+		this(module, importer, memories, ResourceLimiter.UNLIMITED);
+	}
 
 	public DefaultInstance(WasmModule module, Importer importer) {
-		this.module = module;
+		this(module, importer, MemoryFactory.DEFAULT);
+	}
+
+	private DefaultInstance(DefaultInstance parent) {
+		this.module = parent.module;
 		this.allFunctions = new ArrayList<>();
 		this.allTables = new ArrayList<>();
 		this.allMemories = new ArrayList<>();
@@ -54,10 +104,12 @@ public class DefaultInstance implements Instance {
 		this.declToMemory = new HashMap<>();
 		this.declToGlobal = new HashMap<>();
 		this.exports = new HashMap<>();
-		setup(importer);
+		this.profiles = new HashMap<>();
+		this.bodies = new ConcurrentHashMap<>();
+		setupFork(parent);
 	}
 
-	private void setup(Importer importer) {
+	private void setup(Importer importer, MemoryFactory memories, ResourceLimiter limiter) {
 		if (module.declaredImports().size() > 0 && importer == null) {
 			throw new IllegalArgumentException("The module have at least 1 import; an importer must be provided.");
 		}
@@ -67,6 +119,11 @@ public class DefaultInstance implements Instance {
 
 			if (decl instanceof ModuleTableDecl moduleDecl) {
 				table = new DefaultTable(moduleDecl);
+
+				if (limiter != ResourceLimiter.UNLIMITED) {
+					limiter.reserveTable(table.size());
+					table.setLimiter(limiter);
+				}
 			} else if (decl instanceof ImportTableDecl imp) {
 				String mod = imp.declaration().module();
 				String name = imp.declaration().name();
@@ -93,7 +150,38 @@ public class DefaultInstance implements Instance {
 			Memory memory;
 
 			if (decl instanceof ModuleMemoryDecl moduleDecl) {
-				memory = new DefaultMemory(moduleDecl);
+				int pages = moduleDecl.type().limit().min();
+
+				// Check before creating, so the pages over the limit are never allocated
+				if (limiter != ResourceLimiter.UNLIMITED) limiter.reserveMemory(pages);
+
+				try {
+					memory = memories.create(moduleDecl);
+				} catch (RuntimeException | Error e) {
+					if (limiter != ResourceLimiter.UNLIMITED) limiter.memoryGrowFailed(0, pages);
+					throw e;
+				}
+
+				if (limiter != ResourceLimiter.UNLIMITED) {
+					// Memories like MappedMemory may start larger than the declared minimum
+					if (memory.pageCount() > pages && !limiter.memoryGrowing(pages, memory.pageCount())) {
+						limiter.memoryGrowFailed(0, pages);
+						ResourceLimitException e = new ResourceLimitException("Memory with %d pages exceeded the limit"
+							.formatted(memory.pageCount()));
+
+						if (memory instanceof Closeable closeable) {
+							try {
+								closeable.close();
+							} catch (IOException closeFailure) {
+								e.addSuppressed(closeFailure);
+							}
+						}
+
+						throw e;
+					}
+
+					memory.setLimiter(limiter);
+				}
 			} else if (decl instanceof ImportMemoryDecl imp) {
 				String mod = imp.declaration().module();
 				String name = imp.declaration().name();
@@ -131,6 +219,7 @@ public class DefaultInstance implements Instance {
 				declToFunction.put(function.declaration(), function);
 			} else {
 				function = new Function(this, decl);
+				if (decl instanceof ModuleFunctionDecl) profiles.put(function, new FunctionProfile(function));
 			}
 
 			allFunctions.add(function);
@@ -159,6 +248,83 @@ public class DefaultInstance implements Instance {
 			declToGlobal.put(decl, global);
 		}
 
+		setupExports();
+	}
+
+	private void setupFork(DefaultInstance parent) {
+		// Functions are created first, so function references in tables and globals can be mapped to this instance
+		for (int i = 0; i < module.declaredFunctions().size(); i++) {
+			FunctionDecl decl = module.declaredFunctions().get(i);
+			Function function = parent.allFunctions.get(i);
+
+			if (decl instanceof ImportFunctionDecl) {
+				declToFunction.put(function.declaration(), function);
+			} else {
+				function = new Function(this, decl);
+				if (decl instanceof ModuleFunctionDecl) profiles.put(function, new FunctionProfile(function));
+			}
+
+			allFunctions.add(function);
+			declToFunction.put(decl, function);
+		}
+
+		for (int i = 0; i < module.declaredTables().size(); i++) {
+			TableDecl decl = module.declaredTables().get(i);
+			Table table = parent.allTables.get(i);
+
+			if (decl instanceof ImportTableDecl) {
+				if (table.declaration() != null) declToTable.put(table.declaration(), table);
+			} else if (table instanceof DefaultTable defaultTable) {
+				table = defaultTable.copy(value -> (RefValue) forkValue(parent, value));
+			} else {
+				throw new UnsupportedOperationException("Can't fork table %s".formatted(table.getClass().getName()));
+			}
+
+			allTables.add(table);
+			declToTable.put(decl, table);
+		}
+
+		for (int i = 0; i < module.declaredMemories().size(); i++) {
+			MemoryDecl decl = module.declaredMemories().get(i);
+			Memory memory = parent.allMemories.get(i);
+
+			if (decl instanceof ImportMemoryDecl) {
+				if (memory.declaration() != null) declToMemory.put(memory.declaration(), memory);
+			} else {
+				memory = memory.fork();
+			}
+
+			allMemories.add(memory);
+			declToMemory.put(decl, memory);
+		}
+
+		for (int i = 0; i < module.declaredGlobals().size(); i++) {
+			GlobalDecl decl = module.declaredGlobals().get(i);
+			Global global = parent.allGlobals.get(i);
+
+			if (decl instanceof ImportGlobalDecl imp) {
+				if (global.declaration() != null) declToGlobal.put(imp, global);
+			} else if (global instanceof DefaultGlobal defaultGlobal) {
+				global = defaultGlobal.copy(value -> forkValue(parent, value));
+			} else {
+				throw new UnsupportedOperationException("Can't fork global %s"
+					.formatted(global.getClass().getName()));
+			}
+
+			allGlobals.add(global);
+			declToGlobal.put(decl, global);
+		}
+
+		setupExports();
+	}
+
+	private Value forkValue(DefaultInstance parent, Value value) {
+		if (value instanceof FuncRefValue ref && ref.function() != null && ref.function().instance() == parent)
+			return new FuncRefValue(declToFunction.get(ref.function().declaration()));
+		return value;
+	}
+
+	private void setupExports() {
 		for (ExportDecl export : module.declaredExports()) {
 			Exportable exportable;
 
@@ -179,6 +345,31 @@ public class DefaultInstance implements Instance {
 		}
 	}
 
+	/**
+	 * <p>
+	 * Fork this instance. The fork shares the imports with this instance, while
+	 * the memories, tables and globals declared in module are copied, so the fork
+	 * don't need to be initialized again. Function references to this instance are
+	 * mapped to the functions of the fork.
+	 * </p>
+	 * <p>
+	 * The memories are forked with {@link Memory#fork()}. Use
+	 * {@link MemoryFactory#SPARSE} to share the memory pages between forks until
+	 * they are written. This instance must not be executed while forking. The
+	 * forked memories and tables are counted by the limiters of this instance's
+	 * memories and tables, and use the same limiters.
+	 * </p>
+	 * 
+	 * @throws UnsupportedOperationException if a memory, table or global can't be
+	 *                                       forked.
+	 * @throws ResourceLimitException        if the limiters reject the forked
+	 *                                       memories or tables.
+	 */
+	@Override
+	public DefaultInstance fork() {
+		return new DefaultInstance(this);
+	}
+
 	@Override
 	public WasmModule module() {
 		return module;
@@ -194,6 +385,23 @@ public class DefaultInstance implements Instance {
 		return declToFunction.get(decl);
 	}
 
+	@Override
+	public List<Instruction> body(ModuleFunctionDecl decl) {
+		List<Instruction> body = bodies.get(decl);
+		if (body != null) return body;
+		Function function = declToFunction.get(decl);
+		if (function == null || function.instance() != this) return decl.body();
+
+		// Link function bodies to this instance when they are first executed, so instructions don't look up the
+		// declarations when executing and forking doesn't link all functions again
+		return bodies.computeIfAbsent(decl, d -> Instruction.link(d.body(), this));
+	}
+
+	@Override
+	public FunctionProfile profile(Function function) {
+		return profiles.get(function);
+	}
+
 	@Override
 	public List<Table> tables() {
 		return allTables;
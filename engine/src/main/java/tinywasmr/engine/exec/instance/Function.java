@@ -5,7 +5,9 @@ import java.util.List;
 import tinywasmr.engine.exec.executor.DefaultExecutor;
 import tinywasmr.engine.exec.value.Value;
 import tinywasmr.engine.exec.vm.DefaultMachine;
+import tinywasmr.engine.insn.Instruction;
 import tinywasmr.engine.module.func.FunctionDecl;
+import tinywasmr.engine.module.func.ModuleFunctionDecl;
 import tinywasmr.engine.type.FunctionType;
 import tinywasmr.engine.type.value.ValueType;
 
@@ -14,6 +16,32 @@ public record Function(Instance instance, FunctionDecl declaration) implements E
 		return declaration.type();
 	}
 
+	/**
+	 * <p>
+	 * Get the instructions of this module function that are executed in its
+	 * instance.
+	 * </p>
+	 * 
+	 * @see Instance#body(ModuleFunctionDecl)
+	 */
+	public List<Instruction> body() {
+		if (!(declaration instanceof ModuleFunctionDecl module))
+			throw new IllegalStateException("%s is not a module function".formatted(this));
+		return instance != null ? instance.body(module) : module.body();
+	}
+
+	/**
+	 * <p>
+	 * Check whether this is a module function from a module that was validated.
+	 * The checks of runtime validation are skipped for validated functions.
+	 * </p>
+	 *
+	 * @see tinywasmr.engine.module.WasmModule#isValidated()
+	 */
+	public boolean isValidated() {
+		return declaration instanceof ModuleFunctionDecl module && module.module().isValidated();
+	}
+
 	/**
 	 * <p>
 	 * Execute this function, using default executor and virtual machine
@@ -8,13 +8,17 @@ import tinywasmr.engine.exec.executor.Executor;
 import tinywasmr.engine.exec.frame.Frame;
 import tinywasmr.engine.exec.frame.init.InitFrame;
 import tinywasmr.engine.exec.global.Global;
+import tinywasmr.engine.exec.jit.FunctionProfile;
+import tinywasmr.engine.exec.jit.FunctionTier;
 import tinywasmr.engine.exec.memory.Memory;
 import tinywasmr.engine.exec.table.Table;
 import tinywasmr.engine.exec.vm.DefaultMachine;
 import tinywasmr.engine.exec.vm.Machine;
+import tinywasmr.engine.insn.Instruction;
 import tinywasmr.engine.module.CustomSection;
 import tinywasmr.engine.module.WasmModule;
 import tinywasmr.engine.module.func.FunctionDecl;
+import tinywasmr.engine.module.func.ModuleFunctionDecl;
 import tinywasmr.engine.module.global.GlobalDecl;
 import tinywasmr.engine.module.memory.DataSegment;
 import tinywasmr.engine.module.memory.MemoryDecl;
@@ -45,6 +49,21 @@ public interface Instance {
 		initialize(new DefaultMachine(), new DefaultExecutor());
 	}
 
+	/**
+	 * <p>
+	 * Create a new instance of the same module that starts with the current state
+	 * of this instance, which is usually cheaper than instantiating and
+	 * initializing the module again. The fork and this instance can be executed
+	 * independently after forking.
+	 * </p>
+	 * 
+	 * @throws UnsupportedOperationException if this instance can't be forked.
+	 * @see DefaultInstance#fork()
+	 */
+	default Instance fork() {
+		throw new UnsupportedOperationException("%s can't be forked".formatted(getClass().getName()));
+	}
+
 	/**
 	 * <p>
 	 * Get a collection of custom sections in the module that linked to this
@@ -66,6 +85,41 @@ public interface Instance {
 		return null;
 	}
 
+	/**
+	 * <p>
+	 * Get the instructions of a module function that will be executed in this
+	 * instance. Instances may return the body linked to their functions, memories,
+	 * globals and tables with {@link Instruction#link(Instance)}, in which case the
+	 * same list is returned for the same function. The default implementation
+	 * returns the body in declaration.
+	 * </p>
+	 */
+	default List<Instruction> body(ModuleFunctionDecl decl) {
+		return decl.body();
+	}
+
+	/**
+	 * <p>
+	 * Get the profile of a module function in this instance, which holds the
+	 * counters and the execution tier used by tiered executors. Returns
+	 * {@code null} if the function is not a module function of this instance or
+	 * this instance doesn't keep profiles.
+	 * </p>
+	 */
+	default FunctionProfile profile(Function function) {
+		return null;
+	}
+
+	/**
+	 * <p>
+	 * Get the execution tier of a function in this instance.
+	 * </p>
+	 */
+	default FunctionTier tier(Function function) {
+		FunctionProfile profile = profile(function);
+		return profile != null ? profile.getTier() : FunctionTier.INTERPRETED;
+	}
+
 	List<Table> tables();
 
 	default Table table(TableDecl decl) {
@@ -0,0 +1,215 @@
+package tinywasmr.engine.exec.jit;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * A minimal class file writer. Class files are written with version 49, so the
+ * methods don't need stack map frames and are verified by type inference
+ * instead.
+ * </p>
+ */
+final class ClassFileBuilder {
+	static final int ACC_STATIC = 0x0008;
+	static final int ACC_FINAL = 0x0010;
+	static final int ACC_SUPER = 0x0020;
+
+	private static final int VERSION = 49;
+
+	private static final int CONSTANT_UTF8 = 1;
+	private static final int CONSTANT_INTEGER = 3;
+	private static final int CONSTANT_FLOAT = 4;
+	private static final int CONSTANT_LONG = 5;
+	private static final int CONSTANT_DOUBLE = 6;
+	private static final int CONSTANT_CLASS = 7;
+	private static final int CONSTANT_STRING = 8;
+	private static final int CONSTANT_FIELDREF = 9;
+	private static final int CONSTANT_METHODREF = 10;
+	private static final int CONSTANT_INTERFACE_METHODREF = 11;
+	private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+	private final String name;
+	private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+	private final DataOutputStream pool = new DataOutputStream(poolBytes);
+	private final Map<String, Integer> constants = new HashMap<>();
+	private int poolCount = 1;
+
+	private final ByteArrayOutputStream fieldBytes = new ByteArrayOutputStream();
+	private final DataOutputStream fields = new DataOutputStream(fieldBytes);
+	private int fieldCount = 0;
+	private final List<MethodEntry> methods = new ArrayList<>();
+
+	private record MethodEntry(int access, int name, int descriptor, CodeBuilder code) {
+	}
+
+	/**
+	 * @param name The internal name of the class, like
+	 *             {@code tinywasmr/engine/exec/jit/Foo}.
+	 */
+	ClassFileBuilder(String name) {
+		this.name = name;
+	}
+
+	String name() {
+		return name;
+	}
+
+	private int constant(String key, int tag, IOWriter writer, int size) {
+		Integer index = constants.get(key);
+		if (index != null) return index;
+
+		try {
+			pool.writeByte(tag);
+			writer.write(pool);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		index = poolCount;
+		poolCount += size;
+		if (poolCount > 0xFFFF) throw new UnsupportedOperationException("Too many constants");
+		constants.put(key, index);
+		return index;
+	}
+
+	@FunctionalInterface
+	private interface IOWriter {
+		void write(DataOutputStream stream) throws IOException;
+	}
+
+	int utf8(String value) {
+		return constant("U" + value, CONSTANT_UTF8, s -> s.writeUTF(value), 1);
+	}
+
+	int classRef(String internalName) {
+		int utf8 = utf8(internalName);
+		return constant("C" + internalName, CONSTANT_CLASS, s -> s.writeShort(utf8), 1);
+	}
+
+	int string(String value) {
+		int utf8 = utf8(value);
+		return constant("S" + value, CONSTANT_STRING, s -> s.writeShort(utf8), 1);
+	}
+
+	int integer(int value) {
+		return constant("I" + value, CONSTANT_INTEGER, s -> s.writeInt(value), 1);
+	}
+
+	int floatBits(int bits) {
+		return constant("F" + bits, CONSTANT_FLOAT, s -> s.writeInt(bits), 1);
+	}
+
+	int longValue(long value) {
+		return constant("J" + value, CONSTANT_LONG, s -> s.writeLong(value), 2);
+	}
+
+	int doubleBits(long bits) {
+		return constant("D" + bits, CONSTANT_DOUBLE, s -> s.writeLong(bits), 2);
+	}
+
+	private int nameAndType(String name, String descriptor) {
+		int nameIndex = utf8(name);
+		int descriptorIndex = utf8(descriptor);
+		return constant("N" + name + ":" + descriptor, CONSTANT_NAME_AND_TYPE, s -> {
+			s.writeShort(nameIndex);
+			s.writeShort(descriptorIndex);
+		}, 1);
+	}
+
+	private int memberRef(int tag, String owner, String name, String descriptor) {
+		int ownerIndex = classRef(owner);
+		int nameAndType = nameAndType(name, descriptor);
+		return constant(tag + owner + "." + name + ":" + descriptor, tag, s -> {
+			s.writeShort(ownerIndex);
+			s.writeShort(nameAndType);
+		}, 1);
+	}
+
+	int fieldRef(String owner, String name, String descriptor) {
+		return memberRef(CONSTANT_FIELDREF, owner, name, descriptor);
+	}
+
+	int methodRef(String owner, String name, String descriptor) {
+		return memberRef(CONSTANT_METHODREF, owner, name, descriptor);
+	}
+
+	int interfaceMethodRef(String owner, String name, String descriptor) {
+		return memberRef(CONSTANT_INTERFACE_METHODREF, owner, name, descriptor);
+	}
+
+	void field(int access, String name, String descriptor) {
+		try {
+			fields.writeShort(access);
+			fields.writeShort(utf8(name));
+			fields.writeShort(utf8(descriptor));
+			fields.writeShort(0);
+			fieldCount++;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * <p>
+	 * Add a new method. The code must be created for this class, and it will be
+	 * assembled when the class is built.
+	 * </p>
+	 */
+	void method(int access, String name, String descriptor, CodeBuilder code) {
+		methods.add(new MethodEntry(access, utf8(name), utf8(descriptor), code));
+	}
+
+	byte[] build() {
+		int thisClass = classRef(name);
+		int superClass = classRef("java/lang/Object");
+		int codeAttribute = utf8("Code");
+		List<byte[]> codes = new ArrayList<>();
+		for (MethodEntry method : methods) codes.add(method.code.assemble());
+
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeInt(0xCAFEBABE);
+			out.writeShort(0);
+			out.writeShort(VERSION);
+			out.writeShort(poolCount);
+			poolBytes.writeTo(out);
+			out.writeShort(ACC_FINAL | ACC_SUPER);
+			out.writeShort(thisClass);
+			out.writeShort(superClass);
+			out.writeShort(0); // Interfaces
+			out.writeShort(fieldCount);
+			fieldBytes.writeTo(out);
+			out.writeShort(methods.size());
+
+			for (int i = 0; i < methods.size(); i++) {
+				MethodEntry method = methods.get(i);
+				byte[] code = codes.get(i);
+				out.writeShort(method.access);
+				out.writeShort(method.name);
+				out.writeShort(method.descriptor);
+				out.writeShort(1);
+				out.writeShort(codeAttribute);
+				out.writeInt(12 + code.length);
+				out.writeShort(method.code.maxStack());
+				out.writeShort(method.code.maxLocals());
+				out.writeInt(code.length);
+				out.write(code);
+				out.writeShort(0); // Exception table
+				out.writeShort(0); // Attributes
+			}
+
+			out.writeShort(0); // Attributes
+			return bytes.toByteArray();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
@@ -0,0 +1,378 @@
+package tinywasmr.engine.exec.jit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p>
+ * Write the bytecode of a single method. Branch offsets are resolved when the
+ * code is assembled. Methods with branches that can't be encoded in 16-bit
+ * offsets are rejected with {@link UnsupportedOperationException}.
+ * </p>
+ */
+final class CodeBuilder {
+	static final int ICONST_0 = 3;
+	static final int LCONST_0 = 9;
+	static final int FCONST_0 = 11;
+	static final int DCONST_0 = 14;
+	static final int BIPUSH = 16;
+	static final int SIPUSH = 17;
+	static final int LDC = 18;
+	static final int LDC_W = 19;
+	static final int LDC2_W = 20;
+	static final int ILOAD = 21;
+	static final int LLOAD = 22;
+	static final int FLOAD = 23;
+	static final int DLOAD = 24;
+	static final int ALOAD = 25;
+	static final int AALOAD = 50;
+	static final int ISTORE = 54;
+	static final int LSTORE = 55;
+	static final int FSTORE = 56;
+	static final int DSTORE = 57;
+	static final int ASTORE = 58;
+	static final int AASTORE = 83;
+	static final int POP = 87;
+	static final int POP2 = 88;
+	static final int DUP = 89;
+	static final int DUP2 = 92;
+	static final int IADD = 96;
+	static final int LADD = 97;
+	static final int FADD = 98;
+	static final int DADD = 99;
+	static final int ISUB = 100;
+	static final int LSUB = 101;
+	static final int FSUB = 102;
+	static final int DSUB = 103;
+	static final int IMUL = 104;
+	static final int LMUL = 105;
+	static final int FMUL = 106;
+	static final int DMUL = 107;
+	static final int IDIV = 108;
+	static final int LDIV = 109;
+	static final int FDIV = 110;
+	static final int DDIV = 111;
+	static final int IREM = 112;
+	static final int LREM = 113;
+	static final int FNEG = 118;
+	static final int DNEG = 119;
+	static final int ISHL = 120;
+	static final int LSHL = 121;
+	static final int ISHR = 122;
+	static final int LSHR = 123;
+	static final int IUSHR = 124;
+	static final int LUSHR = 125;
+	static final int IAND = 126;
+	static final int LAND = 127;
+	static final int IOR = 128;
+	static final int LOR = 129;
+	static final int IXOR = 130;
+	static final int LXOR = 131;
+	static final int I2L = 133;
+	static final int I2F = 134;
+	static final int I2D = 135;
+	static final int L2I = 136;
+	static final int L2F = 137;
+	static final int L2D = 138;
+	static final int F2I = 139;
+	static final int F2L = 140;
+	static final int F2D = 141;
+	static final int D2I = 142;
+	static final int D2L = 143;
+	static final int D2F = 144;
+	static final int LCMP = 148;
+	static final int FCMPL = 149;
+	static final int FCMPG = 150;
+	static final int DCMPL = 151;
+	static final int DCMPG = 152;
+	static final int IFEQ = 153;
+	static final int IFNE = 154;
+	static final int IFLT = 155;
+	static final int IFGE = 156;
+	static final int IFGT = 157;
+	static final int IFLE = 158;
+	static final int IF_ICMPEQ = 159;
+	static final int IF_ICMPNE = 160;
+	static final int IF_ICMPLT = 161;
+	static final int IF_ICMPGE = 162;
+	static final int IF_ICMPGT = 163;
+	static final int IF_ICMPLE = 164;
+	static final int GOTO = 167;
+	static final int TABLESWITCH = 170;
+	static final int IRETURN = 172;
+	static final int LRETURN = 173;
+	static final int FRETURN = 174;
+	static final int DRETURN = 175;
+	static final int ARETURN = 176;
+	static final int RETURN = 177;
+	static final int GETSTATIC = 178;
+	static final int PUTSTATIC = 179;
+	static final int INVOKESTATIC = 184;
+	static final int INVOKEINTERFACE = 185;
+	static final int ANEWARRAY = 189;
+	static final int ATHROW = 191;
+	static final int CHECKCAST = 192;
+	static final int WIDE = 196;
+
+	/**
+	 * <p>
+	 * Invert a conditional branch opcode, so the branch is taken when the original
+	 * branch is not taken.
+	 * </p>
+	 */
+	static int invert(int opcode) {
+		if (opcode < IFEQ || opcode > IF_ICMPLE) throw new IllegalArgumentException("Not a branch: %d"
+			.formatted(opcode));
+		return ((opcode - IFEQ) ^ 1) + IFEQ;
+	}
+
+	static final class Label {
+		private int position = -1;
+	}
+
+	private record Fixup(int instruction, int offset, boolean wide, Label label) {
+	}
+
+	private final ClassFileBuilder owner;
+	private byte[] code = new byte[256];
+	private int length = 0;
+	private int maxStack = 0;
+	private int maxLocals = 0;
+	private final List<Fixup> fixups = new ArrayList<>();
+
+	CodeBuilder(ClassFileBuilder owner) {
+		this.owner = owner;
+	}
+
+	int maxStack() {
+		return maxStack;
+	}
+
+	int maxLocals() {
+		return maxLocals;
+	}
+
+	/**
+	 * <p>
+	 * Ensure the maximum stack size is at least the given number of slots.
+	 * </p>
+	 */
+	void stack(int slots) {
+		if (slots > maxStack) maxStack = slots;
+	}
+
+	/**
+	 * <p>
+	 * Ensure the maximum number of locals is at least the given number of slots.
+	 * </p>
+	 */
+	void locals(int slots) {
+		if (slots > maxLocals) maxLocals = slots;
+	}
+
+	int position() {
+		return length;
+	}
+
+	private void u1(int value) {
+		if (length == code.length) code = Arrays.copyOf(code, length * 2);
+		code[length++] = (byte) value;
+	}
+
+	private void u2(int value) {
+		u1(value >> 8);
+		u1(value);
+	}
+
+	private void u4(int value) {
+		u2(value >> 16);
+		u2(value);
+	}
+
+	void op(int opcode) {
+		u1(opcode);
+	}
+
+	void mark(Label label) {
+		if (label.position != -1) throw new IllegalStateException("Label is already marked");
+		label.position = length;
+	}
+
+	void jump(int opcode, Label label) {
+		fixups.add(new Fixup(length, length + 1, false, label));
+		u1(opcode);
+		u2(0);
+	}
+
+	/**
+	 * <p>
+	 * Emit {@code tableswitch} with keys from 0 to {@code labels.length - 1}.
+	 * </p>
+	 */
+	void tableSwitch(Label defaultLabel, Label[] labels) {
+		int instruction = length;
+		u1(TABLESWITCH);
+		while (length % 4 != 0) u1(0);
+		fixups.add(new Fixup(instruction, length, true, defaultLabel));
+		u4(0);
+		u4(0);
+		u4(labels.length - 1);
+
+		for (Label label : labels) {
+			fixups.add(new Fixup(instruction, length, true, label));
+			u4(0);
+		}
+	}
+
+	void iconst(int value) {
+		if (value >= -1 && value <= 5) op(ICONST_0 + value);
+		else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+			u1(BIPUSH);
+			u1(value);
+		} else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+			u1(SIPUSH);
+			u2(value);
+		} else ldc(owner.integer(value));
+	}
+
+	void lconst(long value) {
+		if (value == 0L || value == 1L) op(LCONST_0 + (int) value);
+		else {
+			u1(LDC2_W);
+			u2(owner.longValue(value));
+		}
+	}
+
+	void fconst(int bits) {
+		if (bits == 0) op(FCONST_0);
+		else ldc(owner.floatBits(bits));
+	}
+
+	void dconst(long bits) {
+		if (bits == 0L) op(DCONST_0);
+		else {
+			u1(LDC2_W);
+			u2(owner.doubleBits(bits));
+		}
+	}
+
+	void ldcClass(String internalName) {
+		ldc(owner.classRef(internalName));
+	}
+
+	void ldcString(String value) {
+		ldc(owner.string(value));
+	}
+
+	private void ldc(int index) {
+		if (index <= 0xFF) {
+			u1(LDC);
+			u1(index);
+		} else {
+			u1(LDC_W);
+			u2(index);
+		}
+	}
+
+	private void local(int opcode, int slot, int size) {
+		locals(slot + size);
+
+		if (slot <= 0xFF) {
+			u1(opcode);
+			u1(slot);
+		} else {
+			u1(WIDE);
+			u1(opcode);
+			u2(slot);
+		}
+	}
+
+	void load(Kind kind, int slot) {
+		local(kind.load, slot, kind.size);
+	}
+
+	void store(Kind kind, int slot) {
+		local(kind.store, slot, kind.size);
+	}
+
+	/**
+	 * <p>
+	 * Pop a value of given kind from the operand stack.
+	 * </p>
+	 */
+	void pop(Kind kind) {
+		op(kind.size == 2 ? POP2 : POP);
+	}
+
+	void getStatic(String owner, String name, String descriptor) {
+		u1(GETSTATIC);
+		u2(this.owner.fieldRef(owner, name, descriptor));
+	}
+
+	void putStatic(String owner, String name, String descriptor) {
+		u1(PUTSTATIC);
+		u2(this.owner.fieldRef(owner, name, descriptor));
+	}
+
+	void invokeStatic(String owner, String name, String descriptor) {
+		u1(INVOKESTATIC);
+		u2(this.owner.methodRef(owner, name, descriptor));
+	}
+
+	void invokeInterface(String owner, String name, String descriptor) {
+		u1(INVOKEINTERFACE);
+		u2(this.owner.interfaceMethodRef(owner, name, descriptor));
+		u1(1 + argumentSlots(descriptor));
+		u1(0);
+	}
+
+	void type(int opcode, String internalName) {
+		u1(opcode);
+		u2(owner.classRef(internalName));
+	}
+
+	private static int argumentSlots(String descriptor) {
+		int slots = 0;
+		int i = 1;
+
+		while (descriptor.charAt(i) != ')') {
+			char c = descriptor.charAt(i);
+
+			if (c == 'J' || c == 'D') {
+				slots += 2;
+				i++;
+				continue;
+			}
+
+			while (descriptor.charAt(i) == '[') i++;
+			if (descriptor.charAt(i) == 'L') i = descriptor.indexOf(';', i);
+			slots++;
+			i++;
+		}
+
+		return slots;
+	}
+
+	byte[] assemble() {
+		for (Fixup fixup : fixups) {
+			if (fixup.label.position == -1) throw new IllegalStateException("Label is not marked");
+			int offset = fixup.label.position - fixup.instruction;
+
+			if (fixup.wide) {
+				code[fixup.offset] = (byte) (offset >> 24);
+				code[fixup.offset + 1] = (byte) (offset >> 16);
+				code[fixup.offset + 2] = (byte) (offset >> 8);
+				code[fixup.offset + 3] = (byte) offset;
+			} else {
+				if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE)
+					throw new UnsupportedOperationException("Branch offset too large: %d".formatted(offset));
+				code[fixup.offset] = (byte) (offset >> 8);
+				code[fixup.offset + 1] = (byte) offset;
+			}
+		}
+
+		if (length > 0xFFFF) throw new UnsupportedOperationException("Method too large: %d bytes".formatted(length));
+		return Arrays.copyOf(code, length);
+	}
+}
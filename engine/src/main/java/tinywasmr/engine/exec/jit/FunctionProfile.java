@@ -0,0 +1,130 @@
+package tinywasmr.engine.exec.jit;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import tinywasmr.engine.exec.instance.Function;
+
+/**
+ * <p>
+ * The profiling data and execution tier of a module function. Profiles are
+ * owned by the instance, so all {@link TieredExecutor}s executing the same
+ * instance share the counters and the compiled code.
+ * </p>
+ * <p>
+ * Profiles also hold the code compiled by {@link JitExecutor}, which compiles
+ * all functions of the instance together and is kept apart from the tiered
+ * code. The compiled code refers to the instance, so keeping it in the instance
+ * lets both be garbage collected together. The code lowered by
+ * {@link tinywasmr.engine.exec.flat.FlatExecutor} is kept here for the same
+ * reason.
+ * </p>
+ * <p>
+ * The counters are updated without synchronization. Concurrent interpreters may
+ * lose some counts, which only delays the compilation.
+ * </p>
+ */
+public final class FunctionProfile {
+	private final Function function;
+	private final AtomicReference<FunctionTier> tier = new AtomicReference<>(FunctionTier.INTERPRETED);
+	private volatile JitEntry entry;
+	private volatile JitEntry eagerEntry;
+	private volatile boolean eagerCompiled = false;
+	private volatile Object flatCode;
+	private int calls = 0;
+	private int backEdges = 0;
+
+	public FunctionProfile(Function function) {
+		this.function = function;
+	}
+
+	public Function getFunction() { return function; }
+
+	public FunctionTier getTier() { return tier.get(); }
+
+	/**
+	 * <p>
+	 * Get the number of calls executed by interpreter.
+	 * </p>
+	 */
+	public int getCalls() { return calls; }
+
+	/**
+	 * <p>
+	 * Get the number of loop back-edges taken by interpreter.
+	 * </p>
+	 */
+	public int getBackEdges() { return backEdges; }
+
+	int countCall() {
+		return ++calls;
+	}
+
+	int countBackEdge() {
+		return ++backEdges;
+	}
+
+	/**
+	 * <p>
+	 * Move the function from {@link FunctionTier#INTERPRETED} to
+	 * {@link FunctionTier#QUEUED}.
+	 * </p>
+	 *
+	 * @return {@code true} if this call changed the tier, {@code false} if the
+	 *         function was already queued, compiled or failed to compile.
+	 */
+	boolean queue() {
+		return tier.compareAndSet(FunctionTier.INTERPRETED, FunctionTier.QUEUED);
+	}
+
+	JitEntry entry() {
+		return entry;
+	}
+
+	void compiled(JitEntry entry) {
+		this.entry = entry;
+		tier.set(FunctionTier.COMPILED);
+	}
+
+	/**
+	 * <p>
+	 * Check whether {@link JitExecutor} tried to compile the instance of this
+	 * function.
+	 * </p>
+	 */
+	boolean isEagerCompiled() {
+		return eagerCompiled;
+	}
+
+	JitEntry eagerEntry() {
+		return eagerEntry;
+	}
+
+	/**
+	 * @param entry The function compiled by {@link JitExecutor}, or {@code null}
+	 *              if the function can't be compiled.
+	 */
+	void eagerCompiled(JitEntry entry) {
+		this.eagerEntry = entry;
+		eagerCompiled = true;
+	}
+
+	/**
+	 * <p>
+	 * Get the code lowered by {@link tinywasmr.engine.exec.flat.FlatExecutor}, or
+	 * {@code null} if the function was not lowered yet. The flat code is internal
+	 * to the flat executor, so it is stored as an object.
+	 * </p>
+	 */
+	public Object getFlatCode() { return flatCode; }
+
+	public void setFlatCode(Object flatCode) { this.flatCode = flatCode; }
+
+	void failed() {
+		tier.set(FunctionTier.FAILED);
+	}
+
+	@Override
+	public String toString() {
+		return "%s: %s (%d calls, %d back-edges)".formatted(function, tier.get(), calls, backEdges);
+	}
+}
@@ -0,0 +1,35 @@
+package tinywasmr.engine.exec.jit;
+
+/**
+ * <p>
+ * The execution tier of a module function.
+ * </p>
+ */
+public enum FunctionTier {
+	/**
+	 * <p>
+	 * The function is executed by interpreter and its calls and loop back-edges are
+	 * being counted.
+	 * </p>
+	 */
+	INTERPRETED,
+	/**
+	 * <p>
+	 * The function is hot and waiting to be compiled. It is still executed by
+	 * interpreter in the meantime.
+	 * </p>
+	 */
+	QUEUED,
+	/**
+	 * <p>
+	 * The function is compiled and future calls will be executed by compiled code.
+	 * </p>
+	 */
+	COMPILED,
+	/**
+	 * <p>
+	 * The function can't be compiled and will always be executed by interpreter.
+	 * </p>
+	 */
+	FAILED;
+}
@@ -0,0 +1,1464 @@
+package tinywasmr.engine.exec.jit;
+
+import static tinywasmr.engine.exec.jit.CodeBuilder.*;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import tinywasmr.engine.exec.global.Global;
+import tinywasmr.engine.exec.instance.Function;
+import tinywasmr.engine.exec.instance.Instance;
+import tinywasmr.engine.exec.value.FuncRefValue;
+import tinywasmr.engine.exec.value.NumberF32Value;
+import tinywasmr.engine.exec.value.NumberF64Value;
+import tinywasmr.engine.exec.value.NumberI32Value;
+import tinywasmr.engine.exec.value.NumberI64Value;
+import tinywasmr.engine.exec.value.RefValue;
+import tinywasmr.engine.exec.value.Value;
+import tinywasmr.engine.insn.ConstInsn;
+import tinywasmr.engine.insn.Instruction;
+import tinywasmr.engine.insn.LinkedInsn;
+import tinywasmr.engine.insn.control.BlockInsn;
+import tinywasmr.engine.insn.control.BranchIfInsn;
+import tinywasmr.engine.insn.control.BranchInsn;
+import tinywasmr.engine.insn.control.BranchTableInsn;
+import tinywasmr.engine.insn.control.CallIndirectInsn;
+import tinywasmr.engine.insn.control.CallInsn;
+import tinywasmr.engine.insn.control.ControlInsn;
+import tinywasmr.engine.insn.control.IfInsn;
+import tinywasmr.engine.insn.control.LoopInsn;
+import tinywasmr.engine.insn.fused.FusedInsn;
+import tinywasmr.engine.insn.memory.DataDropInsn;
+import tinywasmr.engine.insn.memory.LoadInsn;
+import tinywasmr.engine.insn.memory.LoadType;
+import tinywasmr.engine.insn.memory.MemoryInitInsn;
+import tinywasmr.engine.insn.memory.MemoryInsn;
+import tinywasmr.engine.insn.memory.StoreInsn;
+import tinywasmr.engine.insn.memory.StoreType;
+import tinywasmr.engine.insn.numeric.NumericBinaryOpInsn;
+import tinywasmr.engine.insn.numeric.NumericConvertInsn;
+import tinywasmr.engine.insn.numeric.NumericUnaryOpInsn;
+import tinywasmr.engine.insn.parametric.ParametricInsn;
+import tinywasmr.engine.insn.parametric.SelectExplictInsn;
+import tinywasmr.engine.insn.ref.RefFuncInsn;
+import tinywasmr.engine.insn.ref.RefInsn;
+import tinywasmr.engine.insn.table.TableInsn;
+import tinywasmr.engine.insn.variable.GlobalInsn;
+import tinywasmr.engine.insn.variable.LocalInsn;
+import tinywasmr.engine.module.func.ModuleFunctionDecl;
+import tinywasmr.engine.module.memory.MemoryDecl;
+import tinywasmr.engine.type.FunctionType;
+import tinywasmr.engine.type.value.ValueType;
+
+/**
+ * <p>
+ * Compile module functions of an instance into static methods of a single
+ * hidden class. WebAssembly locals become JVM locals and the operand stack of
+ * WebAssembly becomes the operand stack of JVM, so the JVM can optimize the
+ * compiled code like any other Java code. Calls between compiled functions are
+ * {@code invokestatic}s. Calls to other functions (imported functions, host
+ * functions and functions that can't be compiled) are executed by
+ * {@link JitContext}.
+ * </p>
+ * <p>
+ * A function can't be compiled if it uses vector values, returns more than 1
+ * value, uses instructions that are not supported by the compiler or is too
+ * large for a JVM method. Functions that can't be compiled are simply left out
+ * of the compiled class.
+ * </p>
+ */
+final class JitCompiler {
+	static final String CLASS_NAME = "tinywasmr/engine/exec/jit/CompiledModule";
+
+	private static final String OBJECT = "java/lang/Object";
+	private static final String VALUE = "tinywasmr/engine/exec/value/Value";
+	private static final String VALUE_ARRAY = "[L" + VALUE + ";";
+	private static final String MEMORY = "Ltinywasmr/engine/exec/memory/Memory;";
+	private static final String GLOBAL = "Ltinywasmr/engine/exec/global/Global;";
+	private static final String TABLE = "Ltinywasmr/engine/exec/table/Table;";
+	private static final String FUNCTION = "Ltinywasmr/engine/exec/instance/Function;";
+	private static final String FUNCTION_TYPE = "Ltinywasmr/engine/type/FunctionType;";
+	private static final String DATA_SEGMENT = "Ltinywasmr/engine/module/memory/DataSegment;";
+	private static final String LOOP_SITE = "Ltinywasmr/engine/exec/jit/LoopSite;";
+	private static final MethodType BOXED_TYPE = MethodType.methodType(Value[].class, Value[].class, JitContext.class);
+	private static final MethodType OSR_TYPE = MethodType.methodType(Value[].class, Value[].class, int.class,
+		JitContext.class);
+
+	/**
+	 * <p>
+	 * The number of extra stack slots used by call sequences of helpers.
+	 * </p>
+	 */
+	private static final int EXTRA_STACK = 8;
+
+	private final Instance instance;
+	private final List<Function> functions;
+	private final boolean osr;
+	private final Map<Function, Integer> indices = new HashMap<>();
+	private final Map<Function, List<LoopSite>> loops = new HashMap<>();
+	private ClassFileBuilder builder;
+	private List<Object> data;
+	private Map<Object, String> dataFields;
+
+	private JitCompiler(Instance instance, List<Function> functions, boolean osr) {
+		this.instance = instance;
+		this.functions = new ArrayList<>(functions);
+		this.osr = osr;
+	}
+
+	/**
+	 * <p>
+	 * Compile all module functions of the instance.
+	 * </p>
+	 *
+	 * @param instance The instance.
+	 * @return The compiled functions. Functions that can't be compiled are not
+	 *         included.
+	 */
+	static Map<Function, JitEntry> compile(Instance instance) {
+		List<Function> functions = new ArrayList<>();
+
+		for (Function function : instance.functions()) {
+			if (function.instance() == instance
+				&& function.declaration() instanceof ModuleFunctionDecl
+				&& !functions.contains(function))
+				functions.add(function);
+		}
+
+		return compile(instance, functions, false);
+	}
+
+	/**
+	 * <p>
+	 * Compile a subset of module functions of the instance. Calls to functions
+	 * outside of the subset are executed by {@link JitContext}.
+	 * </p>
+	 *
+	 * @param instance  The instance.
+	 * @param functions The functions to compile.
+	 * @param osr       Whether to compile the loop header entry points, which are
+	 *                  used for entering compiled code in the middle of a loop.
+	 * @return The compiled functions. Functions that can't be compiled are not
+	 *         included.
+	 */
+	static Map<Function, JitEntry> compile(Instance instance, List<Function> functions, boolean osr) {
+		return new JitCompiler(instance, functions, osr).compile();
+	}
+
+	private Map<Function, JitEntry> compile() {
+		while (true) {
+			indices.clear();
+			loops.clear();
+			for (int i = 0; i < functions.size(); i++) indices.put(functions.get(i), i);
+			builder = new ClassFileBuilder(CLASS_NAME);
+			data = new ArrayList<>();
+			dataFields = new IdentityHashMap<>();
+			Function failed = null;
+
+			for (Function function : functions) {
+				try {
+					compileFunction(function);
+				} catch (UnsupportedOperationException e) {
+					failed = function;
+					break;
+				}
+			}
+
+			// Direct calls to the function that can't be compiled must be recompiled
+			if (failed != null) {
+				functions.remove(failed);
+				continue;
+			}
+
+			if (functions.isEmpty()) return Map.of();
+			return define();
+		}
+	}
+
+	private Map<Function, JitEntry> define() {
+		CodeBuilder init = new CodeBuilder(builder);
+		init.invokeStatic("java/lang/invoke/MethodHandles", "lookup", "()Ljava/lang/invoke/MethodHandles$Lookup;");
+		init.ldcString("_");
+		init.ldcClass("[L" + OBJECT + ";");
+		init.invokeStatic("java/lang/invoke/MethodHandles", "classData",
+			"(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/Class;)Ljava/lang/Object;");
+		init.type(CHECKCAST, "[L" + OBJECT + ";");
+		init.store(Kind.REF, 0);
+
+		for (int i = 0; i < data.size(); i++) {
+			String field = dataFields.get(data.get(i));
+			String descriptor = field.substring(field.indexOf(':') + 1);
+			init.load(Kind.REF, 0);
+			init.iconst(i);
+			init.op(AALOAD);
+			init.type(CHECKCAST, descriptor.substring(1, descriptor.length() - 1));
+			init.putStatic(CLASS_NAME, field.substring(0, field.indexOf(':')), descriptor);
+		}
+
+		init.op(RETURN);
+		init.stack(3);
+		builder.method(ClassFileBuilder.ACC_STATIC, "<clinit>", "()V", init);
+
+		try {
+			Lookup lookup = MethodHandles.lookup()
+				.defineHiddenClassWithClassData(builder.build(), data.toArray(), true);
+			Map<Function, JitEntry> entries = new LinkedHashMap<>();
+
+			for (Function function : functions) {
+				int index = indices.get(function);
+				MethodHandle boxed = lookup.findStatic(lookup.lookupClass(), "b" + index, BOXED_TYPE);
+				List<LoopSite> sites = loops.get(function);
+				MethodHandle osr = sites != null
+					? lookup.findStatic(lookup.lookupClass(), "p" + index, OSR_TYPE)
+					: null;
+				entries.put(function, new JitEntry(function, boxed, osr, sites != null ? sites : List.of()));
+			}
+
+			return entries;
+		} catch (IllegalAccessException | NoSuchMethodException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * <p>
+	 * Get the static field that holds the object from class data.
+	 * </p>
+	 *
+	 * @param object     The object.
+	 * @param descriptor The descriptor of field.
+	 * @return The name and descriptor of field, separated by colon.
+	 */
+	private String dataField(Object object, String descriptor) {
+		String field = dataFields.get(object);
+
+		if (field == null) {
+			String name = "d" + data.size();
+			builder.field(ClassFileBuilder.ACC_STATIC | ClassFileBuilder.ACC_FINAL, name, descriptor);
+			field = name + ":" + descriptor;
+			data.add(object);
+			dataFields.put(object, field);
+		}
+
+		return field;
+	}
+
+	private void getData(CodeBuilder code, Object object, String descriptor) {
+		String field = dataField(object, descriptor);
+		int colon = field.indexOf(':');
+		code.getStatic(CLASS_NAME, field.substring(0, colon), field.substring(colon + 1));
+	}
+
+	private static String descriptor(FunctionType type) {
+		StringBuilder descriptor = new StringBuilder("(");
+		for (ValueType param : type.inputs().types()) descriptor.append(kind(param).descriptor);
+		descriptor.append(JitContext.DESCRIPTOR).append(')');
+		List<ValueType> results = type.outputs().types();
+		if (results.size() > 1) throw new UnsupportedOperationException("Multiple results");
+		descriptor.append(results.isEmpty() ? "V" : kind(results.get(0)).descriptor);
+		return descriptor.toString();
+	}
+
+	private static Kind kind(ValueType type) {
+		Kind kind = Kind.of(type);
+		if (kind == null) throw new UnsupportedOperationException("Unsupported type: %s".formatted(type));
+		return kind;
+	}
+
+	private static void box(CodeBuilder code, Kind kind) {
+		if (kind != Kind.REF) code.invokeStatic(JitRuntime.NAME, "box", "(" + kind.descriptor + ")L" + VALUE + ";");
+	}
+
+	private static void unbox(CodeBuilder code, Kind kind) {
+		switch (kind) {
+		case INT -> code.invokeInterface(VALUE, "i32", "()I");
+		case LONG -> code.invokeInterface(VALUE, "i64", "()J");
+		case FLOAT -> code.invokeInterface(VALUE, "f32", "()F");
+		case DOUBLE -> code.invokeInterface(VALUE, "f64", "()D");
+		case REF -> {}
+		}
+	}
+
+	private void compileFunction(Function function) {
+		ModuleFunctionDecl declaration = (ModuleFunctionDecl) function.declaration();
+		int index = indices.get(function);
+		String descriptor = descriptor(declaration.type());
+		CodeBuilder code = new CodeBuilder(builder);
+		MethodCompiler compiler = new MethodCompiler(function, code, false);
+		compiler.compile();
+		code.assemble();
+		builder.method(ClassFileBuilder.ACC_STATIC, "f" + index, descriptor, code);
+
+		// Boxed variant for calling from Java code
+		CodeBuilder boxed = new CodeBuilder(builder);
+		List<ValueType> params = declaration.type().inputs().types();
+		List<ValueType> results = declaration.type().outputs().types();
+		int slots = 0;
+
+		for (int i = 0; i < params.size(); i++) {
+			boxed.load(Kind.REF, 0);
+			boxed.iconst(i);
+			boxed.op(AALOAD);
+			unbox(boxed, kind(params.get(i)));
+			slots += kind(params.get(i)).size;
+			boxed.stack(slots + 2);
+		}
+
+		boxed.load(Kind.REF, 1);
+		boxed.invokeStatic(CLASS_NAME, "f" + index, descriptor);
+
+		if (results.isEmpty()) {
+			boxed.invokeStatic(JitRuntime.NAME, "none", "()" + VALUE_ARRAY);
+		} else {
+			box(boxed, kind(results.get(0)));
+			boxed.invokeStatic(JitRuntime.NAME, "single", "(L" + VALUE + ";)" + VALUE_ARRAY);
+		}
+
+		boxed.op(ARETURN);
+		boxed.stack(slots + 2);
+		boxed.locals(2);
+		builder.method(ClassFileBuilder.ACC_STATIC, "b" + index, BOXED_TYPE.toMethodDescriptorString(), boxed);
+		if (osr && !compiler.sites.isEmpty()) compileLoopEntry(function, descriptor);
+	}
+
+	/**
+	 * <p>
+	 * Compile the variant of function that starts at a loop header, taking the
+	 * state at loop header instead of the parameters. The function can still be
+	 * entered from the start if this variant can't be compiled.
+	 * </p>
+	 */
+	private void compileLoopEntry(Function function, String descriptor) {
+		int index = indices.get(function);
+		String result = descriptor.substring(descriptor.indexOf(')') + 1);
+		String entryDescriptor = "(" + VALUE_ARRAY + "I" + JitContext.DESCRIPTOR + ")" + result;
+		CodeBuilder code = new CodeBuilder(builder);
+		MethodCompiler compiler = new MethodCompiler(function, code, true);
+
+		try {
+			compiler.compile();
+			code.assemble();
+		} catch (UnsupportedOperationException e) {
+			return;
+		}
+
+		builder.method(ClassFileBuilder.ACC_STATIC, "o" + index, entryDescriptor, code);
+		loops.put(function, compiler.sites);
+
+		CodeBuilder boxed = new CodeBuilder(builder);
+		boxed.load(Kind.REF, 0);
+		boxed.load(Kind.INT, 1);
+		boxed.load(Kind.REF, 2);
+		boxed.invokeStatic(CLASS_NAME, "o" + index, entryDescriptor);
+
+		if (result.equals("V")) {
+			boxed.invokeStatic(JitRuntime.NAME, "none", "()" + VALUE_ARRAY);
+		} else {
+			box(boxed, kind(function.type().outputs().types().get(0)));
+			boxed.invokeStatic(JitRuntime.NAME, "single", "(L" + VALUE + ";)" + VALUE_ARRAY);
+		}
+
+		boxed.op(ARETURN);
+		boxed.stack(3);
+		boxed.locals(3);
+		builder.method(ClassFileBuilder.ACC_STATIC, "p" + index, OSR_TYPE.toMethodDescriptorString(), boxed);
+	}
+
+	private static class Label {
+		final Instruction insn;
+		final int position;
+		final boolean loop;
+		final int height;
+		final List<Kind> results;
+		final CodeBuilder.Label target = new CodeBuilder.Label();
+		boolean endReachable = false;
+		boolean trueBranch = true;
+
+		Label(Instruction insn, int position, boolean loop, int height, List<Kind> results) {
+			this.insn = insn;
+			this.position = position;
+			this.loop = loop;
+			this.height = height;
+			this.results = results;
+		}
+
+		int branchArity() {
+			return loop ? 0 : results.size();
+		}
+	}
+
+	/**
+	 * <p>
+	 * Compile a single function. The kinds of values on operand stack are tracked
+	 * statically, so branches that unwind the stack can pop the values between the
+	 * results and the label.
+	 * </p>
+	 * <p>
+	 * Comparisons are not materialized right away. If the next instruction is a
+	 * conditional branch, the comparison is compiled into a JVM conditional jump
+	 * instead.
+	 * </p>
+	 * <p>
+	 * Every loop header checks whether the executor is deoptimized, and leaves to
+	 * interpreter with the state at loop header if it is. The loop entry variant
+	 * of function jumps from the method start to a prologue at the end of method,
+	 * which loads the state and jumps to the loop header. The code before the loop
+	 * header is left unreachable and never verified.
+	 * </p>
+	 */
+	private class MethodCompiler {
+		private final Function function;
+		private final ModuleFunctionDecl declaration;
+		private final CodeBuilder code;
+		private final boolean loopEntry;
+		private final Kind[] localKinds;
+		private final int[] localSlots;
+		private final int contextSlot;
+		private final int tempBase;
+		private final List<Kind> results;
+
+		private final List<Kind> stack = new ArrayList<>();
+		private int stackSlots = 0;
+		private final List<Label> labels = new ArrayList<>();
+		private boolean unreachable = false;
+		private int pendingBranch = -1;
+		private int position = -1;
+		private final List<LoopSite> sites = new ArrayList<>();
+		private final List<CodeBuilder.Label> loopTargets = new ArrayList<>();
+		private final List<CodeBuilder.Label> deoptTargets = new ArrayList<>();
+		private final CodeBuilder.Label prologue = new CodeBuilder.Label();
+
+		MethodCompiler(Function function, CodeBuilder code, boolean loopEntry) {
+			this.function = function;
+			this.declaration = (ModuleFunctionDecl) function.declaration();
+			this.code = code;
+			this.loopEntry = loopEntry;
+			List<ValueType> locals = declaration.allLocals();
+			int paramCount = declaration.type().inputs().types().size();
+			localKinds = new Kind[locals.size()];
+			localSlots = new int[locals.size()];
+			int slot = 0;
+
+			for (int i = 0; i < paramCount; i++) {
+				localKinds[i] = kind(locals.get(i));
+				localSlots[i] = slot;
+				slot += localKinds[i].size;
+			}
+
+			contextSlot = slot++;
+
+			for (int i = paramCount; i < locals.size(); i++) {
+				localKinds[i] = kind(locals.get(i));
+				localSlots[i] = slot;
+				slot += localKinds[i].size;
+			}
+
+			tempBase = slot;
+			code.locals(slot);
+			results = declaration.type().outputs().types().stream().map(JitCompiler::kind).toList();
+		}
+
+		void compile() {
+			List<ValueType> locals = declaration.allLocals();
+			// Call sequences of helpers load values outside of push(), even when the
+			// function never pushes any operand
+			code.stack(EXTRA_STACK);
+			if (loopEntry) code.jump(GOTO, prologue);
+
+			for (int i = declaration.type().inputs().types().size(); i < locals.size(); i++) {
+				switch (localKinds[i]) {
+				case INT -> code.iconst(0);
+				case LONG -> code.lconst(0L);
+				case FLOAT -> code.fconst(0);
+				case DOUBLE -> code.dconst(0L);
+				case REF -> getData(code, locals.get(i).zero(), Kind.REF.descriptor);
+				}
+
+				code.stack(2);
+				code.store(localKinds[i], localSlots[i]);
+			}
+
+			labels.add(new Label(null, -1, false, 0, results));
+			compileAll(function.body());
+
+			if (!unreachable) {
+				flush();
+				expect(results);
+				emitReturn();
+			}
+
+			for (int i = 0; i < sites.size(); i++) compileDeopt(sites.get(i), deoptTargets.get(i));
+			if (loopEntry) compilePrologue();
+		}
+
+		private void loopHeader(Label label) {
+			List<LoopSite.Enclosing> path = new ArrayList<>();
+			for (Label enclosing : labels.subList(1, labels.size()))
+				path.add(new LoopSite.Enclosing(enclosing.insn, enclosing.position, enclosing.trueBranch,
+					enclosing.height));
+
+			CodeBuilder.Label deopt = new CodeBuilder.Label();
+			sites.add(new LoopSite(function, sites.size(), List.copyOf(path), List.copyOf(stack)));
+			loopTargets.add(label.target);
+			deoptTargets.add(deopt);
+			code.load(Kind.REF, contextSlot);
+			code.invokeStatic(JitRuntime.NAME, "deoptimizing", "(" + JitContext.DESCRIPTOR + ")Z");
+			code.jump(IFNE, deopt);
+		}
+
+		/**
+		 * <p>
+		 * Leave to interpreter at loop header. The operand stack at this point is the
+		 * operand stack at loop header.
+		 * </p>
+		 */
+		private void compileDeopt(LoopSite site, CodeBuilder.Label target) {
+			code.mark(target);
+			List<Kind> kinds = site.stack();
+			int[] temps = new int[kinds.size()];
+			int slot = tempBase;
+
+			for (int i = 0; i < kinds.size(); i++) {
+				temps[i] = slot;
+				slot += kinds.get(i).size;
+			}
+
+			for (int i = kinds.size() - 1; i >= 0; i--) code.store(kinds.get(i), temps[i]);
+			code.iconst(localKinds.length + kinds.size());
+			code.type(ANEWARRAY, VALUE);
+			for (int i = 0; i < localKinds.length; i++) storeElement(i, localKinds[i], localSlots[i]);
+			for (int i = 0; i < kinds.size(); i++) storeElement(localKinds.length + i, kinds.get(i), temps[i]);
+			getData(code, site, LOOP_SITE);
+			code.load(Kind.REF, contextSlot);
+			code.invokeStatic(JitRuntime.NAME, "deoptimize", "(" + VALUE_ARRAY + LOOP_SITE + JitContext.DESCRIPTOR + ")"
+				+ VALUE_ARRAY);
+
+			if (results.isEmpty()) {
+				code.op(POP);
+			} else {
+				code.iconst(0);
+				code.op(AALOAD);
+				unbox(code, results.get(0));
+			}
+
+			emitReturn();
+			code.stack(6);
+		}
+
+		private void storeElement(int index, Kind kind, int slot) {
+			code.op(DUP);
+			code.iconst(index);
+			code.load(kind, slot);
+			box(code, kind);
+			code.op(AASTORE);
+		}
+
+		/**
+		 * <p>
+		 * Load the state at loop header and jump to the header of loop, which is
+		 * selected by the second parameter.
+		 * </p>
+		 */
+		private void compilePrologue() {
+			code.mark(prologue);
+			int stateSlot = Math.max(code.maxLocals(), 3);
+			code.load(Kind.REF, 0);
+			code.store(Kind.REF, stateSlot);
+			code.load(Kind.INT, 1);
+			code.store(Kind.INT, stateSlot + 1);
+			code.load(Kind.REF, 2);
+			code.store(Kind.REF, contextSlot);
+
+			for (int i = 0; i < localKinds.length; i++) {
+				loadElement(stateSlot, i, localKinds[i]);
+				code.store(localKinds[i], localSlots[i]);
+			}
+
+			CodeBuilder.Label invalid = new CodeBuilder.Label();
+			CodeBuilder.Label[] cases = new CodeBuilder.Label[sites.size()];
+			for (int i = 0; i < cases.length; i++) cases[i] = new CodeBuilder.Label();
+			code.load(Kind.INT, stateSlot + 1);
+			code.tableSwitch(invalid, cases);
+
+			for (int i = 0; i < cases.length; i++) {
+				List<Kind> kinds = sites.get(i).stack();
+				code.mark(cases[i]);
+				int slots = 0;
+
+				for (int j = 0; j < kinds.size(); j++) {
+					loadElement(stateSlot, localKinds.length + j, kinds.get(j));
+					slots += kinds.get(j).size;
+				}
+
+				code.stack(slots + 3);
+				code.jump(GOTO, loopTargets.get(i));
+			}
+
+			code.mark(invalid);
+			code.invokeStatic(JitRuntime.NAME, "unreachable", "()Ljava/lang/RuntimeException;");
+			code.op(ATHROW);
+		}
+
+		private void loadElement(int arraySlot, int index, Kind kind) {
+			code.load(Kind.REF, arraySlot);
+			code.iconst(index);
+			code.op(AALOAD);
+			unbox(code, kind);
+		}
+
+		private void push(Kind kind) {
+			stack.add(kind);
+			stackSlots += kind.size;
+			code.stack(stackSlots + EXTRA_STACK);
+		}
+
+		private Kind pop() {
+			if (stack.isEmpty()) throw new UnsupportedOperationException("Operand stack underflow");
+			Kind kind = stack.remove(stack.size() - 1);
+			stackSlots -= kind.size;
+			return kind;
+		}
+
+		private Kind peek(int depth) {
+			return stack.get(stack.size() - 1 - depth);
+		}
+
+		/**
+		 * <p>
+		 * Ensure the values on top of the stack are of given kinds, the last kind
+		 * being the top of the stack. Code with type errors can't be compiled.
+		 * </p>
+		 */
+		private void expect(Kind... kinds) {
+			if (stack.size() < kinds.length) throw new UnsupportedOperationException("Operand stack underflow");
+
+			for (int i = 0; i < kinds.length; i++) {
+				Kind kind = peek(kinds.length - 1 - i);
+				if (kind != kinds[i]) throw new UnsupportedOperationException("Type mismatch: %s (stack) != %s"
+					.formatted(kind, kinds[i]));
+			}
+		}
+
+		private void expect(List<Kind> kinds) {
+			expect(kinds.toArray(Kind[]::new));
+		}
+
+		private void resetStack(int height, List<Kind> top) {
+			while (stack.size() > height) pop();
+			for (Kind kind : top) push(kind);
+		}
+
+		/**
+		 * <p>
+		 * Materialize pending comparison as 0 or 1.
+		 * </p>
+		 */
+		private void flush() {
+			if (pendingBranch == -1) return;
+			int opcode = pendingBranch;
+			pendingBranch = -1;
+			CodeBuilder.Label isTrue = new CodeBuilder.Label();
+			CodeBuilder.Label end = new CodeBuilder.Label();
+			code.jump(opcode, isTrue);
+			code.iconst(0);
+			code.jump(GOTO, end);
+			code.mark(isTrue);
+			code.iconst(1);
+			code.mark(end);
+		}
+
+		/**
+		 * <p>
+		 * Pop the condition and get the JVM branch opcode that jumps when the
+		 * condition is true.
+		 * </p>
+		 */
+		private int condition() {
+			expect(Kind.INT);
+			pop();
+			if (pendingBranch == -1) return IFNE;
+			int opcode = pendingBranch;
+			pendingBranch = -1;
+			return opcode;
+		}
+
+		/**
+		 * <p>
+		 * Record a comparison. The operands (or the result of {@code lcmp} and
+		 * friends) are already on the stack.
+		 * </p>
+		 */
+		private void compare(int operands, int branch) {
+			for (int i = 0; i < operands; i++) pop();
+			push(Kind.INT);
+			pendingBranch = branch;
+		}
+
+		private void compileAll(List<Instruction> instructions) {
+			for (int i = 0; i < instructions.size(); i++) {
+				Instruction insn = instructions.get(i);
+				if (unreachable) return;
+				position = i;
+
+				// Fused instructions are compiled as the instructions they are fused from
+				if (insn instanceof FusedInsn fused) {
+					for (Instruction part : fused.instructions()) compileNext(part);
+				} else {
+					compileNext(insn);
+				}
+			}
+		}
+
+		private void compileNext(Instruction insn) {
+			// Compiled code resolves the declarations of linked instructions once when compiling
+			if (insn instanceof LinkedInsn linked) insn = linked.unlinked();
+			if (!(insn instanceof IfInsn || insn instanceof BranchIfInsn)) flush();
+			compile(insn);
+		}
+
+		private void compile(Instruction insn) {
+			if (insn instanceof ConstInsn constInsn) {
+				compileConst(constInsn.value());
+			} else if (insn instanceof NumericBinaryOpInsn op) {
+				Kind kind = Kind.of(op.operandType());
+				expect(kind, kind);
+				compileBinary(op);
+			} else if (insn instanceof NumericUnaryOpInsn op) {
+				expect(Kind.of(op.operandType()));
+				compileUnary(op);
+			} else if (insn instanceof NumericConvertInsn op) {
+				expect(Kind.of(op.operandType()));
+				compileConvert(op);
+			} else if (insn instanceof LocalInsn local) {
+				Kind kind = localKinds[local.index()];
+				int slot = localSlots[local.index()];
+
+				switch (local.type()) {
+				case GET -> {
+					code.load(kind, slot);
+					push(kind);
+				}
+				case SET -> {
+					expect(kind);
+					code.store(kind, slot);
+					pop();
+				}
+				case TEE -> {
+					expect(kind);
+					code.op(kind.size == 2 ? DUP2 : DUP);
+					code.store(kind, slot);
+				}
+				}
+			} else if (insn instanceof GlobalInsn global) {
+				Global object = instance.global(global.global());
+				Kind kind = kind(object.type());
+
+				switch (global.type()) {
+				case GET -> {
+					getData(code, object, GLOBAL);
+					code.invokeInterface(GLOBAL.substring(1, GLOBAL.length() - 1), "get", "()L" + VALUE + ";");
+					unbox(code, kind);
+					push(kind);
+				}
+				case SET -> {
+					expect(kind);
+					box(code, kind);
+					getData(code, object, GLOBAL);
+					code.invokeStatic(JitRuntime.NAME, "setGlobal", "(L" + VALUE + ";" + GLOBAL + ")V");
+					pop();
+				}
+				}
+			} else if (insn instanceof LoadInsn load) {
+				compileLoad(load);
+			} else if (insn instanceof StoreInsn store) {
+				compileStore(store);
+			} else if (insn instanceof MemoryInsn memory) {
+				compileMemory(memory);
+			} else if (insn instanceof MemoryInitInsn init) {
+				requireMemory32(init.memory());
+				getData(code, instance.memory(init.memory()), MEMORY);
+				getData(code, init.segment(), DATA_SEGMENT);
+				code.invokeStatic(JitRuntime.NAME, "memoryInit", "(III" + MEMORY + DATA_SEGMENT + ")V");
+				pop();
+				pop();
+				pop();
+			} else if (insn instanceof DataDropInsn) {
+				// Do nothing, just like DataDropInsn
+			} else if (insn instanceof TableInsn table) {
+				compileTable(table);
+			} else if (insn instanceof ParametricInsn parametric) {
+				switch (parametric) {
+				case DROP -> code.pop(pop());
+				case SELECT_AUTO -> compileSelect();
+				}
+			} else if (insn instanceof SelectExplictInsn) {
+				compileSelect();
+			} else if (insn instanceof RefInsn ref) {
+				switch (ref) {
+				case NULL_EXTERN -> compileConst(RefValue.NULL_EXTERN);
+				case NULL_FUNC -> compileConst(RefValue.NULL_FUNC);
+				case IS_NULL -> {
+					code.invokeStatic(JitRuntime.NAME, "isNull", "(L" + VALUE + ";)I");
+					pop();
+					push(Kind.INT);
+				}
+				}
+			} else if (insn instanceof RefFuncInsn ref) {
+				compileConst(new FuncRefValue(instance.function(ref.function())));
+			} else if (insn instanceof BlockInsn block) {
+				compileBlock(block, block.blockType().blockResults(), block.instructions(), false);
+			} else if (insn instanceof LoopInsn loop) {
+				compileBlock(loop, loop.blockType().blockResults(), loop.instructions(), true);
+			} else if (insn instanceof IfInsn ifInsn) {
+				compileIf(ifInsn);
+			} else if (insn instanceof BranchIfInsn branch) {
+				compileBranchIf(label(branch.nestIndex()));
+			} else if (insn instanceof BranchInsn branch) {
+				branch(label(branch.nestIndex()));
+				unreachable = true;
+			} else if (insn instanceof BranchTableInsn branch) {
+				compileBranchTable(branch);
+			} else if (insn instanceof ControlInsn control) {
+				switch (control) {
+				case NOP -> {}
+				case UNREACHABLE -> {
+					code.invokeStatic(JitRuntime.NAME, "unreachable", "()Ljava/lang/RuntimeException;");
+					code.op(ATHROW);
+					unreachable = true;
+				}
+				case RETURN -> {
+					expect(results);
+					emitReturn();
+					unreachable = true;
+				}
+				}
+			} else if (insn instanceof CallInsn call) {
+				compileCall(instance.function(call.function()));
+			} else if (insn instanceof CallIndirectInsn call) {
+				compileCallIndirect(call);
+			} else {
+				throw new UnsupportedOperationException("Cannot compile %s".formatted(insn.getClass().getName()));
+			}
+		}
+
+		private void compileConst(Value value) {
+			if (value instanceof NumberI32Value i32) {
+				code.iconst(i32.i32());
+				push(Kind.INT);
+			} else if (value instanceof NumberI64Value i64) {
+				code.lconst(i64.i64());
+				push(Kind.LONG);
+			} else if (value instanceof NumberF32Value f32) {
+				code.fconst(Float.floatToRawIntBits(f32.f32()));
+				push(Kind.FLOAT);
+			} else if (value instanceof NumberF64Value f64) {
+				code.dconst(Double.doubleToRawLongBits(f64.f64()));
+				push(Kind.DOUBLE);
+			} else if (value instanceof RefValue) {
+				getData(code, value, Kind.REF.descriptor);
+				push(Kind.REF);
+			} else {
+				throw new UnsupportedOperationException("Unsupported constant: %s".formatted(value));
+			}
+		}
+
+		private void compileSelect() {
+			if (stack.size() < 3 || peek(1) != peek(2)) throw new UnsupportedOperationException("Type mismatch");
+			expect(peek(1), Kind.INT);
+			pop();
+			pop();
+			Kind kind = pop();
+			String descriptor = kind.descriptor;
+			code.invokeStatic(JitRuntime.NAME, "select", "(%s%sI)%s".formatted(descriptor, descriptor, descriptor));
+			push(kind);
+		}
+
+		private void requireMemory32(MemoryDecl memory) {
+			if (memory.type().memory64()) throw new UnsupportedOperationException("64-bit memory is not supported");
+		}
+
+		private void compileLoad(LoadInsn load) {
+			Kind kind = switch (load.type()) {
+			case I32, I32_S8, I32_U8, I32_S16, I32_U16 -> Kind.INT;
+			case I64, I64_S8, I64_U8, I64_S16, I64_U16, I64_S32, I64_U32 -> Kind.LONG;
+			case F32 -> Kind.FLOAT;
+			case F64 -> Kind.DOUBLE;
+			};
+
+			requireMemory32(load.memory());
+			expect(Kind.INT);
+			getData(code, instance.memory(load.memory()), MEMORY);
+			code.iconst(load.memarg().offset());
+			code.invokeStatic(JitRuntime.NAME, "load" + name(load.type()), "(I" + MEMORY + "I)" + kind.descriptor);
+			pop();
+			push(kind);
+		}
+
+		private void compileStore(StoreInsn store) {
+			requireMemory32(store.memory());
+			expect(Kind.INT, Kind.of(store.type().type()));
+			Kind kind = pop();
+			pop();
+			getData(code, instance.memory(store.memory()), MEMORY);
+			code.iconst(store.memarg().offset());
+			code.invokeStatic(JitRuntime.NAME, "store" + name(store.type()),
+				"(I" + kind.descriptor + MEMORY + "I)V");
+		}
+
+		private void compileMemory(MemoryInsn memory) {
+			requireMemory32(memory.memory());
+			getData(code, instance.memory(memory.memory()), MEMORY);
+
+			switch (memory.type()) {
+			case SIZE -> {
+				code.invokeInterface(MEMORY.substring(1, MEMORY.length() - 1), "pageCount", "()I");
+				push(Kind.INT);
+			}
+			case GROW -> code.invokeStatic(JitRuntime.NAME, "memoryGrow", "(I" + MEMORY + ")I");
+			case COPY -> {
+				code.invokeStatic(JitRuntime.NAME, "memoryCopy", "(III" + MEMORY + ")V");
+				pop();
+				pop();
+				pop();
+			}
+			case FILL -> {
+				code.invokeStatic(JitRuntime.NAME, "memoryFill", "(III" + MEMORY + ")V");
+				pop();
+				pop();
+				pop();
+			}
+			}
+		}
+
+		private void compileTable(TableInsn table) {
+			getData(code, instance.table(table.table()), TABLE);
+			String value = "L" + VALUE + ";";
+
+			switch (table.type()) {
+			case GET -> {
+				code.invokeStatic(JitRuntime.NAME, "tableGet", "(I" + TABLE + ")" + value);
+				pop();
+				push(Kind.REF);
+			}
+			case SET -> {
+				code.invokeStatic(JitRuntime.NAME, "tableSet", "(I" + value + TABLE + ")V");
+				pop();
+				pop();
+			}
+			case GROW -> {
+				code.invokeStatic(JitRuntime.NAME, "tableGrow", "(I" + value + TABLE + ")I");
+				pop();
+				pop();
+				push(Kind.INT);
+			}
+			case SIZE -> {
+				code.invokeInterface(TABLE.substring(1, TABLE.length() - 1), "size", "()I");
+				push(Kind.INT);
+			}
+			case FILL -> {
+				code.invokeStatic(JitRuntime.NAME, "tableFill", "(I" + value + "I" + TABLE + ")V");
+				pop();
+				pop();
+				pop();
+			}
+			}
+		}
+
+		private void compileBlock(Instruction insn, List<ValueType> blockResults, List<Instruction> instructions,
+			boolean loop) {
+			Label label = new Label(insn, position, loop, stack.size(), blockResults.stream()
+				.map(JitCompiler::kind)
+				.toList());
+			labels.add(label);
+
+			if (loop) {
+				code.mark(label.target);
+				loopHeader(label);
+			}
+
+			compileAll(instructions);
+			endBlock(label);
+		}
+
+		private void compileIf(IfInsn insn) {
+			int condition = condition();
+			Label label = new Label(insn, position, false, stack.size(), insn.blockType().blockResults().stream()
+				.map(JitCompiler::kind)
+				.toList());
+			labels.add(label);
+			CodeBuilder.Label elseLabel = new CodeBuilder.Label();
+			code.jump(CodeBuilder.invert(condition), elseLabel);
+			compileAll(insn.truePath());
+
+			if (!unreachable) {
+				flush();
+				if (stack.size() != label.height + label.results.size())
+					throw new UnsupportedOperationException("Unbalanced operand stack");
+				expect(label.results);
+				code.jump(GOTO, label.target);
+				label.endReachable = true;
+			}
+
+			code.mark(elseLabel);
+			resetStack(label.height, List.of());
+			unreachable = false;
+			label.trueBranch = false;
+			compileAll(insn.falsePath());
+			endBlock(label);
+		}
+
+		private void endBlock(Label label) {
+			if (!unreachable) {
+				flush();
+				if (stack.size() != label.height + label.results.size())
+					throw new UnsupportedOperationException("Unbalanced operand stack");
+				expect(label.results);
+			}
+
+			labels.remove(labels.size() - 1);
+			if (!label.loop) code.mark(label.target);
+			unreachable = unreachable && !label.endReachable;
+			resetStack(label.height, label.results);
+		}
+
+		private Label label(int nestIndex) {
+			if (nestIndex < 0 || nestIndex >= labels.size())
+				throw new IllegalArgumentException("Illegal br label: %d".formatted(nestIndex));
+			return labels.get(labels.size() - 1 - nestIndex);
+		}
+
+		private boolean isDirect(Label label) {
+			return label != labels.get(0) && stack.size() == label.height + label.branchArity();
+		}
+
+		private void emitReturn() {
+			code.op(results.isEmpty() ? RETURN : results.get(0).ret);
+		}
+
+		/**
+		 * <p>
+		 * Unwind the stack and jump to the label. Branching to the function label
+		 * returns from the function.
+		 * </p>
+		 */
+		private void branch(Label label) {
+			expect(label.loop ? List.of() : label.results);
+
+			if (label == labels.get(0)) {
+				emitReturn();
+				return;
+			}
+
+			if (!label.loop) label.endReachable = true;
+			int arity = label.branchArity();
+			int extra = stack.size() - label.height - arity;
+
+			if (extra > 0) {
+				int[] temps = new int[arity];
+				int slot = tempBase;
+
+				for (int i = arity - 1; i >= 0; i--) {
+					Kind kind = peek(arity - 1 - i);
+					temps[i] = slot;
+					slot += kind.size;
+					code.store(kind, temps[i]);
+				}
+
+				for (int i = 0; i < extra; i++) code.pop(peek(arity + i));
+				for (int i = 0; i < arity; i++) code.load(peek(arity - 1 - i), temps[i]);
+			}
+
+			code.jump(GOTO, label.target);
+		}
+
+		private void compileBranchIf(Label label) {
+			int condition = condition();
+
+			if (isDirect(label)) {
+				if (!label.loop) label.endReachable = true;
+				code.jump(condition, label.target);
+			} else {
+				CodeBuilder.Label skip = new CodeBuilder.Label();
+				code.jump(CodeBuilder.invert(condition), skip);
+				branch(label);
+				code.mark(skip);
+			}
+		}
+
+		private void compileBranchTable(BranchTableInsn insn) {
+			expect(Kind.INT);
+			pop();
+			Label defaultLabel = label(insn.defaultLabel());
+
+			if (insn.labels().length == 0) {
+				code.pop(Kind.INT);
+				branch(defaultLabel);
+				unreachable = true;
+				return;
+			}
+
+			Map<Label, CodeBuilder.Label> targets = new IdentityHashMap<>();
+			List<Label> stubs = new ArrayList<>();
+			CodeBuilder.Label[] switchLabels = new CodeBuilder.Label[insn.labels().length];
+
+			for (int i = 0; i < switchLabels.length; i++)
+				switchLabels[i] = branchTarget(label(insn.labels()[i]), targets, stubs);
+
+			code.tableSwitch(branchTarget(defaultLabel, targets, stubs), switchLabels);
+
+			for (Label label : stubs) {
+				code.mark(targets.get(label));
+				branch(label);
+			}
+
+			unreachable = true;
+		}
+
+		private CodeBuilder.Label branchTarget(Label label, Map<Label, CodeBuilder.Label> targets, List<Label> stubs) {
+			CodeBuilder.Label target = targets.get(label);
+			if (target != null) return target;
+
+			if (isDirect(label)) {
+				if (!label.loop) label.endReachable = true;
+				target = label.target;
+			} else {
+				target = new CodeBuilder.Label();
+				stubs.add(label);
+			}
+
+			targets.put(label, target);
+			return target;
+		}
+
+		private void compileCall(Function function) {
+			FunctionType type = function.type();
+			Integer index = indices.get(function);
+
+			expect(type.inputs().types().stream().map(JitCompiler::kind).toList());
+
+			if (index != null) {
+				code.load(Kind.REF, contextSlot);
+				code.invokeStatic(CLASS_NAME, "f" + index, descriptor(type));
+				for (int i = 0; i < type.inputs().types().size(); i++) pop();
+				for (ValueType result : type.outputs().types()) push(kind(result));
+				return;
+			}
+
+			packArguments(type, tempBase);
+			getData(code, function, FUNCTION);
+			code.load(Kind.REF, contextSlot);
+			code.invokeStatic(JitRuntime.NAME, "call", "(" + VALUE_ARRAY + FUNCTION + JitContext.DESCRIPTOR + ")"
+				+ VALUE_ARRAY);
+			unpackResults(type);
+		}
+
+		private void compileCallIndirect(CallIndirectInsn call) {
+			FunctionType type = call.type();
+			expect(Kind.INT);
+			int indexSlot = tempBase;
+			code.store(Kind.INT, indexSlot);
+			pop();
+			expect(type.inputs().types().stream().map(JitCompiler::kind).toList());
+			packArguments(type, tempBase + 1);
+			code.load(Kind.INT, indexSlot);
+			getData(code, instance.table(call.table()), TABLE);
+			getData(code, type, FUNCTION_TYPE);
+			code.load(Kind.REF, contextSlot);
+			code.invokeStatic(JitRuntime.NAME, "callIndirect", "(" + VALUE_ARRAY + "I" + TABLE + FUNCTION_TYPE
+				+ JitContext.DESCRIPTOR + ")" + VALUE_ARRAY);
+			unpackResults(type);
+		}
+
+		/**
+		 * <p>
+		 * Pop the arguments and push them as an array of boxed values.
+		 * </p>
+		 */
+		private void packArguments(FunctionType type, int tempSlot) {
+			int count = type.inputs().types().size();
+			Kind[] kinds = new Kind[count];
+			int[] temps = new int[count];
+
+			for (int i = count - 1; i >= 0; i--) {
+				kinds[i] = pop();
+				temps[i] = tempSlot;
+				tempSlot += kinds[i].size;
+				code.store(kinds[i], temps[i]);
+			}
+
+			code.iconst(count);
+			code.type(ANEWARRAY, VALUE);
+
+			for (int i = 0; i < count; i++) {
+				code.op(DUP);
+				code.iconst(i);
+				code.load(kinds[i], temps[i]);
+				box(code, kinds[i]);
+				code.op(AASTORE);
+			}
+		}
+
+		private void unpackResults(FunctionType type) {
+			List<ValueType> types = type.outputs().types();
+
+			if (types.isEmpty()) {
+				code.op(POP);
+				return;
+			}
+
+			int arraySlot = tempBase;
+			if (types.size() > 1) code.store(Kind.REF, arraySlot);
+
+			for (int i = 0; i < types.size(); i++) {
+				Kind kind = kind(types.get(i));
+				if (types.size() > 1) code.load(Kind.REF, arraySlot);
+				code.iconst(i);
+				code.op(AALOAD);
+				unbox(code, kind);
+				push(kind);
+			}
+		}
+
+		private void invoke(String owner, String name, String descriptor, Kind result, int operands) {
+			code.invokeStatic(owner, name, descriptor);
+			for (int i = 0; i < operands; i++) pop();
+			push(result);
+		}
+
+		private void binary(int opcode) {
+			code.op(opcode);
+			pop();
+		}
+
+		private void compileBinary(NumericBinaryOpInsn insn) {
+			switch (insn) {
+			case I32_EQ -> compare(2, IF_ICMPEQ);
+			case I32_NE -> compare(2, IF_ICMPNE);
+			case I32_LT_S -> compare(2, IF_ICMPLT);
+			case I32_GT_S -> compare(2, IF_ICMPGT);
+			case I32_LE_S -> compare(2, IF_ICMPLE);
+			case I32_GE_S -> compare(2, IF_ICMPGE);
+			case I32_LT_U, I32_GT_U, I32_LE_U, I32_GE_U -> {
+				code.invokeStatic("java/lang/Integer", "compareUnsigned", "(II)I");
+				compare(2, switch (insn) {
+				case I32_LT_U -> IFLT;
+				case I32_GT_U -> IFGT;
+				case I32_LE_U -> IFLE;
+				default -> IFGE;
+				});
+			}
+			case I32_ADD -> binary(IADD);
+			case I32_SUB -> binary(ISUB);
+			case I32_MUL -> binary(IMUL);
+			case I32_DIV_S -> binary(IDIV);
+			case I32_DIV_U -> invoke("java/lang/Integer", "divideUnsigned", "(II)I", Kind.INT, 2);
+			case I32_REM_S -> binary(IREM);
+			case I32_REM_U -> invoke("java/lang/Integer", "remainderUnsigned", "(II)I", Kind.INT, 2);
+			case I32_AND -> binary(IAND);
+			case I32_OR -> binary(IOR);
+			case I32_XOR -> binary(IXOR);
+			case I32_SHL -> binary(ISHL);
+			case I32_SHR_S -> binary(ISHR);
+			case I32_SHR_U -> binary(IUSHR);
+			case I32_ROTL -> invoke("java/lang/Integer", "rotateLeft", "(II)I", Kind.INT, 2);
+			case I32_ROTR -> invoke("java/lang/Integer", "rotateRight", "(II)I", Kind.INT, 2);
+			case I64_EQ, I64_NE, I64_LT_S, I64_GT_S, I64_LE_S, I64_GE_S -> {
+				code.op(LCMP);
+				compare(2, switch (insn) {
+				case I64_EQ -> IFEQ;
+				case I64_NE -> IFNE;
+				case I64_LT_S -> IFLT;
+				case I64_GT_S -> IFGT;
+				case I64_LE_S -> IFLE;
+				default -> IFGE;
+				});
+			}
+			case I64_LT_U, I64_GT_U, I64_LE_U, I64_GE_U -> {
+				code.invokeStatic("java/lang/Long", "compareUnsigned", "(JJ)I");
+				compare(2, switch (insn) {
+				case I64_LT_U -> IFLT;
+				case I64_GT_U -> IFGT;
+				case I64_LE_U -> IFLE;
+				default -> IFGE;
+				});
+			}
+			case I64_ADD -> binary(LADD);
+			case I64_SUB -> binary(LSUB);
+			case I64_MUL -> binary(LMUL);
+			case I64_DIV_S -> binary(LDIV);
+			case I64_DIV_U -> invoke("java/lang/Long", "divideUnsigned", "(JJ)J", Kind.LONG, 2);
+			case I64_REM_S -> binary(LREM);
+			case I64_REM_U -> invoke("java/lang/Long", "remainderUnsigned", "(JJ)J", Kind.LONG, 2);
+			case I64_AND -> binary(LAND);
+			case I64_OR -> binary(LOR);
+			case I64_XOR -> binary(LXOR);
+			case I64_SHL, I64_SHR_S, I64_SHR_U -> {
+				code.op(L2I);
+				binary(switch (insn) {
+				case I64_SHL -> LSHL;
+				case I64_SHR_S -> LSHR;
+				default -> LUSHR;
+				});
+			}
+			case I64_ROTL, I64_ROTR -> {
+				code.op(L2I);
+				invoke("java/lang/Long", insn == NumericBinaryOpInsn.I64_ROTL ? "rotateLeft" : "rotateRight",
+					"(JI)J", Kind.LONG, 2);
+			}
+			// fcmpl pushes -1 and fcmpg pushes 1 for NaN, so comparisons with NaN are false
+			case F32_EQ, F32_NE, F32_GT, F32_GE -> {
+				code.op(FCMPL);
+				compare(2, floatBranch(insn));
+			}
+			case F32_LT, F32_LE -> {
+				code.op(FCMPG);
+				compare(2, floatBranch(insn));
+			}
+			case F32_ADD -> binary(FADD);
+			case F32_SUB -> binary(FSUB);
+			case F32_MUL -> binary(FMUL);
+			case F32_DIV -> binary(FDIV);
+			case F32_MIN -> invoke("java/lang/Math", "min", "(FF)F", Kind.FLOAT, 2);
+			case F32_MAX -> invoke("java/lang/Math", "max", "(FF)F", Kind.FLOAT, 2);
+			case F32_COPYSIGN -> invoke(JitRuntime.NAME, "copysign", "(FF)F", Kind.FLOAT, 2);
+			case F64_EQ, F64_NE, F64_GT, F64_GE -> {
+				code.op(DCMPL);
+				compare(2, floatBranch(insn));
+			}
+			case F64_LT, F64_LE -> {
+				code.op(DCMPG);
+				compare(2, floatBranch(insn));
+			}
+			case F64_ADD -> binary(DADD);
+			case F64_SUB -> binary(DSUB);
+			case F64_MUL -> binary(DMUL);
+			case F64_DIV -> binary(DDIV);
+			case F64_MIN -> invoke("java/lang/Math", "min", "(DD)D", Kind.DOUBLE, 2);
+			case F64_MAX -> invoke("java/lang/Math", "max", "(DD)D", Kind.DOUBLE, 2);
+			case F64_COPYSIGN -> invoke(JitRuntime.NAME, "copysign", "(DD)D", Kind.DOUBLE, 2);
+			}
+		}
+
+		private static int floatBranch(NumericBinaryOpInsn insn) {
+			return switch (insn) {
+			case F32_EQ, F64_EQ -> IFEQ;
+			case F32_NE, F64_NE -> IFNE;
+			case F32_LT, F64_LT -> IFLT;
+			case F32_GT, F64_GT -> IFGT;
+			case F32_LE, F64_LE -> IFLE;
+			default -> IFGE;
+			};
+		}
+
+		private void compileUnary(NumericUnaryOpInsn insn) {
+			switch (insn) {
+			case I32_CLZ -> invoke("java/lang/Integer", "numberOfLeadingZeros", "(I)I", Kind.INT, 1);
+			case I32_CTZ -> invoke("java/lang/Integer", "numberOfTrailingZeros", "(I)I", Kind.INT, 1);
+			case I32_POPCNT -> invoke("java/lang/Integer", "bitCount", "(I)I", Kind.INT, 1);
+			case I32_EQZ -> compare(1, IFEQ);
+			case I64_CLZ, I64_CTZ, I64_POPCNT -> {
+				invoke("java/lang/Long", switch (insn) {
+				case I64_CLZ -> "numberOfLeadingZeros";
+				case I64_CTZ -> "numberOfTrailingZeros";
+				default -> "bitCount";
+				}, "(J)I", Kind.LONG, 1);
+				code.op(I2L);
+			}
+			case I64_EQZ -> {
+				code.lconst(0L);
+				code.op(LCMP);
+				compare(1, IFEQ);
+			}
+			case F32_ABS -> invoke("java/lang/Math", "abs", "(F)F", Kind.FLOAT, 1);
+			case F32_NEG -> code.op(FNEG);
+			case F32_SQRT, F32_CEIL, F32_FLOOR -> {
+				code.op(F2D);
+				code.invokeStatic("java/lang/Math", switch (insn) {
+				case F32_SQRT -> "sqrt";
+				case F32_CEIL -> "ceil";
+				default -> "floor";
+				}, "(D)D");
+				code.op(D2F);
+			}
+			case F32_TRUNC -> invoke(JitRuntime.NAME, "trunc", "(F)F", Kind.FLOAT, 1);
+			case F32_NEAREST -> invoke(JitRuntime.NAME, "nearest", "(F)F", Kind.FLOAT, 1);
+			case F64_ABS -> invoke("java/lang/Math", "abs", "(D)D", Kind.DOUBLE, 1);
+			case F64_NEG -> code.op(DNEG);
+			case F64_SQRT -> invoke("java/lang/Math", "sqrt", "(D)D", Kind.DOUBLE, 1);
+			case F64_CEIL -> invoke("java/lang/Math", "ceil", "(D)D", Kind.DOUBLE, 1);
+			case F64_FLOOR -> invoke("java/lang/Math", "floor", "(D)D", Kind.DOUBLE, 1);
+			case F64_TRUNC -> invoke(JitRuntime.NAME, "trunc", "(D)D", Kind.DOUBLE, 1);
+			case F64_NEAREST -> invoke(JitRuntime.NAME, "nearest", "(D)D", Kind.DOUBLE, 1);
+			}
+		}
+
+		private void convert(int opcode, Kind result) {
+			code.op(opcode);
+			pop();
+			push(result);
+		}
+
+		private void compileConvert(NumericConvertInsn insn) {
+			switch (insn) {
+			case I32_WRAP_I64 -> convert(L2I, Kind.INT);
+			case I32_TRUNC_F32_S, I32_TRUNC_F32_U -> convert(F2I, Kind.INT);
+			case I32_TRUNC_F64_S, I32_TRUNC_F64_U -> convert(D2I, Kind.INT);
+			case I64_EXTEND_I32_S -> convert(I2L, Kind.LONG);
+			case I64_EXTEND_I32_U -> invoke("java/lang/Integer", "toUnsignedLong", "(I)J", Kind.LONG, 1);
+			case I64_TRUNC_F32_S, I64_TRUNC_F32_U -> convert(F2L, Kind.LONG);
+			case I64_TRUNC_F64_S, I64_TRUNC_F64_U -> convert(D2L, Kind.LONG);
+			case F32_CONVERT_I32_S -> convert(I2F, Kind.FLOAT);
+			case F32_CONVERT_I32_U -> {
+				code.invokeStatic("java/lang/Integer", "toUnsignedLong", "(I)J");
+				convert(L2F, Kind.FLOAT);
+			}
+			case F32_CONVERT_I64_S -> convert(L2F, Kind.FLOAT);
+			case F32_CONVERT_I64_U -> invoke(JitRuntime.NAME, "unsignedToFloat", "(J)F", Kind.FLOAT, 1);
+			case F32_DEMOTE_F64 -> convert(D2F, Kind.FLOAT);
+			case F64_CONVERT_I32_S -> convert(I2D, Kind.DOUBLE);
+			case F64_CONVERT_I32_U -> {
+				code.invokeStatic("java/lang/Integer", "toUnsignedLong", "(I)J");
+				convert(L2D, Kind.DOUBLE);
+			}
+			case F64_CONVERT_I64_S -> convert(L2D, Kind.DOUBLE);
+			case F64_CONVERT_I64_U -> invoke(JitRuntime.NAME, "unsignedToDouble", "(J)D", Kind.DOUBLE, 1);
+			case F64_PROMOTE_F32 -> convert(F2D, Kind.DOUBLE);
+			case I32_REINTERPRET_F32 -> invoke("java/lang/Float", "floatToRawIntBits", "(F)I", Kind.INT, 1);
+			case F32_REINTERPRET_I32 -> invoke("java/lang/Float", "intBitsToFloat", "(I)F", Kind.FLOAT, 1);
+			case I64_REINTERPRET_F64 -> invoke("java/lang/Double", "doubleToRawLongBits", "(D)J", Kind.LONG, 1);
+			case F64_REINTERPRET_I64 -> invoke("java/lang/Double", "longBitsToDouble", "(J)D", Kind.DOUBLE, 1);
+			}
+		}
+	}
+
+	private static String name(LoadType type) {
+		return switch (type) {
+		case I32 -> "I32";
+		case I64 -> "I64";
+		case F32 -> "F32";
+		case F64 -> "F64";
+		case I32_S8 -> "I32S8";
+		case I32_U8 -> "I32U8";
+		case I32_S16 -> "I32S16";
+		case I32_U16 -> "I32U16";
+		case I64_S8 -> "I64S8";
+		case I64_U8 -> "I64U8";
+		case I64_S16 -> "I64S16";
+		case I64_U16 -> "I64U16";
+		case I64_S32 -> "I64S32";
+		case I64_U32 -> "I64U32";
+		};
+	}
+
+	private static String name(StoreType type) {
+		return type.name().replace("_", "");
+	}
+}
@@ -0,0 +1,80 @@
+package tinywasmr.engine.exec.jit;
+
+import java.util.Collections;
+
+import tinywasmr.engine.exec.StepResult;
+import tinywasmr.engine.exec.TrapException;
+import tinywasmr.engine.exec.epoch.DeadlineExceededException;
+import tinywasmr.engine.exec.frame.ExternalFrame;
+import tinywasmr.engine.exec.frame.Frame;
+import tinywasmr.engine.exec.frame.FunctionFrame;
+import tinywasmr.engine.exec.instance.Function;
+import tinywasmr.engine.exec.trap.ExternalTrap;
+import tinywasmr.engine.exec.value.Value;
+import tinywasmr.engine.exec.vm.Machine;
+import tinywasmr.engine.module.func.extern.HostOnlyFunctionDecl;
+
+/**
+ * <p>
+ * Passed as the last argument to every compiled function, so compiled code can
+ * call functions that are not compiled on the virtual machine that entered the
+ * compiled code.
+ * </p>
+ */
+final class JitContext {
+	static final String NAME = "tinywasmr/engine/exec/jit/JitContext";
+	static final String DESCRIPTOR = "L" + NAME + ";";
+
+	final JitExecutor executor;
+	final Machine vm;
+
+	JitContext(JitExecutor executor, Machine vm) {
+		this.executor = executor;
+		this.vm = vm;
+	}
+
+	Value[] call(Function function, Value[] params) {
+		if (function.declaration() instanceof HostOnlyFunctionDecl host && host.localVariables().isEmpty())
+			return host.onExec(function.instance(), params);
+
+		JitEntry entry = executor.isDeoptimized() ? null : executor.entry(function);
+		if (entry != null) return entry.invoke(params, this);
+		return executor.execute(vm, function, params);
+	}
+
+	/**
+	 * <p>
+	 * Interpret the rest of function from the state at loop header. Just like
+	 * {@link tinywasmr.engine.exec.executor.Executor#execute(Machine, Function, Value[])},
+	 * the frames are pushed on top of an external frame, so the frame that
+	 * entered the compiled code is never stepped.
+	 * </p>
+	 */
+	Value[] resume(LoopSite site, Value[] state) {
+		Function function = site.function();
+		Frame marker = new ExternalFrame();
+		vm.pushFrame(marker);
+		FunctionFrame frame = new FunctionFrame(function, new Value[state.length - site.stack().size()], false,
+			Collections.emptyList(), 0);
+		vm.pushFrame(frame);
+		site.restore(vm, frame, state);
+
+		while (vm.peekFrame() != marker) {
+			StepResult stepResult = executor.step(vm);
+
+			if (stepResult == StepResult.TRAP) {
+				if (vm.getTrap() instanceof ExternalTrap extern) throw new TrapException(extern.throwable());
+				throw new TrapException();
+			}
+
+			if (stepResult == StepResult.SUSPENDED) vm.awaitSuspension();
+			if (stepResult == StepResult.INTERRUPTED) throw new TrapException(new DeadlineExceededException(
+				"Interrupted by epoch while called from compiled code"));
+		}
+
+		Value[] results = new Value[function.type().outputs().types().size()];
+		for (int i = results.length - 1; i >= 0; i--) results[i] = marker.popOprand();
+		vm.popFrame();
+		return results;
+	}
+}
@@ -0,0 +1,26 @@
+package tinywasmr.engine.exec.jit;
+
+import java.io.Serial;
+
+import tinywasmr.engine.exec.value.Value;
+
+/**
+ * <p>
+ * Thrown when the compiled code entered from interpreter leaves to interpreter
+ * at a loop header. The executor that entered the compiled code restores the
+ * interpreter frames from the state.
+ * </p>
+ */
+final class JitDeopt extends RuntimeException {
+	@Serial
+	private static final long serialVersionUID = -3342049582716339218L;
+
+	final transient LoopSite site;
+	final transient Value[] state;
+
+	JitDeopt(LoopSite site, Value[] state) {
+		super(null, null, false, false);
+		this.site = site;
+		this.state = state;
+	}
+}
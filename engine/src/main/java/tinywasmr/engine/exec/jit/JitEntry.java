@@ -0,0 +1,70 @@
+package tinywasmr.engine.exec.jit;
+
+import java.lang.invoke.MethodHandle;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import tinywasmr.engine.exec.TrapException;
+import tinywasmr.engine.exec.instance.Function;
+import tinywasmr.engine.exec.value.Value;
+import tinywasmr.engine.insn.control.LoopInsn;
+
+/**
+ * <p>
+ * The entry point of a compiled function.
+ * </p>
+ */
+final class JitEntry {
+	final Function function;
+	private final MethodHandle boxed;
+	private final MethodHandle loopEntry;
+	private final Map<LoopInsn, LoopSite> loops = new IdentityHashMap<>();
+
+	/**
+	 * @param function  The compiled function.
+	 * @param boxed     The method handle of type
+	 *                  {@code (Value[], JitContext) -> Value[]}.
+	 * @param loopEntry The method handle of type
+	 *                  {@code (Value[], int, JitContext) -> Value[]} for entering
+	 *                  the function at loop header, or {@code null} if the
+	 *                  function can only be entered from the start.
+	 * @param loops     The loop headers that can be entered.
+	 */
+	JitEntry(Function function, MethodHandle boxed, MethodHandle loopEntry, List<LoopSite> loops) {
+		this.function = function;
+		this.boxed = boxed;
+		this.loopEntry = loopEntry;
+		for (LoopSite site : loops) this.loops.put(site.loop(), site);
+	}
+
+	/**
+	 * <p>
+	 * Get the loop header of loop instruction that can be entered, or {@code null}
+	 * if compiled code can't be entered at that loop.
+	 * </p>
+	 */
+	LoopSite loop(LoopInsn loop) {
+		return loopEntry != null ? loops.get(loop) : null;
+	}
+
+	Value[] invoke(Value[] params, JitContext context) {
+		try {
+			return (Value[]) boxed.invokeExact(params, context);
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable t) {
+			throw new TrapException(t);
+		}
+	}
+
+	Value[] invoke(LoopSite site, Value[] state, JitContext context) {
+		try {
+			return (Value[]) loopEntry.invokeExact(state, site.index(), context);
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable t) {
+			throw new TrapException(t);
+		}
+	}
+}
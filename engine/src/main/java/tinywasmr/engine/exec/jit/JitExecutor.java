@@ -0,0 +1,173 @@
+package tinywasmr.engine.exec.jit;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import tinywasmr.engine.exec.StepResult;
+import tinywasmr.engine.exec.TrapException;
+import tinywasmr.engine.exec.executor.DefaultExecutor;
+import tinywasmr.engine.exec.executor.Executor;
+import tinywasmr.engine.exec.frame.FunctionFrame;
+import tinywasmr.engine.exec.instance.Function;
+import tinywasmr.engine.exec.instance.Instance;
+import tinywasmr.engine.exec.value.Value;
+import tinywasmr.engine.exec.vm.Machine;
+import tinywasmr.engine.module.func.ModuleFunctionDecl;
+
+/**
+ * <p>
+ * An executor that compiles module functions to JVM bytecode. All module
+ * functions of an instance are compiled into a hidden class when a function of
+ * that instance is called for the first time.
+ * </p>
+ * <p>
+ * When the current frame is a function frame of a compiled function that is
+ * about to execute its first instruction, the whole call is executed by the
+ * compiled code and counts as a single step. All other frames are stepped by
+ * the fallback executor. Just like {@code FlatExecutor}, this executor is not
+ * suitable for stepping through module functions in debugger, unless it is
+ * deoptimized with {@link #setDeoptimized(boolean)}.
+ * </p>
+ * <p>
+ * The compiled code is kept in {@link FunctionProfile}s of the instance, so it
+ * is released together with the instance. Instances that don't keep profiles
+ * are cached by this executor until they are released with
+ * {@link #release(Instance)}.
+ * </p>
+ */
+public class JitExecutor implements Executor {
+	private final Executor fallback;
+	private final Map<Instance, Map<Function, JitEntry>> compiled = new ConcurrentHashMap<>();
+	private volatile boolean deoptimized = false;
+
+	/**
+	 * <p>
+	 * Create a new JIT executor.
+	 * </p>
+	 *
+	 * @param fallback The executor for stepping frames that can't be executed by
+	 *                 compiled code.
+	 */
+	public JitExecutor(Executor fallback) {
+		this.fallback = fallback;
+	}
+
+	public JitExecutor() {
+		this(new DefaultExecutor());
+	}
+
+	public Executor getFallback() { return fallback; }
+
+	public boolean isDeoptimized() { return deoptimized; }
+
+	/**
+	 * <p>
+	 * Deoptimize or reoptimize this executor. While the executor is deoptimized,
+	 * compiled code is not entered, and running compiled code leaves to
+	 * interpreter at the next loop header. The compiled function that was entered
+	 * by {@link #step(Machine)} is replaced with interpreter frames, so debugger
+	 * can step through the loop from another thread. Compiled functions called
+	 * from other compiled functions are interpreted until they return.
+	 * </p>
+	 */
+	public void setDeoptimized(boolean deoptimized) { this.deoptimized = deoptimized; }
+
+	/**
+	 * <p>
+	 * Check whether the function can be executed by compiled code. The instance of
+	 * the function will be compiled if it wasn't compiled before.
+	 * </p>
+	 */
+	public boolean isCompiled(Function function) {
+		return entry(function) != null;
+	}
+
+	JitEntry entry(Function function) {
+		Instance instance = function.instance();
+		if (!(function.declaration() instanceof ModuleFunctionDecl) || instance == null) return null;
+		FunctionProfile profile = instance.profile(function);
+		if (profile == null) return compiled.computeIfAbsent(instance, JitExecutor::compile).get(function);
+		if (profile.isEagerCompiled()) return profile.eagerEntry();
+
+		Map<Function, JitEntry> entries = compile(instance);
+
+		for (Function other : instance.functions()) {
+			FunctionProfile otherProfile = other.instance() == instance ? instance.profile(other) : null;
+			if (otherProfile != null) otherProfile.eagerCompiled(entries.get(other));
+		}
+
+		return profile.eagerEntry();
+	}
+
+	private static Map<Function, JitEntry> compile(Instance instance) {
+		try {
+			return JitCompiler.compile(instance);
+		} catch (RuntimeException | LinkageError e) {
+			// Generated code was rejected by JVM, leave the instance to interpreter
+			return Map.of();
+		}
+	}
+
+	/**
+	 * <p>
+	 * Release the compiled code of an instance that doesn't keep
+	 * {@link FunctionProfile}s. Code compiled for instances with profiles is
+	 * released together with the instance.
+	 * </p>
+	 */
+	public void release(Instance instance) {
+		compiled.remove(instance);
+	}
+
+	@Override
+	public StepResult step(Machine vm) {
+		if (!deoptimized
+			&& vm.getTrap() == null
+			&& vm.getFuelMeter() == null
+			&& !vm.isDeadlineExpired()
+			&& vm.peekFrame() instanceof FunctionFrame frame
+			&& frame.getStep() == 0
+			&& !frame.isBranched()
+			&& frame.getOperandStack().isEmpty()) {
+			JitEntry entry = entry(frame.getFunction());
+			if (entry != null) return run(vm, frame, entry, null, frame.getLocals());
+		}
+
+		return fallback.step(vm);
+	}
+
+	/**
+	 * <p>
+	 * Execute the function frame at the top of the stack with compiled code.
+	 * </p>
+	 *
+	 * @param vm    The virtual machine.
+	 * @param frame The function frame at the top of the stack, with empty operand
+	 *              stack.
+	 * @param entry The compiled function.
+	 * @param site  The loop header to enter, or {@code null} to enter from the
+	 *              start.
+	 * @param state The parameters, or the state at loop header.
+	 */
+	StepResult run(Machine vm, FunctionFrame frame, JitEntry entry, LoopSite site, Value[] state) {
+		try {
+			JitContext context = new JitContext(this, vm);
+			Value[] results = site != null ? entry.invoke(site, state, context) : entry.invoke(state, context);
+			vm.exitFunction(results);
+			return null;
+		} catch (JitDeopt e) {
+			e.site.restore(vm, frame, e.state);
+			return null;
+		} catch (JitTrap e) {
+			vm.setTrap(e.trap);
+			return StepResult.TRAP;
+		} catch (TrapException e) {
+			// Trapped while executing function on virtual machine
+			if (vm.getTrap() == null) vm.setExternalTrap(e.getCause() != null ? e.getCause() : e);
+			return StepResult.TRAP;
+		} catch (StackOverflowError e) {
+			vm.setExternalTrap(e);
+			return StepResult.TRAP;
+		}
+	}
+}
@@ -0,0 +1,330 @@
+package tinywasmr.engine.exec.jit;
+
+import java.lang.StackWalker.StackFrame;
+
+import tinywasmr.engine.exec.TrapException;
+import tinywasmr.engine.exec.ValidationException;
+import tinywasmr.engine.exec.epoch.DeadlineExceededException;
+import tinywasmr.engine.exec.global.Global;
+import tinywasmr.engine.exec.instance.Function;
+import tinywasmr.engine.exec.memory.Memory;
+import tinywasmr.engine.exec.table.Table;
+import tinywasmr.engine.exec.trap.ModuleTrap;
+import tinywasmr.engine.exec.value.FuncRefValue;
+import tinywasmr.engine.exec.value.NumberF32Value;
+import tinywasmr.engine.exec.value.NumberF64Value;
+import tinywasmr.engine.exec.value.NumberI32Value;
+import tinywasmr.engine.exec.value.NumberI64Value;
+import tinywasmr.engine.exec.value.RefValue;
+import tinywasmr.engine.exec.value.Value;
+import tinywasmr.engine.insn.memory.MemoryArg;
+import tinywasmr.engine.module.memory.DataSegment;
+import tinywasmr.engine.type.FunctionType;
+
+/**
+ * <p>
+ * Static helpers called from compiled code. The parameters are ordered like the
+ * operand stack at the call site (the WebAssembly operands first, followed by
+ * the objects loaded from class data), so the compiler never has to shuffle
+ * the stack before calling them.
+ * </p>
+ */
+final class JitRuntime {
+	static final String NAME = "tinywasmr/engine/exec/jit/JitRuntime";
+
+	private static final Value[] NONE = new Value[0];
+	private static final String COMPILED_CLASS_PREFIX = JitCompiler.CLASS_NAME.replace('/', '.');
+	private static final StackWalker STACK_WALKER = StackWalker.getInstance(StackWalker.Option.SHOW_HIDDEN_FRAMES);
+
+	private JitRuntime() {}
+
+	// Control
+
+	static RuntimeException unreachable() {
+		return new JitTrap(new ModuleTrap());
+	}
+
+	static Value[] call(Value[] args, Function function, JitContext context) {
+		return context.call(function, args);
+	}
+
+	static Value[] callIndirect(Value[] args, int index, Table table, FunctionType type, JitContext context) {
+		RefValue ref = table.get(index);
+		if (!(ref instanceof FuncRefValue funcRef))
+			throw new ValidationException("Reference type mismatch: %s != funcref".formatted(ref.type()));
+		Function function = funcRef.function();
+		if (function == null) throw new NullPointerException("funcref is null");
+		if (!function.type().equals(type)) throw new ValidationException("Function type mismatch: %s != %s (declared)"
+			.formatted(function.type(), type));
+		return context.call(function, args);
+	}
+
+	static boolean deoptimizing(JitContext context) {
+		if (context.executor.isDeoptimized()) return true;
+		if (!context.vm.isDeadlineExpired()) return false;
+		if (isEnteredByExecutor()) return true;
+
+		// The frames of functions called from compiled code can't be restored to
+		// yield to the host, so reaching the deadline traps even if the action is yield
+		throw new TrapException(new DeadlineExceededException(
+			"Epoch reached deadline %d in function called from compiled code"
+				.formatted(context.vm.getEpochDeadline().getDeadline())));
+	}
+
+	/**
+	 * <p>
+	 * Leave compiled code at loop header. If the compiled function was entered by
+	 * the executor, the executor will restore the interpreter frames. Otherwise
+	 * the compiled function was called from another compiled function, which is
+	 * not deoptimized yet, so the rest of the function is interpreted before
+	 * returning to the caller.
+	 * </p>
+	 */
+	static Value[] deoptimize(Value[] state, LoopSite site, JitContext context) {
+		if (isEnteredByExecutor()) throw new JitDeopt(site, state);
+		return context.resume(site, state);
+	}
+
+	private static boolean isEnteredByExecutor() {
+		return STACK_WALKER.walk(frames -> {
+			int compiled = 0;
+
+			for (StackFrame frame : (Iterable<StackFrame>) frames::iterator) {
+				String className = frame.getClassName();
+				String methodName = frame.getMethodName();
+
+				// Only count the functions, not the boxed variants
+				if (className.startsWith(COMPILED_CLASS_PREFIX)) {
+					if (methodName.startsWith("f") || methodName.startsWith("o")) compiled++;
+				} else if (className.equals(JitContext.class.getName())) {
+					return false;
+				} else if (className.equals(JitExecutor.class.getName()) && methodName.equals("run")) {
+					return compiled == 1;
+				}
+			}
+
+			return false;
+		});
+	}
+
+	static Value[] none() {
+		return NONE;
+	}
+
+	static Value[] single(Value value) {
+		return new Value[] { value };
+	}
+
+	// Boxing
+
+	static Value box(int value) {
+		return new NumberI32Value(value);
+	}
+
+	static Value box(long value) {
+		return new NumberI64Value(value);
+	}
+
+	static Value box(float value) {
+		return new NumberF32Value(value);
+	}
+
+	static Value box(double value) {
+		return new NumberF64Value(value);
+	}
+
+	// Variables and parametric
+
+	static void setGlobal(Value value, Global global) {
+		global.set(value);
+	}
+
+	static int select(int a, int b, int condition) {
+		return condition != 0 ? a : b;
+	}
+
+	static long select(long a, long b, int condition) {
+		return condition != 0 ? a : b;
+	}
+
+	static float select(float a, float b, int condition) {
+		return condition != 0 ? a : b;
+	}
+
+	static double select(double a, double b, int condition) {
+		return condition != 0 ? a : b;
+	}
+
+	static Value select(Value a, Value b, int condition) {
+		return condition != 0 ? a : b;
+	}
+
+	static int isNull(Value value) {
+		return ((RefValue) value).get() == null ? 1 : 0;
+	}
+
+	// Memory
+
+	static int loadI32(int address, Memory memory, int offset) {
+		return memory.readI32(MemoryArg.effectiveAddress(address, offset));
+	}
+
+	static long loadI64(int address, Memory memory, int offset) {
+		return memory.readI64(MemoryArg.effectiveAddress(address, offset));
+	}
+
+	static float loadF32(int address, Memory memory, int offset) {
+		return memory.readF32(MemoryArg.effectiveAddress(address, offset));
+	}
+
+	static double loadF64(int address, Memory memory, int offset) {
+		return memory.readF64(MemoryArg.effectiveAddress(address, offset));
+	}
+
+	static int loadI32S8(int address, Memory memory, int offset) {
+		return memory.readS8(MemoryArg.effectiveAddress(address, offset));
+	}
+
+	static int loadI32U8(int address, Memory memory, int offset) {
+		return memory.readU8(MemoryArg.effectiveAddress(address, offset));
+	}
+
+	static int loadI32S16(int address, Memory memory, int offset) {
+		return memory.readS16(MemoryArg.effectiveAddress(address, offset));
+	}
+
+	static int loadI32U16(int address, Memory memory, int offset) {
+		return memory.readU16(MemoryArg.effectiveAddress(address, offset));
+	}
+
+	static long loadI64S8(int address, Memory memory, int offset) {
+		return memory.readS8(MemoryArg.effectiveAddress(address, offset));
+	}
+
+	static long loadI64U8(int address, Memory memory, int offset) {
+		return memory.readU8(MemoryArg.effectiveAddress(address, offset));
+	}
+
+	static long loadI64S16(int address, Memory memory, int offset) {
+		return memory.readS16(MemoryArg.effectiveAddress(address, offset));
+	}
+
+	static long loadI64U16(int address, Memory memory, int offset) {
+		return memory.readU16(MemoryArg.effectiveAddress(address, offset));
+	}
+
+	static long loadI64S32(int address, Memory memory, int offset) {
+		return memory.readS32(MemoryArg.effectiveAddress(address, offset));
+	}
+
+	static long loadI64U32(int address, Memory memory, int offset) {
+		return memory.readU32(MemoryArg.effectiveAddress(address, offset));
+	}
+
+	static void storeI32(int address, int value, Memory memory, int offset) {
+		memory.writeI32(MemoryArg.effectiveAddress(address, offset), value);
+	}
+
+	static void storeI64(int address, long value, Memory memory, int offset) {
+		memory.writeI64(MemoryArg.effectiveAddress(address, offset), value);
+	}
+
+	static void storeF32(int address, float value, Memory memory, int offset) {
+		memory.writeF32(MemoryArg.effectiveAddress(address, offset), value);
+	}
+
+	static void storeF64(int address, double value, Memory memory, int offset) {
+		memory.writeF64(MemoryArg.effectiveAddress(address, offset), value);
+	}
+
+	static void storeI32I8(int address, int value, Memory memory, int offset) {
+		memory.writeI8(MemoryArg.effectiveAddress(address, offset), value);
+	}
+
+	static void storeI32I16(int address, int value, Memory memory, int offset) {
+		memory.writeI16(MemoryArg.effectiveAddress(address, offset), value);
+	}
+
+	static void storeI64I8(int address, long value, Memory memory, int offset) {
+		memory.writeI8(MemoryArg.effectiveAddress(address, offset), (int) value);
+	}
+
+	static void storeI64I16(int address, long value, Memory memory, int offset) {
+		memory.writeI16(MemoryArg.effectiveAddress(address, offset), (int) value);
+	}
+
+	static void storeI64I32(int address, long value, Memory memory, int offset) {
+		memory.writeI32(MemoryArg.effectiveAddress(address, offset), (int) value);
+	}
+
+	static int memoryGrow(int deltaPages, Memory memory) {
+		return memory.grow(deltaPages);
+	}
+
+	static void memoryCopy(int destination, int source, int count, Memory memory) {
+		memory.write(destination, memory.read(source, count));
+	}
+
+	static void memoryFill(int offset, int value, int count, Memory memory) {
+		memory.fill(offset, value, count);
+	}
+
+	static void memoryInit(int memoryOffset, int dataOffset, int count, Memory memory, DataSegment segment) {
+		memory.write(memoryOffset, segment.data(), dataOffset, count);
+	}
+
+	// Tables
+
+	static Value tableGet(int index, Table table) {
+		return table.get(index);
+	}
+
+	static void tableSet(int index, Value value, Table table) {
+		table.set(index, (RefValue) value);
+	}
+
+	static int tableGrow(int delta, Value value, Table table) {
+		return table.grow(delta, (RefValue) value);
+	}
+
+	static void tableFill(int offset, Value value, int count, Table table) {
+		table.fill(offset, (RefValue) value, count);
+	}
+
+	// Numeric
+
+	static float copysign(float a, float b) {
+		return Math.abs(a) * Math.signum(b);
+	}
+
+	static double copysign(double a, double b) {
+		return Math.abs(a) * Math.signum(b);
+	}
+
+	static float trunc(float value) {
+		return (float) (long) value;
+	}
+
+	static double trunc(double value) {
+		return (double) (long) value;
+	}
+
+	static float nearest(float value) {
+		return (float) Math.round(value);
+	}
+
+	static double nearest(double value) {
+		return (double) Math.round(value);
+	}
+
+	static float unsignedToFloat(long value) {
+		if (value >= 0L) return value;
+		// Halve while keeping the lowest bit for correct rounding
+		return ((float) ((value >>> 1) | (value & 1L))) * 2f;
+	}
+
+	static double unsignedToDouble(long value) {
+		if (value >= 0L) return value;
+		return ((double) ((value >>> 1) | (value & 1L))) * 2d;
+	}
+}
@@ -0,0 +1,22 @@
+package tinywasmr.engine.exec.jit;
+
+import java.io.Serial;
+
+import tinywasmr.engine.exec.trap.Trap;
+
+/**
+ * <p>
+ * Thrown when the compiled code traps the virtual machine.
+ * </p>
+ */
+final class JitTrap extends RuntimeException {
+	@Serial
+	private static final long serialVersionUID = 4218236790346925610L;
+
+	final transient Trap trap;
+
+	JitTrap(Trap trap) {
+		super(null, null, false, false);
+		this.trap = trap;
+	}
+}
@@ -0,0 +1,47 @@
+package tinywasmr.engine.exec.jit;
+
+import tinywasmr.engine.type.value.NumberType;
+import tinywasmr.engine.type.value.RefType;
+import tinywasmr.engine.type.value.ValueType;
+
+/**
+ * <p>
+ * The JVM representation of a WebAssembly value type. Reference values are
+ * kept as {@link tinywasmr.engine.exec.value.Value} objects.
+ * </p>
+ */
+enum Kind {
+	INT("I", 1, CodeBuilder.ILOAD, CodeBuilder.ISTORE, CodeBuilder.IRETURN),
+	LONG("J", 2, CodeBuilder.LLOAD, CodeBuilder.LSTORE, CodeBuilder.LRETURN),
+	FLOAT("F", 1, CodeBuilder.FLOAD, CodeBuilder.FSTORE, CodeBuilder.FRETURN),
+	DOUBLE("D", 2, CodeBuilder.DLOAD, CodeBuilder.DSTORE, CodeBuilder.DRETURN),
+	REF("Ltinywasmr/engine/exec/value/Value;", 1, CodeBuilder.ALOAD, CodeBuilder.ASTORE, CodeBuilder.ARETURN);
+
+	final String descriptor;
+	final int size;
+	final int load;
+	final int store;
+	final int ret;
+
+	private Kind(String descriptor, int size, int load, int store, int ret) {
+		this.descriptor = descriptor;
+		this.size = size;
+		this.load = load;
+		this.store = store;
+		this.ret = ret;
+	}
+
+	/**
+	 * <p>
+	 * Get the kind of value type, or {@code null} if the type can't be compiled.
+	 * </p>
+	 */
+	static Kind of(ValueType type) {
+		if (type == NumberType.I32) return INT;
+		if (type == NumberType.I64) return LONG;
+		if (type == NumberType.F32) return FLOAT;
+		if (type == NumberType.F64) return DOUBLE;
+		if (type instanceof RefType) return REF;
+		return null;
+	}
+}
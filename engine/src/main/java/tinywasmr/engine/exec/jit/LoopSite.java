@@ -0,0 +1,117 @@
+package tinywasmr.engine.exec.jit;
+
+import java.util.Arrays;
+import java.util.List;
+
+import tinywasmr.engine.exec.frame.BlockFrame;
+import tinywasmr.engine.exec.frame.Frame;
+import tinywasmr.engine.exec.frame.FunctionFrame;
+import tinywasmr.engine.exec.frame.IfFrame;
+import tinywasmr.engine.exec.frame.LoopFrame;
+import tinywasmr.engine.exec.instance.Function;
+import tinywasmr.engine.exec.value.Value;
+import tinywasmr.engine.exec.vm.Machine;
+import tinywasmr.engine.insn.Instruction;
+import tinywasmr.engine.insn.control.BlockInsn;
+import tinywasmr.engine.insn.control.IfInsn;
+import tinywasmr.engine.insn.control.LoopInsn;
+
+/**
+ * <p>
+ * The header of a loop in compiled function, where the execution can be
+ * transferred between interpreter and compiled code. The state at loop header
+ * is an array of all locals followed by the values on operand stack, which are
+ * the values on operand stacks of all frames enclosing the loop.
+ * </p>
+ *
+ * @param function The function containing the loop.
+ * @param index    The index of loop in the function, in the order of appearance.
+ * @param path     The control instructions enclosing the loop header, from the
+ *                 outermost one to the loop itself.
+ * @param stack    The kinds of values on operand stack at loop header.
+ */
+record LoopSite(Function function, int index, List<Enclosing> path, List<Kind> stack) {
+	/**
+	 * @param insn       The block, loop or if instruction.
+	 * @param position   The position of instruction in the enclosing instruction
+	 *                   list.
+	 * @param trueBranch Whether the loop header is in the true path, if the
+	 *                   instruction is an if instruction.
+	 * @param height     The number of values on operand stack when entering the
+	 *                   instruction.
+	 */
+	record Enclosing(Instruction insn, int position, boolean trueBranch, int height) {
+	}
+
+	LoopInsn loop() {
+		return (LoopInsn) path.get(path.size() - 1).insn;
+	}
+
+	/**
+	 * <p>
+	 * Collect the state from interpreter frames. The function frame must be
+	 * directly followed by the frames of enclosing instructions, and the loop frame
+	 * must be at the top of the stack.
+	 * </p>
+	 *
+	 * @return The state, or {@code null} if the frames don't match this site.
+	 */
+	Value[] collect(List<Frame> frames, int functionFrameIndex) {
+		if (frames.size() - functionFrameIndex - 1 != path.size()) return null;
+		FunctionFrame frame = (FunctionFrame) frames.get(functionFrameIndex);
+		Value[] locals = frame.getLocals();
+		Value[] state = new Value[locals.length + stack.size()];
+		System.arraycopy(locals, 0, state, 0, locals.length);
+		int size = locals.length;
+
+		for (int i = functionFrameIndex; i < frames.size(); i++) {
+			Frame current = frames.get(i);
+
+			if (i > functionFrameIndex) {
+				Enclosing enclosing = path.get(i - functionFrameIndex - 1);
+				Instruction insn = current instanceof BlockFrame block ? block.getBlock()
+					: current instanceof LoopFrame loop ? loop.getBlock()
+					: current instanceof IfFrame ifFrame && ifFrame.isTrueBranch() == enclosing.trueBranch
+						? ifFrame.getBlock()
+					: null;
+				if (insn != enclosing.insn) return null;
+			}
+
+			for (Value value : current.getOperandStack()) {
+				if (size == state.length) return null;
+				state[size++] = value;
+			}
+		}
+
+		return size == state.length ? state : null;
+	}
+
+	/**
+	 * <p>
+	 * Restore the interpreter frames from the state. The function frame must be at
+	 * the top of the stack with empty operand stack. The frames of enclosing
+	 * instructions will be pushed on top of it, so the next step executes the
+	 * first instruction of the loop.
+	 * </p>
+	 */
+	void restore(Machine vm, FunctionFrame frame, Value[] state) {
+		int localCount = state.length - stack.size();
+		for (int i = 0; i < localCount; i++) frame.setLocal(i, state[i]);
+		List<Value> values = Arrays.asList(state).subList(localCount, state.length);
+		frame.setStep(path.get(0).position + 1);
+		for (Value value : values.subList(0, path.get(0).height)) frame.pushOperand(value);
+
+		for (int i = 0; i < path.size(); i++) {
+			Enclosing enclosing = path.get(i);
+			boolean last = i == path.size() - 1;
+			List<Value> operands = values.subList(enclosing.height, last ? values.size() : path.get(i + 1).height);
+			int step = last ? 0 : path.get(i + 1).position + 1;
+
+			if (enclosing.insn instanceof BlockInsn block) vm.pushFrame(new BlockFrame(block, operands, step));
+			else if (enclosing.insn instanceof LoopInsn loop) vm.pushFrame(new LoopFrame(loop, operands, step));
+			else if (enclosing.insn instanceof IfInsn ifInsn)
+				vm.pushFrame(new IfFrame(ifInsn, enclosing.trueBranch, operands, step));
+			else throw new IllegalStateException("Not a control instruction: %s".formatted(enclosing.insn));
+		}
+	}
+}
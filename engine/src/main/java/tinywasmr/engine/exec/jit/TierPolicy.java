@@ -0,0 +1,29 @@
+package tinywasmr.engine.exec.jit;
+
+/**
+ * <p>
+ * Configure when {@link TieredExecutor} compiles functions and how many
+ * compilations can be pending at the same time.
+ * </p>
+ *
+ * @param callThreshold     The number of calls in interpreter before the
+ *                          function is compiled.
+ * @param backEdgeThreshold The number of loop back-edges taken in interpreter
+ *                          before the function is compiled.
+ * @param compilerThreads   The number of background compiler threads. Use
+ *                          {@code 0} to compile on the thread that executes the
+ *                          hot function.
+ * @param queueCapacity     The maximum number of functions waiting to be
+ *                          compiled. When the queue is full, the thread that
+ *                          executes the hot function compiles it by itself.
+ */
+public record TierPolicy(int callThreshold, int backEdgeThreshold, int compilerThreads, int queueCapacity) {
+	public static final TierPolicy DEFAULT = new TierPolicy(1000, 10000, 1, 64);
+
+	public TierPolicy {
+		if (callThreshold < 1) throw new IllegalArgumentException("Call threshold must be at least 1");
+		if (backEdgeThreshold < 1) throw new IllegalArgumentException("Back-edge threshold must be at least 1");
+		if (compilerThreads < 0) throw new IllegalArgumentException("Number of compiler threads can't be negative");
+		if (queueCapacity < 1) throw new IllegalArgumentException("Queue capacity must be at least 1");
+	}
+}
@@ -0,0 +1,198 @@
+package tinywasmr.engine.exec.jit;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import tinywasmr.engine.exec.StepResult;
+import tinywasmr.engine.exec.executor.DefaultExecutor;
+import tinywasmr.engine.exec.executor.Executor;
+import tinywasmr.engine.exec.frame.Frame;
+import tinywasmr.engine.exec.frame.FunctionFrame;
+import tinywasmr.engine.exec.frame.LoopFrame;
+import tinywasmr.engine.exec.instance.Function;
+import tinywasmr.engine.exec.value.Value;
+import tinywasmr.engine.exec.vm.Machine;
+
+/**
+ * <p>
+ * An executor that interprets functions first and compiles them once they are
+ * hot. Calls and loop back-edges of every module function are counted while it
+ * is executed by the fallback executor. When one of the counters reaches the
+ * threshold in {@link TierPolicy}, the function is compiled on a background
+ * thread and future calls to the function are executed by the compiled code.
+ * The call that made the function hot is moved to compiled code at its next
+ * loop back-edge (on-stack replacement), so a long-running loop doesn't have
+ * to wait for the next call.
+ * </p>
+ * <p>
+ * Unlike {@link JitExecutor}, functions are compiled one by one, so calls
+ * between compiled functions are executed through {@link JitContext}. The
+ * profiles and the compiled code are stored in the instance and can be
+ * inspected with {@link tinywasmr.engine.exec.instance.Instance#profile(Function)}.
+ * Instances that don't provide profiles are always interpreted.
+ * </p>
+ */
+public class TieredExecutor extends JitExecutor implements AutoCloseable {
+	private static final AtomicInteger THREAD_COUNTER = new AtomicInteger(0);
+
+	private final TierPolicy policy;
+	private final ThreadPoolExecutor compiler;
+
+	/**
+	 * <p>
+	 * Create a new tiered executor.
+	 * </p>
+	 *
+	 * @param fallback The executor for interpreting functions.
+	 * @param policy   The thresholds and compile queue configuration.
+	 */
+	public TieredExecutor(Executor fallback, TierPolicy policy) {
+		super(fallback);
+		this.policy = policy;
+
+		if (policy.compilerThreads() > 0) {
+			compiler = new ThreadPoolExecutor(policy.compilerThreads(), policy.compilerThreads(),
+				0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(policy.queueCapacity()),
+				task -> {
+					Thread thread = new Thread(task, "tinywasmr-compiler-" + THREAD_COUNTER.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				},
+				// Backpressure: the interpreting thread compiles the function when queue is full
+				new ThreadPoolExecutor.CallerRunsPolicy());
+		} else {
+			compiler = null;
+		}
+	}
+
+	public TieredExecutor(TierPolicy policy) {
+		this(new DefaultExecutor(), policy);
+	}
+
+	public TieredExecutor() {
+		this(TierPolicy.DEFAULT);
+	}
+
+	public TierPolicy getPolicy() { return policy; }
+
+	/**
+	 * <p>
+	 * Check whether the function is compiled. Unlike
+	 * {@link JitExecutor#isCompiled(Function)}, this never compiles the function.
+	 * </p>
+	 */
+	@Override
+	public boolean isCompiled(Function function) {
+		return entry(function) != null;
+	}
+
+	@Override
+	JitEntry entry(Function function) {
+		FunctionProfile profile = profile(function);
+		return profile != null ? profile.entry() : null;
+	}
+
+	private static FunctionProfile profile(Function function) {
+		return function.instance() != null ? function.instance().profile(function) : null;
+	}
+
+	@Override
+	public StepResult step(Machine vm) {
+		if (!isDeoptimized()
+			&& vm.getTrap() == null
+			&& vm.getFuelMeter() == null
+			&& !vm.isDeadlineExpired()
+			&& vm.peekFrame() instanceof FunctionFrame frame
+			&& frame.getStep() == 0
+			&& !frame.isBranched()
+			&& frame.getOperandStack().isEmpty()) {
+			FunctionProfile profile = profile(frame.getFunction());
+
+			if (profile != null) {
+				if (profile.getTier() == FunctionTier.INTERPRETED
+					&& profile.countCall() >= policy.callThreshold())
+					submit(profile);
+
+				JitEntry entry = profile.entry();
+				if (entry != null) return run(vm, frame, entry, null, frame.getLocals());
+			}
+		}
+
+		int depth = vm.getFrameStack().size();
+		StepResult result = getFallback().step(vm);
+
+		// Branching to a loop resets the loop frame without pushing a new frame. A
+		// loop entered right after leaving a block is counted as well, which only
+		// makes the function compiled slightly earlier.
+		if (result == null
+			&& vm.peekFrame() instanceof LoopFrame loop
+			&& loop.getStep() == 0
+			&& vm.getFrameStack().size() <= depth) {
+			List<Frame> frames = vm.getFrameStack();
+			int index = frames.size() - 1;
+			while (index >= 0 && !(frames.get(index) instanceof FunctionFrame)) index--;
+			FunctionFrame frame = index >= 0 ? (FunctionFrame) frames.get(index) : null;
+			FunctionProfile profile = frame != null ? profile(frame.getFunction()) : null;
+
+			if (profile != null) {
+				if (profile.getTier() == FunctionTier.INTERPRETED
+					&& profile.countBackEdge() >= policy.backEdgeThreshold())
+					submit(profile);
+
+				JitEntry entry = profile.entry();
+				if (entry != null && !isDeoptimized()) return enterLoop(vm, frame, index, entry, loop);
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * <p>
+	 * On-stack replacement: move the state of interpreter frames at loop header to
+	 * compiled code, and continue executing the function with compiled code.
+	 * </p>
+	 */
+	private StepResult enterLoop(Machine vm, FunctionFrame frame, int index, JitEntry entry, LoopFrame loop) {
+		LoopSite site = entry.loop(loop.getBlock());
+		Value[] state = site != null ? site.collect(vm.getFrameStack(), index) : null;
+		if (state == null) return null;
+		while (vm.peekFrame() != frame) vm.popFrame();
+		frame.getOperandStack().clear();
+		return run(vm, frame, entry, site, state);
+	}
+
+	private void submit(FunctionProfile profile) {
+		if (!profile.queue()) return;
+		if (compiler == null) compile(profile);
+		else if (compiler.isShutdown()) profile.failed();
+		else compiler.execute(() -> compile(profile));
+	}
+
+	private static void compile(FunctionProfile profile) {
+		Function function = profile.getFunction();
+
+		try {
+			JitEntry entry = JitCompiler.compile(function.instance(), List.of(function), true).get(function);
+			if (entry != null) profile.compiled(entry);
+			else profile.failed();
+		} catch (RuntimeException | LinkageError e) {
+			profile.failed();
+		}
+	}
+
+	/**
+	 * <p>
+	 * Stop the background compiler threads. Functions that are hot after closing
+	 * will stay in interpreter.
+	 * </p>
+	 */
+	@Override
+	public void close() {
+		if (compiler != null) compiler.shutdown();
+	}
+}
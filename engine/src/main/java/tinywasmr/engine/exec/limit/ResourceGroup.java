@@ -0,0 +1,67 @@
+package tinywasmr.engine.exec.limit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * Quotas that are shared by a group of instances, like all instances of a
+ * tenant. The usage is counted by {@link ResourceLimits} that belong to this
+ * group, and given back when they are released. This class is thread-safe.
+ * </p>
+ */
+public class ResourceGroup {
+	private final long maxMemoryPages;
+	private final long maxTableElements;
+	private final AtomicLong memoryPages = new AtomicLong(0);
+	private final AtomicLong tableElements = new AtomicLong(0);
+
+	/**
+	 * <p>
+	 * Create a new group.
+	 * </p>
+	 *
+	 * @param maxMemoryPages   The maximum number of memory pages of all instances
+	 *                         in this group.
+	 * @param maxTableElements The maximum number of table elements of all
+	 *                         instances in this group.
+	 */
+	public ResourceGroup(long maxMemoryPages, long maxTableElements) {
+		this.maxMemoryPages = maxMemoryPages;
+		this.maxTableElements = maxTableElements;
+	}
+
+	public long getMaxMemoryPages() { return maxMemoryPages; }
+
+	public long getMaxTableElements() { return maxTableElements; }
+
+	public long getMemoryPages() { return memoryPages.get(); }
+
+	public long getTableElements() { return tableElements.get(); }
+
+	boolean reserveMemory(long pages) {
+		return reserve(memoryPages, maxMemoryPages, pages);
+	}
+
+	void releaseMemory(long pages) {
+		memoryPages.addAndGet(-pages);
+	}
+
+	boolean reserveTable(long elements) {
+		return reserve(tableElements, maxTableElements, elements);
+	}
+
+	void releaseTable(long elements) {
+		tableElements.addAndGet(-elements);
+	}
+
+	static boolean reserve(AtomicLong used, long max, long amount) {
+		long current;
+
+		do {
+			current = used.get();
+			if (amount > max - current) return false;
+		} while (!used.compareAndSet(current, current + amount));
+
+		return true;
+	}
+}
@@ -0,0 +1,15 @@
+package tinywasmr.engine.exec.limit;
+
+/**
+ * <p>
+ * The resources requested by guest exceeded the limit from
+ * {@link ResourceLimiter}.
+ * </p>
+ */
+public class ResourceLimitException extends RuntimeException {
+	private static final long serialVersionUID = -3346825198720443810L;
+
+	public ResourceLimitException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,114 @@
+package tinywasmr.engine.exec.limit;
+
+/**
+ * <p>
+ * Decide whether the guest can use more resources. The memories and tables
+ * consult the limiter before growing, and the machine consults it before
+ * pushing function frames and growing the value stack. Growing memories and
+ * tables that is rejected by the limiter returns {@code -1} like when the
+ * maximum size is reached, while exceeding the call depth or stack slots traps
+ * the machine with {@link ResourceLimitException}.
+ * </p>
+ *
+ * @see ResourceLimits
+ */
+public interface ResourceLimiter {
+	/**
+	 * <p>
+	 * The limiter that allows everything.
+	 * </p>
+	 */
+	static final ResourceLimiter UNLIMITED = new ResourceLimiter() {};
+
+	/**
+	 * <p>
+	 * Called before growing a memory. If this method returns {@code true}, the
+	 * pages are accounted as used, and either the memory is grown or
+	 * {@link #memoryGrowFailed(int, int)} is called.
+	 * </p>
+	 *
+	 * @param currentPages The number of pages of the memory.
+	 * @param desiredPages The number of pages after growing.
+	 * @return {@code true} to allow growing.
+	 */
+	default boolean memoryGrowing(int currentPages, int desiredPages) {
+		return true;
+	}
+
+	/**
+	 * <p>
+	 * Called when the memory failed to grow after it is allowed by
+	 * {@link #memoryGrowing(int, int)}, like when the host can't allocate more
+	 * memory.
+	 * </p>
+	 */
+	default void memoryGrowFailed(int currentPages, int desiredPages) {}
+
+	/**
+	 * <p>
+	 * Called before growing a table.
+	 * </p>
+	 *
+	 * @param currentSize The number of elements of the table.
+	 * @param desiredSize The number of elements after growing.
+	 * @return {@code true} to allow growing.
+	 */
+	default boolean tableGrowing(int currentSize, int desiredSize) {
+		return true;
+	}
+
+	/**
+	 * <p>
+	 * Called when the table failed to grow after it is allowed by
+	 * {@link #tableGrowing(int, int)}.
+	 * </p>
+	 */
+	default void tableGrowFailed(int currentSize, int desiredSize) {}
+
+	/**
+	 * <p>
+	 * Count the pages of a new memory, like the initial pages of a memory declared
+	 * in module or the pages copied by forking a memory. Use
+	 * {@link #memoryGrowFailed(int, int)} with {@code 0} as current pages if the
+	 * memory can't be created after this.
+	 * </p>
+	 *
+	 * @throws ResourceLimitException if the limiter rejects the pages.
+	 */
+	default void reserveMemory(int pages) {
+		if (!memoryGrowing(0, pages))
+			throw new ResourceLimitException("Memory with %d pages exceeded the limit".formatted(pages));
+	}
+
+	/**
+	 * <p>
+	 * Count the elements of a new table, like the initial elements of a table
+	 * declared in module or the elements copied by forking a table.
+	 * </p>
+	 *
+	 * @throws ResourceLimitException if the limiter rejects the elements.
+	 */
+	default void reserveTable(int size) {
+		if (!tableGrowing(0, size))
+			throw new ResourceLimitException("Table with %d elements exceeded the limit".formatted(size));
+	}
+
+	/**
+	 * <p>
+	 * Get the maximum number of function frames in a machine.
+	 * </p>
+	 */
+	default int maxCallDepth() {
+		return Integer.MAX_VALUE;
+	}
+
+	/**
+	 * <p>
+	 * Get the maximum number of slots of the value stack, which stores the locals
+	 * and operands of all frames in a machine.
+	 * </p>
+	 */
+	default int maxStackSlots() {
+		return Integer.MAX_VALUE;
+	}
+}
@@ -0,0 +1,146 @@
+package tinywasmr.engine.exec.limit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * Limiter with quotas for an instance or a machine, and optionally the quotas
+ * of the {@link ResourceGroup} it belongs to. Memory pages and table elements
+ * are counted for all memories and tables that use this limiter, so one
+ * instance of this class should be used for each instance. Use
+ * {@link #release()} when the instance is no longer used to give the resources
+ * back to the group.
+ * </p>
+ */
+public class ResourceLimits implements ResourceLimiter {
+	private final long maxMemoryPages;
+	private final long maxTableElements;
+	private final int maxCallDepth;
+	private final int maxStackSlots;
+	private final ResourceGroup group;
+	private final AtomicLong memoryPages = new AtomicLong(0);
+	private final AtomicLong tableElements = new AtomicLong(0);
+
+	private ResourceLimits(Builder builder) {
+		this.maxMemoryPages = builder.maxMemoryPages;
+		this.maxTableElements = builder.maxTableElements;
+		this.maxCallDepth = builder.maxCallDepth;
+		this.maxStackSlots = builder.maxStackSlots;
+		this.group = builder.group;
+	}
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	public ResourceGroup getGroup() { return group; }
+
+	public long getMemoryPages() { return memoryPages.get(); }
+
+	public long getTableElements() { return tableElements.get(); }
+
+	@Override
+	public boolean memoryGrowing(int currentPages, int desiredPages) {
+		long delta = (long) desiredPages - currentPages;
+		if (!ResourceGroup.reserve(memoryPages, maxMemoryPages, delta)) return false;
+
+		if (group != null && !group.reserveMemory(delta)) {
+			memoryPages.addAndGet(-delta);
+			return false;
+		}
+
+		return true;
+	}
+
+	@Override
+	public void memoryGrowFailed(int currentPages, int desiredPages) {
+		long delta = (long) desiredPages - currentPages;
+		memoryPages.addAndGet(-delta);
+		if (group != null) group.releaseMemory(delta);
+	}
+
+	@Override
+	public boolean tableGrowing(int currentSize, int desiredSize) {
+		long delta = (long) desiredSize - currentSize;
+		if (!ResourceGroup.reserve(tableElements, maxTableElements, delta)) return false;
+
+		if (group != null && !group.reserveTable(delta)) {
+			tableElements.addAndGet(-delta);
+			return false;
+		}
+
+		return true;
+	}
+
+	@Override
+	public void tableGrowFailed(int currentSize, int desiredSize) {
+		long delta = (long) desiredSize - currentSize;
+		tableElements.addAndGet(-delta);
+		if (group != null) group.releaseTable(delta);
+	}
+
+	@Override
+	public int maxCallDepth() {
+		return maxCallDepth;
+	}
+
+	@Override
+	public int maxStackSlots() {
+		return maxStackSlots;
+	}
+
+	/**
+	 * <p>
+	 * Give all memory pages and table elements counted by this limiter back to
+	 * the group.
+	 * </p>
+	 */
+	public void release() {
+		long pages = memoryPages.getAndSet(0);
+		long elements = tableElements.getAndSet(0);
+
+		if (group != null) {
+			group.releaseMemory(pages);
+			group.releaseTable(elements);
+		}
+	}
+
+	public static class Builder {
+		private long maxMemoryPages = Long.MAX_VALUE;
+		private long maxTableElements = Long.MAX_VALUE;
+		private int maxCallDepth = Integer.MAX_VALUE;
+		private int maxStackSlots = Integer.MAX_VALUE;
+		private ResourceGroup group = null;
+
+		Builder() {}
+
+		public Builder memoryPages(long max) {
+			maxMemoryPages = max;
+			return this;
+		}
+
+		public Builder tableElements(long max) {
+			maxTableElements = max;
+			return this;
+		}
+
+		public Builder callDepth(int max) {
+			maxCallDepth = max;
+			return this;
+		}
+
+		public Builder stackSlots(int max) {
+			maxStackSlots = max;
+			return this;
+		}
+
+		public Builder group(ResourceGroup group) {
+			this.group = group;
+			return this;
+		}
+
+		public ResourceLimits build() {
+			return new ResourceLimits(this);
+		}
+	}
+}
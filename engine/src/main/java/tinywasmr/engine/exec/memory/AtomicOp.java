@@ -0,0 +1,59 @@
+package tinywasmr.engine.exec.memory;
+
+/**
+ * <p>
+ * The operations of atomic read-modify-write instructions from threads
+ * proposal.
+ * </p>
+ *
+ * @see Memory#atomicRmw(long, int, AtomicOp, long)
+ */
+public enum AtomicOp {
+	ADD {
+		@Override
+		public long apply(long value, long operand) {
+			return value + operand;
+		}
+	},
+	SUB {
+		@Override
+		public long apply(long value, long operand) {
+			return value - operand;
+		}
+	},
+	AND {
+		@Override
+		public long apply(long value, long operand) {
+			return value & operand;
+		}
+	},
+	OR {
+		@Override
+		public long apply(long value, long operand) {
+			return value | operand;
+		}
+	},
+	XOR {
+		@Override
+		public long apply(long value, long operand) {
+			return value ^ operand;
+		}
+	},
+	XCHG {
+		@Override
+		public long apply(long value, long operand) {
+			return operand;
+		}
+	};
+
+	/**
+	 * <p>
+	 * Compute the value to be written back to memory.
+	 * </p>
+	 *
+	 * @param value   The value in memory.
+	 * @param operand The operand of instruction.
+	 * @return The new value, which may have more bits than the access size.
+	 */
+	public abstract long apply(long value, long operand);
+}
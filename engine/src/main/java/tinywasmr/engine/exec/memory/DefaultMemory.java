@@ -2,11 +2,13 @@ package tinywasmr.engine.exec.memory;
 
 import java.util.Arrays;
 
+import tinywasmr.engine.exec.limit.ResourceLimiter;
 import tinywasmr.engine.module.memory.MemoryDecl;
 
 public class DefaultMemory implements Memory {
 	private MemoryDecl decl;
 	private byte[][] pages;
+	private ResourceLimiter limiter = ResourceLimiter.UNLIMITED;
 
 	public DefaultMemory(MemoryDecl decl, int pages) {
 		this.decl = decl;
@@ -33,15 +35,31 @@ public class DefaultMemory implements Memory {
 
 	public byte[][] getPages() { return pages; }
 
+	@Override
+	public ResourceLimiter getLimiter() { return limiter; }
+
+	@Override
+	public void setLimiter(ResourceLimiter limiter) { this.limiter = limiter; }
+
 	@Override
 	public int grow(int deltaPages) {
 		if (deltaPages == 0) return pages.length;
 		if (deltaPages < 0) throw new IllegalArgumentException("Delta is negative");
 		int prev = pages.length;
-		byte[][] newPages = new byte[deltaPages][PAGE_SIZE];
-		byte[][] newRef = new byte[pages.length + deltaPages][];
-		System.arraycopy(pages, 0, newRef, 0, prev);
-		System.arraycopy(newPages, 0, newRef, prev, deltaPages);
+		if (deltaPages > Integer.MAX_VALUE - prev) return -1;
+		if (!limiter.memoryGrowing(prev, prev + deltaPages)) return -1;
+		byte[][] newRef;
+
+		try {
+			byte[][] newPages = new byte[deltaPages][PAGE_SIZE];
+			newRef = new byte[pages.length + deltaPages][];
+			System.arraycopy(pages, 0, newRef, 0, prev);
+			System.arraycopy(newPages, 0, newRef, prev, deltaPages);
+		} catch (OutOfMemoryError e) {
+			limiter.memoryGrowFailed(prev, prev + deltaPages);
+			return -1;
+		}
+
 		pages = newRef;
 		return prev;
 	}
@@ -0,0 +1,459 @@
+package tinywasmr.engine.exec.memory;
+
+import java.util.Arrays;
+
+import tinywasmr.engine.exec.limit.ResourceLimiter;
+import tinywasmr.engine.module.memory.MemoryDecl;
+
+/**
+ * <p>
+ * Memory that records which blocks of {@link #BLOCK_SIZE} bytes are written
+ * since the last {@link #resetDirty()}. All writes are forwarded to the
+ * delegate memory, which includes stores, {@code memory.copy},
+ * {@code memory.fill} and {@code memory.init} from every execution tier, as
+ * well as writes from the host through this memory. Writes made directly to the
+ * delegate (or to its backing array) are not recorded; use
+ * {@link #markDirty(long, long)} for those.
+ * </p>
+ * <p>
+ * The dirty blocks are kept in a bitmap with 1 bit per block, which costs 2
+ * bytes per page. Incremental checkpoints, memory diffs and host-side caches can
+ * use {@link #nextDirtyBlock(long)} or {@link #nextDirtyPage(int)} to visit the
+ * changed regions instead of scanning the whole memory. Growing the memory is
+ * not a write, so the new pages are clean.
+ * </p>
+ * <p>
+ * Tracking is opt-in: wrap the memory with this class or create the memories
+ * with {@link MemoryFactory#withDirtyTracking()}. Memories that are not wrapped
+ * don't pay for tracking. The bitmap is not thread-safe, so the blocks written
+ * by several threads at the same time to a {@link SharedMemory} may be missed.
+ * </p>
+ */
+public class DirtyTrackingMemory implements Memory {
+	/**
+	 * <p>
+	 * The number of bytes per block. This is the granularity of dirty tracking.
+	 * </p>
+	 */
+	public static final int BLOCK_SIZE = 4096;
+
+	/**
+	 * <p>
+	 * The number of blocks per page.
+	 * </p>
+	 */
+	public static final int BLOCKS_PER_PAGE = PAGE_SIZE / BLOCK_SIZE;
+
+	private static final int BLOCK_SHIFT = 12;
+	private static final int PAGES_PER_WORD = Long.SIZE / BLOCKS_PER_PAGE;
+	private static final long PAGE_BITS = (1L << BLOCKS_PER_PAGE) - 1;
+
+	private Memory delegate;
+	private long[] dirty;
+
+	public DirtyTrackingMemory(Memory delegate) {
+		this.delegate = delegate;
+		this.dirty = new long[words(delegate.pageCount())];
+	}
+
+	private static int words(int pages) {
+		return (int) (((long) pages + PAGES_PER_WORD - 1) / PAGES_PER_WORD);
+	}
+
+	/**
+	 * <p>
+	 * Get the memory that this memory forwards to.
+	 * </p>
+	 */
+	public Memory getDelegate() { return delegate; }
+
+	/**
+	 * <p>
+	 * Mark the range of memory as dirty. Use this after writing to the delegate
+	 * memory directly.
+	 * </p>
+	 *
+	 * @param memoryOffset The offset in this memory instance, in bytes.
+	 * @param count        The number of bytes that was written.
+	 */
+	public void markDirty(long memoryOffset, long count) {
+		if (count <= 0) return;
+		long first = memoryOffset >>> BLOCK_SHIFT;
+		long last = (memoryOffset + count - 1) >>> BLOCK_SHIFT;
+		int firstWord = (int) (first >>> 6);
+		int lastWord = (int) (last >>> 6);
+
+		// Shifting long by long only uses the lowest 6 bits of the distance
+		if (firstWord == lastWord) {
+			dirty[firstWord] |= (-1L << first) & (-1L >>> (63 - (last & 63)));
+			return;
+		}
+
+		dirty[firstWord] |= -1L << first;
+		Arrays.fill(dirty, firstWord + 1, lastWord, -1L);
+		dirty[lastWord] |= -1L >>> (63 - (last & 63));
+	}
+
+	// Typed writers touch at most 2 blocks
+	private void mark(long memoryOffset, int size) {
+		long first = memoryOffset >>> BLOCK_SHIFT;
+		long last = (memoryOffset + size - 1) >>> BLOCK_SHIFT;
+		dirty[(int) (first >>> 6)] |= 1L << first;
+		if (last != first) dirty[(int) (last >>> 6)] |= 1L << last;
+	}
+
+	/**
+	 * <p>
+	 * Check whether the block is written since the last reset.
+	 * </p>
+	 *
+	 * @param block The index of block, which is the memory offset divided by
+	 *              {@link #BLOCK_SIZE}.
+	 */
+	public boolean isBlockDirty(long block) {
+		return (dirty[(int) (block >>> 6)] & (1L << block)) != 0;
+	}
+
+	/**
+	 * <p>
+	 * Check whether any block in the page is written since the last reset.
+	 * </p>
+	 */
+	public boolean isPageDirty(int page) {
+		return (dirty[page / PAGES_PER_WORD] >>> (page % PAGES_PER_WORD * BLOCKS_PER_PAGE) & PAGE_BITS) != 0;
+	}
+
+	/**
+	 * <p>
+	 * Find the first dirty block at or after given block.
+	 * </p>
+	 *
+	 * @return The index of dirty block, or {@code -1} if there are no more dirty
+	 *         blocks.
+	 */
+	public long nextDirtyBlock(long fromBlock) {
+		if (fromBlock < 0) throw new IndexOutOfBoundsException("Negative block: %d".formatted(fromBlock));
+		int word = (int) (fromBlock >>> 6);
+		if (word >= dirty.length) return -1;
+		long bits = dirty[word] & (-1L << fromBlock);
+
+		while (bits == 0) {
+			if (++word == dirty.length) return -1;
+			bits = dirty[word];
+		}
+
+		return (long) word * Long.SIZE + Long.numberOfTrailingZeros(bits);
+	}
+
+	/**
+	 * <p>
+	 * Find the first dirty page at or after given page.
+	 * </p>
+	 *
+	 * @return The index of dirty page, or {@code -1} if there are no more dirty
+	 *         pages.
+	 */
+	public int nextDirtyPage(int fromPage) {
+		long block = nextDirtyBlock((long) fromPage * BLOCKS_PER_PAGE);
+		return block == -1 ? -1 : (int) (block / BLOCKS_PER_PAGE);
+	}
+
+	/**
+	 * <p>
+	 * Count the number of dirty blocks.
+	 * </p>
+	 */
+	public long dirtyBlockCount() {
+		long count = 0;
+		for (long word : dirty) count += Long.bitCount(word);
+		return count;
+	}
+
+	/**
+	 * <p>
+	 * Mark all blocks as clean. Call this after processing the dirty regions.
+	 * </p>
+	 */
+	public void resetDirty() {
+		Arrays.fill(dirty, 0L);
+	}
+
+	@Override
+	public MemoryDecl declaration() {
+		return delegate.declaration();
+	}
+
+	@Override
+	public int pageCount() {
+		return delegate.pageCount();
+	}
+
+	@Override
+	public int byteSize() {
+		return delegate.byteSize();
+	}
+
+	@Override
+	public long longByteSize() {
+		return delegate.longByteSize();
+	}
+
+	@Override
+	public long committedByteSize() {
+		return delegate.committedByteSize();
+	}
+
+	@Override
+	public ResourceLimiter getLimiter() { return delegate.getLimiter(); }
+
+	@Override
+	public void setLimiter(ResourceLimiter limiter) {
+		delegate.setLimiter(limiter);
+	}
+
+	@Override
+	public int grow(int deltaPages) {
+		int prev = delegate.grow(deltaPages);
+		if (prev != -1) dirty = Arrays.copyOf(dirty, words(delegate.pageCount()));
+		return prev;
+	}
+
+	/**
+	 * <p>
+	 * Fork the delegate memory. The fork is tracked separately, starting with the
+	 * dirty blocks of this memory.
+	 * </p>
+	 */
+	@Override
+	public DirtyTrackingMemory fork() {
+		DirtyTrackingMemory fork = new DirtyTrackingMemory(delegate.fork());
+		fork.dirty = dirty.clone();
+		return fork;
+	}
+
+	@Override
+	public boolean isShared() {
+		return delegate.isShared();
+	}
+
+	@Override
+	public long atomicLoad(long memoryOffset, int size) {
+		return delegate.atomicLoad(memoryOffset, size);
+	}
+
+	@Override
+	public void atomicStore(long memoryOffset, int size, long value) {
+		delegate.atomicStore(memoryOffset, size, value);
+		mark(memoryOffset, size);
+	}
+
+	@Override
+	public long atomicRmw(long memoryOffset, int size, AtomicOp op, long operand) {
+		long value = delegate.atomicRmw(memoryOffset, size, op, operand);
+		mark(memoryOffset, size);
+		return value;
+	}
+
+	@Override
+	public long atomicCompareExchange(long memoryOffset, int size, long expected, long replacement) {
+		long value = delegate.atomicCompareExchange(memoryOffset, size, expected, replacement);
+		mark(memoryOffset, size);
+		return value;
+	}
+
+	@Override
+	public int atomicWait(long memoryOffset, int size, long expected, long timeoutNanos) {
+		return delegate.atomicWait(memoryOffset, size, expected, timeoutNanos);
+	}
+
+	@Override
+	public int atomicNotify(long memoryOffset, int count) {
+		return delegate.atomicNotify(memoryOffset, count);
+	}
+
+	@Override
+	public void read(int memoryOffset, byte[] target, int targetOffset, int count) {
+		delegate.read(memoryOffset, target, targetOffset, count);
+	}
+
+	@Override
+	public void read(long memoryOffset, byte[] target, int targetOffset, int count) {
+		delegate.read(memoryOffset, target, targetOffset, count);
+	}
+
+	@Override
+	public void write(int memoryOffset, byte[] source, int sourceOffset, int count) {
+		delegate.write(memoryOffset, source, sourceOffset, count);
+		markDirty(memoryOffset, count);
+	}
+
+	@Override
+	public void write(long memoryOffset, byte[] source, int sourceOffset, int count) {
+		delegate.write(memoryOffset, source, sourceOffset, count);
+		markDirty(memoryOffset, count);
+	}
+
+	@Override
+	public void fill(int memoryOffset, int byteVal, int count) {
+		delegate.fill(memoryOffset, byteVal, count);
+		markDirty(memoryOffset, count);
+	}
+
+	@Override
+	public void fill(long memoryOffset, int byteVal, long count) {
+		delegate.fill(memoryOffset, byteVal, count);
+		markDirty(memoryOffset, count);
+	}
+
+	@Override
+	public int readS8(int memoryOffset) {
+		return delegate.readS8(memoryOffset);
+	}
+
+	@Override
+	public int readU8(int memoryOffset) {
+		return delegate.readU8(memoryOffset);
+	}
+
+	@Override
+	public int readS16(int memoryOffset) {
+		return delegate.readS16(memoryOffset);
+	}
+
+	@Override
+	public int readU16(int memoryOffset) {
+		return delegate.readU16(memoryOffset);
+	}
+
+	@Override
+	public int readI32(int memoryOffset) {
+		return delegate.readI32(memoryOffset);
+	}
+
+	@Override
+	public long readI64(int memoryOffset) {
+		return delegate.readI64(memoryOffset);
+	}
+
+	@Override
+	public float readF32(int memoryOffset) {
+		return delegate.readF32(memoryOffset);
+	}
+
+	@Override
+	public double readF64(int memoryOffset) {
+		return delegate.readF64(memoryOffset);
+	}
+
+	@Override
+	public void writeI8(int memoryOffset, int value) {
+		delegate.writeI8(memoryOffset, value);
+		mark(memoryOffset, 1);
+	}
+
+	@Override
+	public void writeI16(int memoryOffset, int value) {
+		delegate.writeI16(memoryOffset, value);
+		mark(memoryOffset, 2);
+	}
+
+	@Override
+	public void writeI32(int memoryOffset, int value) {
+		delegate.writeI32(memoryOffset, value);
+		mark(memoryOffset, 4);
+	}
+
+	@Override
+	public void writeI64(int memoryOffset, long value) {
+		delegate.writeI64(memoryOffset, value);
+		mark(memoryOffset, 8);
+	}
+
+	@Override
+	public void writeF32(int memoryOffset, float value) {
+		delegate.writeF32(memoryOffset, value);
+		mark(memoryOffset, 4);
+	}
+
+	@Override
+	public void writeF64(int memoryOffset, double value) {
+		delegate.writeF64(memoryOffset, value);
+		mark(memoryOffset, 8);
+	}
+
+	@Override
+	public int readS8(long memoryOffset) {
+		return delegate.readS8(memoryOffset);
+	}
+
+	@Override
+	public int readU8(long memoryOffset) {
+		return delegate.readU8(memoryOffset);
+	}
+
+	@Override
+	public int readS16(long memoryOffset) {
+		return delegate.readS16(memoryOffset);
+	}
+
+	@Override
+	public int readU16(long memoryOffset) {
+		return delegate.readU16(memoryOffset);
+	}
+
+	@Override
+	public int readI32(long memoryOffset) {
+		return delegate.readI32(memoryOffset);
+	}
+
+	@Override
+	public long readI64(long memoryOffset) {
+		return delegate.readI64(memoryOffset);
+	}
+
+	@Override
+	public float readF32(long memoryOffset) {
+		return delegate.readF32(memoryOffset);
+	}
+
+	@Override
+	public double readF64(long memoryOffset) {
+		return delegate.readF64(memoryOffset);
+	}
+
+	@Override
+	public void writeI8(long memoryOffset, int value) {
+		delegate.writeI8(memoryOffset, value);
+		mark(memoryOffset, 1);
+	}
+
+	@Override
+	public void writeI16(long memoryOffset, int value) {
+		delegate.writeI16(memoryOffset, value);
+		mark(memoryOffset, 2);
+	}
+
+	@Override
+	public void writeI32(long memoryOffset, int value) {
+		delegate.writeI32(memoryOffset, value);
+		mark(memoryOffset, 4);
+	}
+
+	@Override
+	public void writeI64(long memoryOffset, long value) {
+		delegate.writeI64(memoryOffset, value);
+		mark(memoryOffset, 8);
+	}
+
+	@Override
+	public void writeF32(long memoryOffset, float value) {
+		delegate.writeF32(memoryOffset, value);
+		mark(memoryOffset, 4);
+	}
+
+	@Override
+	public void writeF64(long memoryOffset, double value) {
+		delegate.writeF64(memoryOffset, value);
+		mark(memoryOffset, 8);
+	}
+}
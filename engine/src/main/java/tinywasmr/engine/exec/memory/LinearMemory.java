@@ -0,0 +1,220 @@
+package tinywasmr.engine.exec.memory;
+
+import static tinywasmr.engine.exec.memory.LittleEndian.INT;
+import static tinywasmr.engine.exec.memory.LittleEndian.LONG;
+import static tinywasmr.engine.exec.memory.LittleEndian.SHORT;
+
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.Objects;
+
+import tinywasmr.engine.exec.limit.ResourceLimitException;
+import tinywasmr.engine.exec.limit.ResourceLimiter;
+import tinywasmr.engine.module.memory.MemoryDecl;
+
+/**
+ * <p>
+ * Memory backed by a single byte array. Numbers are read and written with
+ * little-endian {@link VarHandle} views of the array, so loads and stores don't
+ * allocate. The array is reallocated when growing, so the byte size of this
+ * memory is limited to {@link #MAX_PAGES} pages (just under 2 GiB).
+ * </p>
+ */
+public class LinearMemory implements Memory {
+	/**
+	 * <p>
+	 * The maximum number of pages that can fit in a byte array.
+	 * </p>
+	 */
+	public static final int MAX_PAGES = Integer.MAX_VALUE / PAGE_SIZE;
+
+	private MemoryDecl decl;
+	private byte[] bytes;
+	private int maxPages;
+	private ResourceLimiter limiter = ResourceLimiter.UNLIMITED;
+
+	/**
+	 * @param decl     The declaration of this memory.
+	 * @param pages    The initial number of pages.
+	 * @param maxPages The maximum number of pages this memory can grow to.
+	 */
+	public LinearMemory(MemoryDecl decl, int pages, int maxPages) {
+		if (pages < 0 || pages > MAX_PAGES) throw new IllegalArgumentException("Can't allocate %d pages (max %d)"
+			.formatted(pages, MAX_PAGES));
+		this.decl = decl;
+		this.bytes = new byte[pages * PAGE_SIZE];
+		this.maxPages = Math.min(Math.max(maxPages, pages), MAX_PAGES);
+	}
+
+	public LinearMemory(MemoryDecl decl, int pages) {
+		this(decl, pages, MAX_PAGES);
+	}
+
+	public LinearMemory(int pages) {
+		this(null, pages);
+	}
+
+	/**
+	 * <p>
+	 * Create memory with the minimum number of pages in declaration, which can grow
+	 * to the maximum number of pages if the declaration have one.
+	 * </p>
+	 */
+	public LinearMemory(MemoryDecl decl) {
+		this(
+			decl,
+			decl.type().limit().min(),
+			decl.type().limit().hasMax() ? decl.type().limit().max() : MAX_PAGES);
+	}
+
+	@Override
+	public MemoryDecl declaration() {
+		return decl;
+	}
+
+	@Override
+	public int pageCount() {
+		return bytes.length / PAGE_SIZE;
+	}
+
+	@Override
+	public int byteSize() {
+		return bytes.length;
+	}
+
+	/**
+	 * <p>
+	 * Get the byte array backing this memory. The array is replaced when this
+	 * memory grows.
+	 * </p>
+	 */
+	public byte[] getBytes() { return bytes; }
+
+	/**
+	 * <p>
+	 * Fork this memory by copying the whole byte array. Use {@link SparseMemory}
+	 * to share the pages between forks instead. The pages of the fork are counted
+	 * by the limiter of this memory, which is also used by the fork.
+	 * </p>
+	 *
+	 * @throws ResourceLimitException if the limiter rejects the pages of the fork.
+	 */
+	@Override
+	public LinearMemory fork() {
+		int pages = pageCount();
+		limiter.reserveMemory(pages);
+		LinearMemory fork = new LinearMemory(decl, 0, maxPages);
+
+		try {
+			fork.bytes = bytes.clone();
+		} catch (OutOfMemoryError e) {
+			limiter.memoryGrowFailed(0, pages);
+			throw e;
+		}
+
+		fork.limiter = limiter;
+		return fork;
+	}
+
+	@Override
+	public ResourceLimiter getLimiter() { return limiter; }
+
+	@Override
+	public void setLimiter(ResourceLimiter limiter) { this.limiter = limiter; }
+
+	@Override
+	public int grow(int deltaPages) {
+		int prev = pageCount();
+		if (deltaPages == 0) return prev;
+		if (Integer.toUnsignedLong(deltaPages) > maxPages - prev) return -1;
+		if (!limiter.memoryGrowing(prev, prev + deltaPages)) return -1;
+
+		try {
+			bytes = Arrays.copyOf(bytes, (prev + deltaPages) * PAGE_SIZE);
+		} catch (OutOfMemoryError e) {
+			// memory.grow is allowed to fail when the host can't allocate more memory
+			limiter.memoryGrowFailed(prev, prev + deltaPages);
+			return -1;
+		}
+
+		return prev;
+	}
+
+	@Override
+	public void read(int memoryOffset, byte[] target, int targetOffset, int count) {
+		Objects.checkFromIndexSize(memoryOffset, count, bytes.length);
+		System.arraycopy(bytes, memoryOffset, target, targetOffset, count);
+	}
+
+	@Override
+	public void write(int memoryOffset, byte[] source, int sourceOffset, int count) {
+		Objects.checkFromIndexSize(memoryOffset, count, bytes.length);
+		System.arraycopy(source, sourceOffset, bytes, memoryOffset, count);
+	}
+
+	@Override
+	public void fill(int memoryOffset, int byteVal, int count) {
+		Objects.checkFromIndexSize(memoryOffset, count, bytes.length);
+		Arrays.fill(bytes, memoryOffset, memoryOffset + count, (byte) byteVal);
+	}
+
+	@Override
+	public int readS8(int memoryOffset) {
+		return bytes[memoryOffset];
+	}
+
+	@Override
+	public int readU8(int memoryOffset) {
+		return bytes[memoryOffset] & 0xff;
+	}
+
+	@Override
+	public int readS16(int memoryOffset) {
+		return (short) SHORT.get(bytes, memoryOffset);
+	}
+
+	@Override
+	public int readU16(int memoryOffset) {
+		return (short) SHORT.get(bytes, memoryOffset) & 0xffff;
+	}
+
+	@Override
+	public int readI32(int memoryOffset) {
+		return (int) INT.get(bytes, memoryOffset);
+	}
+
+	@Override
+	public long readI64(int memoryOffset) {
+		return (long) LONG.get(bytes, memoryOffset);
+	}
+
+	@Override
+	public void writeI8(int memoryOffset, int value) {
+		bytes[memoryOffset] = (byte) value;
+	}
+
+	@Override
+	public void writeI16(int memoryOffset, int value) {
+		SHORT.set(bytes, memoryOffset, (short) value);
+	}
+
+	@Override
+	public void writeI32(int memoryOffset, int value) {
+		INT.set(bytes, memoryOffset, value);
+	}
+
+	@Override
+	public void writeI64(int memoryOffset, long value) {
+		LONG.set(bytes, memoryOffset, value);
+	}
+
+	@Override
+	public void writeF32(int memoryOffset, float value) {
+		INT.set(bytes, memoryOffset, Float.floatToRawIntBits(value));
+	}
+
+	@Override
+	public void writeF64(int memoryOffset, double value) {
+		LONG.set(bytes, memoryOffset, Double.doubleToRawLongBits(value));
+	}
+}
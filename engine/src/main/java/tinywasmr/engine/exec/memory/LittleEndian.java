@@ -0,0 +1,20 @@
+package tinywasmr.engine.exec.memory;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * <p>
+ * Little-endian views of byte arrays, which is the byte order of WebAssembly
+ * memory.
+ * </p>
+ */
+final class LittleEndian {
+	static final VarHandle SHORT = MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.LITTLE_ENDIAN);
+	static final VarHandle INT = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+	static final VarHandle LONG = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+	private LittleEndian() {
+	}
+}
@@ -0,0 +1,256 @@
+package tinywasmr.engine.exec.memory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+
+import tinywasmr.engine.exec.limit.ResourceLimiter;
+import tinywasmr.engine.module.memory.MemoryDecl;
+
+/**
+ * <p>
+ * Memory backed by a memory-mapped file. The content of memory lives in the
+ * file instead of Java heap, is kept when the memory is closed and can be
+ * inspected by other processes while the instance is running. Opening an
+ * existing file continues from its content, but note that the active data
+ * segments of module are written again when the module is instantiated.
+ * </p>
+ * <p>
+ * The file is extended and mapped again when this memory grows. Like
+ * {@link LinearMemory}, the byte size is limited to {@link LinearMemory#MAX_PAGES}
+ * pages.
+ * </p>
+ */
+public class MappedMemory implements Memory, Closeable {
+	private MemoryDecl decl;
+	private FileChannel channel;
+	private MappedByteBuffer buffer;
+	private int maxPages;
+	private ResourceLimiter limiter = ResourceLimiter.UNLIMITED;
+
+	/**
+	 * @param decl     The declaration of this memory.
+	 * @param channel  The channel of file, which must be opened for reading and
+	 *                 writing.
+	 * @param pages    The initial number of pages. If the file is larger, the
+	 *                 number of pages is the size of file rounded up to pages.
+	 * @param maxPages The maximum number of pages this memory can grow to.
+	 * @throws IOException              if the file can't be mapped.
+	 * @throws IllegalArgumentException if the file is larger than the maximum
+	 *                                  number of pages, like a file of another
+	 *                                  module.
+	 */
+	public MappedMemory(MemoryDecl decl, FileChannel channel, int pages, int maxPages) throws IOException {
+		if (pages < 0 || pages > LinearMemory.MAX_PAGES) throw new IllegalArgumentException(
+			"Can't map %d pages (max %d)".formatted(pages, LinearMemory.MAX_PAGES));
+		maxPages = Math.min(Math.max(maxPages, pages), LinearMemory.MAX_PAGES);
+
+		long filePages = (channel.size() + PAGE_SIZE - 1) / PAGE_SIZE;
+		if (filePages > maxPages) throw new IllegalArgumentException(
+			"File has %d pages, which is more than the maximum of %d pages".formatted(filePages, maxPages));
+		if (filePages > pages) pages = (int) filePages;
+
+		this.decl = decl;
+		this.channel = channel;
+		this.maxPages = maxPages;
+		map(pages);
+	}
+
+	/**
+	 * <p>
+	 * Open the file as memory, creating it if it doesn't exist.
+	 * </p>
+	 *
+	 * @see #MappedMemory(MemoryDecl, FileChannel, int, int)
+	 */
+	public static MappedMemory open(Path file, MemoryDecl decl, int pages, int maxPages) throws IOException {
+		FileChannel channel = FileChannel.open(file,
+			StandardOpenOption.READ,
+			StandardOpenOption.WRITE,
+			StandardOpenOption.CREATE);
+
+		try {
+			return new MappedMemory(decl, channel, pages, maxPages);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	public static MappedMemory open(Path file, int pages) throws IOException {
+		return open(file, null, pages, LinearMemory.MAX_PAGES);
+	}
+
+	/**
+	 * <p>
+	 * Open the file as the memory of given declaration, with the minimum number of
+	 * pages in declaration.
+	 * </p>
+	 */
+	public static MappedMemory open(Path file, MemoryDecl decl) throws IOException {
+		return open(
+			file,
+			decl,
+			decl.type().limit().min(),
+			decl.type().limit().hasMax() ? decl.type().limit().max() : LinearMemory.MAX_PAGES);
+	}
+
+	/**
+	 * <p>
+	 * Create a factory that maps the memories declared in module to files in given
+	 * directory. The factory must be closed to close the files.
+	 * </p>
+	 *
+	 * @see MappedMemoryFactory
+	 */
+	public static MappedMemoryFactory factory(Path directory) {
+		return new MappedMemoryFactory(directory);
+	}
+
+	private void map(int pages) throws IOException {
+		// Mapping beyond the end of file extends the file
+		buffer = channel.map(MapMode.READ_WRITE, 0, (long) pages * PAGE_SIZE);
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	@Override
+	public MemoryDecl declaration() {
+		return decl;
+	}
+
+	@Override
+	public int pageCount() {
+		return buffer.capacity() / PAGE_SIZE;
+	}
+
+	@Override
+	public int byteSize() {
+		return buffer.capacity();
+	}
+
+	@Override
+	public ResourceLimiter getLimiter() { return limiter; }
+
+	@Override
+	public void setLimiter(ResourceLimiter limiter) { this.limiter = limiter; }
+
+	@Override
+	public int grow(int deltaPages) {
+		int prev = pageCount();
+		if (deltaPages == 0) return prev;
+		if (Integer.toUnsignedLong(deltaPages) > maxPages - prev) return -1;
+		if (!limiter.memoryGrowing(prev, prev + deltaPages)) return -1;
+
+		try {
+			map(prev + deltaPages);
+		} catch (IOException e) {
+			limiter.memoryGrowFailed(prev, prev + deltaPages);
+			return -1;
+		}
+
+		return prev;
+	}
+
+	/**
+	 * <p>
+	 * Write the changes of memory to the file.
+	 * </p>
+	 */
+	public void force() {
+		buffer.force();
+	}
+
+	/**
+	 * <p>
+	 * Write the changes of memory and close the file. The memory must not be used
+	 * after closing.
+	 * </p>
+	 */
+	@Override
+	public void close() throws IOException {
+		buffer.force();
+		channel.close();
+	}
+
+	@Override
+	public void read(int memoryOffset, byte[] target, int targetOffset, int count) {
+		Objects.checkFromIndexSize(memoryOffset, count, buffer.capacity());
+		buffer.get(memoryOffset, target, targetOffset, count);
+	}
+
+	@Override
+	public void write(int memoryOffset, byte[] source, int sourceOffset, int count) {
+		Objects.checkFromIndexSize(memoryOffset, count, buffer.capacity());
+		buffer.put(memoryOffset, source, sourceOffset, count);
+	}
+
+	@Override
+	public void fill(int memoryOffset, int byteVal, int count) {
+		Objects.checkFromIndexSize(memoryOffset, count, buffer.capacity());
+		if (count == 0) return;
+		buffer.put(memoryOffset, (byte) byteVal);
+
+		// Double the filled range by copying it within the buffer
+		for (int filled = 1; filled < count;) {
+			int length = Math.min(filled, count - filled);
+			buffer.put(memoryOffset + filled, buffer, memoryOffset, length);
+			filled += length;
+		}
+	}
+
+	@Override
+	public int readS8(int memoryOffset) {
+		return buffer.get(memoryOffset);
+	}
+
+	@Override
+	public int readU8(int memoryOffset) {
+		return buffer.get(memoryOffset) & 0xff;
+	}
+
+	@Override
+	public int readS16(int memoryOffset) {
+		return buffer.getShort(memoryOffset);
+	}
+
+	@Override
+	public int readU16(int memoryOffset) {
+		return buffer.getShort(memoryOffset) & 0xffff;
+	}
+
+	@Override
+	public int readI32(int memoryOffset) {
+		return buffer.getInt(memoryOffset);
+	}
+
+	@Override
+	public long readI64(int memoryOffset) {
+		return buffer.getLong(memoryOffset);
+	}
+
+	@Override
+	public void writeI8(int memoryOffset, int value) {
+		buffer.put(memoryOffset, (byte) value);
+	}
+
+	@Override
+	public void writeI16(int memoryOffset, int value) {
+		buffer.putShort(memoryOffset, (short) value);
+	}
+
+	@Override
+	public void writeI32(int memoryOffset, int value) {
+		buffer.putInt(memoryOffset, value);
+	}
+
+	@Override
+	public void writeI64(int memoryOffset, long value) {
+		buffer.putLong(memoryOffset, value);
+	}
+}
@@ -0,0 +1,79 @@
+package tinywasmr.engine.exec.memory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import tinywasmr.engine.module.memory.MemoryDecl;
+import tinywasmr.engine.module.memory.ModuleMemoryDecl;
+
+/**
+ * <p>
+ * Factory that maps the memories declared in module to files in a directory.
+ * The files are named {@code memory<index>.bin} by the index of memory in the
+ * module, so instantiating the same module again maps the same files.
+ * </p>
+ * <p>
+ * The factory keeps the memories it opened, and {@link #close()} closes all of
+ * them. Close the factory when the instances using these memories are no
+ * longer used, or close each memory by itself.
+ * </p>
+ *
+ * @see MappedMemory#factory(Path)
+ */
+public class MappedMemoryFactory implements MemoryFactory, Closeable {
+	private final Path directory;
+	private final List<MappedMemory> opened = new ArrayList<>();
+
+	public MappedMemoryFactory(Path directory) {
+		this.directory = directory;
+	}
+
+	public Path getDirectory() { return directory; }
+
+	@Override
+	public MappedMemory create(MemoryDecl decl) {
+		int index = decl instanceof ModuleMemoryDecl moduleDecl
+			? moduleDecl.module().declaredMemories().indexOf(decl)
+			: 0;
+
+		try {
+			MappedMemory memory = MappedMemory.open(directory.resolve("memory%d.bin".formatted(index)), decl);
+			synchronized (opened) {
+				opened.add(memory);
+			}
+			return memory;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * <p>
+	 * Write the changes and close all memories opened by this factory. The
+	 * memories must not be used after closing.
+	 * </p>
+	 */
+	@Override
+	public void close() throws IOException {
+		IOException failure = null;
+
+		synchronized (opened) {
+			for (MappedMemory memory : opened) {
+				try {
+					memory.close();
+				} catch (IOException e) {
+					if (failure == null) failure = e;
+					else failure.addSuppressed(e);
+				}
+			}
+
+			opened.clear();
+		}
+
+		if (failure != null) throw failure;
+	}
+}
@@ -1,6 +1,9 @@
 package tinywasmr.engine.exec.memory;
 
+import java.util.Objects;
+
 import tinywasmr.engine.exec.instance.Exportable;
+import tinywasmr.engine.exec.limit.ResourceLimiter;
 import tinywasmr.engine.module.memory.MemoryDecl;
 
 public interface Memory extends Exportable {
@@ -28,11 +31,34 @@ public interface Memory extends Exportable {
 	/**
 	 * <p>
 	 * The number of bytes this memory instance is holding. This will always be a
-	 * multiple of {@link #PAGE_SIZE}.
+	 * multiple of {@link #PAGE_SIZE}, except for memories of 2 GiB or larger,
+	 * which return {@link Integer#MAX_VALUE}. Use {@link #longByteSize()} to get
+	 * the size of those memories.
 	 * </p>
 	 */
 	default int byteSize() {
-		return pageCount() * PAGE_SIZE;
+		return (int) Math.min(longByteSize(), Integer.MAX_VALUE);
+	}
+
+	/**
+	 * <p>
+	 * Same as {@link #byteSize()}, but as {@code long}, which can hold the size of
+	 * memories larger than 2 GiB, like 64-bit memories.
+	 * </p>
+	 */
+	default long longByteSize() {
+		return (long) pageCount() * PAGE_SIZE;
+	}
+
+	/**
+	 * <p>
+	 * The number of bytes this memory instance has actually allocated, which may be
+	 * less than {@link #longByteSize()} if the pages are allocated when they are
+	 * first written.
+	 * </p>
+	 */
+	default long committedByteSize() {
+		return longByteSize();
 	}
 
 	/**
@@ -41,11 +67,48 @@ public interface Memory extends Exportable {
 	 * previous page count.
 	 * </p>
 	 * 
-	 * @param deltaPages The number of pages to grow.
+	 * @param deltaPages The number of pages to grow, as unsigned integer like the
+	 *                   operand of {@code memory.grow}. Negative values are
+	 *                   larger than any memory and fail to grow.
 	 * @return Previous page count, or {@code -1} if allocation failed.
 	 */
 	int grow(int deltaPages);
 
+	/**
+	 * <p>
+	 * Get the limiter that is consulted before growing this memory.
+	 * </p>
+	 */
+	default ResourceLimiter getLimiter() {
+		return ResourceLimiter.UNLIMITED;
+	}
+
+	/**
+	 * <p>
+	 * Set the limiter that is consulted before growing this memory. The pages that
+	 * this memory already have are not counted by the limiter.
+	 * </p>
+	 *
+	 * @throws UnsupportedOperationException if this memory can't be limited.
+	 */
+	default void setLimiter(ResourceLimiter limiter) {
+		throw new UnsupportedOperationException("%s can't be limited".formatted(getClass().getName()));
+	}
+
+	/**
+	 * <p>
+	 * Create a new memory with the same declaration, size and contents as this
+	 * memory. Writes to the fork are not visible to this memory and vice versa.
+	 * Implementations may share the contents until they are written.
+	 * </p>
+	 * 
+	 * @throws UnsupportedOperationException if this memory can't be forked.
+	 * @see SparseMemory#fork()
+	 */
+	default Memory fork() {
+		throw new UnsupportedOperationException("%s can't be forked".formatted(getClass().getName()));
+	}
+
 	/**
 	 * <p>
 	 * Copy data from this memory instance to target byte array.
@@ -183,26 +246,244 @@ public interface Memory extends Exportable {
 	}
 
 	default void writeF32(int memoryOffset, float value) {
-		int i = Float.floatToRawIntBits(value);
-		write(memoryOffset, new byte[] {
-			(byte) (i >> 24),
-			(byte) (i >> 16),
-			(byte) (i >> 8),
-			(byte) i,
-		});
+		writeI32(memoryOffset, Float.floatToRawIntBits(value));
 	}
 
 	default void writeF64(int memoryOffset, double value) {
-		long i = Double.doubleToRawLongBits(value);
-		write(memoryOffset, new byte[] {
-			(byte) (i >> 56L),
-			(byte) (i >> 48L),
-			(byte) (i >> 40L),
-			(byte) (i >> 32L),
-			(byte) (i >> 24L),
-			(byte) (i >> 16L),
-			(byte) (i >> 8L),
-			(byte) i,
-		});
+		writeI64(memoryOffset, Double.doubleToRawLongBits(value));
+	}
+
+	// Long-addressed operations for 64-bit memories. The default implementations
+	// only accept offsets that fits in int.
+
+	private static int intOffset(long memoryOffset) {
+		if (memoryOffset < 0 || memoryOffset > Integer.MAX_VALUE)
+			throw new IndexOutOfBoundsException("Memory offset out of bounds: %d".formatted(memoryOffset));
+		return (int) memoryOffset;
+	}
+
+	/**
+	 * <p>
+	 * Long-addressed version of {@link #read(int, byte[], int, int)}.
+	 * </p>
+	 */
+	default void read(long memoryOffset, byte[] target, int targetOffset, int count) {
+		read(intOffset(memoryOffset), target, targetOffset, count);
+	}
+
+	/**
+	 * <p>
+	 * Long-addressed version of {@link #write(int, byte[], int, int)}.
+	 * </p>
+	 */
+	default void write(long memoryOffset, byte[] source, int sourceOffset, int count) {
+		write(intOffset(memoryOffset), source, sourceOffset, count);
+	}
+
+	/**
+	 * <p>
+	 * Long-addressed version of {@link #fill(int, int, int)}.
+	 * </p>
+	 */
+	default void fill(long memoryOffset, int byteVal, long count) {
+		if (count < 0 || count > Integer.MAX_VALUE)
+			throw new IndexOutOfBoundsException("Fill count out of bounds: %d".formatted(count));
+		fill(intOffset(memoryOffset), byteVal, (int) count);
+	}
+
+	default int readS8(long memoryOffset) {
+		return readS8(intOffset(memoryOffset));
+	}
+
+	default int readU8(long memoryOffset) {
+		return readU8(intOffset(memoryOffset));
+	}
+
+	default int readS16(long memoryOffset) {
+		return readS16(intOffset(memoryOffset));
+	}
+
+	default int readU16(long memoryOffset) {
+		return readU16(intOffset(memoryOffset));
+	}
+
+	default int readI32(long memoryOffset) {
+		return readI32(intOffset(memoryOffset));
+	}
+
+	default long readS32(long memoryOffset) {
+		return readI32(memoryOffset);
+	}
+
+	default long readU32(long memoryOffset) {
+		return readI32(memoryOffset) & 0xFFFFFFFFL;
+	}
+
+	default long readI64(long memoryOffset) {
+		return readI64(intOffset(memoryOffset));
+	}
+
+	default float readF32(long memoryOffset) {
+		return Float.intBitsToFloat(readI32(memoryOffset));
+	}
+
+	default double readF64(long memoryOffset) {
+		return Double.longBitsToDouble(readI64(memoryOffset));
+	}
+
+	default void writeI8(long memoryOffset, int value) {
+		writeI8(intOffset(memoryOffset), value);
+	}
+
+	default void writeI16(long memoryOffset, int value) {
+		writeI16(intOffset(memoryOffset), value);
+	}
+
+	default void writeI32(long memoryOffset, int value) {
+		writeI32(intOffset(memoryOffset), value);
+	}
+
+	default void writeI64(long memoryOffset, long value) {
+		writeI64(intOffset(memoryOffset), value);
+	}
+
+	default void writeF32(long memoryOffset, float value) {
+		writeI32(memoryOffset, Float.floatToRawIntBits(value));
+	}
+
+	default void writeF64(long memoryOffset, double value) {
+		writeI64(memoryOffset, Double.doubleToRawLongBits(value));
+	}
+
+	// Atomic operations from threads proposal. The default implementations are not
+	// atomic, which is fine as long as the memory is only accessed by one thread.
+
+	/**
+	 * <p>
+	 * Check whether this memory can be accessed by several threads at the same
+	 * time, like the shared memories from threads proposal.
+	 * </p>
+	 *
+	 * @see SharedMemory
+	 */
+	default boolean isShared() {
+		return false;
+	}
+
+	/**
+	 * <p>
+	 * Atomically read an unsigned integer.
+	 * </p>
+	 *
+	 * @param memoryOffset The offset in this memory instance, which must be a
+	 *                     multiple of {@code size}.
+	 * @param size         The number of bytes to read, which is 1, 2, 4 or 8.
+	 * @return The zero-extended value.
+	 */
+	default long atomicLoad(long memoryOffset, int size) {
+		return switch (size) {
+		case 1 -> readU8(memoryOffset);
+		case 2 -> readU16(memoryOffset);
+		case 4 -> readU32(memoryOffset);
+		case 8 -> readI64(memoryOffset);
+		default -> throw new IllegalArgumentException("Invalid access size: %d".formatted(size));
+		};
+	}
+
+	/**
+	 * <p>
+	 * Atomically write the lowest {@code size} bytes of value.
+	 * </p>
+	 *
+	 * @param memoryOffset The offset in this memory instance, which must be a
+	 *                     multiple of {@code size}.
+	 * @param size         The number of bytes to write, which is 1, 2, 4 or 8.
+	 * @param value        The value to write.
+	 */
+	default void atomicStore(long memoryOffset, int size, long value) {
+		switch (size) {
+		case 1 -> writeI8(memoryOffset, (int) value);
+		case 2 -> writeI16(memoryOffset, (int) value);
+		case 4 -> writeI32(memoryOffset, (int) value);
+		case 8 -> writeI64(memoryOffset, value);
+		default -> throw new IllegalArgumentException("Invalid access size: %d".formatted(size));
+		}
+	}
+
+	/**
+	 * <p>
+	 * Atomically read an unsigned integer, apply the operation and write the
+	 * result back.
+	 * </p>
+	 *
+	 * @param memoryOffset The offset in this memory instance, which must be a
+	 *                     multiple of {@code size}.
+	 * @param size         The number of bytes to access, which is 1, 2, 4 or 8.
+	 * @param op           The operation to apply.
+	 * @param operand      The operand of operation.
+	 * @return The zero-extended value before the operation.
+	 */
+	default long atomicRmw(long memoryOffset, int size, AtomicOp op, long operand) {
+		long value = atomicLoad(memoryOffset, size);
+		atomicStore(memoryOffset, size, op.apply(value, operand));
+		return value;
+	}
+
+	/**
+	 * <p>
+	 * Atomically replace the unsigned integer if it is equals to expected value.
+	 * The expected value is wrapped to {@code size} bytes before comparing.
+	 * </p>
+	 *
+	 * @param memoryOffset The offset in this memory instance, which must be a
+	 *                     multiple of {@code size}.
+	 * @param size         The number of bytes to access, which is 1, 2, 4 or 8.
+	 * @param expected     The expected value.
+	 * @param replacement  The value to write if the value in memory is expected.
+	 * @return The zero-extended value before the operation.
+	 */
+	default long atomicCompareExchange(long memoryOffset, int size, long expected, long replacement) {
+		long value = atomicLoad(memoryOffset, size);
+		long mask = size == 8 ? -1L : (1L << (size * 8)) - 1;
+		if (value == (expected & mask)) atomicStore(memoryOffset, size, replacement);
+		return value;
+	}
+
+	/**
+	 * <p>
+	 * Block the current thread until it is notified by
+	 * {@link #atomicNotify(long, int)}, if the unsigned integer at given offset is
+	 * equals to expected value. This is {@code memory.atomic.wait32} and
+	 * {@code memory.atomic.wait64}.
+	 * </p>
+	 *
+	 * @param memoryOffset The offset in this memory instance, which must be a
+	 *                     multiple of {@code size}.
+	 * @param size         The number of bytes to compare, which is 4 or 8.
+	 * @param expected     The zero-extended expected value.
+	 * @param timeoutNanos The maximum time to wait in nanoseconds, or negative
+	 *                     value to wait forever.
+	 * @return {@code 0} if the thread is notified, {@code 1} if the value is not
+	 *         the expected value, or {@code 2} if timed out.
+	 * @throws UnsupportedOperationException if this memory is not shared.
+	 */
+	default int atomicWait(long memoryOffset, int size, long expected, long timeoutNanos) {
+		throw new UnsupportedOperationException("Can't wait on unshared memory");
+	}
+
+	/**
+	 * <p>
+	 * Wake up the threads that are waiting on given offset.
+	 * </p>
+	 *
+	 * @param memoryOffset The offset in this memory instance.
+	 * @param count        The maximum number of threads to wake up, as unsigned
+	 *                     integer.
+	 * @return The number of threads that are woken up, which is always {@code 0}
+	 *         for unshared memories.
+	 */
+	default int atomicNotify(long memoryOffset, int count) {
+		Objects.checkFromIndexSize(memoryOffset, 4, longByteSize());
+		return 0;
 	}
 }
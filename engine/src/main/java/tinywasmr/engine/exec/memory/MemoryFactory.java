@@ -0,0 +1,67 @@
+package tinywasmr.engine.exec.memory;
+
+import tinywasmr.engine.module.memory.MemoryDecl;
+
+/**
+ * <p>
+ * Create the memories declared in module when instantiating.
+ * </p>
+ */
+@FunctionalInterface
+public interface MemoryFactory {
+	/**
+	 * <p>
+	 * Create {@link LinearMemory} for 32-bit memories, {@link SparseMemory} for
+	 * 64-bit memories, which can be larger than a byte array, and
+	 * {@link SharedMemory} for shared memories.
+	 * </p>
+	 */
+	static MemoryFactory DEFAULT = decl -> decl.type().shared() ? new SharedMemory(decl)
+		: decl.type().memory64() ? new SparseMemory(decl)
+		: new LinearMemory(decl);
+
+	/**
+	 * <p>
+	 * Create {@link LinearMemory}, which is backed by a single byte array.
+	 * </p>
+	 */
+	static MemoryFactory LINEAR = LinearMemory::new;
+
+	/**
+	 * <p>
+	 * Create {@link DefaultMemory}, which allocates all pages up front as separate
+	 * arrays.
+	 * </p>
+	 */
+	static MemoryFactory PAGED = DefaultMemory::new;
+
+	/**
+	 * <p>
+	 * Create {@link SparseMemory}, which allocates pages when they are first
+	 * written. Use this when a lot of instances are created and most of their
+	 * declared memory is never touched, or when instances are forked with
+	 * {@link tinywasmr.engine.exec.instance.Instance#fork()}.
+	 * </p>
+	 */
+	static MemoryFactory SPARSE = SparseMemory::new;
+
+	/**
+	 * <p>
+	 * Create {@link SharedMemory}, which can be accessed by several threads at the
+	 * same time, even if the memory is not declared as shared.
+	 * </p>
+	 */
+	static MemoryFactory SHARED = SharedMemory::new;
+
+	Memory create(MemoryDecl decl);
+
+	/**
+	 * <p>
+	 * Wrap the memories created by this factory with {@link DirtyTrackingMemory},
+	 * which records the blocks that are written.
+	 * </p>
+	 */
+	default MemoryFactory withDirtyTracking() {
+		return decl -> new DirtyTrackingMemory(create(decl));
+	}
+}
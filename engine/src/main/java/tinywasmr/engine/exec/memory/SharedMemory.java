@@ -0,0 +1,525 @@
+package tinywasmr.engine.exec.memory;
+
+import static tinywasmr.engine.exec.memory.LittleEndian.INT;
+import static tinywasmr.engine.exec.memory.LittleEndian.LONG;
+import static tinywasmr.engine.exec.memory.LittleEndian.SHORT;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import tinywasmr.engine.exec.limit.ResourceLimiter;
+import tinywasmr.engine.module.memory.MemoryDecl;
+
+/**
+ * <p>
+ * Memory that can be accessed by several threads at the same time, which is
+ * the shared memory from threads proposal. Instances on different threads can
+ * import the same shared memory and run on their own machines.
+ * </p>
+ * <p>
+ * The pages are allocated as separate arrays that are never replaced, so
+ * growing the memory doesn't lose the writes from other threads. Atomic
+ * instructions use the atomic access modes of little-endian
+ * {@link java.lang.invoke.VarHandle} views of the pages, without locking.
+ * 8-bit and 16-bit read-modify-write operations are done with compare-and-set
+ * on the aligned 32-bit word that contains them. Other accesses are plain
+ * accesses, which is allowed by the relaxed memory model of WebAssembly.
+ * </p>
+ * <p>
+ * {@code memory.atomic.wait} and {@code memory.atomic.notify} are the only
+ * operations that lock. The waiting threads are woken up in the order they
+ * started waiting.
+ * </p>
+ */
+public class SharedMemory implements Memory {
+	/**
+	 * <p>
+	 * The value returned by {@link #atomicWait(long, int, long, long)} when the
+	 * thread is notified.
+	 * </p>
+	 */
+	public static final int WAIT_OK = 0;
+
+	/**
+	 * <p>
+	 * The value returned by {@link #atomicWait(long, int, long, long)} when the
+	 * value is not the expected value.
+	 * </p>
+	 */
+	public static final int WAIT_NOT_EQUAL = 1;
+
+	/**
+	 * <p>
+	 * The value returned by {@link #atomicWait(long, int, long, long)} when
+	 * timed out.
+	 * </p>
+	 */
+	public static final int WAIT_TIMED_OUT = 2;
+
+	private static final int PAGE_SHIFT = 16;
+	private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+	private MemoryDecl decl;
+	private int maxPages;
+	private volatile byte[][] pages;
+	private ResourceLimiter limiter = ResourceLimiter.UNLIMITED;
+	private final ReentrantLock lock = new ReentrantLock();
+	private final List<Waiter> waiters = new ArrayList<>();
+
+	private static final class Waiter {
+		final long memoryOffset;
+		final Condition condition;
+		boolean notified = false;
+
+		Waiter(long memoryOffset, Condition condition) {
+			this.memoryOffset = memoryOffset;
+			this.condition = condition;
+		}
+	}
+
+	/**
+	 * @param decl     The declaration of this memory.
+	 * @param pages    The initial number of pages.
+	 * @param maxPages The maximum number of pages this memory can grow to.
+	 */
+	public SharedMemory(MemoryDecl decl, int pages, int maxPages) {
+		if (pages < 0) throw new IllegalArgumentException("Can't allocate %d pages".formatted(pages));
+		this.decl = decl;
+		this.maxPages = Math.max(maxPages, pages);
+		byte[][] data = new byte[pages][];
+		for (int i = 0; i < pages; i++) data[i] = new byte[PAGE_SIZE];
+		this.pages = data;
+	}
+
+	public SharedMemory(int pages, int maxPages) {
+		this(null, pages, maxPages);
+	}
+
+	/**
+	 * <p>
+	 * Create memory with the minimum number of pages in declaration, which can grow
+	 * to the maximum number of pages in declaration. Shared memories declared in
+	 * modules always have the maximum number of pages.
+	 * </p>
+	 */
+	public SharedMemory(MemoryDecl decl) {
+		this(
+			decl,
+			decl.type().limit().min(),
+			decl.type().limit().hasMax() ? decl.type().limit().max()
+				: decl.type().memory64() ? SparseMemory.MAX_PAGES_64
+				: LinearMemory.MAX_PAGES);
+	}
+
+	@Override
+	public MemoryDecl declaration() {
+		return decl;
+	}
+
+	@Override
+	public boolean isShared() {
+		return true;
+	}
+
+	@Override
+	public int pageCount() {
+		return pages.length;
+	}
+
+	@Override
+	public ResourceLimiter getLimiter() { return limiter; }
+
+	@Override
+	public void setLimiter(ResourceLimiter limiter) { this.limiter = limiter; }
+
+	@Override
+	public int grow(int deltaPages) {
+		lock.lock();
+
+		try {
+			byte[][] data = pages;
+			int prev = data.length;
+			if (deltaPages == 0) return prev;
+			if (Integer.toUnsignedLong(deltaPages) > maxPages - prev) return -1;
+			if (!limiter.memoryGrowing(prev, prev + deltaPages)) return -1;
+
+			try {
+				data = Arrays.copyOf(data, prev + deltaPages);
+				for (int i = prev; i < data.length; i++) data[i] = new byte[PAGE_SIZE];
+			} catch (OutOfMemoryError e) {
+				limiter.memoryGrowFailed(prev, prev + deltaPages);
+				return -1;
+			}
+
+			// Other threads see the new pages after this volatile write
+			pages = data;
+			return prev;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private byte[] page(long memoryOffset) {
+		byte[][] data = pages;
+		return data[(int) Objects.checkIndex(memoryOffset >> PAGE_SHIFT, (long) data.length)];
+	}
+
+	private static int inPage(long memoryOffset) {
+		return (int) memoryOffset & PAGE_MASK;
+	}
+
+	@Override
+	public void read(long memoryOffset, byte[] target, int targetOffset, int count) {
+		Objects.checkFromIndexSize(memoryOffset, count, longByteSize());
+		Objects.checkFromIndexSize(targetOffset, count, target.length);
+
+		while (count > 0) {
+			int pageOffset = inPage(memoryOffset);
+			int length = Math.min(count, PAGE_SIZE - pageOffset);
+			System.arraycopy(page(memoryOffset), pageOffset, target, targetOffset, length);
+			memoryOffset += length;
+			targetOffset += length;
+			count -= length;
+		}
+	}
+
+	@Override
+	public void write(long memoryOffset, byte[] source, int sourceOffset, int count) {
+		Objects.checkFromIndexSize(memoryOffset, count, longByteSize());
+		Objects.checkFromIndexSize(sourceOffset, count, source.length);
+
+		while (count > 0) {
+			int pageOffset = inPage(memoryOffset);
+			int length = Math.min(count, PAGE_SIZE - pageOffset);
+			System.arraycopy(source, sourceOffset, page(memoryOffset), pageOffset, length);
+			memoryOffset += length;
+			sourceOffset += length;
+			count -= length;
+		}
+	}
+
+	@Override
+	public void fill(long memoryOffset, int byteVal, long count) {
+		Objects.checkFromIndexSize(memoryOffset, count, longByteSize());
+
+		while (count > 0) {
+			int pageOffset = inPage(memoryOffset);
+			int length = (int) Math.min(count, PAGE_SIZE - pageOffset);
+			Arrays.fill(page(memoryOffset), pageOffset, pageOffset + length, (byte) byteVal);
+			memoryOffset += length;
+			count -= length;
+		}
+	}
+
+	@Override
+	public int readS8(long memoryOffset) {
+		return page(memoryOffset)[inPage(memoryOffset)];
+	}
+
+	@Override
+	public int readU8(long memoryOffset) {
+		return readS8(memoryOffset) & 0xff;
+	}
+
+	@Override
+	public int readS16(long memoryOffset) {
+		if (inPage(memoryOffset) > PAGE_SIZE - 2) return (short) (readU8(memoryOffset)
+			| readU8(memoryOffset + 1) << 8);
+		return (short) SHORT.get(page(memoryOffset), inPage(memoryOffset));
+	}
+
+	@Override
+	public int readU16(long memoryOffset) {
+		return readS16(memoryOffset) & 0xffff;
+	}
+
+	@Override
+	public int readI32(long memoryOffset) {
+		if (inPage(memoryOffset) > PAGE_SIZE - 4) return readU16(memoryOffset) | readU16(memoryOffset + 2) << 16;
+		return (int) INT.get(page(memoryOffset), inPage(memoryOffset));
+	}
+
+	@Override
+	public long readI64(long memoryOffset) {
+		if (inPage(memoryOffset) > PAGE_SIZE - 8)
+			return readI32(memoryOffset) & 0xFFFFFFFFL | (long) readI32(memoryOffset + 4) << 32;
+		return (long) LONG.get(page(memoryOffset), inPage(memoryOffset));
+	}
+
+	@Override
+	public void writeI8(long memoryOffset, int value) {
+		page(memoryOffset)[inPage(memoryOffset)] = (byte) value;
+	}
+
+	@Override
+	public void writeI16(long memoryOffset, int value) {
+		if (inPage(memoryOffset) > PAGE_SIZE - 2) {
+			// Check the bounds before writing any byte
+			Objects.checkFromIndexSize(memoryOffset, 2, longByteSize());
+			writeI8(memoryOffset, value);
+			writeI8(memoryOffset + 1, value >> 8);
+		} else SHORT.set(page(memoryOffset), inPage(memoryOffset), (short) value);
+	}
+
+	@Override
+	public void writeI32(long memoryOffset, int value) {
+		if (inPage(memoryOffset) > PAGE_SIZE - 4) {
+			Objects.checkFromIndexSize(memoryOffset, 4, longByteSize());
+			writeI16(memoryOffset, value);
+			writeI16(memoryOffset + 2, value >> 16);
+		} else INT.set(page(memoryOffset), inPage(memoryOffset), value);
+	}
+
+	@Override
+	public void writeI64(long memoryOffset, long value) {
+		if (inPage(memoryOffset) > PAGE_SIZE - 8) {
+			Objects.checkFromIndexSize(memoryOffset, 8, longByteSize());
+			writeI32(memoryOffset, (int) value);
+			writeI32(memoryOffset + 4, (int) (value >> 32));
+		} else LONG.set(page(memoryOffset), inPage(memoryOffset), value);
+	}
+
+	// Atomic accesses are aligned, so they never cross the page boundary
+
+	private static void checkAligned(long memoryOffset, int size) {
+		if ((memoryOffset & (size - 1)) != 0) throw new IllegalArgumentException(
+			"Unaligned %d-byte atomic access at %d".formatted(size, memoryOffset));
+	}
+
+	private static int subwordShift(long memoryOffset) {
+		return ((int) memoryOffset & 3) * 8;
+	}
+
+	private static int subwordMask(int size) {
+		return size == 1 ? 0xff : 0xffff;
+	}
+
+	@Override
+	public long atomicLoad(long memoryOffset, int size) {
+		checkAligned(memoryOffset, size);
+		byte[] page = page(memoryOffset);
+		int offset = inPage(memoryOffset);
+
+		return switch (size) {
+		case 1, 2 -> (int) INT.getVolatile(page, offset & ~3) >>> subwordShift(offset) & subwordMask(size);
+		case 4 -> (int) INT.getVolatile(page, offset) & 0xFFFFFFFFL;
+		case 8 -> (long) LONG.getVolatile(page, offset);
+		default -> throw new IllegalArgumentException("Invalid access size: %d".formatted(size));
+		};
+	}
+
+	@Override
+	public void atomicStore(long memoryOffset, int size, long value) {
+		checkAligned(memoryOffset, size);
+		byte[] page = page(memoryOffset);
+		int offset = inPage(memoryOffset);
+
+		switch (size) {
+		case 1, 2 -> atomicRmwSubword(page, offset, size, AtomicOp.XCHG, value);
+		case 4 -> INT.setVolatile(page, offset, (int) value);
+		case 8 -> LONG.setVolatile(page, offset, value);
+		default -> throw new IllegalArgumentException("Invalid access size: %d".formatted(size));
+		}
+	}
+
+	@Override
+	public long atomicRmw(long memoryOffset, int size, AtomicOp op, long operand) {
+		checkAligned(memoryOffset, size);
+		byte[] page = page(memoryOffset);
+		int offset = inPage(memoryOffset);
+
+		if (size == 4) return (switch (op) {
+		case ADD -> (int) INT.getAndAdd(page, offset, (int) operand);
+		case SUB -> (int) INT.getAndAdd(page, offset, -(int) operand);
+		case AND -> (int) INT.getAndBitwiseAnd(page, offset, (int) operand);
+		case OR -> (int) INT.getAndBitwiseOr(page, offset, (int) operand);
+		case XOR -> (int) INT.getAndBitwiseXor(page, offset, (int) operand);
+		case XCHG -> (int) INT.getAndSet(page, offset, (int) operand);
+		}) & 0xFFFFFFFFL;
+
+		if (size == 8) return switch (op) {
+		case ADD -> (long) LONG.getAndAdd(page, offset, operand);
+		case SUB -> (long) LONG.getAndAdd(page, offset, -operand);
+		case AND -> (long) LONG.getAndBitwiseAnd(page, offset, operand);
+		case OR -> (long) LONG.getAndBitwiseOr(page, offset, operand);
+		case XOR -> (long) LONG.getAndBitwiseXor(page, offset, operand);
+		case XCHG -> (long) LONG.getAndSet(page, offset, operand);
+		};
+
+		if (size == 1 || size == 2) return atomicRmwSubword(page, offset, size, op, operand);
+		throw new IllegalArgumentException("Invalid access size: %d".formatted(size));
+	}
+
+	private static long atomicRmwSubword(byte[] page, int offset, int size, AtomicOp op, long operand) {
+		int wordOffset = offset & ~3;
+		int shift = subwordShift(offset);
+		int mask = subwordMask(size);
+
+		while (true) {
+			int word = (int) INT.getVolatile(page, wordOffset);
+			int value = word >>> shift & mask;
+			int result = (int) op.apply(value, operand) & mask;
+			int replacement = word & ~(mask << shift) | result << shift;
+			if (INT.compareAndSet(page, wordOffset, word, replacement)) return value;
+		}
+	}
+
+	@Override
+	public long atomicCompareExchange(long memoryOffset, int size, long expected, long replacement) {
+		checkAligned(memoryOffset, size);
+		byte[] page = page(memoryOffset);
+		int offset = inPage(memoryOffset);
+
+		switch (size) {
+		case 4:
+			return (int) INT.compareAndExchange(page, offset, (int) expected, (int) replacement) & 0xFFFFFFFFL;
+		case 8:
+			return (long) LONG.compareAndExchange(page, offset, expected, replacement);
+		case 1:
+		case 2: {
+			int wordOffset = offset & ~3;
+			int shift = subwordShift(offset);
+			int mask = subwordMask(size);
+
+			while (true) {
+				int word = (int) INT.getVolatile(page, wordOffset);
+				int value = word >>> shift & mask;
+				if (value != ((int) expected & mask)) return value;
+				int newWord = word & ~(mask << shift) | ((int) replacement & mask) << shift;
+				if (INT.compareAndSet(page, wordOffset, word, newWord)) return value;
+			}
+		}
+		default:
+			throw new IllegalArgumentException("Invalid access size: %d".formatted(size));
+		}
+	}
+
+	@Override
+	public int atomicWait(long memoryOffset, int size, long expected, long timeoutNanos) {
+		if (size != 4 && size != 8) throw new IllegalArgumentException("Invalid access size: %d".formatted(size));
+		lock.lock();
+
+		try {
+			// Notifying takes the lock, so the value can't be changed and notified between
+			// comparing and waiting
+			if (atomicLoad(memoryOffset, size) != expected) return WAIT_NOT_EQUAL;
+			Waiter waiter = new Waiter(memoryOffset, lock.newCondition());
+			waiters.add(waiter);
+
+			try {
+				long remaining = timeoutNanos;
+
+				while (!waiter.notified) {
+					if (timeoutNanos < 0) waiter.condition.await();
+					else if (remaining > 0) remaining = waiter.condition.awaitNanos(remaining);
+					else break;
+				}
+			} catch (InterruptedException e) {
+				// Interrupting the thread is treated as timing out
+				Thread.currentThread().interrupt();
+			} finally {
+				if (!waiter.notified) waiters.remove(waiter);
+			}
+
+			return waiter.notified ? WAIT_OK : WAIT_TIMED_OUT;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int atomicNotify(long memoryOffset, int count) {
+		Objects.checkFromIndexSize(memoryOffset, 4, longByteSize());
+		lock.lock();
+
+		try {
+			int woken = 0;
+			Iterator<Waiter> iterator = waiters.iterator();
+
+			while (Integer.compareUnsigned(woken, count) < 0 && iterator.hasNext()) {
+				Waiter waiter = iterator.next();
+				if (waiter.memoryOffset != memoryOffset) continue;
+				iterator.remove();
+				waiter.notified = true;
+				waiter.condition.signal();
+				woken++;
+			}
+
+			return woken;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	// Int-addressed operations are the same as long-addressed operations
+
+	@Override
+	public void read(int memoryOffset, byte[] target, int targetOffset, int count) {
+		read((long) memoryOffset, target, targetOffset, count);
+	}
+
+	@Override
+	public void write(int memoryOffset, byte[] source, int sourceOffset, int count) {
+		write((long) memoryOffset, source, sourceOffset, count);
+	}
+
+	@Override
+	public void fill(int memoryOffset, int byteVal, int count) {
+		fill((long) memoryOffset, byteVal, (long) count);
+	}
+
+	@Override
+	public int readS8(int memoryOffset) {
+		return readS8((long) memoryOffset);
+	}
+
+	@Override
+	public int readU8(int memoryOffset) {
+		return readU8((long) memoryOffset);
+	}
+
+	@Override
+	public int readS16(int memoryOffset) {
+		return readS16((long) memoryOffset);
+	}
+
+	@Override
+	public int readU16(int memoryOffset) {
+		return readU16((long) memoryOffset);
+	}
+
+	@Override
+	public int readI32(int memoryOffset) {
+		return readI32((long) memoryOffset);
+	}
+
+	@Override
+	public long readI64(int memoryOffset) {
+		return readI64((long) memoryOffset);
+	}
+
+	@Override
+	public void writeI8(int memoryOffset, int value) {
+		writeI8((long) memoryOffset, value);
+	}
+
+	@Override
+	public void writeI16(int memoryOffset, int value) {
+		writeI16((long) memoryOffset, value);
+	}
+
+	@Override
+	public void writeI32(int memoryOffset, int value) {
+		writeI32((long) memoryOffset, value);
+	}
+
+	@Override
+	public void writeI64(int memoryOffset, long value) {
+		writeI64((long) memoryOffset, value);
+	}
+}
@@ -0,0 +1,398 @@
+package tinywasmr.engine.exec.memory;
+
+import static tinywasmr.engine.exec.memory.LittleEndian.INT;
+import static tinywasmr.engine.exec.memory.LittleEndian.LONG;
+import static tinywasmr.engine.exec.memory.LittleEndian.SHORT;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import tinywasmr.engine.exec.limit.ResourceLimitException;
+import tinywasmr.engine.exec.limit.ResourceLimiter;
+import tinywasmr.engine.module.memory.MemoryDecl;
+
+/**
+ * <p>
+ * Memory that allocates its pages when they are first written. Pages that are
+ * never written are served from a zero page shared by all sparse memories, so
+ * reserving a lot of pages only costs a reference per page. Use
+ * {@link #committedByteSize()} to get the number of bytes that are allocated.
+ * </p>
+ * <p>
+ * Numbers within a page are read and written with little-endian
+ * {@link java.lang.invoke.VarHandle} views of the page. Accessing a number that
+ * crosses the page boundary is slower.
+ * </p>
+ * <p>
+ * This memory is long-addressed, so it can hold 64-bit memories larger than
+ * 4 GiB. Use {@link #longByteSize()} to get the size of memories that are
+ * larger than {@link #byteSize()} can hold.
+ * </p>
+ * <p>
+ * {@link #fork()} shares the committed pages between this memory and the fork
+ * until one of them writes to a shared page, which copies the page first. This
+ * makes forking cost a reference per page regardless of the memory contents.
+ * Each shared page counts the memories using it, so the last memory writing to
+ * the page doesn't copy it. Memories that are discarded without writing still
+ * count as users of the page.
+ * </p>
+ */
+public class SparseMemory implements Memory {
+	/**
+	 * <p>
+	 * The maximum number of pages of 64-bit memories.
+	 * </p>
+	 */
+	public static final int MAX_PAGES_64 = Integer.MAX_VALUE;
+
+	private static final int PAGE_SHIFT = 16;
+	private static final int PAGE_MASK = PAGE_SIZE - 1;
+	private static final byte[] ZERO_PAGE = new byte[PAGE_SIZE];
+
+	private MemoryDecl decl;
+	private byte[][] pages;
+	private AtomicInteger[] users;
+	private int maxPages;
+	private int committedPages = 0;
+	private ResourceLimiter limiter = ResourceLimiter.UNLIMITED;
+
+	/**
+	 * @param decl     The declaration of this memory.
+	 * @param pages    The initial number of pages.
+	 * @param maxPages The maximum number of pages this memory can grow to.
+	 */
+	public SparseMemory(MemoryDecl decl, int pages, int maxPages) {
+		if (pages < 0) throw new IllegalArgumentException("Can't allocate %d pages".formatted(pages));
+		this.decl = decl;
+		this.pages = new byte[pages][];
+		this.users = new AtomicInteger[pages];
+		this.maxPages = Math.max(maxPages, pages);
+		Arrays.fill(this.pages, ZERO_PAGE);
+	}
+
+	private SparseMemory(SparseMemory parent) {
+		this.decl = parent.decl;
+		this.pages = parent.pages.clone();
+		this.users = parent.users.clone();
+		this.maxPages = parent.maxPages;
+		this.committedPages = parent.committedPages;
+		this.limiter = parent.limiter;
+	}
+
+	public SparseMemory(MemoryDecl decl, int pages) {
+		// Memory offsets of 32-bit memories are int, so the limit is the same as linear memory
+		this(decl, pages, LinearMemory.MAX_PAGES);
+	}
+
+	public SparseMemory(int pages) {
+		this(null, pages);
+	}
+
+	/**
+	 * <p>
+	 * Create memory with the minimum number of pages in declaration, which can grow
+	 * to the maximum number of pages if the declaration have one.
+	 * </p>
+	 */
+	public SparseMemory(MemoryDecl decl) {
+		this(
+			decl,
+			decl.type().limit().min(),
+			decl.type().limit().hasMax() ? decl.type().limit().max()
+				: decl.type().memory64() ? MAX_PAGES_64
+				: LinearMemory.MAX_PAGES);
+	}
+
+	@Override
+	public MemoryDecl declaration() {
+		return decl;
+	}
+
+	@Override
+	public int pageCount() {
+		return pages.length;
+	}
+
+	@Override
+	public long committedByteSize() {
+		return (long) committedPages * PAGE_SIZE;
+	}
+
+	/**
+	 * <p>
+	 * Check whether the page is allocated.
+	 * </p>
+	 */
+	public boolean isCommitted(int page) {
+		return pages[page] != ZERO_PAGE;
+	}
+
+	@Override
+	public ResourceLimiter getLimiter() { return limiter; }
+
+	@Override
+	public void setLimiter(ResourceLimiter limiter) { this.limiter = limiter; }
+
+	@Override
+	public int grow(int deltaPages) {
+		int prev = pages.length;
+		if (deltaPages == 0) return prev;
+		if (Integer.toUnsignedLong(deltaPages) > maxPages - prev) return -1;
+		if (!limiter.memoryGrowing(prev, prev + deltaPages)) return -1;
+		pages = Arrays.copyOf(pages, prev + deltaPages);
+		users = Arrays.copyOf(users, prev + deltaPages);
+		Arrays.fill(pages, prev, pages.length, ZERO_PAGE);
+		return prev;
+	}
+
+	private byte[] page(long memoryOffset) {
+		return pages[(int) Objects.checkIndex(memoryOffset >> PAGE_SHIFT, (long) pages.length)];
+	}
+
+	private byte[] commit(long memoryOffset) {
+		int page = (int) Objects.checkIndex(memoryOffset >> PAGE_SHIFT, (long) pages.length);
+		byte[] data = pages[page];
+
+		if (data == ZERO_PAGE) {
+			data = new byte[PAGE_SIZE];
+			pages[page] = data;
+			users[page] = null;
+			committedPages++;
+		} else if (users[page] != null) {
+			AtomicInteger count = users[page];
+			users[page] = null;
+
+			// Other memories copy the page before leaving, so it is not read if this
+			// memory is the only user
+			if (count.get() > 1) {
+				data = data.clone();
+				pages[page] = data;
+				count.decrementAndGet();
+			}
+		}
+
+		return data;
+	}
+
+	/**
+	 * <p>
+	 * Check whether the page is shared with a fork of this memory (or the memory
+	 * this memory is forked from), which means it will be copied on next write.
+	 * </p>
+	 */
+	public boolean isShared(int page) {
+		return users[page] != null && users[page].get() > 1;
+	}
+
+	/**
+	 * <p>
+	 * Fork this memory. Committed pages are shared between this memory and the
+	 * fork, and copied by the first write to them from either memory. Pages are
+	 * never written while they are shared, so the fork can be used on a different
+	 * thread, but this memory must not be written while forking. The pages of the
+	 * fork are counted by the limiter of this memory, which is also used by the
+	 * fork.
+	 * </p>
+	 *
+	 * @throws ResourceLimitException if the limiter rejects the pages of the fork.
+	 */
+	@Override
+	public SparseMemory fork() {
+		limiter.reserveMemory(pages.length);
+
+		for (int i = 0; i < pages.length; i++) {
+			if (pages[i] == ZERO_PAGE) continue;
+			if (users[i] == null) users[i] = new AtomicInteger(2);
+			else users[i].incrementAndGet();
+		}
+
+		return new SparseMemory(this);
+	}
+
+	private static int inPage(long memoryOffset) {
+		return (int) memoryOffset & PAGE_MASK;
+	}
+
+	@Override
+	public void read(long memoryOffset, byte[] target, int targetOffset, int count) {
+		Objects.checkFromIndexSize(memoryOffset, count, longByteSize());
+		Objects.checkFromIndexSize(targetOffset, count, target.length);
+
+		while (count > 0) {
+			int pageOffset = inPage(memoryOffset);
+			int length = Math.min(count, PAGE_SIZE - pageOffset);
+			System.arraycopy(page(memoryOffset), pageOffset, target, targetOffset, length);
+			memoryOffset += length;
+			targetOffset += length;
+			count -= length;
+		}
+	}
+
+	@Override
+	public void write(long memoryOffset, byte[] source, int sourceOffset, int count) {
+		Objects.checkFromIndexSize(memoryOffset, count, longByteSize());
+		Objects.checkFromIndexSize(sourceOffset, count, source.length);
+
+		while (count > 0) {
+			int pageOffset = inPage(memoryOffset);
+			int length = Math.min(count, PAGE_SIZE - pageOffset);
+			System.arraycopy(source, sourceOffset, commit(memoryOffset), pageOffset, length);
+			memoryOffset += length;
+			sourceOffset += length;
+			count -= length;
+		}
+	}
+
+	@Override
+	public void fill(long memoryOffset, int byteVal, long count) {
+		Objects.checkFromIndexSize(memoryOffset, count, longByteSize());
+
+		while (count > 0) {
+			int pageOffset = inPage(memoryOffset);
+			int length = (int) Math.min(count, PAGE_SIZE - pageOffset);
+
+			// Filling untouched pages with zeros doesn't need to allocate them
+			if ((byte) byteVal != 0 || page(memoryOffset) != ZERO_PAGE)
+				Arrays.fill(commit(memoryOffset), pageOffset, pageOffset + length, (byte) byteVal);
+
+			memoryOffset += length;
+			count -= length;
+		}
+	}
+
+	@Override
+	public int readS8(long memoryOffset) {
+		return page(memoryOffset)[inPage(memoryOffset)];
+	}
+
+	@Override
+	public int readU8(long memoryOffset) {
+		return readS8(memoryOffset) & 0xff;
+	}
+
+	@Override
+	public int readS16(long memoryOffset) {
+		if (inPage(memoryOffset) > PAGE_SIZE - 2) return (short) (readU8(memoryOffset)
+			| readU8(memoryOffset + 1) << 8);
+		return (short) SHORT.get(page(memoryOffset), inPage(memoryOffset));
+	}
+
+	@Override
+	public int readU16(long memoryOffset) {
+		return readS16(memoryOffset) & 0xffff;
+	}
+
+	@Override
+	public int readI32(long memoryOffset) {
+		if (inPage(memoryOffset) > PAGE_SIZE - 4) return readU16(memoryOffset) | readU16(memoryOffset + 2) << 16;
+		return (int) INT.get(page(memoryOffset), inPage(memoryOffset));
+	}
+
+	@Override
+	public long readI64(long memoryOffset) {
+		if (inPage(memoryOffset) > PAGE_SIZE - 8)
+			return readI32(memoryOffset) & 0xFFFFFFFFL | (long) readI32(memoryOffset + 4) << 32;
+		return (long) LONG.get(page(memoryOffset), inPage(memoryOffset));
+	}
+
+	@Override
+	public void writeI8(long memoryOffset, int value) {
+		commit(memoryOffset)[inPage(memoryOffset)] = (byte) value;
+	}
+
+	@Override
+	public void writeI16(long memoryOffset, int value) {
+		if (inPage(memoryOffset) > PAGE_SIZE - 2) {
+			// Check the bounds before writing any byte
+			Objects.checkFromIndexSize(memoryOffset, 2, longByteSize());
+			writeI8(memoryOffset, value);
+			writeI8(memoryOffset + 1, value >> 8);
+		} else SHORT.set(commit(memoryOffset), inPage(memoryOffset), (short) value);
+	}
+
+	@Override
+	public void writeI32(long memoryOffset, int value) {
+		if (inPage(memoryOffset) > PAGE_SIZE - 4) {
+			Objects.checkFromIndexSize(memoryOffset, 4, longByteSize());
+			writeI16(memoryOffset, value);
+			writeI16(memoryOffset + 2, value >> 16);
+		} else INT.set(commit(memoryOffset), inPage(memoryOffset), value);
+	}
+
+	@Override
+	public void writeI64(long memoryOffset, long value) {
+		if (inPage(memoryOffset) > PAGE_SIZE - 8) {
+			Objects.checkFromIndexSize(memoryOffset, 8, longByteSize());
+			writeI32(memoryOffset, (int) value);
+			writeI32(memoryOffset + 4, (int) (value >> 32));
+		} else LONG.set(commit(memoryOffset), inPage(memoryOffset), value);
+	}
+
+	// Int-addressed operations are the same as long-addressed operations
+
+	@Override
+	public void read(int memoryOffset, byte[] target, int targetOffset, int count) {
+		read((long) memoryOffset, target, targetOffset, count);
+	}
+
+	@Override
+	public void write(int memoryOffset, byte[] source, int sourceOffset, int count) {
+		write((long) memoryOffset, source, sourceOffset, count);
+	}
+
+	@Override
+	public void fill(int memoryOffset, int byteVal, int count) {
+		fill((long) memoryOffset, byteVal, (long) count);
+	}
+
+	@Override
+	public int readS8(int memoryOffset) {
+		return readS8((long) memoryOffset);
+	}
+
+	@Override
+	public int readU8(int memoryOffset) {
+		return readU8((long) memoryOffset);
+	}
+
+	@Override
+	public int readS16(int memoryOffset) {
+		return readS16((long) memoryOffset);
+	}
+
+	@Override
+	public int readU16(int memoryOffset) {
+		return readU16((long) memoryOffset);
+	}
+
+	@Override
+	public int readI32(int memoryOffset) {
+		return readI32((long) memoryOffset);
+	}
+
+	@Override
+	public long readI64(int memoryOffset) {
+		return readI64((long) memoryOffset);
+	}
+
+	@Override
+	public void writeI8(int memoryOffset, int value) {
+		writeI8((long) memoryOffset, value);
+	}
+
+	@Override
+	public void writeI16(int memoryOffset, int value) {
+		writeI16((long) memoryOffset, value);
+	}
+
+	@Override
+	public void writeI32(int memoryOffset, int value) {
+		writeI32((long) memoryOffset, value);
+	}
+
+	@Override
+	public void writeI64(int memoryOffset, long value) {
+		writeI64((long) memoryOffset, value);
+	}
+}
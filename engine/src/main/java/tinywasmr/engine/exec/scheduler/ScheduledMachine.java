@@ -0,0 +1,207 @@
+package tinywasmr.engine.exec.scheduler;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+
+import tinywasmr.engine.exec.StepResult;
+import tinywasmr.engine.exec.TrapException;
+import tinywasmr.engine.exec.epoch.EpochDeadline;
+import tinywasmr.engine.exec.executor.Executor;
+import tinywasmr.engine.exec.fuel.FuelMeter;
+import tinywasmr.engine.exec.instance.Function;
+import tinywasmr.engine.exec.trap.ExternalTrap;
+import tinywasmr.engine.exec.value.Value;
+import tinywasmr.engine.exec.vm.Machine;
+
+/**
+ * <p>
+ * A machine that is executing a function in {@link Scheduler}. The result is
+ * completed with the results of function, or completed exceptionally with
+ * {@link TrapException} if the machine is trapped.
+ * </p>
+ * <p>
+ * The priority and quantum can be changed while the machine is running, which
+ * applies from the next slice.
+ * </p>
+ * <p>
+ * If the machine has a {@link FuelMeter} and runs out of fuel, it is not
+ * scheduled until more fuel is added by {@link #addFuel(long)}. Likewise, if
+ * the machine is interrupted by its {@link EpochDeadline}, it is not scheduled
+ * until the deadline is extended by {@link #extendDeadline(long)}.
+ * </p>
+ */
+public class ScheduledMachine {
+	public static final int MIN_PRIORITY = 1;
+	public static final int NORM_PRIORITY = 5;
+	public static final int MAX_PRIORITY = 10;
+
+	private final Scheduler scheduler;
+	private final Machine vm;
+	private final Executor executor;
+	private final Function function;
+	private final CompletableFuture<Value[]> result = new CompletableFuture<>();
+	private volatile int priority;
+	private volatile int quantum;
+	private volatile long steps = 0;
+	private final AtomicReference<StepResult> parked = new AtomicReference<>();
+
+	ScheduledMachine(Scheduler scheduler, Machine vm, Executor executor, Function function, int priority,
+		int quantum) {
+		this.scheduler = scheduler;
+		this.vm = vm;
+		this.executor = executor;
+		this.function = function;
+		setPriority(priority);
+		setQuantum(quantum);
+	}
+
+	/**
+	 * <p>
+	 * Get the machine. The machine must not be modified while it is scheduled.
+	 * </p>
+	 */
+	public Machine getMachine() { return vm; }
+
+	public Executor getExecutor() { return executor; }
+
+	public Function getFunction() { return function; }
+
+	/**
+	 * <p>
+	 * Get the result of execution.
+	 * </p>
+	 */
+	public CompletableFuture<Value[]> getResult() { return result; }
+
+	public int getPriority() { return priority; }
+
+	public void setPriority(int priority) {
+		if (priority < MIN_PRIORITY || priority > MAX_PRIORITY)
+			throw new IllegalArgumentException("Priority must be from %d to %d, but %d found"
+				.formatted(MIN_PRIORITY, MAX_PRIORITY, priority));
+		this.priority = priority;
+	}
+
+	/**
+	 * <p>
+	 * Get the number of instructions per slice at normal priority.
+	 * </p>
+	 */
+	public int getQuantum() { return quantum; }
+
+	public void setQuantum(int quantum) {
+		if (quantum <= 0) throw new IllegalArgumentException("Quantum must be positive");
+		this.quantum = quantum;
+	}
+
+	/**
+	 * <p>
+	 * Get the number of instructions that are executed so far. This is updated at
+	 * the end of each slice, before the machine is scheduled or parked again.
+	 * </p>
+	 */
+	public long getSteps() { return steps; }
+
+	public boolean isDone() { return result.isDone(); }
+
+	/**
+	 * <p>
+	 * Check whether the machine is waiting for more fuel.
+	 * </p>
+	 */
+	public boolean isOutOfFuel() { return parked.get() == StepResult.OUT_OF_FUEL; }
+
+	/**
+	 * <p>
+	 * Add fuel to the machine that is out of fuel, and schedule it again.
+	 * </p>
+	 *
+	 * @throws IllegalStateException if the machine is not out of fuel.
+	 */
+	public void addFuel(long fuel) {
+		if (!parked.compareAndSet(StepResult.OUT_OF_FUEL, null))
+			throw new IllegalStateException("Machine is not out of fuel");
+		vm.getFuelMeter().addFuel(fuel);
+		scheduler.reschedule(this);
+	}
+
+	/**
+	 * <p>
+	 * Check whether the machine is interrupted by epoch deadline.
+	 * </p>
+	 */
+	public boolean isInterrupted() { return parked.get() == StepResult.INTERRUPTED; }
+
+	/**
+	 * <p>
+	 * Extend the deadline of interrupted machine, and schedule it again.
+	 * </p>
+	 *
+	 * @param delta The number of epoch increments from now.
+	 * @throws IllegalStateException if the machine is not interrupted.
+	 */
+	public void extendDeadline(long delta) {
+		if (!parked.compareAndSet(StepResult.INTERRUPTED, null))
+			throw new IllegalStateException("Machine is not interrupted");
+		vm.getEpochDeadline().extend(delta);
+		scheduler.reschedule(this);
+	}
+
+	/**
+	 * <p>
+	 * Stop executing the machine. The machine is stopped before its next slice, and
+	 * the result is cancelled.
+	 * </p>
+	 */
+	public void cancel() {
+		result.cancel(false);
+	}
+
+	private long sliceSteps() {
+		return Math.max((long) quantum * priority / NORM_PRIORITY, 1L);
+	}
+
+	void runSlice() {
+		if (result.isDone()) return;
+		long slice = sliceSteps();
+		long executed = 0;
+		StepResult stepResult = null;
+		boolean finished = false;
+
+		try {
+			while (executed < slice && !finished) {
+				stepResult = executor.step(vm);
+				executed++;
+				if (stepResult != null && stepResult != StepResult.NORMAL) break;
+				finished = vm.peekFrame() == vm.getExternalFrame();
+			}
+		} catch (RuntimeException e) {
+			vm.setExternalTrap(e);
+			stepResult = StepResult.TRAP;
+		}
+
+		// Count the steps before the machine is handed to another thread
+		steps += executed;
+
+		if (stepResult == StepResult.TRAP) trap();
+		// Release the worker, and continue when the host function is completed
+		else if (stepResult == StepResult.SUSPENDED)
+			vm.getSuspension().whenComplete(($, e) -> scheduler.reschedule(this));
+		else if (stepResult == StepResult.OUT_OF_FUEL || stepResult == StepResult.INTERRUPTED) parked.set(stepResult);
+		else if (finished) complete();
+		else scheduler.reschedule(this);
+	}
+
+	private void trap() {
+		if (vm.getTrap() instanceof ExternalTrap extern)
+			result.completeExceptionally(new TrapException(extern.throwable()));
+		else result.completeExceptionally(new TrapException());
+	}
+
+	private void complete() {
+		int count = function.declaration().type().outputs().types().size();
+		Value[] results = new Value[count];
+		for (int i = count - 1; i >= 0; i--) results[i] = vm.getExternalFrame().popOprand();
+		result.complete(results);
+	}
+}
@@ -0,0 +1,231 @@
+package tinywasmr.engine.exec.scheduler;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import tinywasmr.engine.exec.executor.DefaultExecutor;
+import tinywasmr.engine.exec.executor.Executor;
+import tinywasmr.engine.exec.instance.Function;
+import tinywasmr.engine.exec.value.Value;
+import tinywasmr.engine.exec.vm.DefaultMachine;
+import tinywasmr.engine.exec.vm.Machine;
+
+/**
+ * <p>
+ * Run a lot of machines on a small number of worker threads by time-slicing.
+ * Each machine is stepped by {@link Executor#step(Machine)} for a number of
+ * instructions (a slice), then put back at the end of the queue of its worker
+ * so the other machines in the queue can run. Because all states of a machine
+ * are in its frame stack, a machine can be paused after any instruction and
+ * resumed on any worker.
+ * </p>
+ * <p>
+ * Every worker has its own FIFO queue of machines, and new machines are
+ * distributed to the queues in round-robin. A worker with empty queue steals
+ * the machine at the head of the queue of other workers. A guest that never
+ * returns only takes its share of slices, so it can't monopolise a worker.
+ * </p>
+ * <p>
+ * The length of a slice is the quantum of the machine, scaled by its priority
+ * relative to {@link ScheduledMachine#NORM_PRIORITY}. A step of compiled
+ * executors like {@link tinywasmr.engine.exec.jit.JitExecutor} executes a whole
+ * call, so use an interpreting executor for guests that must be preempted.
+ * Host functions that block (including {@code memory.atomic.wait}) block the
+ * worker that runs them. Machines that are suspended by
+ * {@link tinywasmr.engine.module.func.extern.AsyncFunctionDecl} don't take any
+ * worker, and are put back to a queue when the future is completed.
+ * </p>
+ */
+public class Scheduler implements AutoCloseable {
+	/**
+	 * <p>
+	 * The default number of instructions per slice.
+	 * </p>
+	 */
+	public static final int DEFAULT_QUANTUM = 10000;
+
+	private static final AtomicInteger THREAD_COUNTER = new AtomicInteger(0);
+
+	private final int quantum;
+	private final Worker[] workers;
+	private final Semaphore ready = new Semaphore(0);
+	private final AtomicInteger nextWorker = new AtomicInteger(0);
+	private final Set<ScheduledMachine> scheduled = ConcurrentHashMap.newKeySet();
+	private volatile boolean closed = false;
+
+	/**
+	 * <p>
+	 * Create a new scheduler.
+	 * </p>
+	 *
+	 * @param workers The number of worker threads.
+	 * @param quantum The default number of instructions per slice.
+	 */
+	public Scheduler(int workers, int quantum) {
+		if (workers <= 0) throw new IllegalArgumentException("Number of workers must be positive");
+		if (quantum <= 0) throw new IllegalArgumentException("Quantum must be positive");
+		this.quantum = quantum;
+		this.workers = new Worker[workers];
+
+		for (int i = 0; i < workers; i++) {
+			this.workers[i] = new Worker(i);
+			this.workers[i].setName("tinywasmr-scheduler-" + THREAD_COUNTER.incrementAndGet());
+			this.workers[i].setDaemon(true);
+		}
+
+		for (Worker worker : this.workers) worker.start();
+	}
+
+	public Scheduler(int workers) {
+		this(workers, DEFAULT_QUANTUM);
+	}
+
+	public Scheduler() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	public int getQuantum() { return quantum; }
+
+	public int getWorkerCount() { return workers.length; }
+
+	/**
+	 * <p>
+	 * Schedule the function to be executed on given machine. The machine must not
+	 * be executing another function, and must not be used by other threads until
+	 * the execution is done.
+	 * </p>
+	 *
+	 * @param vm       The machine to store the states.
+	 * @param executor The executor to step the machine.
+	 * @param function The function to execute.
+	 * @param params   The input parameters.
+	 * @param priority The priority from {@link ScheduledMachine#MIN_PRIORITY} to
+	 *                 {@link ScheduledMachine#MAX_PRIORITY}.
+	 * @return The handle of scheduled execution.
+	 */
+	public ScheduledMachine submit(Machine vm, Executor executor, Function function, Value[] params, int priority) {
+		if (closed) throw new IllegalStateException("Scheduler is closed");
+		ScheduledMachine task = new ScheduledMachine(this, vm, executor, function, priority, quantum);
+		vm.call(function, params);
+		scheduled.add(task);
+		task.getResult().whenComplete(($, e) -> {
+			scheduled.remove(task);
+			synchronized (scheduled) {
+				scheduled.notifyAll();
+			}
+		});
+		enqueue(workers[Math.floorMod(nextWorker.getAndIncrement(), workers.length)], task);
+		return task;
+	}
+
+	/**
+	 * <p>
+	 * Schedule the function to be interpreted on a new machine with normal
+	 * priority.
+	 * </p>
+	 */
+	public ScheduledMachine submit(Function function, Value[] params) {
+		return submit(new DefaultMachine(), new DefaultExecutor(), function, params, ScheduledMachine.NORM_PRIORITY);
+	}
+
+	/**
+	 * <p>
+	 * Put the machine back to the end of the queue of current worker.
+	 * </p>
+	 */
+	void reschedule(ScheduledMachine task) {
+		if (Thread.currentThread() instanceof Worker worker && worker.getScheduler() == this) enqueue(worker, task);
+		else enqueue(workers[Math.floorMod(nextWorker.getAndIncrement(), workers.length)], task);
+	}
+
+	private void enqueue(Worker worker, ScheduledMachine task) {
+		worker.queue.addLast(task);
+		ready.release();
+	}
+
+	/**
+	 * <p>
+	 * Get the number of machines that are not done.
+	 * </p>
+	 */
+	public int getScheduledCount() { return scheduled.size(); }
+
+	/**
+	 * <p>
+	 * Wait until all scheduled machines are done or the timeout elapsed.
+	 * </p>
+	 *
+	 * @return {@code true} if all scheduled machines are done.
+	 */
+	public boolean awaitQuiescence(long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+		synchronized (scheduled) {
+			while (!scheduled.isEmpty()) {
+				long remaining = deadline - System.nanoTime();
+				if (remaining <= 0) return false;
+				TimeUnit.NANOSECONDS.timedWait(scheduled, remaining);
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * <p>
+	 * Stop the workers and cancel the machines that are not done.
+	 * </p>
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		for (Worker worker : workers) worker.interrupt();
+		for (ScheduledMachine task : scheduled) task.cancel();
+	}
+
+	private class Worker extends Thread {
+		private final int index;
+		private final ConcurrentLinkedDeque<ScheduledMachine> queue = new ConcurrentLinkedDeque<>();
+
+		public Worker(int index) {
+			this.index = index;
+		}
+
+		public Scheduler getScheduler() { return Scheduler.this; }
+
+		@Override
+		public void run() {
+			while (!closed) {
+				try {
+					ready.acquire();
+				} catch (InterruptedException e) {
+					return;
+				}
+
+				// The permit guarantees a machine in one of the queues
+				ScheduledMachine task = take();
+				if (task != null) task.runSlice();
+			}
+		}
+
+		private ScheduledMachine take() {
+			while (!closed) {
+				ScheduledMachine task = queue.pollFirst();
+				if (task != null) return task;
+
+				for (int i = 1; i < workers.length; i++) {
+					task = workers[(index + i) % workers.length].queue.pollFirst();
+					if (task != null) return task;
+				}
+
+				Thread.onSpinWait();
+			}
+
+			return null;
+		}
+	}
+}
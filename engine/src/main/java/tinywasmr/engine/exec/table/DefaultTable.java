@@ -1,6 +1,10 @@
 package tinywasmr.engine.exec.table;
 
+import java.util.function.UnaryOperator;
+
 import tinywasmr.engine.exec.ValidationException;
+import tinywasmr.engine.exec.limit.ResourceLimitException;
+import tinywasmr.engine.exec.limit.ResourceLimiter;
 import tinywasmr.engine.exec.value.RefValue;
 import tinywasmr.engine.module.table.TableDecl;
 import tinywasmr.engine.type.TableType;
@@ -11,6 +15,7 @@ public class DefaultTable implements Table {
 	private TableType type;
 	private RefType refType;
 	private RefValue[] values;
+	private ResourceLimiter limiter = ResourceLimiter.UNLIMITED;
 
 	public DefaultTable(TableDecl declaration, int size) {
 		this.declaration = declaration;
@@ -30,6 +35,27 @@ public class DefaultTable implements Table {
 		this.values = new RefValue[size];
 	}
 
+	/**
+	 * <p>
+	 * Create a copy of this table, mapping each non-null element with given
+	 * function. This is used for forking instances, where function references
+	 * must be mapped to the functions of the fork. The elements of the copy are
+	 * counted by the limiter of this table, which is also used by the copy.
+	 * </p>
+	 *
+	 * @throws ResourceLimitException if the limiter rejects the elements of the
+	 *                                copy.
+	 */
+	public DefaultTable copy(UnaryOperator<RefValue> mapper) {
+		limiter.reserveTable(values.length);
+		DefaultTable table = new DefaultTable(type, 0);
+		table.limiter = limiter;
+		table.declaration = declaration;
+		table.values = new RefValue[values.length];
+		for (int i = 0; i < values.length; i++) if (values[i] != null) table.values[i] = mapper.apply(values[i]);
+		return table;
+	}
+
 	@Override
 	public TableDecl declaration() {
 		return declaration;
@@ -64,15 +90,31 @@ public class DefaultTable implements Table {
 		values[index] = value.get() != null ? value : null;
 	}
 
+	@Override
+	public ResourceLimiter getLimiter() { return limiter; }
+
+	@Override
+	public void setLimiter(ResourceLimiter limiter) { this.limiter = limiter; }
+
 	@Override
 	public int grow(int delta, RefValue value) {
-		if (value.type().equals(refType))
+		if (!value.type().equals(refType))
 			throw new ValidationException("Element type mismatch: %s (input) != %s (declared)"
 				.formatted(value.type(), refType));
 
-		if ((values.length + delta) < 0) return -1;
 		int prev = values.length;
-		RefValue[] newValues = new RefValue[values.length + delta];
+		int max = type.limit().hasMax() ? type.limit().max() : Integer.MAX_VALUE;
+		if (Integer.toUnsignedLong(delta) > (long) max - prev) return -1;
+		if (delta > 0 && !limiter.tableGrowing(prev, prev + delta)) return -1;
+		RefValue[] newValues;
+
+		try {
+			newValues = new RefValue[values.length + delta];
+		} catch (OutOfMemoryError e) {
+			limiter.tableGrowFailed(prev, prev + delta);
+			return -1;
+		}
+
 		System.arraycopy(values, 0, newValues, 0, prev);
 		if (value.get() != null && delta > 0) for (int i = 0; i < delta; i++) newValues[prev + i] = value;
 		values = newValues;
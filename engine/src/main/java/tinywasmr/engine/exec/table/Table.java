@@ -1,6 +1,7 @@
 package tinywasmr.engine.exec.table;
 
 import tinywasmr.engine.exec.instance.Exportable;
+import tinywasmr.engine.exec.limit.ResourceLimiter;
 import tinywasmr.engine.exec.value.RefValue;
 import tinywasmr.engine.module.table.TableDecl;
 import tinywasmr.engine.type.TableType;
@@ -104,15 +105,37 @@ public interface Table extends Exportable {
 
 	/**
 	 * <p>
-	 * Grow (or shrink) this table and return the previous size. This method behaves
-	 * like {@code table.grow} instruction.
+	 * Grow this table and return the previous size. This method behaves like
+	 * {@code table.grow} instruction.
 	 * </p>
 	 * 
-	 * @param delta The number of elements to increase or decrease the size.
-	 *              Positive value indicates increasing the size.
+	 * @param delta The number of elements to grow, as unsigned integer like the
+	 *              operand of {@code table.grow}. Negative values are larger
+	 *              than any table and fail to grow.
 	 * @param value The value to fill in the area that is grown by this method.
 	 * @return The previous size of this table, or {@code -1} if the table cannot
 	 *         grow.
 	 */
 	int grow(int delta, RefValue value);
+
+	/**
+	 * <p>
+	 * Get the limiter that is consulted before growing this table.
+	 * </p>
+	 */
+	default ResourceLimiter getLimiter() {
+		return ResourceLimiter.UNLIMITED;
+	}
+
+	/**
+	 * <p>
+	 * Set the limiter that is consulted before growing this table. The elements
+	 * that this table already have are not counted by the limiter.
+	 * </p>
+	 *
+	 * @throws UnsupportedOperationException if this table can't be limited.
+	 */
+	default void setLimiter(ResourceLimiter limiter) {
+		throw new UnsupportedOperationException("%s can't be limited".formatted(getClass().getName()));
+	}
 }
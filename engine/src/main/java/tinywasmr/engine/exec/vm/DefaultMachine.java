@@ -1,28 +1,50 @@
 package tinywasmr.engine.exec.vm;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Stack;
+import java.util.concurrent.CompletableFuture;
 
+import tinywasmr.engine.exec.TrapException;
+import tinywasmr.engine.exec.epoch.EpochDeadline;
+import tinywasmr.engine.exec.frame.BlockFrame;
 import tinywasmr.engine.exec.frame.ExternalFrame;
 import tinywasmr.engine.exec.frame.Frame;
+import tinywasmr.engine.exec.frame.FramePool;
 import tinywasmr.engine.exec.frame.FunctionFrame;
+import tinywasmr.engine.exec.frame.IfFrame;
 import tinywasmr.engine.exec.frame.InstancedFrame;
+import tinywasmr.engine.exec.frame.LoopFrame;
+import tinywasmr.engine.exec.fuel.FuelMeter;
+import tinywasmr.engine.exec.limit.ResourceLimitException;
+import tinywasmr.engine.exec.limit.ResourceLimiter;
 import tinywasmr.engine.exec.trap.Trap;
 
 public class DefaultMachine implements Machine {
 	private Trap trap = null;
-	private Stack<Frame> frames;
-	private Stack<FunctionFrame> functions;
-	private Stack<InstancedFrame> instanced;
+	private CompletableFuture<?> suspension = null;
+	private FuelMeter fuelMeter = null;
+	private EpochDeadline epochDeadline = null;
+	private ResourceLimiter limiter = ResourceLimiter.UNLIMITED;
+	private int maxCallDepth = Integer.MAX_VALUE;
+	private ArrayList<Frame> frames;
+	private ArrayList<FunctionFrame> functions;
+	private ArrayList<InstancedFrame> instanced;
+	private int[] labelBases = new int[16];
+	private int labelBaseCount = 0;
+	private ValueStack values;
+	private FramePool pool;
 	private ExternalFrame extern;
 	private boolean runtimeValidation;
 
 	public DefaultMachine(List<Frame> frames, boolean runtimeValidation) {
 		if (!(frames.get(0) instanceof ExternalFrame extern))
 			throw new IllegalArgumentException("The first frame is not ExternalFrame");
-		this.frames = new Stack<>();
-		this.functions = new Stack<>();
-		this.instanced = new Stack<>();
+		this.frames = new ArrayList<>();
+		this.functions = new ArrayList<>();
+		this.instanced = new ArrayList<>();
+		this.values = new ValueStack();
+		this.pool = new FramePool();
 		this.extern = extern;
 		for (Frame frame : frames) pushFrame(frame);
 		this.runtimeValidation = runtimeValidation;
@@ -33,48 +55,124 @@ public class DefaultMachine implements Machine {
 	}
 
 	@Override
-	public Stack<Frame> getFrameStack() { return frames; }
+	public List<Frame> getFrameStack() { return frames; }
 
 	@Override
 	public ExternalFrame getExternalFrame() { return extern; }
 
+	@Override
+	public ValueStack getValueStack() { return values; }
+
+	@Override
+	public FramePool getFramePool() { return pool; }
+
 	@Override
 	public Frame peekFrame() {
-		return frames.peek();
+		return frames.get(frames.size() - 1);
 	}
 
 	@Override
 	public FunctionFrame peekFunctionFrame() {
-		return functions.peek();
+		return functions.isEmpty() ? null : functions.get(functions.size() - 1);
 	}
 
 	@Override
 	public InstancedFrame peekInstancedFrame() {
-		return instanced.peek();
+		return instanced.isEmpty() ? null : instanced.get(instanced.size() - 1);
 	}
 
 	@Override
 	public void pushFrame(Frame frame) {
-		frames.push(frame);
-		if (frame instanceof FunctionFrame functionFrame) functions.push(functionFrame);
-		if (frame instanceof InstancedFrame instancedFrame) instanced.push(instancedFrame);
+		if (frame instanceof FunctionFrame && functions.size() >= maxCallDepth)
+			throw new TrapException(new ResourceLimitException("Call depth exceeded %d".formatted(maxCallDepth)));
+		frame.attach(values);
+		frames.add(frame);
+		if (frame instanceof FunctionFrame functionFrame) functions.add(functionFrame);
+		if (frame instanceof InstancedFrame instancedFrame) instanced.add(instancedFrame);
+
+		// Index of the frame that block frames above it can branch to
+		if (!(frame instanceof BlockFrame || frame instanceof IfFrame || frame instanceof LoopFrame)) {
+			if (labelBaseCount == labelBases.length) labelBases = Arrays.copyOf(labelBases, labelBaseCount * 2);
+			labelBases[labelBaseCount++] = frames.size() - 1;
+		}
 	}
 
 	@Override
 	public Frame popFrame() {
-		if (frames.peek() == extern) throw new IllegalStateException("Can't pop ExternalFrame");
-		Frame out = frames.pop();
-		if (!functions.isEmpty() && out == functions.peek()) functions.pop();
-		if (!instanced.isEmpty() && out == instanced.peek()) instanced.pop();
+		// The caller may keep the popped frame, so it is not recycled
+		Frame out = frames.get(frames.size() - 1);
+		if (out == extern) throw new IllegalStateException("Can't pop ExternalFrame");
+		frames.remove(frames.size() - 1);
+		if (labelBases[labelBaseCount - 1] == frames.size()) labelBaseCount--;
+		out.detach();
+		if (!functions.isEmpty() && out == functions.get(functions.size() - 1)) functions.remove(functions.size() - 1);
+		if (!instanced.isEmpty() && out == instanced.get(instanced.size() - 1)) instanced.remove(instanced.size() - 1);
 		return out;
 	}
 
+	@Override
+	public Frame popFrame(int results) {
+		values.hold(results);
+
+		try {
+			return popFrame();
+		} finally {
+			values.release();
+		}
+	}
+
+	@Override
+	public void unwind(int index, int results) {
+		if (frames.size() - 1 <= index) return;
+		values.hold(results);
+
+		try {
+			while (frames.size() - 1 > index) pool.recycle(popFrame());
+		} finally {
+			values.release();
+		}
+	}
+
+	@Override
+	public int getBlockDepth() {
+		if (labelBaseCount == 0) throw new IllegalStateException("Unable to count depth; no external frame?");
+		return frames.size() - labelBases[labelBaseCount - 1];
+	}
+
 	@Override
 	public Trap getTrap() { return trap; }
 
 	@Override
 	public void setTrap(Trap trap) { this.trap = trap; }
 
+	@Override
+	public CompletableFuture<?> getSuspension() { return suspension; }
+
+	@Override
+	public void suspend(CompletableFuture<?> future) { suspension = future; }
+
+	@Override
+	public FuelMeter getFuelMeter() { return fuelMeter; }
+
+	@Override
+	public void setFuelMeter(FuelMeter meter) { fuelMeter = meter; }
+
+	@Override
+	public ResourceLimiter getResourceLimiter() { return limiter; }
+
+	@Override
+	public void setResourceLimiter(ResourceLimiter limiter) {
+		this.limiter = limiter;
+		maxCallDepth = limiter.maxCallDepth();
+		values.setMaxSize(limiter.maxStackSlots());
+	}
+
+	@Override
+	public EpochDeadline getEpochDeadline() { return epochDeadline; }
+
+	@Override
+	public void setEpochDeadline(EpochDeadline deadline) { epochDeadline = deadline; }
+
 	@Override
 	public boolean hasRuntimeValidation() {
 		return runtimeValidation;
@@ -1,12 +1,20 @@
 package tinywasmr.engine.exec.vm;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
+import tinywasmr.engine.exec.epoch.EpochDeadline;
+import tinywasmr.engine.exec.frame.BlockFrame;
 import tinywasmr.engine.exec.frame.ExternalFrame;
 import tinywasmr.engine.exec.frame.Frame;
+import tinywasmr.engine.exec.frame.FramePool;
 import tinywasmr.engine.exec.frame.FunctionFrame;
+import tinywasmr.engine.exec.frame.IfFrame;
 import tinywasmr.engine.exec.frame.InstancedFrame;
+import tinywasmr.engine.exec.frame.LoopFrame;
+import tinywasmr.engine.exec.fuel.FuelMeter;
 import tinywasmr.engine.exec.instance.Function;
+import tinywasmr.engine.exec.limit.ResourceLimiter;
 import tinywasmr.engine.exec.trap.ExternalTrap;
 import tinywasmr.engine.exec.trap.ModuleTrap;
 import tinywasmr.engine.exec.trap.Trap;
@@ -56,6 +64,20 @@ public interface Machine {
 		return null;
 	}
 
+	/**
+	 * <p>
+	 * Get the stack storing locals and operands of all frames in this machine.
+	 * Frames are bound to this stack when they are pushed, so pushing to the value
+	 * stack is the same as pushing to the operand stack of current frame.
+	 * </p>
+	 * <p>
+	 * This method has no default implementation, because every frame and
+	 * instruction uses the value stack. Machines implemented before the value
+	 * stack was introduced must create a {@link ValueStack} and return it here.
+	 * </p>
+	 */
+	ValueStack getValueStack();
+
 	void pushFrame(Frame frame);
 
 	default FunctionFrame call(Function function, Value[] parameters) {
@@ -81,8 +103,83 @@ public interface Machine {
 		return funcFrame;
 	}
 
+	/**
+	 * <p>
+	 * Pop the current frame. The popped frame is returned to the caller and never
+	 * recycled, so it can still be used after popping. Use
+	 * {@link #unwind(int, int)} to discard frames and let the machine reuse them.
+	 * </p>
+	 *
+	 * @return The popped frame.
+	 */
 	Frame popFrame();
 
+	/**
+	 * <p>
+	 * Pop the current frame and move the values at the top of its operand stack to
+	 * the operand stack of the next current frame, like the results of a block.
+	 * </p>
+	 *
+	 * @param results The number of values to move.
+	 * @return The popped frame.
+	 */
+	default Frame popFrame(int results) {
+		Value[] values = new Value[results];
+		for (int i = results - 1; i >= 0; i--) values[i] = peekFrame().popOprand();
+		Frame out = popFrame();
+		for (Value val : values) peekFrame().pushOperand(val);
+		return out;
+	}
+
+	/**
+	 * <p>
+	 * Pop the frames above the frame at given index in frame stack, and move the
+	 * values at the top of operand stack of current frame to the operand stack of
+	 * that frame, like branching out of nested blocks. The popped frames are
+	 * discarded, so frames obtained from {@link #getFramePool()} are recycled.
+	 * </p>
+	 *
+	 * @param index   The index of frame that will be the current frame.
+	 * @param results The number of values to move.
+	 */
+	default void unwind(int index, int results) {
+		while (getFrameStack().size() - 1 > index) popFrame(results);
+	}
+
+	/**
+	 * <p>
+	 * Get the number of block, loop and if frames at the top of frame stack, plus
+	 * the frame below them (usually the function frame). This is the number of
+	 * labels that branch instructions can target.
+	 * </p>
+	 */
+	default int getBlockDepth() {
+		List<Frame> frames = getFrameStack();
+
+		for (int i = frames.size() - 1; i >= 0; i--) {
+			Frame frame = frames.get(i);
+			if (!(frame instanceof BlockFrame || frame instanceof IfFrame || frame instanceof LoopFrame))
+				return frames.size() - i;
+		}
+
+		throw new IllegalStateException("Unable to count depth; no external frame?");
+	}
+
+	/**
+	 * <p>
+	 * Get the pool for creating frames of blocks and calls in this machine. Frames
+	 * obtained from the pool are recycled when they are discarded by
+	 * {@link #unwind(int, int)}.
+	 * </p>
+	 * <p>
+	 * The default implementation returns a new pool on every call, so frames are
+	 * never recycled and machines without a pool of their own still work.
+	 * </p>
+	 */
+	default FramePool getFramePool() {
+		return new FramePool();
+	}
+
 	/**
 	 * <p>
 	 * Get the current trap. Returns {@code null} if the virtual machine is not
@@ -104,6 +201,124 @@ public interface Machine {
 		setTrap(new ExternalTrap(t));
 	}
 
+	/**
+	 * <p>
+	 * Get the future that this virtual machine is waiting for. Returns {@code null}
+	 * if the virtual machine is not suspended. The default implementation never
+	 * suspends.
+	 * </p>
+	 *
+	 * @see tinywasmr.engine.module.func.extern.AsyncFunctionDecl
+	 */
+	default CompletableFuture<?> getSuspension() {
+		return null;
+	}
+
+	/**
+	 * <p>
+	 * Suspend this virtual machine until the future is completed, or resume it by
+	 * passing {@code null}. Executors return
+	 * {@link tinywasmr.engine.exec.StepResult#SUSPENDED} without stepping while
+	 * the future is not completed.
+	 * </p>
+	 * <p>
+	 * The default implementation only accepts {@code null}, because the machine
+	 * can't be suspended.
+	 * </p>
+	 *
+	 * @param future The future to wait for.
+	 */
+	default void suspend(CompletableFuture<?> future) {
+		if (future != null) throw new UnsupportedOperationException("This machine can't be suspended");
+	}
+
+	/**
+	 * <p>
+	 * Get the fuel meter of this virtual machine. Returns {@code null} if the fuel
+	 * is not metered. The default implementation never meters the fuel.
+	 * </p>
+	 */
+	default FuelMeter getFuelMeter() {
+		return null;
+	}
+
+	/**
+	 * <p>
+	 * Set the fuel meter, or remove it by passing {@code null}. The default
+	 * implementation only accepts {@code null}.
+	 * </p>
+	 */
+	default void setFuelMeter(FuelMeter meter) {
+		if (meter != null) throw new UnsupportedOperationException("This machine can't meter fuel");
+	}
+
+	/**
+	 * <p>
+	 * Get the limiter of call depth and value stack of this virtual machine. The
+	 * default implementation returns {@link ResourceLimiter#UNLIMITED}.
+	 * </p>
+	 */
+	default ResourceLimiter getResourceLimiter() {
+		return ResourceLimiter.UNLIMITED;
+	}
+
+	/**
+	 * <p>
+	 * Set the limiter of call depth and value stack. Pushing a function frame
+	 * beyond {@link ResourceLimiter#maxCallDepth()} or pushing values beyond
+	 * {@link ResourceLimiter#maxStackSlots()} traps with
+	 * {@link tinywasmr.engine.exec.limit.ResourceLimitException}.
+	 * </p>
+	 * <p>
+	 * The default implementation only accepts {@link ResourceLimiter#UNLIMITED}.
+	 * </p>
+	 */
+	default void setResourceLimiter(ResourceLimiter limiter) {
+		if (limiter != ResourceLimiter.UNLIMITED)
+			throw new UnsupportedOperationException("This machine can't limit call depth and value stack");
+	}
+
+	/**
+	 * <p>
+	 * Get the epoch deadline of this virtual machine. Returns {@code null} if this
+	 * virtual machine can't be interrupted by epoch, which is the default.
+	 * </p>
+	 */
+	default EpochDeadline getEpochDeadline() {
+		return null;
+	}
+
+	/**
+	 * <p>
+	 * Set the epoch deadline, or remove it by passing {@code null}. The default
+	 * implementation only accepts {@code null}.
+	 * </p>
+	 */
+	default void setEpochDeadline(EpochDeadline deadline) {
+		if (deadline != null) throw new UnsupportedOperationException("This machine can't be interrupted by epoch");
+	}
+
+	/**
+	 * <p>
+	 * Check whether the epoch reached the deadline of this virtual machine.
+	 * </p>
+	 */
+	default boolean isDeadlineExpired() {
+		EpochDeadline deadline = getEpochDeadline();
+		return deadline != null && deadline.isExpired();
+	}
+
+	/**
+	 * <p>
+	 * Block current thread until the future that this virtual machine is waiting
+	 * for is completed, either normally or exceptionally.
+	 * </p>
+	 */
+	default void awaitSuspension() {
+		CompletableFuture<?> suspension = getSuspension();
+		if (suspension != null) suspension.handle(($, e) -> null).join();
+	}
+
 	/**
 	 * <p>
 	 * Check whether to validate during runtime. By default, the virtual machine
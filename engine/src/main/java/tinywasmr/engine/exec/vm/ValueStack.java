@@ -0,0 +1,406 @@
+package tinywasmr.engine.exec.vm;
+
+import java.util.Arrays;
+
+import tinywasmr.engine.exec.TrapException;
+import tinywasmr.engine.exec.limit.ResourceLimitException;
+import tinywasmr.engine.exec.value.NumberF32Value;
+import tinywasmr.engine.exec.value.NumberF64Value;
+import tinywasmr.engine.exec.value.NumberI32Value;
+import tinywasmr.engine.exec.value.NumberI64Value;
+import tinywasmr.engine.exec.value.Value;
+import tinywasmr.engine.type.value.NumberType;
+import tinywasmr.engine.type.value.ValueType;
+
+/**
+ * <p>
+ * The stack of all locals and operands in a virtual machine. Numbers are stored
+ * as raw bits in a {@code long} array with a type tag for each slot, so pushing
+ * and popping numbers doesn't allocate. Other values (references and vectors)
+ * are stored as {@link Value} objects. {@link Value} objects for numbers are
+ * only created when reading the stack with {@link #get(int)} or {@link #pop()}.
+ * </p>
+ * <p>
+ * Each frame in the machine owns a region of this stack, starting at its base
+ * pointer and ending at the base pointer of the frame above it (or the top of
+ * the stack for the current frame). The base pointers are pushed with
+ * {@link #enter(int)} and popped with {@link #leave(int)}.
+ * </p>
+ * <p>
+ * The {@link Value} objects of removed values are cleared, so this stack doesn't
+ * keep references above its top alive. Use {@link #hold(int)} to keep the
+ * values at the top while the frames below them are popped.
+ * </p>
+ */
+public final class ValueStack {
+	public static final byte I32 = 0;
+	public static final byte I64 = 1;
+	public static final byte F32 = 2;
+	public static final byte F64 = 3;
+	public static final byte REF = 4;
+
+	private long[] slots;
+	private byte[] tags;
+	private Value[] refs;
+	private int top = 0;
+	private int[] bases = new int[16];
+	private int depth = 0;
+	private int maxSize = Integer.MAX_VALUE;
+	private long[] heldSlots = new long[4];
+	private byte[] heldTags = new byte[4];
+	private Value[] heldRefs = new Value[4];
+	private int held = -1;
+
+	public ValueStack(int capacity) {
+		slots = new long[capacity];
+		tags = new byte[capacity];
+		refs = new Value[capacity];
+	}
+
+	public ValueStack() {
+		this(256);
+	}
+
+	/**
+	 * <p>
+	 * Get the number of values in this stack.
+	 * </p>
+	 */
+	public int size() {
+		return top;
+	}
+
+	/**
+	 * <p>
+	 * Remove all values above given index.
+	 * </p>
+	 */
+	public void truncate(int size) {
+		if (size < 0 || size > top) throw new IndexOutOfBoundsException(size);
+		drop(size);
+	}
+
+	/**
+	 * <p>
+	 * Lower the top of stack to given index and clear the {@link Value} objects
+	 * of the values above it.
+	 * </p>
+	 */
+	private void drop(int size) {
+		Arrays.fill(refs, size, top, null);
+		top = size;
+	}
+
+	public int getMaxSize() { return maxSize; }
+
+	/**
+	 * <p>
+	 * Set the maximum number of values in this stack. The limit is checked when
+	 * the stack needs more capacity, so the stack may hold more values than the
+	 * limit if its capacity is already larger.
+	 * </p>
+	 */
+	public void setMaxSize(int maxSize) {
+		if (maxSize <= 0) throw new IllegalArgumentException("Maximum size must be positive");
+		this.maxSize = maxSize;
+	}
+
+	private void grow() {
+		if (slots.length >= maxSize) throw new TrapException(new ResourceLimitException(
+			"Value stack exceeded %d slots".formatted(maxSize)));
+		resize((int) Math.min(slots.length * 2L, maxSize));
+	}
+
+	/**
+	 * <p>
+	 * Make sure the stack can hold given number of values above the top without
+	 * growing, as long as it is within the maximum size. This is used for
+	 * reserving the slots of validated functions in one go.
+	 * </p>
+	 */
+	public void reserve(int count) {
+		long required = (long) top + count;
+		if (required <= slots.length || slots.length >= maxSize) return;
+		resize((int) Math.min(Math.max(required, slots.length * 2L), maxSize));
+	}
+
+	private void resize(int capacity) {
+		slots = Arrays.copyOf(slots, capacity);
+		tags = Arrays.copyOf(tags, capacity);
+		refs = Arrays.copyOf(refs, capacity);
+	}
+
+	/**
+	 * <p>
+	 * Push the base pointer of a new frame.
+	 * </p>
+	 *
+	 * @param base The index of the first value owned by the frame. Values between
+	 *             this index and the top of the stack are moved to the new frame.
+	 * @return The depth of the frame, which is used for popping it.
+	 */
+	public int enter(int base) {
+		if (base < 0 || base > top) throw new IndexOutOfBoundsException(base);
+		if (depth == bases.length) bases = Arrays.copyOf(bases, depth * 2);
+		bases[depth] = base;
+		return depth++;
+	}
+
+	/**
+	 * <p>
+	 * Pop the base pointer of the frame at given depth and all frames above it,
+	 * removing the values owned by these frames.
+	 * </p>
+	 */
+	public void leave(int depth) {
+		if (depth < 0 || depth >= this.depth) throw new IndexOutOfBoundsException(depth);
+		// The stack may be truncated below the base when a loop below is branched
+		if (top > bases[depth]) drop(bases[depth]);
+		this.depth = depth;
+	}
+
+	/**
+	 * <p>
+	 * Get the base pointer of the frame at given depth.
+	 * </p>
+	 */
+	public int base(int depth) {
+		return bases[depth];
+	}
+
+	/**
+	 * <p>
+	 * Get the index after the last value owned by the frame at given depth.
+	 * </p>
+	 */
+	public int end(int depth) {
+		return depth + 1 < this.depth ? Math.min(bases[depth + 1], top) : top;
+	}
+
+	public void pushI32(int value) {
+		if (top == slots.length) grow();
+		slots[top] = value;
+		tags[top++] = I32;
+	}
+
+	public void pushI64(long value) {
+		if (top == slots.length) grow();
+		slots[top] = value;
+		tags[top++] = I64;
+	}
+
+	public void pushF32(float value) {
+		if (top == slots.length) grow();
+		slots[top] = Float.floatToRawIntBits(value);
+		tags[top++] = F32;
+	}
+
+	public void pushF64(double value) {
+		if (top == slots.length) grow();
+		slots[top] = Double.doubleToRawLongBits(value);
+		tags[top++] = F64;
+	}
+
+	public void pushBoolean(boolean value) {
+		pushI32(value ? 1 : 0);
+	}
+
+	/**
+	 * <p>
+	 * Push a number from its raw bits.
+	 * </p>
+	 *
+	 * @param tag  One of {@link #I32}, {@link #I64}, {@link #F32} or {@link #F64}.
+	 * @param bits The bits of the number. Values of 32-bit types are stored in the
+	 *             lower 32 bits.
+	 */
+	public void push(byte tag, long bits) {
+		if (top == slots.length) grow();
+		slots[top] = bits;
+		tags[top++] = tag;
+	}
+
+	/**
+	 * <p>
+	 * Push the zero value of given type, like the initial value of locals.
+	 * </p>
+	 */
+	public void pushZero(ValueType type) {
+		if (type instanceof NumberType number) push(tag(number), 0L);
+		else push(type.zero());
+	}
+
+	public void push(Value value) {
+		if (value instanceof NumberI32Value i32) pushI32(i32.i32());
+		else if (value instanceof NumberI64Value i64) pushI64(i64.i64());
+		else if (value instanceof NumberF32Value f32) pushF32(f32.f32());
+		else if (value instanceof NumberF64Value f64) pushF64(f64.f64());
+		else {
+			if (top == slots.length) grow();
+			refs[top] = value;
+			tags[top++] = REF;
+		}
+	}
+
+	/**
+	 * <p>
+	 * Pop a number as its raw bits. The {@link Value} object is cleared in case
+	 * the value is not a number, which only happens in code that is not validated.
+	 * </p>
+	 */
+	private long popBits() {
+		refs[--top] = null;
+		return slots[top];
+	}
+
+	public int popI32() {
+		return (int) popBits();
+	}
+
+	public long popI64() {
+		return popBits();
+	}
+
+	public float popF32() {
+		return Float.intBitsToFloat((int) popBits());
+	}
+
+	public double popF64() {
+		return Double.longBitsToDouble(popBits());
+	}
+
+	public boolean popBoolean() {
+		return (int) popBits() != 0;
+	}
+
+	public Value pop() {
+		Value value = get(top - 1);
+		refs[--top] = null;
+		return value;
+	}
+
+	public Value peek() {
+		return get(top - 1);
+	}
+
+	/**
+	 * <p>
+	 * Get the value at given index as {@link Value} object.
+	 * </p>
+	 */
+	public Value get(int index) {
+		if (index < 0 || index >= top) throw new IndexOutOfBoundsException(index);
+		return tags[index] == REF ? refs[index] : value(tags[index], slots[index]);
+	}
+
+	public void set(int index, Value value) {
+		if (index < 0 || index >= top) throw new IndexOutOfBoundsException(index);
+		int last = top;
+		refs[index] = null;
+		top = index;
+		push(value);
+		top = last;
+	}
+
+	/**
+	 * <p>
+	 * Push a copy of the value at given index, like {@code local.get}.
+	 * </p>
+	 */
+	public void load(int index) {
+		if (top == slots.length) grow();
+		slots[top] = slots[index];
+		refs[top] = refs[index];
+		tags[top++] = tags[index];
+	}
+
+	/**
+	 * <p>
+	 * Pop the value at the top and store it at given index, like
+	 * {@code local.set}.
+	 * </p>
+	 */
+	public void store(int index) {
+		tee(index);
+		refs[--top] = null;
+	}
+
+	/**
+	 * <p>
+	 * Store the value at the top to given index without popping it, like
+	 * {@code local.tee}.
+	 * </p>
+	 */
+	public void tee(int index) {
+		slots[index] = slots[top - 1];
+		refs[index] = refs[top - 1];
+		tags[index] = tags[top - 1];
+	}
+
+	/**
+	 * <p>
+	 * Pop given number of values from the top and hold them, so the frames below
+	 * can be popped without discarding them. The held values are pushed back with
+	 * {@link #release()}, like the results of a popped frame.
+	 * </p>
+	 */
+	public void hold(int count) {
+		if (held >= 0) throw new IllegalStateException("Values are already held");
+		if (count < 0 || count > top) throw new IndexOutOfBoundsException(count);
+
+		if (count > heldSlots.length) {
+			heldSlots = new long[count];
+			heldTags = new byte[count];
+			heldRefs = new Value[count];
+		}
+
+		int from = top - count;
+		System.arraycopy(slots, from, heldSlots, 0, count);
+		System.arraycopy(tags, from, heldTags, 0, count);
+		System.arraycopy(refs, from, heldRefs, 0, count);
+		drop(from);
+		held = count;
+	}
+
+	/**
+	 * <p>
+	 * Push the values held by {@link #hold(int)} to the top of stack.
+	 * </p>
+	 */
+	public void release() {
+		if (held < 0) throw new IllegalStateException("No values are held");
+		int count = held;
+		held = -1;
+		// The values were above the frames popped after holding them, so they fit
+
+		System.arraycopy(heldSlots, 0, slots, top, count);
+		System.arraycopy(heldTags, 0, tags, top, count);
+		System.arraycopy(heldRefs, 0, refs, top, count);
+		Arrays.fill(heldRefs, 0, count, null);
+		top += count;
+	}
+
+	public static byte tag(NumberType type) {
+		return switch (type) {
+		case I32 -> I32;
+		case I64 -> I64;
+		case F32 -> F32;
+		case F64 -> F64;
+		};
+	}
+
+	/**
+	 * <p>
+	 * Create {@link Value} object of a number from its raw bits.
+	 * </p>
+	 */
+	public static Value value(byte tag, long bits) {
+		return switch (tag) {
+		case I32 -> new NumberI32Value((int) bits);
+		case I64 -> new NumberI64Value(bits);
+		case F32 -> new NumberF32Value(Float.intBitsToFloat((int) bits));
+		case F64 -> new NumberF64Value(Double.longBitsToDouble(bits));
+		default -> throw new IllegalArgumentException("Not a number tag: %d".formatted(tag));
+		};
+	}
+}
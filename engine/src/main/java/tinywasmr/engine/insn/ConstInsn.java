@@ -11,6 +11,6 @@ import tinywasmr.engine.exec.vm.Machine;
 public record ConstInsn(Value value) implements Instruction {
 	@Override
 	public void execute(Machine vm) {
-		vm.peekFrame().pushOperand(value);
+		vm.getValueStack().push(value);
 	}
 }
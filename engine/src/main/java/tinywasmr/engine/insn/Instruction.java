@@ -1,5 +1,8 @@
 package tinywasmr.engine.insn;
 
+import java.util.List;
+
+import tinywasmr.engine.exec.instance.Instance;
 import tinywasmr.engine.exec.vm.Machine;
 
 public interface Instruction {
@@ -12,4 +15,32 @@ public interface Instruction {
 	 * @param vm The virtual machine to manipulate the states.
 	 */
 	void execute(Machine vm);
+
+	/**
+	 * <p>
+	 * Link this instruction to an instance. Instructions that refer to functions,
+	 * memories, globals or tables by their declarations return a
+	 * {@link LinkedInsn} holding the objects of given instance, so they don't have
+	 * to look them up from the instance every time they are executed. Blocks
+	 * return a copy with linked instructions. Other instructions return
+	 * themselves.
+	 * </p>
+	 * 
+	 * @param instance The instance that will execute this instruction.
+	 * @return The linked instruction.
+	 */
+	default Instruction link(Instance instance) {
+		return this;
+	}
+
+	/**
+	 * <p>
+	 * Link all instructions in the list.
+	 * </p>
+	 * 
+	 * @see #link(Instance)
+	 */
+	static List<Instruction> link(List<Instruction> instructions, Instance instance) {
+		return instructions.stream().map(insn -> insn.link(instance)).toList();
+	}
 }
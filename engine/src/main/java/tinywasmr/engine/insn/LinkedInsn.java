@@ -0,0 +1,26 @@
+package tinywasmr.engine.insn;
+
+import tinywasmr.engine.exec.instance.Instance;
+
+/**
+ * <p>
+ * An instruction that is bound to the functions, memories, globals or tables of
+ * an instance. Linked instructions are created by
+ * {@link Instruction#link(Instance)} and only valid in the instance they are
+ * linked to.
+ * </p>
+ */
+public interface LinkedInsn extends Instruction {
+	/**
+	 * <p>
+	 * Get the instruction before linking, which refers to the declarations instead
+	 * of the objects of instance.
+	 * </p>
+	 */
+	Instruction unlinked();
+
+	@Override
+	default Instruction link(Instance instance) {
+		return unlinked().link(instance);
+	}
+}
@@ -2,14 +2,9 @@ package tinywasmr.engine.insn.control;
 
 import java.util.List;
 
-import tinywasmr.engine.exec.frame.BlockFrame;
 import tinywasmr.engine.exec.frame.Frame;
-import tinywasmr.engine.exec.frame.IfFrame;
-import tinywasmr.engine.exec.frame.LoopFrame;
-import tinywasmr.engine.exec.value.Value;
 import tinywasmr.engine.exec.vm.Machine;
 import tinywasmr.engine.insn.Instruction;
-import tinywasmr.engine.type.value.ValueType;
 
 public interface BranchBaseInsn extends Instruction {
 	/**
@@ -20,39 +15,40 @@ public interface BranchBaseInsn extends Instruction {
 	 */
 	int nestIndex();
 
-	static int countBlockDepth(Machine vm) {
-		for (int i = vm.getFrameStack().size() - 1; i >= 0; i--) {
-			if (!(vm.getFrameStack().get(i) instanceof BlockFrame ||
-				vm.getFrameStack().get(i) instanceof IfFrame ||
-				vm.getFrameStack().get(i) instanceof LoopFrame)) {
-				return vm.getFrameStack().size() - i;
-			}
-		}
+	/**
+	 * <p>
+	 * The number of values moved to the target frame when branching, which is
+	 * resolved from the enclosing blocks when parsing the function. Branching to a
+	 * loop moves no values. The value is {@code -1} if the arity is not resolved,
+	 * in which case the arity is taken from the target frame when branching.
+	 * </p>
+	 */
+	default int arity() {
+		return -1;
+	}
 
-		throw new IllegalStateException("Unable to count depth; no external frame?");
+	static int countBlockDepth(Machine vm) {
+		return vm.getBlockDepth();
 	}
 
 	static void execute(Machine vm, int index) {
-		int depth = countBlockDepth(vm);
+		execute(vm, index, -1);
+	}
+
+	static void execute(Machine vm, int index, int arity) {
+		int depth = vm.getBlockDepth();
 		if (index >= depth) throw new IllegalArgumentException("Illegal br label: %d".formatted(index));
 
-		Frame targetFrame = vm.getFrameStack().get(vm.getFrameStack().size() - index - 1);
+		List<Frame> frames = vm.getFrameStack();
+		int targetIndex = frames.size() - index - 1;
+		Frame targetFrame = frames.get(targetIndex);
 		targetFrame.branchThis();
-
-		if (targetFrame.isFrameFinished()) {
-			List<ValueType> resultTypes = targetFrame.getBranchResultTypes().blockResults();
-			Value[] results = new Value[resultTypes.size()];
-
-			for (int i = results.length - 1; i >= 0; i--) {
-				Value val = vm.peekFrame().popOprand();
-				// TODO validation
-				results[i] = val;
-			}
-
-			for (Value val : results) targetFrame.pushOperand(val);
-		}
-
-		while (vm.peekFrame() != targetFrame) vm.popFrame();
+		// The types and number of the results are checked by ModuleValidator, so the
+		// results are only counted here
+		int results = arity >= 0 ? arity
+			: targetFrame.isFrameFinished() ? targetFrame.getBranchResultTypes().blockResults().size()
+			: 0;
+		vm.unwind(targetIndex, results);
 	}
 
 	/**
@@ -63,6 +59,6 @@ public interface BranchBaseInsn extends Instruction {
 	 */
 	@Override
 	default void execute(Machine vm) {
-		execute(vm, nestIndex());
+		execute(vm, nestIndex(), arity());
 	}
 }
@@ -2,9 +2,13 @@ package tinywasmr.engine.insn.control;
 
 import tinywasmr.engine.exec.vm.Machine;
 
-public record BranchIfInsn(int nestIndex) implements BranchBaseInsn {
+public record BranchIfInsn(int nestIndex, int arity) implements BranchBaseInsn {
+	public BranchIfInsn(int nestIndex) {
+		this(nestIndex, -1);
+	}
+
 	@Override
 	public void execute(Machine vm) {
-		if (vm.peekFrame().popOprand().condition()) BranchBaseInsn.super.execute(vm);
+		if (vm.getValueStack().popBoolean()) BranchBaseInsn.super.execute(vm);
 	}
 }
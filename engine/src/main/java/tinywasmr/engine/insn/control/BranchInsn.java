@@ -1,4 +1,7 @@
 package tinywasmr.engine.insn.control;
 
-public record BranchInsn(int nestIndex) implements BranchBaseInsn {
+public record BranchInsn(int nestIndex, int arity) implements BranchBaseInsn {
+	public BranchInsn(int nestIndex) {
+		this(nestIndex, -1);
+	}
 }
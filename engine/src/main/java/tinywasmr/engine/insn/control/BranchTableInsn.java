@@ -2,7 +2,11 @@ package tinywasmr.engine.insn.control;
 
 import tinywasmr.engine.exec.vm.Machine;
 
-public record BranchTableInsn(int[] labels, int defaultLabel) implements BranchBaseInsn {
+public record BranchTableInsn(int[] labels, int defaultLabel, int arity) implements BranchBaseInsn {
+	public BranchTableInsn(int[] labels, int defaultLabel) {
+		this(labels, defaultLabel, -1);
+	}
+
 	@Override
 	public int nestIndex() {
 		return -1;
@@ -10,7 +14,7 @@ public record BranchTableInsn(int[] labels, int defaultLabel) implements BranchB
 
 	@Override
 	public void execute(Machine vm) {
-		int i = vm.peekFrame().popOprand().i32();
-		BranchBaseInsn.execute(vm, i >= 0 && i < labels.length ? labels[i] : defaultLabel);
+		int i = vm.getValueStack().popI32();
+		BranchBaseInsn.execute(vm, i >= 0 && i < labels.length ? labels[i] : defaultLabel, arity);
 	}
 }
@@ -2,6 +2,7 @@ package tinywasmr.engine.insn.control;
 
 import tinywasmr.engine.exec.ValidationException;
 import tinywasmr.engine.exec.instance.Function;
+import tinywasmr.engine.exec.instance.Instance;
 import tinywasmr.engine.exec.table.Table;
 import tinywasmr.engine.exec.value.FuncRefValue;
 import tinywasmr.engine.exec.value.RefValue;
@@ -14,7 +15,10 @@ import tinywasmr.engine.type.FunctionType;
 public record CallIndirectInsn(FunctionType type, TableDecl table) implements Instruction {
 	@Override
 	public void execute(Machine vm) {
-		Table table = vm.peekInstancedFrame().getInstance().table(this.table);
+		execute(vm, vm.peekInstancedFrame().getInstance().table(table));
+	}
+
+	public static void execute(Machine vm, Table table) {
 		Value index = vm.peekFrame().popOprand();
 		RefValue ref = table.get(index.i32());
 		if (!(ref instanceof FuncRefValue funcRef))
@@ -23,4 +27,9 @@ public record CallIndirectInsn(FunctionType type, TableDecl table) implements In
 		if (function == null) throw new NullPointerException("funcref is null");
 		CallInsn.callFunction(vm, function);
 	}
+
+	@Override
+	public Instruction link(Instance instance) {
+		return new LinkedCallIndirectInsn(this, instance.table(table));
+	}
 }
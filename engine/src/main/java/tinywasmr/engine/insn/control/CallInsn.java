@@ -4,10 +4,12 @@ import java.util.List;
 
 import tinywasmr.engine.exec.ValidationException;
 import tinywasmr.engine.exec.instance.Function;
+import tinywasmr.engine.exec.instance.Instance;
 import tinywasmr.engine.exec.value.Value;
 import tinywasmr.engine.exec.vm.Machine;
 import tinywasmr.engine.insn.Instruction;
 import tinywasmr.engine.module.func.FunctionDecl;
+import tinywasmr.engine.module.func.ModuleFunctionDecl;
 import tinywasmr.engine.type.value.ValueType;
 
 public record CallInsn(FunctionDecl function) implements Instruction {
@@ -17,14 +19,29 @@ public record CallInsn(FunctionDecl function) implements Instruction {
 		callFunction(vm, function);
 	}
 
+	@Override
+	public Instruction link(Instance instance) {
+		return new LinkedCallInsn(this, instance.function(function));
+	}
+
 	public static void callFunction(Machine vm, Function function) {
+		// The parameters of module function stay in value stack and become its locals
+		// Validated module functions get the parameters of declared types, so they
+		// don't need runtime validation
+		boolean validate = vm.hasRuntimeValidation() && !function.isValidated();
+
+		if (!validate && function.declaration() instanceof ModuleFunctionDecl) {
+			vm.pushFrame(vm.getFramePool().obtainCall(function));
+			return;
+		}
+
 		List<ValueType> paramTypes = function.type().inputs().types();
 		Value[] params = new Value[paramTypes.size()];
 
 		for (int i = params.length - 1; i >= 0; i--) {
 			Value val = vm.peekFrame().popOprand();
 
-			if (vm.hasRuntimeValidation() && !val.type().equals(paramTypes.get(i)))
+			if (validate && !val.type().equals(paramTypes.get(i)))
 				throw new ValidationException("Type mismatch: %s (stack) != %s (declared)"
 					.formatted(val.type(), paramTypes.get(i)));
 
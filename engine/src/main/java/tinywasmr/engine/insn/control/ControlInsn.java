@@ -26,25 +26,30 @@ public enum ControlInsn implements Instruction {
 		@Override
 		public void execute(Machine vm) {
 			FunctionFrame func = vm.peekFunctionFrame();
-			List<ValueType> resultTypes = vm.peekFunctionFrame().getBranchResultTypes().blockResults();
-			Value[] results = new Value[resultTypes.size()];
-
-			for (int i = results.length - 1; i >= 0; i--) {
-				Value val = vm.peekFrame().popOprand();
-				if (vm.hasRuntimeValidation() && !val.type().equals(resultTypes.get(i)))
-					throw new ValidationException("Type mismatch: %s (stack) != %s (block)"
-						.formatted(val.type(), resultTypes.get(i)));
-				results[i] = val;
+			List<ValueType> resultTypes = func.getBranchResultTypes().blockResults();
+
+			if (vm.hasRuntimeValidation()) {
+				List<Value> operands = vm.peekFrame().getOperandStack();
+
+				for (int i = 0; i < resultTypes.size(); i++) {
+					Value val = operands.get(operands.size() - resultTypes.size() + i);
+					if (!val.type().equals(resultTypes.get(i)))
+						throw new ValidationException("Type mismatch: %s (stack) != %s (block)"
+							.formatted(val.type(), resultTypes.get(i)));
+				}
 			}
 
-			Frame poppedFrame;
-			while ((poppedFrame = vm.popFrame()) != func) {
-				if (poppedFrame instanceof FunctionFrame && poppedFrame != func)
-					throw new RuntimeException("Popped wrong function frame, check VM implementation");
+			// The results are moved to the operand stack of the frame below the function
+			List<Frame> frames = vm.getFrameStack();
+			int index = frames.size() - 1;
+
+			while (frames.get(index) != func) {
+				if (frames.get(index) instanceof FunctionFrame)
+					throw new RuntimeException("Returning through another function frame, check VM implementation");
+				index--;
 			}
 
-			for (Value val : results) vm.peekFrame().pushOperand(val);
-			return;
+			vm.unwind(index - 1, resultTypes.size());
 		}
 	};
 
@@ -2,7 +2,7 @@ package tinywasmr.engine.insn.control;
 
 import java.util.List;
 
-import tinywasmr.engine.exec.frame.IfFrame;
+import tinywasmr.engine.exec.instance.Instance;
 import tinywasmr.engine.exec.vm.Machine;
 import tinywasmr.engine.insn.Instruction;
 import tinywasmr.engine.type.BlockType;
@@ -10,7 +10,12 @@ import tinywasmr.engine.type.BlockType;
 public record IfInsn(BlockType blockType, List<Instruction> truePath, List<Instruction> falsePath) implements Instruction {
 	@Override
 	public void execute(Machine vm) {
-		boolean trueBranch = vm.peekFrame().popOprand().condition();
-		vm.pushFrame(new IfFrame(this, trueBranch));
+		boolean trueBranch = vm.getValueStack().popBoolean();
+		vm.pushFrame(vm.getFramePool().obtainIf(this, trueBranch));
+	}
+
+	@Override
+	public Instruction link(Instance instance) {
+		return new IfInsn(blockType, Instruction.link(truePath, instance), Instruction.link(falsePath, instance));
 	}
 }
@@ -0,0 +1,12 @@
+package tinywasmr.engine.insn.control;
+
+import tinywasmr.engine.exec.table.Table;
+import tinywasmr.engine.exec.vm.Machine;
+import tinywasmr.engine.insn.LinkedInsn;
+
+public record LinkedCallIndirectInsn(CallIndirectInsn unlinked, Table table) implements LinkedInsn {
+	@Override
+	public void execute(Machine vm) {
+		CallIndirectInsn.execute(vm, table);
+	}
+}
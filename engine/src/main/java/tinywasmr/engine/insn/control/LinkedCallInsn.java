@@ -0,0 +1,12 @@
+package tinywasmr.engine.insn.control;
+
+import tinywasmr.engine.exec.instance.Function;
+import tinywasmr.engine.exec.vm.Machine;
+import tinywasmr.engine.insn.LinkedInsn;
+
+public record LinkedCallInsn(CallInsn unlinked, Function function) implements LinkedInsn {
+	@Override
+	public void execute(Machine vm) {
+		CallInsn.callFunction(vm, function);
+	}
+}
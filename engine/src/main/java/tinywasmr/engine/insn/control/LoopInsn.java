@@ -2,7 +2,7 @@ package tinywasmr.engine.insn.control;
 
 import java.util.List;
 
-import tinywasmr.engine.exec.frame.LoopFrame;
+import tinywasmr.engine.exec.instance.Instance;
 import tinywasmr.engine.exec.vm.Machine;
 import tinywasmr.engine.insn.Instruction;
 import tinywasmr.engine.type.BlockType;
@@ -10,6 +10,11 @@ import tinywasmr.engine.type.BlockType;
 public record LoopInsn(BlockType blockType, List<Instruction> instructions) implements Instruction {
 	@Override
 	public void execute(Machine vm) {
-		vm.pushFrame(new LoopFrame(this));
+		vm.pushFrame(vm.getFramePool().obtainLoop(this));
+	}
+
+	@Override
+	public Instruction link(Instance instance) {
+		return new LoopInsn(blockType, Instruction.link(instructions, instance));
 	}
 }
@@ -0,0 +1,32 @@
+package tinywasmr.engine.insn.fused;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import tinywasmr.engine.exec.vm.Machine;
+import tinywasmr.engine.insn.Instruction;
+import tinywasmr.engine.insn.control.BranchIfInsn;
+
+/**
+ * <p>
+ * Fused comparison and {@code br_if}. The comparison can be a single comparison
+ * instruction, {@code i32.eqz} or {@code i64.eqz}, or a comparison that is
+ * already fused with its operands, like {@link LocalConstBinaryOpInsn}.
+ * </p>
+ */
+public record CompareBranchIfInsn(Instruction compare, BranchIfInsn branch) implements FusedInsn {
+	@Override
+	public void execute(Machine vm) {
+		compare.execute(vm);
+		branch.execute(vm);
+	}
+
+	@Override
+	public List<Instruction> instructions() {
+		List<Instruction> instructions = new ArrayList<>();
+		if (compare instanceof FusedInsn fused) instructions.addAll(fused.instructions());
+		else instructions.add(compare);
+		instructions.add(branch);
+		return instructions;
+	}
+}
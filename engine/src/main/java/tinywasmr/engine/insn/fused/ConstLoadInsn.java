@@ -0,0 +1,35 @@
+package tinywasmr.engine.insn.fused;
+
+import java.util.List;
+
+import tinywasmr.engine.exec.instance.Instance;
+import tinywasmr.engine.exec.vm.Machine;
+import tinywasmr.engine.insn.ConstInsn;
+import tinywasmr.engine.insn.Instruction;
+
+/**
+ * <p>
+ * Fused {@code const; load}, which loads from a constant address like the
+ * static data of the module.
+ * </p>
+ *
+ * @param load The {@link tinywasmr.engine.insn.memory.LoadInsn}, or its linked
+ *             instruction.
+ */
+public record ConstLoadInsn(ConstInsn address, Instruction load) implements FusedInsn {
+	@Override
+	public void execute(Machine vm) {
+		vm.getValueStack().push(address.value());
+		load.execute(vm);
+	}
+
+	@Override
+	public List<Instruction> instructions() {
+		return List.of(address, load);
+	}
+
+	@Override
+	public Instruction link(Instance instance) {
+		return new ConstLoadInsn(address, load.link(instance));
+	}
+}
@@ -0,0 +1,26 @@
+package tinywasmr.engine.insn.fused;
+
+import java.util.List;
+
+import tinywasmr.engine.insn.Instruction;
+
+/**
+ * <p>
+ * An instruction that does the work of a sequence of instructions in one step
+ * of the interpreter, which saves the overhead of stepping each of them.
+ * Executing a fused instruction is the same as executing
+ * {@link #instructions()} in order, so compilers and tools that deal with
+ * single instructions can use these instead.
+ * </p>
+ *
+ * @see tinywasmr.engine.optimize.InstructionFuser
+ */
+public interface FusedInsn extends Instruction {
+	/**
+	 * <p>
+	 * Get the instructions that are fused into this instruction, in the order of
+	 * execution.
+	 * </p>
+	 */
+	List<Instruction> instructions();
+}
@@ -0,0 +1,30 @@
+package tinywasmr.engine.insn.fused;
+
+import java.util.List;
+
+import tinywasmr.engine.exec.frame.FunctionFrame;
+import tinywasmr.engine.exec.vm.Machine;
+import tinywasmr.engine.insn.Instruction;
+import tinywasmr.engine.insn.numeric.NumericBinaryOpInsn;
+import tinywasmr.engine.insn.variable.LocalInsn;
+import tinywasmr.engine.insn.variable.LocalInsnType;
+
+/**
+ * <p>
+ * Fused {@code local.get left; local.get right; op}.
+ * </p>
+ */
+public record LocalBinaryOpInsn(int left, int right, NumericBinaryOpInsn op) implements FusedInsn {
+	@Override
+	public void execute(Machine vm) {
+		FunctionFrame frame = vm.peekFunctionFrame();
+		frame.loadLocal(left);
+		frame.loadLocal(right);
+		op.execute(vm);
+	}
+
+	@Override
+	public List<Instruction> instructions() {
+		return List.of(new LocalInsn(LocalInsnType.GET, left), new LocalInsn(LocalInsnType.GET, right), op);
+	}
+}
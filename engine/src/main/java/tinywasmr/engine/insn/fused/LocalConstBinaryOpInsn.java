@@ -0,0 +1,30 @@
+package tinywasmr.engine.insn.fused;
+
+import java.util.List;
+
+import tinywasmr.engine.exec.vm.Machine;
+import tinywasmr.engine.insn.ConstInsn;
+import tinywasmr.engine.insn.Instruction;
+import tinywasmr.engine.insn.numeric.NumericBinaryOpInsn;
+import tinywasmr.engine.insn.variable.LocalInsn;
+import tinywasmr.engine.insn.variable.LocalInsnType;
+
+/**
+ * <p>
+ * Fused {@code local.get local; const; op}, like {@code i + 1} or
+ * {@code i < n} when {@code n} is a constant.
+ * </p>
+ */
+public record LocalConstBinaryOpInsn(int local, ConstInsn constant, NumericBinaryOpInsn op) implements FusedInsn {
+	@Override
+	public void execute(Machine vm) {
+		vm.peekFunctionFrame().loadLocal(local);
+		vm.getValueStack().push(constant.value());
+		op.execute(vm);
+	}
+
+	@Override
+	public List<Instruction> instructions() {
+		return List.of(new LocalInsn(LocalInsnType.GET, local), constant, op);
+	}
+}
@@ -0,0 +1,38 @@
+package tinywasmr.engine.insn.fused;
+
+import java.util.List;
+
+import tinywasmr.engine.exec.frame.FunctionFrame;
+import tinywasmr.engine.exec.vm.Machine;
+import tinywasmr.engine.insn.ConstInsn;
+import tinywasmr.engine.insn.Instruction;
+import tinywasmr.engine.insn.numeric.NumericBinaryOpInsn;
+import tinywasmr.engine.insn.variable.LocalInsn;
+import tinywasmr.engine.insn.variable.LocalInsnType;
+
+/**
+ * <p>
+ * Fused {@code local.get source; const; op; local.set target} (or
+ * {@code local.tee}), which is how loop counters are usually updated.
+ * </p>
+ *
+ * @param target The {@link LocalInsnType#SET} or {@link LocalInsnType#TEE}
+ *               instruction that stores the result.
+ */
+public record LocalConstUpdateInsn(int source, ConstInsn constant, NumericBinaryOpInsn op, LocalInsn target)
+	implements FusedInsn {
+	@Override
+	public void execute(Machine vm) {
+		FunctionFrame frame = vm.peekFunctionFrame();
+		frame.loadLocal(source);
+		vm.getValueStack().push(constant.value());
+		op.execute(vm);
+		if (target.type() == LocalInsnType.TEE) frame.teeLocal(target.index());
+		else frame.storeLocal(target.index());
+	}
+
+	@Override
+	public List<Instruction> instructions() {
+		return List.of(new LocalInsn(LocalInsnType.GET, source), constant, op, target);
+	}
+}
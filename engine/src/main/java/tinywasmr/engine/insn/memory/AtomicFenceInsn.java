@@ -0,0 +1,21 @@
+package tinywasmr.engine.insn.memory;
+
+import java.lang.invoke.VarHandle;
+
+import tinywasmr.engine.exec.vm.Machine;
+import tinywasmr.engine.insn.Instruction;
+
+/**
+ * <p>
+ * The {@code atomic.fence} instruction, which orders the memory accesses before
+ * and after it.
+ * </p>
+ */
+public enum AtomicFenceInsn implements Instruction {
+	FENCE;
+
+	@Override
+	public void execute(Machine vm) {
+		VarHandle.fullFence();
+	}
+}
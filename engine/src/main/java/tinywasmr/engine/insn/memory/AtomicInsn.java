@@ -0,0 +1,74 @@
+package tinywasmr.engine.insn.memory;
+
+import tinywasmr.engine.exec.TrapException;
+import tinywasmr.engine.exec.instance.Instance;
+import tinywasmr.engine.exec.memory.Memory;
+import tinywasmr.engine.exec.vm.Machine;
+import tinywasmr.engine.exec.vm.ValueStack;
+import tinywasmr.engine.insn.Instruction;
+import tinywasmr.engine.module.memory.MemoryDecl;
+
+/**
+ * <p>
+ * Atomic memory instructions from threads proposal. The effective address must
+ * be a multiple of the access size, otherwise the instruction traps.
+ * {@link AtomicInsnType#WAIT} uses {@link AtomicType#I32} or
+ * {@link AtomicType#I64} for {@code memory.atomic.wait32} and
+ * {@code memory.atomic.wait64}, and traps if the memory is not shared.
+ * {@link AtomicInsnType#NOTIFY} uses {@link AtomicType#I32}.
+ * </p>
+ */
+public record AtomicInsn(MemoryDecl memory, AtomicInsnType insnType, AtomicType type, MemoryArg memarg)
+	implements Instruction {
+	@Override
+	public void execute(Machine vm) {
+		execute(vm, vm.peekInstancedFrame().getInstance().memory(memory));
+	}
+
+	public void execute(Machine vm, Memory memory) {
+		ValueStack stack = vm.getValueStack();
+		int size = type.size();
+
+		switch (insnType) {
+		case LOAD -> type.push(stack, memory.atomicLoad(popAddress(stack), size));
+		case STORE -> {
+			long value = type.pop(stack);
+			memory.atomicStore(popAddress(stack), size, value);
+		}
+		case RMW_CMPXCHG -> {
+			long replacement = type.pop(stack);
+			long expected = type.pop(stack);
+			type.push(stack, memory.atomicCompareExchange(popAddress(stack), size, expected, replacement));
+		}
+		case WAIT -> {
+			long timeout = stack.popI64();
+			long expected = type.pop(stack);
+			long address = popAddress(stack);
+			if (!memory.isShared()) throw new TrapException("memory.atomic.wait on unshared memory");
+			stack.pushI32(memory.atomicWait(address, size, expected, timeout));
+		}
+		case NOTIFY -> {
+			int count = stack.popI32();
+			stack.pushI32(memory.atomicNotify(popAddress(stack), count));
+		}
+		default -> {
+			long operand = type.pop(stack);
+			type.push(stack, memory.atomicRmw(popAddress(stack), size, insnType.op(), operand));
+		}
+		}
+	}
+
+	private long popAddress(ValueStack stack) {
+		long address = memory.type().memory64()
+			? memarg.effectiveAddress(stack.popI64())
+			: memarg.effectiveAddress(stack.popI32());
+		if ((address & (type.size() - 1)) != 0) throw new TrapException("Unaligned atomic access at %d"
+			.formatted(address));
+		return address;
+	}
+
+	@Override
+	public Instruction link(Instance instance) {
+		return new LinkedAtomicInsn(this, instance.memory(memory));
+	}
+}
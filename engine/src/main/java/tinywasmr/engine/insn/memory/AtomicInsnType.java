@@ -0,0 +1,33 @@
+package tinywasmr.engine.insn.memory;
+
+import tinywasmr.engine.exec.memory.AtomicOp;
+
+public enum AtomicInsnType {
+	LOAD(null),
+	STORE(null),
+	RMW_ADD(AtomicOp.ADD),
+	RMW_SUB(AtomicOp.SUB),
+	RMW_AND(AtomicOp.AND),
+	RMW_OR(AtomicOp.OR),
+	RMW_XOR(AtomicOp.XOR),
+	RMW_XCHG(AtomicOp.XCHG),
+	RMW_CMPXCHG(null),
+	WAIT(null),
+	NOTIFY(null);
+
+	private AtomicOp op;
+
+	private AtomicInsnType(AtomicOp op) {
+		this.op = op;
+	}
+
+	/**
+	 * <p>
+	 * Get the operation of read-modify-write instruction, or {@code null} if this
+	 * is not a read-modify-write instruction.
+	 * </p>
+	 */
+	public AtomicOp op() {
+		return op;
+	}
+}
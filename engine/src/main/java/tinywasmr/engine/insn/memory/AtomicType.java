@@ -0,0 +1,69 @@
+package tinywasmr.engine.insn.memory;
+
+import tinywasmr.engine.exec.vm.ValueStack;
+import tinywasmr.engine.type.value.NumberType;
+
+/**
+ * <p>
+ * The value type and access size of atomic instructions. The narrower accesses
+ * are always unsigned. The constants are in the same order as the opcodes of
+ * each family of atomic instructions.
+ * </p>
+ */
+public enum AtomicType {
+	I32(NumberType.I32, 4),
+	I64(NumberType.I64, 8),
+	I32_U8(NumberType.I32, 1),
+	I32_U16(NumberType.I32, 2),
+	I64_U8(NumberType.I64, 1),
+	I64_U16(NumberType.I64, 2),
+	I64_U32(NumberType.I64, 4);
+
+	private NumberType type;
+	private byte tag;
+	private int size;
+
+	private AtomicType(NumberType type, int size) {
+		this.type = type;
+		this.tag = ValueStack.tag(type);
+		this.size = size;
+	}
+
+	/**
+	 * <p>
+	 * Get the type of operand and result.
+	 * </p>
+	 */
+	public NumberType type() {
+		return type;
+	}
+
+	/**
+	 * <p>
+	 * Get the number of bytes to access, which is also the required alignment.
+	 * </p>
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * <p>
+	 * Pop the operand of this type from the value stack, wrapped to the access
+	 * size and zero-extended.
+	 * </p>
+	 */
+	public long pop(ValueStack stack) {
+		long bits = tag == ValueStack.I64 ? stack.popI64() : stack.popI32() & 0xFFFFFFFFL;
+		return size == 8 ? bits : bits & (1L << (size * 8)) - 1;
+	}
+
+	/**
+	 * <p>
+	 * Push the zero-extended result to the value stack.
+	 * </p>
+	 */
+	public void push(ValueStack stack, long bits) {
+		stack.push(tag, bits);
+	}
+}
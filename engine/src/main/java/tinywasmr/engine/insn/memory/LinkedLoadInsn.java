@@ -0,0 +1,12 @@
+package tinywasmr.engine.insn.memory;
+
+import tinywasmr.engine.exec.memory.Memory;
+import tinywasmr.engine.exec.vm.Machine;
+import tinywasmr.engine.insn.LinkedInsn;
+
+public record LinkedLoadInsn(LoadInsn unlinked, Memory memory) implements LinkedInsn {
+	@Override
+	public void execute(Machine vm) {
+		unlinked.execute(vm, memory);
+	}
+}
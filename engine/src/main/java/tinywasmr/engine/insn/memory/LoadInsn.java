@@ -1,15 +1,33 @@
 package tinywasmr.engine.insn.memory;
 
+import tinywasmr.engine.exec.instance.Instance;
 import tinywasmr.engine.exec.memory.Memory;
 import tinywasmr.engine.exec.vm.Machine;
+import tinywasmr.engine.exec.vm.ValueStack;
 import tinywasmr.engine.insn.Instruction;
 import tinywasmr.engine.module.memory.MemoryDecl;
 
 public record LoadInsn(MemoryDecl memory, LoadType type, MemoryArg memarg) implements Instruction {
 	@Override
 	public void execute(Machine vm) {
-		int address = vm.peekFrame().popOprand().i32();
-		Memory memory = vm.peekInstancedFrame().getInstance().memory(this.memory);
-		vm.peekFrame().pushOperand(type.execute(memory, address));
+		execute(vm, vm.peekInstancedFrame().getInstance().memory(memory));
+	}
+
+	public void execute(Machine vm, Memory memory) {
+		ValueStack stack = vm.getValueStack();
+
+		if (this.memory.type().memory64()) {
+			long address = stack.popI64();
+			type.execute(memory, memarg.effectiveAddress(address), stack);
+			return;
+		}
+
+		int address = stack.popI32();
+		type.execute(memory, memarg.effectiveAddress(address), stack);
+	}
+
+	@Override
+	public Instruction link(Instance instance) {
+		return new LinkedLoadInsn(this, instance.memory(memory));
 	}
 }
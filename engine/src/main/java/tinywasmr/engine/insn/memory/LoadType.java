@@ -1,41 +1,95 @@
 package tinywasmr.engine.insn.memory;
 
 import tinywasmr.engine.exec.memory.Memory;
-import tinywasmr.engine.exec.value.NumberF32Value;
-import tinywasmr.engine.exec.value.NumberF64Value;
-import tinywasmr.engine.exec.value.NumberI32Value;
-import tinywasmr.engine.exec.value.NumberI64Value;
 import tinywasmr.engine.exec.value.Value;
+import tinywasmr.engine.exec.vm.ValueStack;
+import tinywasmr.engine.type.value.NumberType;
 
 public enum LoadType {
-	I32((m, a) -> new NumberI32Value(m.readI32(a))),
-	I64((m, a) -> new NumberI64Value(m.readI64(a))),
-	F32((m, a) -> new NumberF32Value(m.readF32(a))),
-	F64((m, a) -> new NumberF64Value(m.readF64(a))),
-	I32_S8((m, a) -> new NumberI32Value(m.readS8(a))),
-	I32_U8((m, a) -> new NumberI32Value(m.readU8(a))),
-	I32_S16((m, a) -> new NumberI32Value(m.readS16(a))),
-	I32_U16((m, a) -> new NumberI32Value(m.readU16(a))),
-	I64_S8((m, a) -> new NumberI64Value(m.readS8(a))),
-	I64_U8((m, a) -> new NumberI64Value(m.readU8(a))),
-	I64_S16((m, a) -> new NumberI64Value(m.readS16(a))),
-	I64_U16((m, a) -> new NumberI64Value(m.readU16(a))),
-	I64_S32((m, a) -> new NumberI64Value(m.readS32(a))),
-	I64_U32((m, a) -> new NumberI64Value(m.readU32(a))),
+	I32(NumberType.I32, 4, (m, a) -> m.readI32(a)),
+	I64(NumberType.I64, 8, (m, a) -> m.readI64(a)),
+	// Floats are loaded as raw bits so NaN payloads are kept
+	F32(NumberType.F32, 4, (m, a) -> m.readI32(a)),
+	F64(NumberType.F64, 8, (m, a) -> m.readI64(a)),
+	I32_S8(NumberType.I32, 1, (m, a) -> m.readS8(a)),
+	I32_U8(NumberType.I32, 1, (m, a) -> m.readU8(a)),
+	I32_S16(NumberType.I32, 2, (m, a) -> m.readS16(a)),
+	I32_U16(NumberType.I32, 2, (m, a) -> m.readU16(a)),
+	I64_S8(NumberType.I64, 1, (m, a) -> m.readS8(a)),
+	I64_U8(NumberType.I64, 1, (m, a) -> m.readU8(a)),
+	I64_S16(NumberType.I64, 2, (m, a) -> m.readS16(a)),
+	I64_U16(NumberType.I64, 2, (m, a) -> m.readU16(a)),
+	I64_S32(NumberType.I64, 4, (m, a) -> m.readS32(a)),
+	I64_U32(NumberType.I64, 4, (m, a) -> m.readU32(a)),
 	;
 
+	private NumberType type;
+	private int size;
+	private byte tag;
 	private Load loader;
 
-	private LoadType(Load loader) {
+	private LoadType(NumberType type, int size, Load loader) {
+		this.type = type;
+		this.size = size;
+		this.tag = ValueStack.tag(type);
 		this.loader = loader;
 	}
 
+	/**
+	 * <p>
+	 * Get the type of loaded value.
+	 * </p>
+	 */
+	public NumberType type() {
+		return type;
+	}
+
+	/**
+	 * <p>
+	 * Get the number of bytes to load, which is also the natural alignment.
+	 * </p>
+	 */
+	public int size() {
+		return size;
+	}
+
 	public Value execute(Memory memory, int address) {
-		return loader.load(memory, address);
+		return ValueStack.value(tag, loader.load(memory, address));
+	}
+
+	/**
+	 * <p>
+	 * Load the value and push it to the value stack without creating
+	 * {@link Value} object.
+	 * </p>
+	 */
+	public void execute(Memory memory, int address, ValueStack stack) {
+		stack.push(tag, loader.load(memory, address));
+	}
+
+	/**
+	 * <p>
+	 * Load the value from 64-bit memory and push it to the value stack.
+	 * </p>
+	 */
+	public void execute(Memory memory, long address, ValueStack stack) {
+		stack.push(tag, switch (this) {
+		case I32, F32 -> memory.readI32(address);
+		case I64, F64 -> memory.readI64(address);
+		case I32_S8, I64_S8 -> memory.readS8(address);
+		case I32_U8, I64_U8 -> memory.readU8(address);
+		case I32_S16, I64_S16 -> memory.readS16(address);
+		case I32_U16, I64_U16 -> memory.readU16(address);
+		case I64_S32 -> memory.readS32(address);
+		case I64_U32 -> memory.readU32(address);
+		});
 	}
 
 	@FunctionalInterface
 	private interface Load {
-		Value load(Memory memory, int address);
+		/**
+		 * @return The raw bits of loaded value.
+		 */
+		long load(Memory memory, int address);
 	}
 }
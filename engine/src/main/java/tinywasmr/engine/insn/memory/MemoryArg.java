@@ -7,4 +7,64 @@ package tinywasmr.engine.insn.memory;
  * </p>
  */
 public record MemoryArg(int offset, int align) {
+	/**
+	 * <p>
+	 * Get the effective address from dynamic address popped from operand stack.
+	 * </p>
+	 * 
+	 * @see #effectiveAddress(int, int)
+	 */
+	public int effectiveAddress(int address) {
+		return effectiveAddress(address, offset);
+	}
+
+	/**
+	 * <p>
+	 * Get the effective address from dynamic address of 64-bit memory popped from
+	 * operand stack.
+	 * </p>
+	 * 
+	 * @see #effectiveAddress(long, int)
+	 */
+	public long effectiveAddress(long address) {
+		return effectiveAddress(address, offset);
+	}
+
+	/**
+	 * <p>
+	 * Compute the effective address, which is the sum of dynamic address and
+	 * static offset, both are interpreted as unsigned integers.
+	 * </p>
+	 * 
+	 * @param address The dynamic address.
+	 * @param offset  The static offset from memory argument.
+	 * @return The effective address.
+	 * @throws IndexOutOfBoundsException if the effective address is larger than
+	 *                                   {@link Integer#MAX_VALUE}.
+	 */
+	public static int effectiveAddress(int address, int offset) {
+		long effective = (address & 0xFFFFFFFFL) + (offset & 0xFFFFFFFFL);
+		if (effective > Integer.MAX_VALUE)
+			throw new IndexOutOfBoundsException("Effective address out of bounds: %d".formatted(effective));
+		return (int) effective;
+	}
+
+	/**
+	 * <p>
+	 * Compute the effective address of 64-bit memory, which is the sum of dynamic
+	 * address and static offset, both are interpreted as unsigned integers.
+	 * </p>
+	 * 
+	 * @param address The dynamic address.
+	 * @param offset  The static offset from memory argument.
+	 * @return The effective address.
+	 * @throws IndexOutOfBoundsException if the effective address is larger than
+	 *                                   {@link Long#MAX_VALUE}.
+	 */
+	public static long effectiveAddress(long address, int offset) {
+		long effective = address + (offset & 0xFFFFFFFFL);
+		if (address < 0 || effective < 0) throw new IndexOutOfBoundsException("Effective address out of bounds: %s"
+			.formatted(Long.toUnsignedString(address)));
+		return effective;
+	}
 }
@@ -11,11 +11,14 @@ public record MemoryInitInsn(DataSegment segment, MemoryDecl memory) implements
 	public void execute(Machine vm) {
 		int count = vm.peekFrame().popOprand().i32();
 		int dataOffset = vm.peekFrame().popOprand().i32();
-		int memOffset = vm.peekFrame().popOprand().i32();
+		// The destination of 64-bit memory is i64
+		long memOffset = memory.type().memory64()
+			? vm.peekFrame().popOprand().i64()
+			: vm.peekFrame().popOprand().i32();
 		execute(vm, segment, dataOffset, memory, memOffset, count);
 	}
 
-	public static void execute(Machine vm, DataSegment segment, int dataOffset, MemoryDecl memoryDecl, int memOffset, int count) {
+	public static void execute(Machine vm, DataSegment segment, int dataOffset, MemoryDecl memoryDecl, long memOffset, int count) {
 		Memory memory = vm.peekInstancedFrame().getInstance().memory(memoryDecl);
 		memory.write(memOffset, segment.data(), dataOffset, count);
 	}
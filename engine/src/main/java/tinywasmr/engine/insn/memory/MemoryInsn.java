@@ -1,5 +1,6 @@
 package tinywasmr.engine.insn.memory;
 
+import tinywasmr.engine.exec.instance.Instance;
 import tinywasmr.engine.exec.memory.Memory;
 import tinywasmr.engine.exec.vm.Machine;
 import tinywasmr.engine.insn.Instruction;
@@ -8,7 +9,16 @@ import tinywasmr.engine.module.memory.MemoryDecl;
 public record MemoryInsn(MemoryInsnType type, MemoryDecl memory) implements Instruction {
 	@Override
 	public void execute(Machine vm) {
-		Memory memory = vm.peekInstancedFrame().getInstance().memory(this.memory);
-		type.execute(vm, memory);
+		execute(vm, vm.peekInstancedFrame().getInstance().memory(memory));
+	}
+
+	public void execute(Machine vm, Memory memory) {
+		if (this.memory.type().memory64()) type.execute64(vm, memory);
+		else type.execute(vm, memory);
+	}
+
+	@Override
+	public Instruction link(Instance instance) {
+		return new LinkedMemoryInsn(this, instance.memory(memory));
 	}
 }
@@ -1,7 +1,10 @@
 package tinywasmr.engine.insn.memory;
 
+import java.util.Objects;
+
 import tinywasmr.engine.exec.memory.Memory;
 import tinywasmr.engine.exec.value.NumberI32Value;
+import tinywasmr.engine.exec.value.NumberI64Value;
 import tinywasmr.engine.exec.vm.Machine;
 
 public enum MemoryInsnType {
@@ -10,6 +13,11 @@ public enum MemoryInsnType {
 		public void execute(Machine vm, Memory memory) {
 			vm.peekFrame().pushOperand(new NumberI32Value(memory.pageCount()));
 		}
+
+		@Override
+		public void execute64(Machine vm, Memory memory) {
+			vm.peekFrame().pushOperand(new NumberI64Value(memory.pageCount()));
+		}
 	},
 	GROW {
 		@Override
@@ -17,6 +25,14 @@ public enum MemoryInsnType {
 			int delta = vm.peekFrame().popOprand().i32();
 			vm.peekFrame().pushOperand(new NumberI32Value(memory.grow(delta)));
 		}
+
+		@Override
+		public void execute64(Machine vm, Memory memory) {
+			long delta = vm.peekFrame().popOprand().i64();
+			// Page count is int, so growing more than that always fails
+			int result = delta >= 0 && delta <= Integer.MAX_VALUE ? memory.grow((int) delta) : -1;
+			vm.peekFrame().pushOperand(new NumberI64Value(result));
+		}
 	},
 	COPY {
 		@Override
@@ -24,9 +40,15 @@ public enum MemoryInsnType {
 			int count = vm.peekFrame().popOprand().i32();
 			int sourceAddress = vm.peekFrame().popOprand().i32();
 			int destAddress = vm.peekFrame().popOprand().i32();
-			byte[] clipboard = memory.read(sourceAddress, count);
-			memory.write(destAddress, clipboard);
-			// TODO more efficient data copy mechanism
+			copy(memory, destAddress, sourceAddress, count);
+		}
+
+		@Override
+		public void execute64(Machine vm, Memory memory) {
+			long count = vm.peekFrame().popOprand().i64();
+			long sourceAddress = vm.peekFrame().popOprand().i64();
+			long destAddress = vm.peekFrame().popOprand().i64();
+			copy(memory, destAddress, sourceAddress, count);
 		}
 	},
 	FILL {
@@ -37,7 +59,54 @@ public enum MemoryInsnType {
 			int memOffset = vm.peekFrame().popOprand().i32();
 			memory.fill(memOffset, bval, count);
 		}
+
+		@Override
+		public void execute64(Machine vm, Memory memory) {
+			long count = vm.peekFrame().popOprand().i64();
+			int bval = vm.peekFrame().popOprand().i32();
+			long memOffset = vm.peekFrame().popOprand().i64();
+			memory.fill(memOffset, bval, count);
+		}
 	};
 
+	private static final int COPY_CHUNK = Memory.PAGE_SIZE;
+
 	public abstract void execute(Machine vm, Memory memory);
+
+	/**
+	 * <p>
+	 * Execute the instruction on 64-bit memory, whose addresses and sizes are
+	 * {@code i64}.
+	 * </p>
+	 */
+	public abstract void execute64(Machine vm, Memory memory);
+
+	/**
+	 * <p>
+	 * Copy the bytes between overlapping regions of memory, like {@code memmove}.
+	 * The bytes are copied in chunks, so copying large regions doesn't need a
+	 * buffer of the same size.
+	 * </p>
+	 */
+	public static void copy(Memory memory, long destAddress, long sourceAddress, long count) {
+		Objects.checkFromIndexSize(sourceAddress, count, memory.longByteSize());
+		Objects.checkFromIndexSize(destAddress, count, memory.longByteSize());
+		byte[] chunk = new byte[(int) Math.min(count, COPY_CHUNK)];
+
+		if (destAddress <= sourceAddress) {
+			for (long copied = 0; copied < count; copied += chunk.length) {
+				int length = (int) Math.min(count - copied, chunk.length);
+				memory.read(sourceAddress + copied, chunk, 0, length);
+				memory.write(destAddress + copied, chunk, 0, length);
+			}
+		} else {
+			// Copy from the end so the source isn't overwritten before it is copied
+			for (long remaining = count; remaining > 0;) {
+				int length = (int) Math.min(remaining, chunk.length);
+				remaining -= length;
+				memory.read(sourceAddress + remaining, chunk, 0, length);
+				memory.write(destAddress + remaining, chunk, 0, length);
+			}
+		}
+	}
 }
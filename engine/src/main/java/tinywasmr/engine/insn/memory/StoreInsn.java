@@ -1,17 +1,34 @@
 package tinywasmr.engine.insn.memory;
 
+import tinywasmr.engine.exec.instance.Instance;
 import tinywasmr.engine.exec.memory.Memory;
-import tinywasmr.engine.exec.value.Value;
 import tinywasmr.engine.exec.vm.Machine;
+import tinywasmr.engine.exec.vm.ValueStack;
 import tinywasmr.engine.insn.Instruction;
 import tinywasmr.engine.module.memory.MemoryDecl;
 
 public record StoreInsn(MemoryDecl memory, StoreType type, MemoryArg memarg) implements Instruction {
 	@Override
 	public void execute(Machine vm) {
-		Value val = vm.peekFrame().popOprand();
-		int address = vm.peekFrame().popOprand().i32();
-		Memory memory = vm.peekInstancedFrame().getInstance().memory(this.memory);
-		type.execute(memory, address, val);
+		execute(vm, vm.peekInstancedFrame().getInstance().memory(memory));
+	}
+
+	public void execute(Machine vm, Memory memory) {
+		ValueStack stack = vm.getValueStack();
+		long bits = stack.popI64();
+
+		if (this.memory.type().memory64()) {
+			long address = stack.popI64();
+			type.execute(memory, memarg.effectiveAddress(address), bits);
+			return;
+		}
+
+		int address = stack.popI32();
+		type.execute(memory, memarg.effectiveAddress(address), bits);
+	}
+
+	@Override
+	public Instruction link(Instance instance) {
+		return new LinkedStoreInsn(this, instance.memory(memory));
 	}
 }
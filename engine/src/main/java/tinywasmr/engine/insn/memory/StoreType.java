@@ -2,31 +2,87 @@ package tinywasmr.engine.insn.memory;
 
 import tinywasmr.engine.exec.memory.Memory;
 import tinywasmr.engine.exec.value.Value;
+import tinywasmr.engine.type.value.NumberType;
 
 public enum StoreType {
-	I32((m, a, v) -> m.writeI32(a, v.i32())),
-	I64((m, a, v) -> m.writeI64(a, v.i64())),
-	F32((m, a, v) -> m.writeF32(a, v.f32())),
-	F64((m, a, v) -> m.writeF64(a, v.f64())),
-	I32_I8((m, a, v) -> m.writeI8(a, v.i32())),
-	I32_I16((m, a, v) -> m.writeI16(a, v.i32())),
-	I64_I8((m, a, v) -> m.writeI8(a, (int) v.i64())),
-	I64_I16((m, a, v) -> m.writeI16(a, (int) v.i64())),
-	I64_I32((m, a, v) -> m.writeI32(a, (int) v.i64())),
+	I32(NumberType.I32, 4, (m, a, v) -> m.writeI32(a, (int) v)),
+	I64(NumberType.I64, 8, (m, a, v) -> m.writeI64(a, v)),
+	// Floats are stored as raw bits so NaN payloads are kept
+	F32(NumberType.F32, 4, (m, a, v) -> m.writeI32(a, (int) v)),
+	F64(NumberType.F64, 8, (m, a, v) -> m.writeI64(a, v)),
+	I32_I8(NumberType.I32, 1, (m, a, v) -> m.writeI8(a, (int) v)),
+	I32_I16(NumberType.I32, 2, (m, a, v) -> m.writeI16(a, (int) v)),
+	I64_I8(NumberType.I64, 1, (m, a, v) -> m.writeI8(a, (int) v)),
+	I64_I16(NumberType.I64, 2, (m, a, v) -> m.writeI16(a, (int) v)),
+	I64_I32(NumberType.I64, 4, (m, a, v) -> m.writeI32(a, (int) v)),
 	;
 
+	private NumberType type;
+	private int size;
 	private Store storer;
 
-	private StoreType(Store storer) {
+	private StoreType(NumberType type, int size, Store storer) {
+		this.type = type;
+		this.size = size;
 		this.storer = storer;
 	}
 
+	/**
+	 * <p>
+	 * Get the type of value to store.
+	 * </p>
+	 */
+	public NumberType type() {
+		return type;
+	}
+
+	/**
+	 * <p>
+	 * Get the number of bytes to store, which is also the natural alignment.
+	 * </p>
+	 */
+	public int size() {
+		return size;
+	}
+
 	public void execute(Memory memory, int address, Value value) {
-		storer.store(memory, address, value);
+		long bits = switch (this) {
+		case F32 -> Float.floatToRawIntBits(value.f32());
+		case F64 -> Double.doubleToRawLongBits(value.f64());
+		default -> value.i64();
+		};
+		execute(memory, address, bits);
+	}
+
+	/**
+	 * <p>
+	 * Store the value from its raw bits, as stored in
+	 * {@link tinywasmr.engine.exec.vm.ValueStack}.
+	 * </p>
+	 */
+	public void execute(Memory memory, int address, long bits) {
+		storer.store(memory, address, bits);
+	}
+
+	/**
+	 * <p>
+	 * Store the value to 64-bit memory from its raw bits.
+	 * </p>
+	 */
+	public void execute(Memory memory, long address, long bits) {
+		switch (this) {
+		case I32, F32, I64_I32 -> memory.writeI32(address, (int) bits);
+		case I64, F64 -> memory.writeI64(address, bits);
+		case I32_I8, I64_I8 -> memory.writeI8(address, (int) bits);
+		case I32_I16, I64_I16 -> memory.writeI16(address, (int) bits);
+		}
 	}
 
 	@FunctionalInterface
 	private interface Store {
-		void store(Memory memory, int address, Value value);
+		/**
+		 * @param value The raw bits of value to store.
+		 */
+		void store(Memory memory, int address, long value);
 	}
 }
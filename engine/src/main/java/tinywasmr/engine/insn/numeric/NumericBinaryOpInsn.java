@@ -7,9 +7,9 @@ import tinywasmr.engine.exec.value.NumberI32Value;
 import tinywasmr.engine.exec.value.NumberI64Value;
 import tinywasmr.engine.exec.value.Value;
 import tinywasmr.engine.exec.vm.Machine;
+import tinywasmr.engine.exec.vm.ValueStack;
 import tinywasmr.engine.insn.Instruction;
 import tinywasmr.engine.type.value.NumberType;
-import tinywasmr.engine.type.value.ValueType;
 
 public enum NumericBinaryOpInsn implements Instruction {
 	I32_EQ((int a, int b) -> a == b),
@@ -93,50 +93,74 @@ public enum NumericBinaryOpInsn implements Instruction {
 	F64_COPYSIGN((double a, double b) -> Math.abs(a) * Math.signum(b)),
 	;
 
-	private ValueType bottomType;
-	private ValueType topType;
+	private NumberType operandType;
+	private NumberType resultType;
+	private boolean comparison;
 	private BinaryOp operator;
+	private StackOp stackOperator;
 
-	private NumericBinaryOpInsn(ValueType bottomType, ValueType topType, BinaryOp operator) {
-		this.bottomType = bottomType;
-		this.topType = topType;
+	private NumericBinaryOpInsn(NumberType operandType, boolean comparison, BinaryOp operator, StackOp stackOperator) {
+		this.operandType = operandType;
+		this.resultType = comparison ? NumberType.I32 : operandType;
+		this.comparison = comparison;
 		this.operator = operator;
-	}
-
-	private NumericBinaryOpInsn(ValueType type, BinaryOp operator) {
-		this(type, type, operator);
+		this.stackOperator = stackOperator;
 	}
 
 	private NumericBinaryOpInsn(I32BinaryOp operator) {
-		this(NumberType.I32, (a, b) -> new NumberI32Value(operator.apply(a.i32(), b.i32())));
+		this(NumberType.I32, false, (a, b) -> new NumberI32Value(operator.apply(a.i32(), b.i32())), stack -> {
+			int top = stack.popI32();
+			stack.pushI32(operator.apply(stack.popI32(), top));
+		});
 	}
 
 	private NumericBinaryOpInsn(I32CmpOp operator) {
-		this(NumberType.I32, (a, b) -> operator.apply(a.i32(), b.i32()) ? Value.TRUE : Value.FALSE);
+		this(NumberType.I32, true, (a, b) -> operator.apply(a.i32(), b.i32()) ? Value.TRUE : Value.FALSE, stack -> {
+			int top = stack.popI32();
+			stack.pushBoolean(operator.apply(stack.popI32(), top));
+		});
 	}
 
 	private NumericBinaryOpInsn(I64BinaryOp operator) {
-		this(NumberType.I64, (a, b) -> new NumberI64Value(operator.apply(a.i64(), b.i64())));
+		this(NumberType.I64, false, (a, b) -> new NumberI64Value(operator.apply(a.i64(), b.i64())), stack -> {
+			long top = stack.popI64();
+			stack.pushI64(operator.apply(stack.popI64(), top));
+		});
 	}
 
 	private NumericBinaryOpInsn(I64CmpOp operator) {
-		this(NumberType.I64, (a, b) -> operator.apply(a.i64(), b.i64()) ? Value.TRUE : Value.FALSE);
+		this(NumberType.I64, true, (a, b) -> operator.apply(a.i64(), b.i64()) ? Value.TRUE : Value.FALSE, stack -> {
+			long top = stack.popI64();
+			stack.pushBoolean(operator.apply(stack.popI64(), top));
+		});
 	}
 
 	private NumericBinaryOpInsn(F32BinaryOp operator) {
-		this(NumberType.F32, (a, b) -> new NumberF32Value(operator.apply(a.f32(), b.f32())));
+		this(NumberType.F32, false, (a, b) -> new NumberF32Value(operator.apply(a.f32(), b.f32())), stack -> {
+			float top = stack.popF32();
+			stack.pushF32(operator.apply(stack.popF32(), top));
+		});
 	}
 
 	private NumericBinaryOpInsn(F32CmpOp operator) {
-		this(NumberType.F32, (a, b) -> operator.apply(a.f32(), b.f32()) ? Value.TRUE : Value.FALSE);
+		this(NumberType.F32, true, (a, b) -> operator.apply(a.f32(), b.f32()) ? Value.TRUE : Value.FALSE, stack -> {
+			float top = stack.popF32();
+			stack.pushBoolean(operator.apply(stack.popF32(), top));
+		});
 	}
 
 	private NumericBinaryOpInsn(F64BinaryOp operator) {
-		this(NumberType.F64, (a, b) -> new NumberF64Value(operator.apply(a.f64(), b.f64())));
+		this(NumberType.F64, false, (a, b) -> new NumberF64Value(operator.apply(a.f64(), b.f64())), stack -> {
+			double top = stack.popF64();
+			stack.pushF64(operator.apply(stack.popF64(), top));
+		});
 	}
 
 	private NumericBinaryOpInsn(F64CmpOp operator) {
-		this(NumberType.F64, (a, b) -> operator.apply(a.f64(), b.f64()) ? Value.TRUE : Value.FALSE);
+		this(NumberType.F64, true, (a, b) -> operator.apply(a.f64(), b.f64()) ? Value.TRUE : Value.FALSE, stack -> {
+			double top = stack.popF64();
+			stack.pushBoolean(operator.apply(stack.popF64(), top));
+		});
 	}
 
 	@FunctionalInterface
@@ -144,6 +168,17 @@ public enum NumericBinaryOpInsn implements Instruction {
 		Value apply(Value bottom, Value top);
 	}
 
+	/**
+	 * <p>
+	 * Pop the operands from value stack and push the result, without creating
+	 * {@link Value} objects.
+	 * </p>
+	 */
+	@FunctionalInterface
+	private interface StackOp {
+		void apply(ValueStack stack);
+	}
+
 	@FunctionalInterface
 	private interface I32BinaryOp {
 		int apply(int bottom, int top);
@@ -184,20 +219,53 @@ public enum NumericBinaryOpInsn implements Instruction {
 		boolean apply(double bottom, double top);
 	}
 
+	/**
+	 * <p>
+	 * Get the type of both operands.
+	 * </p>
+	 */
+	public NumberType operandType() {
+		return operandType;
+	}
+
+	/**
+	 * <p>
+	 * Get the type of result, which is {@code i32} for comparisons.
+	 * </p>
+	 */
+	public NumberType resultType() {
+		return resultType;
+	}
+
+	/**
+	 * <p>
+	 * Check whether this instruction compares the operands, which results in
+	 * {@code i32} regardless of the types of operands.
+	 * </p>
+	 */
+	public boolean isComparison() {
+		return comparison;
+	}
+
 	public Value apply(Value a, Value b) {
 		return operator.apply(a, b);
 	}
 
 	@Override
 	public void execute(Machine vm) {
+		if (!vm.hasRuntimeValidation()) {
+			stackOperator.apply(vm.getValueStack());
+			return;
+		}
+
 		Value top = vm.peekFrame().popOprand();
 		Value bottom = vm.peekFrame().popOprand();
 
 		if (vm.hasRuntimeValidation()) {
-			if (!top.type().equals(topType)) throw new ValidationException("Expected %s at top, found %s"
-				.formatted(topType, top.type()));
-			if (!bottom.type().equals(bottomType)) throw new ValidationException("Expected %s at bottom, found %s"
-				.formatted(topType, bottom.type()));
+			if (!top.type().equals(operandType)) throw new ValidationException("Expected %s at top, found %s"
+				.formatted(operandType, top.type()));
+			if (!bottom.type().equals(operandType)) throw new ValidationException("Expected %s at bottom, found %s"
+				.formatted(operandType, bottom.type()));
 		}
 
 		vm.peekFrame().pushOperand(operator.apply(bottom, top));
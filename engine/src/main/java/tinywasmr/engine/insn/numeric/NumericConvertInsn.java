@@ -1,5 +1,10 @@
 package tinywasmr.engine.insn.numeric;
 
+import static tinywasmr.engine.type.value.NumberType.F32;
+import static tinywasmr.engine.type.value.NumberType.F64;
+import static tinywasmr.engine.type.value.NumberType.I32;
+import static tinywasmr.engine.type.value.NumberType.I64;
+
 import java.math.BigInteger;
 import java.util.function.UnaryOperator;
 
@@ -10,41 +15,73 @@ import tinywasmr.engine.exec.value.NumberI64Value;
 import tinywasmr.engine.exec.value.Value;
 import tinywasmr.engine.exec.vm.Machine;
 import tinywasmr.engine.insn.Instruction;
+import tinywasmr.engine.type.value.NumberType;
 
 public enum NumericConvertInsn implements Instruction {
-	I32_WRAP_I64(v -> new NumberI32Value(v.i32())),
-	I32_TRUNC_F32_S(v -> new NumberI32Value(v.i32())),
-	I32_TRUNC_F32_U(v -> new NumberI32Value(v.i32())), // TODO trap
-	I32_TRUNC_F64_S(v -> new NumberI32Value(v.i32())),
-	I32_TRUNC_F64_U(v -> new NumberI32Value(v.i32())), // TODO trap
-	I64_EXTEND_I32_S(v -> new NumberI64Value(v.i64())),
-	I64_EXTEND_I32_U(v -> new NumberI64Value(v.i64() & 0xFFFFFFFFL)),
-	I64_TRUNC_F32_S(v -> new NumberI64Value(v.i64())),
-	I64_TRUNC_F32_U(v -> new NumberI64Value(v.i64())), // TODO trap
-	I64_TRUNC_F64_S(v -> new NumberI64Value(v.i64())),
-	I64_TRUNC_F64_U(v -> new NumberI64Value(v.i64())), // TODO trap
-	F32_CONVERT_I32_S(v -> new NumberF32Value(v.i32())),
-	F32_CONVERT_I32_U(v -> new NumberF32Value(v.i32() & 0xFFFFFFFFL)),
-	F32_CONVERT_I64_S(v -> new NumberF32Value(v.i64())),
-	F32_CONVERT_I64_U(v -> new NumberF32Value(new BigInteger(Long.toUnsignedString(v.i64())).floatValue())),
-	F32_DEMOTE_F64(v -> new NumberF32Value(v.f32())),
-	F64_CONVERT_I32_S(v -> new NumberF64Value(v.i32())),
-	F64_CONVERT_I32_U(v -> new NumberF64Value(v.i32() & 0xFFFFFFFFL)),
-	F64_CONVERT_I64_S(v -> new NumberF64Value(v.i64())),
-	F64_CONVERT_I64_U(v -> new NumberF64Value(new BigInteger(Long.toUnsignedString(v.i64())).doubleValue())),
-	F64_PROMOTE_F32(v -> new NumberF64Value(v.f64())),
-	I32_REINTERPRET_F32(v -> new NumberI32Value(Float.floatToRawIntBits(v.f32()))),
-	F32_REINTERPRET_I32(v -> new NumberF32Value(Float.intBitsToFloat(v.i32()))),
-	I64_REINTERPRET_F64(v -> new NumberI64Value(Double.doubleToRawLongBits(v.f64()))),
-	F64_REINTERPRET_I64(v -> new NumberF64Value(Double.longBitsToDouble(v.i64()))),
+	I32_WRAP_I64(I64, I32, v -> new NumberI32Value(v.i32())),
+	I32_TRUNC_F32_S(F32, I32, v -> new NumberI32Value(v.i32())),
+	I32_TRUNC_F32_U(F32, I32, v -> new NumberI32Value(v.i32())), // TODO trap
+	I32_TRUNC_F64_S(F64, I32, v -> new NumberI32Value(v.i32())),
+	I32_TRUNC_F64_U(F64, I32, v -> new NumberI32Value(v.i32())), // TODO trap
+	I64_EXTEND_I32_S(I32, I64, v -> new NumberI64Value(v.i64())),
+	I64_EXTEND_I32_U(I32, I64, v -> new NumberI64Value(v.i64() & 0xFFFFFFFFL)),
+	I64_TRUNC_F32_S(F32, I64, v -> new NumberI64Value(v.i64())),
+	I64_TRUNC_F32_U(F32, I64, v -> new NumberI64Value(v.i64())), // TODO trap
+	I64_TRUNC_F64_S(F64, I64, v -> new NumberI64Value(v.i64())),
+	I64_TRUNC_F64_U(F64, I64, v -> new NumberI64Value(v.i64())), // TODO trap
+	F32_CONVERT_I32_S(I32, F32, v -> new NumberF32Value(v.i32())),
+	F32_CONVERT_I32_U(I32, F32, v -> new NumberF32Value(v.i32() & 0xFFFFFFFFL)),
+	F32_CONVERT_I64_S(I64, F32, v -> new NumberF32Value(v.i64())),
+	F32_CONVERT_I64_U(I64, F32, v -> new NumberF32Value(new BigInteger(Long.toUnsignedString(v.i64())).floatValue())),
+	F32_DEMOTE_F64(F64, F32, v -> new NumberF32Value(v.f32())),
+	F64_CONVERT_I32_S(I32, F64, v -> new NumberF64Value(v.i32())),
+	F64_CONVERT_I32_U(I32, F64, v -> new NumberF64Value(v.i32() & 0xFFFFFFFFL)),
+	F64_CONVERT_I64_S(I64, F64, v -> new NumberF64Value(v.i64())),
+	F64_CONVERT_I64_U(I64, F64, v -> new NumberF64Value(new BigInteger(Long.toUnsignedString(v.i64())).doubleValue())),
+	F64_PROMOTE_F32(F32, F64, v -> new NumberF64Value(v.f64())),
+	I32_REINTERPRET_F32(F32, I32, v -> new NumberI32Value(Float.floatToRawIntBits(v.f32()))),
+	F32_REINTERPRET_I32(I32, F32, v -> new NumberF32Value(Float.intBitsToFloat(v.i32()))),
+	I64_REINTERPRET_F64(F64, I64, v -> new NumberI64Value(Double.doubleToRawLongBits(v.f64()))),
+	F64_REINTERPRET_I64(I64, F64, v -> new NumberF64Value(Double.longBitsToDouble(v.i64()))),
 	;
 
+	private NumberType operandType;
+	private NumberType resultType;
 	private UnaryOperator<Value> converter;
 
-	private NumericConvertInsn(UnaryOperator<Value> converter) {
+	private NumericConvertInsn(NumberType operandType, NumberType resultType, UnaryOperator<Value> converter) {
+		this.operandType = operandType;
+		this.resultType = resultType;
 		this.converter = converter;
 	}
 
+	public NumberType operandType() {
+		return operandType;
+	}
+
+	public NumberType resultType() {
+		return resultType;
+	}
+
+	/**
+	 * <p>
+	 * Check whether this conversion traps for some operands, like truncating NaN
+	 * or out of range floats. Conversions that can't trap are safe to evaluate
+	 * ahead of time.
+	 * </p>
+	 */
+	public boolean canTrap() {
+		return switch (this) {
+		case I32_TRUNC_F32_S, I32_TRUNC_F32_U, I32_TRUNC_F64_S, I32_TRUNC_F64_U,
+			I64_TRUNC_F32_S, I64_TRUNC_F32_U, I64_TRUNC_F64_S, I64_TRUNC_F64_U -> true;
+		default -> false;
+		};
+	}
+
+	public Value apply(Value input) {
+		return converter.apply(input);
+	}
+
 	@Override
 	public void execute(Machine vm) {
 		Value val = vm.peekFrame().popOprand();
@@ -9,7 +9,6 @@ import tinywasmr.engine.exec.value.Value;
 import tinywasmr.engine.exec.vm.Machine;
 import tinywasmr.engine.insn.Instruction;
 import tinywasmr.engine.type.value.NumberType;
-import tinywasmr.engine.type.value.ValueType;
 
 public enum NumericUnaryOpInsn implements Instruction {
 	I32_CLZ(Integer::numberOfLeadingZeros),
@@ -39,36 +38,38 @@ public enum NumericUnaryOpInsn implements Instruction {
 	F64_NEAREST((F64UnaryOp) Math::round),
 	;
 
-	private ValueType type;
+	private NumberType type;
+	private NumberType resultType;
 	private UnaryOp operator;
 
-	private NumericUnaryOpInsn(ValueType type, UnaryOp operator) {
+	private NumericUnaryOpInsn(NumberType type, NumberType resultType, UnaryOp operator) {
 		this.type = type;
+		this.resultType = resultType;
 		this.operator = operator;
 	}
 
 	private NumericUnaryOpInsn(I32UnaryOp operator) {
-		this(NumberType.I32, a -> new NumberI32Value(operator.apply(a.i32())));
+		this(NumberType.I32, NumberType.I32, a -> new NumberI32Value(operator.apply(a.i32())));
 	}
 
 	private NumericUnaryOpInsn(I32TestOp operator) {
-		this(NumberType.I32, a -> operator.apply(a.i32()) ? Value.TRUE : Value.FALSE);
+		this(NumberType.I32, NumberType.I32, a -> operator.apply(a.i32()) ? Value.TRUE : Value.FALSE);
 	}
 
 	private NumericUnaryOpInsn(I64UnaryOp operator) {
-		this(NumberType.I64, a -> new NumberI64Value(operator.apply(a.i64())));
+		this(NumberType.I64, NumberType.I64, a -> new NumberI64Value(operator.apply(a.i64())));
 	}
 
 	private NumericUnaryOpInsn(I64TestOp operator) {
-		this(NumberType.I64, a -> operator.apply(a.i64()) ? Value.TRUE : Value.FALSE);
+		this(NumberType.I64, NumberType.I32, a -> operator.apply(a.i64()) ? Value.TRUE : Value.FALSE);
 	}
 
 	private NumericUnaryOpInsn(F32UnaryOp operator) {
-		this(NumberType.F32, a -> new NumberF32Value(operator.apply(a.f32())));
+		this(NumberType.F32, NumberType.F32, a -> new NumberF32Value(operator.apply(a.f32())));
 	}
 
 	private NumericUnaryOpInsn(F64UnaryOp operator) {
-		this(NumberType.F64, a -> new NumberF64Value(operator.apply(a.f64())));
+		this(NumberType.F64, NumberType.F64, a -> new NumberF64Value(operator.apply(a.f64())));
 	}
 
 	@FunctionalInterface
@@ -106,6 +107,23 @@ public enum NumericUnaryOpInsn implements Instruction {
 		double apply(double input);
 	}
 
+	public NumberType operandType() {
+		return type;
+	}
+
+	/**
+	 * <p>
+	 * Get the type of result, which is {@code i32} for {@code eqz}.
+	 * </p>
+	 */
+	public NumberType resultType() {
+		return resultType;
+	}
+
+	public Value apply(Value input) {
+		return operator.apply(input);
+	}
+
 	@Override
 	public void execute(Machine vm) {
 		Value value = vm.peekFrame().popOprand();
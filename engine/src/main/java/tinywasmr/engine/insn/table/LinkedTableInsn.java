@@ -0,0 +1,12 @@
+package tinywasmr.engine.insn.table;
+
+import tinywasmr.engine.exec.table.Table;
+import tinywasmr.engine.exec.vm.Machine;
+import tinywasmr.engine.insn.LinkedInsn;
+
+public record LinkedTableInsn(TableInsn unlinked, Table table) implements LinkedInsn {
+	@Override
+	public void execute(Machine vm) {
+		unlinked.type().execute(vm, table);
+	}
+}
@@ -1,5 +1,6 @@
 package tinywasmr.engine.insn.table;
 
+import tinywasmr.engine.exec.instance.Instance;
 import tinywasmr.engine.exec.table.Table;
 import tinywasmr.engine.exec.vm.Machine;
 import tinywasmr.engine.insn.Instruction;
@@ -11,4 +12,9 @@ public record TableInsn(TableInsnType type, TableDecl table) implements Instruct
 		Table table = vm.peekInstancedFrame().getInstance().table(this.table);
 		type.execute(vm, table);
 	}
+
+	@Override
+	public Instruction link(Instance instance) {
+		return new LinkedTableInsn(this, instance.table(table));
+	}
 }
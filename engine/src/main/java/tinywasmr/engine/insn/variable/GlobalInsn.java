@@ -1,5 +1,6 @@
 package tinywasmr.engine.insn.variable;
 
+import tinywasmr.engine.exec.instance.Instance;
 import tinywasmr.engine.exec.vm.Machine;
 import tinywasmr.engine.insn.Instruction;
 import tinywasmr.engine.module.global.GlobalDecl;
@@ -9,4 +10,9 @@ public record GlobalInsn(GlobalInsnType type, GlobalDecl global) implements Inst
 	public void execute(Machine vm) {
 		type.execute(vm, global);
 	}
+
+	@Override
+	public Instruction link(Instance instance) {
+		return new LinkedGlobalInsn(this, instance.global(global));
+	}
 }
@@ -1,5 +1,6 @@
 package tinywasmr.engine.insn.variable;
 
+import tinywasmr.engine.exec.global.Global;
 import tinywasmr.engine.exec.value.Value;
 import tinywasmr.engine.exec.vm.Machine;
 import tinywasmr.engine.module.global.GlobalDecl;
@@ -7,18 +8,21 @@ import tinywasmr.engine.module.global.GlobalDecl;
 public enum GlobalInsnType {
 	GET {
 		@Override
-		public void execute(Machine vm, GlobalDecl global) {
-			Value val = vm.peekInstancedFrame().getInstance().global(global).get();
-			vm.peekFrame().pushOperand(val);
+		public void execute(Machine vm, Global global) {
+			vm.peekFrame().pushOperand(global.get());
 		}
 	},
 	SET {
 		@Override
-		public void execute(Machine vm, GlobalDecl global) {
+		public void execute(Machine vm, Global global) {
 			Value val = vm.peekFrame().popOprand();
-			vm.peekInstancedFrame().getInstance().global(global).set(val);
+			global.set(val);
 		}
 	};
 
-	public abstract void execute(Machine vm, GlobalDecl global);
+	public abstract void execute(Machine vm, Global global);
+
+	public void execute(Machine vm, GlobalDecl global) {
+		execute(vm, vm.peekInstancedFrame().getInstance().global(global));
+	}
 }
@@ -0,0 +1,12 @@
+package tinywasmr.engine.insn.variable;
+
+import tinywasmr.engine.exec.global.Global;
+import tinywasmr.engine.exec.vm.Machine;
+import tinywasmr.engine.insn.LinkedInsn;
+
+public record LinkedGlobalInsn(GlobalInsn unlinked, Global global) implements LinkedInsn {
+	@Override
+	public void execute(Machine vm) {
+		unlinked.type().execute(vm, global);
+	}
+}
@@ -6,19 +6,19 @@ public enum LocalInsnType {
 	GET {
 		@Override
 		public void execute(Machine machine, int index) {
-			machine.peekFrame().pushOperand(machine.peekFunctionFrame().getLocals()[index]);
+			machine.peekFunctionFrame().loadLocal(index);
 		}
 	},
 	SET {
 		@Override
 		public void execute(Machine machine, int index) {
-			machine.peekFunctionFrame().getLocals()[index] = machine.peekFrame().popOprand();
+			machine.peekFunctionFrame().storeLocal(index);
 		}
 	},
 	TEE {
 		@Override
 		public void execute(Machine machine, int index) {
-			machine.peekFunctionFrame().getLocals()[index] = machine.peekFrame().peekOperand();
+			machine.peekFunctionFrame().teeLocal(index);
 		}
 	};
 
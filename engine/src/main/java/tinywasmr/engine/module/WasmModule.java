@@ -31,4 +31,24 @@ public interface WasmModule {
 	List<FunctionDecl> declaredFunctions();
 
 	FunctionDecl startFunction();
+
+	/**
+	 * <p>
+	 * Check whether this module was validated with
+	 * {@link tinywasmr.engine.validation.ModuleValidator}. The machines skip the
+	 * checks of runtime validation for functions of validated modules.
+	 * </p>
+	 */
+	default boolean isValidated() {
+		return false;
+	}
+
+	/**
+	 * <p>
+	 * Mark this module as validated. This is called by
+	 * {@link tinywasmr.engine.validation.ModuleValidator} after the whole module
+	 * is validated. Modules that can't store the mark ignore it.
+	 * </p>
+	 */
+	default void setValidated(boolean validated) {}
 }
@@ -7,12 +7,15 @@ import tinywasmr.engine.insn.Instruction;
 import tinywasmr.engine.module.WasmModule;
 import tinywasmr.engine.type.FunctionType;
 import tinywasmr.engine.type.value.ValueType;
+import tinywasmr.engine.validation.FunctionValidation;
+import tinywasmr.engine.validation.ModuleValidator;
 
 public class ModuleFunctionDecl implements FunctionDecl {
 	private WasmModule module;
 	private FunctionType type;
 	private List<ValueType> extraLocals;
 	private List<Instruction> body;
+	private FunctionValidation validation = null;
 
 	public ModuleFunctionDecl(WasmModule module, FunctionType type, List<ValueType> extraLocals, List<Instruction> body) {
 		this.module = module;
@@ -38,6 +41,19 @@ public class ModuleFunctionDecl implements FunctionDecl {
 		return body;
 	}
 
+	/**
+	 * <p>
+	 * Replace the body of this function, like when it is optimized. The body must
+	 * be replaced before instantiating the module, because instances link the
+	 * body when the function is first executed. The result of validating the
+	 * previous body is cleared, as it doesn't describe the new body.
+	 * </p>
+	 */
+	public void setBody(List<Instruction> body) {
+		this.body = body;
+		validation = null;
+	}
+
 	/**
 	 * <p>
 	 * Get all local types, ordered from function parameters to declared extra
@@ -48,6 +64,18 @@ public class ModuleFunctionDecl implements FunctionDecl {
 		return Stream.concat(type.inputs().types().stream(), extraLocals.stream()).toList();
 	}
 
+	/**
+	 * <p>
+	 * Get the result of validating this function by {@link ModuleValidator}, or
+	 * {@code null} if the function is not validated.
+	 * </p>
+	 */
+	public FunctionValidation validation() {
+		return validation;
+	}
+
+	public void setValidation(FunctionValidation validation) { this.validation = validation; }
+
 	@Override
 	public String toString() {
 		return "%s (local %s)".formatted(type, extraLocals);
@@ -0,0 +1,67 @@
+package tinywasmr.engine.module.func.extern;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.BiFunction;
+
+import tinywasmr.engine.exec.TrapException;
+import tinywasmr.engine.exec.frame.FunctionFrame;
+import tinywasmr.engine.exec.instance.Instance;
+import tinywasmr.engine.exec.value.Value;
+import tinywasmr.engine.exec.vm.Machine;
+import tinywasmr.engine.type.FunctionType;
+
+/**
+ * <p>
+ * Host function that completes its results later, like doing I/O without
+ * blocking. On the first step, the future from
+ * {@link #onExecAsync(Instance, Value[])} is passed to
+ * {@link Machine#suspend(CompletableFuture)}, and stepping the machine returns
+ * {@link tinywasmr.engine.exec.StepResult#SUSPENDED} until the future is
+ * completed. On the next step, the results of the future are returned to the
+ * caller, or the machine is trapped if the future is completed exceptionally.
+ * </p>
+ * <p>
+ * {@link tinywasmr.engine.exec.executor.Executor#execute(Machine, tinywasmr.engine.exec.instance.Function, Value[])}
+ * and compiled code wait for the future on current thread. Use
+ * {@link tinywasmr.engine.exec.scheduler.Scheduler} to release the thread while
+ * the machine is suspended.
+ * </p>
+ */
+public interface AsyncFunctionDecl extends ExternalFunctionDecl {
+	public CompletableFuture<Value[]> onExecAsync(Instance instance, Value[] parameter);
+
+	@Override
+	default void onStep(Machine vm, FunctionFrame frame, Value[] locals, int stepIndex) {
+		if (stepIndex == 0) {
+			vm.suspend(onExecAsync(frame.getInstance(), locals));
+			return;
+		}
+
+		CompletableFuture<?> suspension = vm.getSuspension();
+		vm.suspend(null);
+
+		try {
+			vm.exitFunction((Value[]) suspension.join());
+		} catch (CompletionException e) {
+			throw new TrapException(e.getCause());
+		} catch (CancellationException e) {
+			throw new TrapException(e);
+		}
+	}
+
+	static AsyncFunctionDecl of(FunctionType type, BiFunction<Instance, Value[], CompletableFuture<Value[]>> f) {
+		return new AsyncFunctionDecl() {
+			@Override
+			public FunctionType type() {
+				return type;
+			}
+
+			@Override
+			public CompletableFuture<Value[]> onExecAsync(Instance instance, Value[] parameter) {
+				return f.apply(instance, parameter);
+			}
+		};
+	}
+}
@@ -0,0 +1,286 @@
+package tinywasmr.engine.optimize;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import tinywasmr.engine.exec.value.Value;
+import tinywasmr.engine.insn.ConstInsn;
+import tinywasmr.engine.insn.Instruction;
+import tinywasmr.engine.insn.control.BlockInsn;
+import tinywasmr.engine.insn.control.BranchIfInsn;
+import tinywasmr.engine.insn.control.BranchInsn;
+import tinywasmr.engine.insn.control.BranchTableInsn;
+import tinywasmr.engine.insn.control.ControlInsn;
+import tinywasmr.engine.insn.control.IfInsn;
+import tinywasmr.engine.insn.control.LoopInsn;
+import tinywasmr.engine.insn.fused.CompareBranchIfInsn;
+import tinywasmr.engine.insn.fused.FusedInsn;
+import tinywasmr.engine.insn.numeric.NumericBinaryOpInsn;
+import tinywasmr.engine.insn.numeric.NumericConvertInsn;
+import tinywasmr.engine.insn.numeric.NumericUnaryOpInsn;
+import tinywasmr.engine.insn.parametric.ParametricInsn;
+import tinywasmr.engine.insn.variable.GlobalInsn;
+import tinywasmr.engine.insn.variable.GlobalInsnType;
+import tinywasmr.engine.module.WasmModule;
+import tinywasmr.engine.module.func.FunctionDecl;
+import tinywasmr.engine.module.func.ModuleFunctionDecl;
+import tinywasmr.engine.module.global.GlobalDecl;
+import tinywasmr.engine.module.global.ModuleGlobalDecl;
+import tinywasmr.engine.type.Mutability;
+
+/**
+ * <p>
+ * Simplify function bodies before instantiating the module. The following
+ * rewrites are applied:
+ * </p>
+ * <ul>
+ * <li>Numeric operations on constants are replaced with their results. The
+ * operations that would trap (like division by zero) and truncations are kept,
+ * so the trap still happens when the instruction is executed.</li>
+ * <li>{@code global.get} of immutable globals that are declared in the module
+ * and initialized with a constant is replaced with the constant. Imported
+ * globals are not known until instantiating, so they are kept.</li>
+ * <li>{@code if}, {@code br_if} and {@code br_table} on constants are replaced
+ * with the taken path or branch, and {@code const; drop} and {@code nop} are
+ * removed.</li>
+ * <li>Instructions after {@code unreachable}, {@code return}, {@code br} and
+ * {@code br_table} are removed.</li>
+ * <li>Blocks and loops that are never branched to are replaced with their
+ * bodies, with the labels of the branches inside adjusted.</li>
+ * </ul>
+ * <p>
+ * The function bodies are expected to be valid, so validate the module with
+ * {@link tinywasmr.engine.validation.ModuleValidator} first if the module is
+ * not trusted. Fold the constants before fusing instructions with
+ * {@link InstructionFuser}, because the fused instructions are not folded.
+ * </p>
+ */
+public class ConstantFolder {
+	private final Map<GlobalDecl, Value> constants = new IdentityHashMap<>();
+
+	private ConstantFolder() {}
+
+	/**
+	 * <p>
+	 * Fold the instructions of all functions declared in the module. This must be
+	 * done before instantiating the module.
+	 * </p>
+	 */
+	public static void fold(WasmModule module) {
+		ConstantFolder folder = new ConstantFolder();
+
+		for (GlobalDecl global : module.declaredGlobals()) {
+			if (global instanceof ModuleGlobalDecl decl
+				&& decl.type().mutablity() == Mutability.CONST
+				&& decl.init().size() == 1
+				&& decl.init().get(0) instanceof ConstInsn constant)
+				folder.constants.put(decl, constant.value());
+		}
+
+		for (FunctionDecl function : module.declaredFunctions()) {
+			if (function instanceof ModuleFunctionDecl decl) decl.setBody(folder.foldAll(decl.body()));
+		}
+	}
+
+	/**
+	 * <p>
+	 * Fold the instructions in the list and the bodies of blocks in the list. The
+	 * globals are not replaced, because the module of the instructions is not
+	 * known.
+	 * </p>
+	 *
+	 * @return A new list of folded instructions.
+	 */
+	public static List<Instruction> fold(List<Instruction> instructions) {
+		return new ConstantFolder().foldAll(instructions);
+	}
+
+	private List<Instruction> foldAll(List<Instruction> instructions) {
+		List<Instruction> folded = new ArrayList<>(instructions.size());
+
+		for (Instruction insn : instructions) {
+			if (!fold(insn, folded)) break;
+		}
+
+		return folded;
+	}
+
+	/**
+	 * <p>
+	 * Fold the instruction into the list of folded instructions.
+	 * </p>
+	 *
+	 * @return {@code false} if the instructions after this instruction are never
+	 *         executed.
+	 */
+	private boolean fold(Instruction insn, List<Instruction> folded) {
+		ConstInsn top = constant(folded, 1);
+		ConstInsn bottom = constant(folded, 2);
+
+		if (insn == ControlInsn.NOP) return true;
+		if (insn == ParametricInsn.DROP && top != null) {
+			folded.remove(folded.size() - 1);
+			return true;
+		}
+
+		if (insn instanceof GlobalInsn global && global.type() == GlobalInsnType.GET
+			&& constants.containsKey(global.global())) {
+			folded.add(new ConstInsn(constants.get(global.global())));
+			return true;
+		}
+
+		if (insn instanceof NumericUnaryOpInsn op && top != null
+			&& replace(folded, 1, () -> op.apply(top.value()))) return true;
+		if (insn instanceof NumericConvertInsn op && top != null && !op.canTrap()
+			&& replace(folded, 1, () -> op.apply(top.value()))) return true;
+		if (insn instanceof NumericBinaryOpInsn op && top != null && bottom != null
+			&& replace(folded, 2, () -> op.apply(bottom.value(), top.value()))) return true;
+
+		if (top != null && (insn instanceof IfInsn
+			|| insn instanceof BranchIfInsn
+			|| insn instanceof BranchTableInsn)) {
+			folded.remove(folded.size() - 1);
+
+			if (insn instanceof IfInsn ifInsn) return fold(new BlockInsn(ifInsn.blockType(),
+				top.value().condition() ? ifInsn.truePath() : ifInsn.falsePath()), folded);
+			if (insn instanceof BranchIfInsn branch) return !top.value().condition()
+				|| fold(new BranchInsn(branch.nestIndex(), branch.arity()), folded);
+
+			BranchTableInsn table = (BranchTableInsn) insn;
+			int index = top.value().i32();
+			int label = Integer.compareUnsigned(index, table.labels().length) < 0
+				? table.labels()[index]
+				: table.defaultLabel();
+			return fold(new BranchInsn(label, table.arity()), folded);
+		}
+
+		if (insn instanceof BlockInsn block) {
+			List<Instruction> body = foldAll(block.instructions());
+			if (!targets(body, 0)) return inline(body, folded);
+			folded.add(new BlockInsn(block.blockType(), body));
+			return true;
+		}
+
+		if (insn instanceof LoopInsn loop) {
+			List<Instruction> body = foldAll(loop.instructions());
+			if (!targets(body, 0)) return inline(body, folded);
+			folded.add(new LoopInsn(loop.blockType(), body));
+			return true;
+		}
+
+		if (insn instanceof IfInsn ifInsn) {
+			List<Instruction> truePath = foldAll(ifInsn.truePath());
+			List<Instruction> falsePath = foldAll(ifInsn.falsePath());
+
+			if (truePath.isEmpty() && falsePath.isEmpty() && ifInsn.blockType().blockResults().isEmpty())
+				return fold(ParametricInsn.DROP, folded);
+
+			folded.add(new IfInsn(ifInsn.blockType(), truePath, falsePath));
+			return true;
+		}
+
+		folded.add(insn);
+		return !(insn == ControlInsn.UNREACHABLE
+			|| insn == ControlInsn.RETURN
+			|| insn instanceof BranchInsn
+			|| insn instanceof BranchTableInsn);
+	}
+
+	private static ConstInsn constant(List<Instruction> folded, int fromTop) {
+		int index = folded.size() - fromTop;
+		return index >= 0 && folded.get(index) instanceof ConstInsn constant ? constant : null;
+	}
+
+	private static boolean replace(List<Instruction> folded, int operands, Supplier<Value> result) {
+		Value value;
+
+		try {
+			value = result.get();
+		} catch (RuntimeException e) {
+			// Keep the instruction so it traps when executed
+			return false;
+		}
+
+		for (int i = 0; i < operands; i++) folded.remove(folded.size() - 1);
+		folded.add(new ConstInsn(value));
+		return true;
+	}
+
+	private boolean inline(List<Instruction> body, List<Instruction> folded) {
+		for (Instruction insn : shift(body, 0)) {
+			if (!fold(insn, folded)) return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * <p>
+	 * Check whether any branch in the list targets the block at given depth, where
+	 * depth 0 is the block containing the list.
+	 * </p>
+	 */
+	private static boolean targets(List<Instruction> instructions, int depth) {
+		for (Instruction insn : instructions) {
+			if (targets(insn, depth)) return true;
+		}
+
+		return false;
+	}
+
+	private static boolean targets(Instruction insn, int depth) {
+		if (insn instanceof FusedInsn fused) return targets(fused.instructions(), depth);
+		if (insn instanceof BranchInsn branch) return branch.nestIndex() == depth;
+		if (insn instanceof BranchIfInsn branch) return branch.nestIndex() == depth;
+		if (insn instanceof BranchTableInsn table) {
+			if (table.defaultLabel() == depth) return true;
+			for (int label : table.labels()) if (label == depth) return true;
+			return false;
+		}
+
+		if (insn instanceof BlockInsn block) return targets(block.instructions(), depth + 1);
+		if (insn instanceof LoopInsn loop) return targets(loop.instructions(), depth + 1);
+		if (insn instanceof IfInsn ifInsn)
+			return targets(ifInsn.truePath(), depth + 1) || targets(ifInsn.falsePath(), depth + 1);
+		return false;
+	}
+
+	/**
+	 * <p>
+	 * Decrease the labels of branches that target outside the block at given
+	 * depth, so the body of that block can replace the block.
+	 * </p>
+	 */
+	private static List<Instruction> shift(List<Instruction> instructions, int depth) {
+		return instructions.stream().map(insn -> shift(insn, depth)).toList();
+	}
+
+	private static Instruction shift(Instruction insn, int depth) {
+		if (insn instanceof BranchInsn branch && branch.nestIndex() > depth)
+			return new BranchInsn(branch.nestIndex() - 1, branch.arity());
+		if (insn instanceof BranchIfInsn branch && branch.nestIndex() > depth)
+			return new BranchIfInsn(branch.nestIndex() - 1, branch.arity());
+		if (insn instanceof BranchTableInsn table) {
+			int[] labels = table.labels().clone();
+			for (int i = 0; i < labels.length; i++) labels[i] = shift(labels[i], depth);
+			return new BranchTableInsn(labels, shift(table.defaultLabel(), depth), table.arity());
+		}
+
+		if (insn instanceof CompareBranchIfInsn fused)
+			return new CompareBranchIfInsn(fused.compare(), (BranchIfInsn) shift(fused.branch(), depth));
+		if (insn instanceof BlockInsn block)
+			return new BlockInsn(block.blockType(), shift(block.instructions(), depth + 1));
+		if (insn instanceof LoopInsn loop) return new LoopInsn(loop.blockType(), shift(loop.instructions(), depth + 1));
+		if (insn instanceof IfInsn ifInsn) return new IfInsn(ifInsn.blockType(),
+			shift(ifInsn.truePath(), depth + 1),
+			shift(ifInsn.falsePath(), depth + 1));
+		return insn;
+	}
+
+	private static int shift(int label, int depth) {
+		return label > depth ? label - 1 : label;
+	}
+}
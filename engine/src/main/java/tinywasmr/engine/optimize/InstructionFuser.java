@@ -0,0 +1,132 @@
+package tinywasmr.engine.optimize;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import tinywasmr.engine.insn.ConstInsn;
+import tinywasmr.engine.insn.Instruction;
+import tinywasmr.engine.insn.control.BlockInsn;
+import tinywasmr.engine.insn.control.BranchIfInsn;
+import tinywasmr.engine.insn.control.IfInsn;
+import tinywasmr.engine.insn.control.LoopInsn;
+import tinywasmr.engine.insn.fused.CompareBranchIfInsn;
+import tinywasmr.engine.insn.fused.ConstLoadInsn;
+import tinywasmr.engine.insn.fused.LocalBinaryOpInsn;
+import tinywasmr.engine.insn.fused.LocalConstBinaryOpInsn;
+import tinywasmr.engine.insn.fused.LocalConstUpdateInsn;
+import tinywasmr.engine.insn.memory.LoadInsn;
+import tinywasmr.engine.insn.numeric.NumericBinaryOpInsn;
+import tinywasmr.engine.insn.numeric.NumericUnaryOpInsn;
+import tinywasmr.engine.insn.variable.LocalInsn;
+import tinywasmr.engine.insn.variable.LocalInsnType;
+import tinywasmr.engine.module.WasmModule;
+import tinywasmr.engine.module.func.FunctionDecl;
+import tinywasmr.engine.module.func.ModuleFunctionDecl;
+
+/**
+ * <p>
+ * Rewrite common sequences of instructions into
+ * {@link tinywasmr.engine.insn.fused.FusedInsn}, so the interpreter executes
+ * them in one step. The sequences are:
+ * </p>
+ * <ul>
+ * <li>{@code local.get; local.get; binop} to {@link LocalBinaryOpInsn}</li>
+ * <li>{@code local.get; const; binop} to {@link LocalConstBinaryOpInsn}</li>
+ * <li>{@code local.get; const; binop; local.set} (or {@code local.tee}) to
+ * {@link LocalConstUpdateInsn}</li>
+ * <li>{@code const; load} to {@link ConstLoadInsn}</li>
+ * <li>comparison (including the fused ones above) or {@code eqz} followed by
+ * {@code br_if} to {@link CompareBranchIfInsn}</li>
+ * </ul>
+ * <p>
+ * Fusing doesn't change the operands or labels of the function, so a validated
+ * function is still valid after fusing, though the stack heights recorded by
+ * the validator are cleared. Use {@link InstructionMix} to find out which
+ * sequences are common in your modules.
+ * </p>
+ */
+public class InstructionFuser {
+	private InstructionFuser() {}
+
+	/**
+	 * <p>
+	 * Fuse the instructions of all functions declared in the module. This must be
+	 * done before instantiating the module.
+	 * </p>
+	 */
+	public static void fuse(WasmModule module) {
+		for (FunctionDecl function : module.declaredFunctions()) {
+			if (function instanceof ModuleFunctionDecl decl) decl.setBody(fuse(decl.body()));
+		}
+	}
+
+	/**
+	 * <p>
+	 * Fuse the instructions in the list and the bodies of blocks in the list.
+	 * </p>
+	 *
+	 * @return A new list of fused instructions.
+	 */
+	public static List<Instruction> fuse(List<Instruction> instructions) {
+		List<Instruction> fused = new ArrayList<>(instructions.size());
+		int i = 0;
+
+		while (i < instructions.size()) {
+			Instruction insn = instructions.get(i);
+			Instruction next = at(instructions, i + 1);
+			Instruction op = at(instructions, i + 2);
+
+			if (isLocalGet(insn) && next instanceof ConstInsn constant && op instanceof NumericBinaryOpInsn binary) {
+				int local = ((LocalInsn) insn).index();
+
+				if (at(instructions, i + 3) instanceof LocalInsn target && target.type() != LocalInsnType.GET) {
+					fused.add(new LocalConstUpdateInsn(local, constant, binary, target));
+					i += 4;
+				} else {
+					fused.add(new LocalConstBinaryOpInsn(local, constant, binary));
+					i += 3;
+				}
+			} else if (isLocalGet(insn) && isLocalGet(next) && op instanceof NumericBinaryOpInsn binary) {
+				fused.add(new LocalBinaryOpInsn(((LocalInsn) insn).index(), ((LocalInsn) next).index(), binary));
+				i += 3;
+			} else if (insn instanceof ConstInsn address && next instanceof LoadInsn) {
+				fused.add(new ConstLoadInsn(address, next));
+				i += 2;
+			} else if (insn instanceof BranchIfInsn branch && !fused.isEmpty()
+				&& isCompare(fused.get(fused.size() - 1))) {
+				fused.add(new CompareBranchIfInsn(fused.remove(fused.size() - 1), branch));
+				i++;
+			} else {
+				fused.add(fuseNested(insn));
+				i++;
+			}
+		}
+
+		return fused;
+	}
+
+	private static Instruction at(List<Instruction> instructions, int index) {
+		return index < instructions.size() ? instructions.get(index) : null;
+	}
+
+	private static boolean isLocalGet(Instruction insn) {
+		return insn instanceof LocalInsn local && local.type() == LocalInsnType.GET;
+	}
+
+	private static boolean isCompare(Instruction insn) {
+		if (insn instanceof NumericUnaryOpInsn op) return op == NumericUnaryOpInsn.I32_EQZ
+			|| op == NumericUnaryOpInsn.I64_EQZ;
+		if (insn instanceof NumericBinaryOpInsn op) return op.isComparison();
+		if (insn instanceof LocalBinaryOpInsn local) return local.op().isComparison();
+		if (insn instanceof LocalConstBinaryOpInsn local) return local.op().isComparison();
+		return false;
+	}
+
+	private static Instruction fuseNested(Instruction insn) {
+		if (insn instanceof BlockInsn block) return new BlockInsn(block.blockType(), fuse(block.instructions()));
+		if (insn instanceof LoopInsn loop) return new LoopInsn(loop.blockType(), fuse(loop.instructions()));
+		if (insn instanceof IfInsn ifInsn)
+			return new IfInsn(ifInsn.blockType(), fuse(ifInsn.truePath()), fuse(ifInsn.falsePath()));
+		return insn;
+	}
+}
@@ -0,0 +1,149 @@
+package tinywasmr.engine.optimize;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import tinywasmr.engine.insn.ConstInsn;
+import tinywasmr.engine.insn.Instruction;
+import tinywasmr.engine.insn.LinkedInsn;
+import tinywasmr.engine.insn.control.BlockInsn;
+import tinywasmr.engine.insn.control.IfInsn;
+import tinywasmr.engine.insn.control.LoopInsn;
+import tinywasmr.engine.insn.memory.AtomicInsn;
+import tinywasmr.engine.insn.memory.LoadInsn;
+import tinywasmr.engine.insn.memory.MemoryInsn;
+import tinywasmr.engine.insn.memory.StoreInsn;
+import tinywasmr.engine.insn.table.TableInsn;
+import tinywasmr.engine.insn.variable.GlobalInsn;
+import tinywasmr.engine.insn.variable.LocalInsn;
+import tinywasmr.engine.module.WasmModule;
+import tinywasmr.engine.module.func.FunctionDecl;
+import tinywasmr.engine.module.func.ModuleFunctionDecl;
+
+/**
+ * <p>
+ * Count the instructions and the pairs of adjacent instructions in function
+ * bodies, which is useful for choosing the sequences to fuse by
+ * {@link InstructionFuser}. The instructions are counted statically, so a
+ * sequence in a hot loop counts as much as a sequence that runs once. The
+ * pairs are counted within the same block, and each block instruction is
+ * counted before the instructions inside the block.
+ * </p>
+ */
+public class InstructionMix {
+	private final Map<String, Long> counts = new HashMap<>();
+	private final Map<String, Long> pairs = new HashMap<>();
+	private long total = 0;
+
+	/**
+	 * <p>
+	 * Count the instructions of all functions declared in the module.
+	 * </p>
+	 */
+	public static InstructionMix of(WasmModule module) {
+		InstructionMix mix = new InstructionMix();
+		mix.add(module);
+		return mix;
+	}
+
+	public void add(WasmModule module) {
+		for (FunctionDecl function : module.declaredFunctions()) {
+			if (function instanceof ModuleFunctionDecl decl) add(decl.body());
+		}
+	}
+
+	public void add(List<Instruction> instructions) {
+		String previous = null;
+
+		for (Instruction insn : instructions) {
+			if (insn instanceof LinkedInsn linked) insn = linked.unlinked();
+			String name = nameOf(insn);
+			counts.merge(name, 1L, Long::sum);
+			if (previous != null) pairs.merge(previous + " " + name, 1L, Long::sum);
+			previous = name;
+			total++;
+
+			if (insn instanceof BlockInsn block) add(block.instructions());
+			else if (insn instanceof LoopInsn loop) add(loop.instructions());
+			else if (insn instanceof IfInsn ifInsn) {
+				add(ifInsn.truePath());
+				add(ifInsn.falsePath());
+			}
+		}
+	}
+
+	/**
+	 * <p>
+	 * Get the name of instruction in the report, like {@code I32_ADD} or
+	 * {@code LOCAL_GET}.
+	 * </p>
+	 */
+	public static String nameOf(Instruction insn) {
+		if (insn instanceof Enum<?> e) return e.name();
+		if (insn instanceof ConstInsn constInsn) return "CONST_" + constInsn.value().type();
+		if (insn instanceof LocalInsn local) return "LOCAL_" + local.type();
+		if (insn instanceof GlobalInsn global) return "GLOBAL_" + global.type();
+		if (insn instanceof LoadInsn load) return "LOAD_" + load.type();
+		if (insn instanceof StoreInsn store) return "STORE_" + store.type();
+		if (insn instanceof MemoryInsn memory) return "MEMORY_" + memory.type();
+		if (insn instanceof TableInsn table) return "TABLE_" + table.type();
+		if (insn instanceof AtomicInsn atomic) return "ATOMIC_" + atomic.insnType() + "_" + atomic.type();
+		return insn.getClass().getSimpleName();
+	}
+
+	/**
+	 * <p>
+	 * Get the total number of counted instructions.
+	 * </p>
+	 */
+	public long getTotal() { return total; }
+
+	/**
+	 * <p>
+	 * Get the number of each instruction, keyed by {@link #nameOf(Instruction)}.
+	 * </p>
+	 */
+	public Map<String, Long> getCounts() { return Collections.unmodifiableMap(counts); }
+
+	/**
+	 * <p>
+	 * Get the number of each pair of adjacent instructions, keyed by the names of
+	 * both instructions separated by a space.
+	 * </p>
+	 */
+	public Map<String, Long> getPairs() { return Collections.unmodifiableMap(pairs); }
+
+	/**
+	 * <p>
+	 * Make a report of the most common instructions and pairs.
+	 * </p>
+	 *
+	 * @param limit The maximum number of instructions and pairs to list.
+	 * @return The report, one instruction or pair per line.
+	 */
+	public String report(int limit) {
+		StringBuilder builder = new StringBuilder();
+		builder.append("%d instructions\n".formatted(total));
+		builder.append("Instructions:\n");
+		appendTop(builder, counts, limit);
+		builder.append("Pairs:\n");
+		appendTop(builder, pairs, limit);
+		return builder.toString();
+	}
+
+	private void appendTop(StringBuilder builder, Map<String, Long> map, int limit) {
+		map.entrySet().stream()
+			.sorted(Entry.<String, Long>comparingByValue().reversed().thenComparing(Entry.comparingByKey()))
+			.limit(limit)
+			.forEach(e -> builder.append("%8d %5.1f%% %s\n"
+				.formatted(e.getValue(), e.getValue() * 100d / Math.max(total, 1), e.getKey())));
+	}
+
+	@Override
+	public String toString() {
+		return report(20);
+	}
+}
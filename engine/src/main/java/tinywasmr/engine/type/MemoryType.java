@@ -1,4 +1,18 @@
 package tinywasmr.engine.type;
 
-public record MemoryType(Limit limit) {
+/**
+ * @param limit    The limit of memory, in pages.
+ * @param memory64 Whether the memory is 64-bit memory from memory64 proposal,
+ *                 which is addressed with {@code i64} instead of {@code i32}.
+ * @param shared   Whether the memory is shared memory from threads proposal,
+ *                 which can be accessed by several threads.
+ */
+public record MemoryType(Limit limit, boolean memory64, boolean shared) {
+	public MemoryType(Limit limit, boolean memory64) {
+		this(limit, memory64, false);
+	}
+
+	public MemoryType(Limit limit) {
+		this(limit, false);
+	}
 }
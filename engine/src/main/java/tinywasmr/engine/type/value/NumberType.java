@@ -16,9 +16,11 @@ public enum NumberType implements ValueType {
 	F32,
 	F64;
 
+	private final List<ValueType> blockResults = Collections.singletonList(this);
+
 	@Override
 	public List<ValueType> blockResults() {
-		return Collections.singletonList(this);
+		return blockResults;
 	}
 
 	@Override
@@ -0,0 +1,27 @@
+package tinywasmr.engine.validation;
+
+/**
+ * <p>
+ * The facts about a function body that are computed by {@link ModuleValidator}.
+ * </p>
+ *
+ * @param localCount     The number of locals, including parameters.
+ * @param maxStackHeight The maximum number of operands of the function at any
+ *                       point, excluding locals. Operands of nested blocks are
+ *                       counted together with the operands of enclosing blocks,
+ *                       because they share the same value stack.
+ * @param maxLabelDepth  The maximum number of labels at any point, including
+ *                       the label of function body. This is the maximum number
+ *                       of frames the function pushes at the same time.
+ */
+public record FunctionValidation(int localCount, int maxStackHeight, int maxLabelDepth) {
+	/**
+	 * <p>
+	 * Get the number of value stack slots the function needs, which is the
+	 * locals and the operands.
+	 * </p>
+	 */
+	public int frameSize() {
+		return localCount + maxStackHeight;
+	}
+}
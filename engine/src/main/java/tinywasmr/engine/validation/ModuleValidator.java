@@ -0,0 +1,752 @@
+package tinywasmr.engine.validation;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import tinywasmr.engine.exec.ValidationException;
+import tinywasmr.engine.insn.ConstInsn;
+import tinywasmr.engine.insn.Instruction;
+import tinywasmr.engine.insn.LinkedInsn;
+import tinywasmr.engine.insn.control.BlockInsn;
+import tinywasmr.engine.insn.control.BranchBaseInsn;
+import tinywasmr.engine.insn.control.BranchIfInsn;
+import tinywasmr.engine.insn.control.BranchInsn;
+import tinywasmr.engine.insn.control.BranchTableInsn;
+import tinywasmr.engine.insn.control.CallIndirectInsn;
+import tinywasmr.engine.insn.control.CallInsn;
+import tinywasmr.engine.insn.control.ControlInsn;
+import tinywasmr.engine.insn.control.IfInsn;
+import tinywasmr.engine.insn.control.LoopInsn;
+import tinywasmr.engine.insn.fused.FusedInsn;
+import tinywasmr.engine.insn.memory.AtomicFenceInsn;
+import tinywasmr.engine.insn.memory.AtomicInsn;
+import tinywasmr.engine.insn.memory.DataDropInsn;
+import tinywasmr.engine.insn.memory.LoadInsn;
+import tinywasmr.engine.insn.memory.MemoryArg;
+import tinywasmr.engine.insn.memory.MemoryInitInsn;
+import tinywasmr.engine.insn.memory.MemoryInsn;
+import tinywasmr.engine.insn.memory.StoreInsn;
+import tinywasmr.engine.insn.numeric.NumericBinaryOpInsn;
+import tinywasmr.engine.insn.numeric.NumericConvertInsn;
+import tinywasmr.engine.insn.numeric.NumericUnaryOpInsn;
+import tinywasmr.engine.insn.parametric.ParametricInsn;
+import tinywasmr.engine.insn.parametric.SelectExplictInsn;
+import tinywasmr.engine.insn.ref.RefFuncInsn;
+import tinywasmr.engine.insn.ref.RefInsn;
+import tinywasmr.engine.insn.table.TableInitInsn;
+import tinywasmr.engine.insn.table.TableInsn;
+import tinywasmr.engine.insn.variable.GlobalInsn;
+import tinywasmr.engine.insn.variable.GlobalInsnType;
+import tinywasmr.engine.insn.variable.LocalInsn;
+import tinywasmr.engine.module.WasmModule;
+import tinywasmr.engine.module.export.ExportDecl;
+import tinywasmr.engine.module.export.ExportDescription;
+import tinywasmr.engine.module.export.FunctionExportDescription;
+import tinywasmr.engine.module.export.GlobalExportDescription;
+import tinywasmr.engine.module.export.MemoryExportDescription;
+import tinywasmr.engine.module.export.TableExportDescription;
+import tinywasmr.engine.module.func.FunctionDecl;
+import tinywasmr.engine.module.func.ImportFunctionDecl;
+import tinywasmr.engine.module.func.ModuleFunctionDecl;
+import tinywasmr.engine.module.global.GlobalDecl;
+import tinywasmr.engine.module.global.ImportGlobalDecl;
+import tinywasmr.engine.module.global.ModuleGlobalDecl;
+import tinywasmr.engine.module.imprt.FunctionImportDescription;
+import tinywasmr.engine.module.imprt.GlobalImportDescription;
+import tinywasmr.engine.module.imprt.ImportDecl;
+import tinywasmr.engine.module.imprt.ImportDescription;
+import tinywasmr.engine.module.imprt.MemoryImportDescription;
+import tinywasmr.engine.module.imprt.TableImportDescription;
+import tinywasmr.engine.module.memory.ActiveDataMode;
+import tinywasmr.engine.module.memory.DataSegment;
+import tinywasmr.engine.module.memory.ImportMemoryDecl;
+import tinywasmr.engine.module.memory.MemoryDecl;
+import tinywasmr.engine.module.table.ActiveElementMode;
+import tinywasmr.engine.module.table.ElementSegment;
+import tinywasmr.engine.module.table.ImportTableDecl;
+import tinywasmr.engine.module.table.TableDecl;
+import tinywasmr.engine.type.FunctionType;
+import tinywasmr.engine.type.Limit;
+import tinywasmr.engine.type.MemoryType;
+import tinywasmr.engine.type.Mutability;
+import tinywasmr.engine.type.value.NumberType;
+import tinywasmr.engine.type.value.RefType;
+import tinywasmr.engine.type.value.ValueType;
+
+/**
+ * <p>
+ * Validate the functions of a module before executing them, following the
+ * validation algorithm from the appendix of WebAssembly specification. The
+ * validator checks the types of operands of every instruction, the arities of
+ * branches, and the locals, globals, functions, memories, tables and segments
+ * referred by instructions. The module itself is checked too: the limits of
+ * memories and tables, the types of imports, the exports, and the constant
+ * expressions of globals and segments. The interpreter does not check any of
+ * these (unless
+ * {@link tinywasmr.engine.exec.vm.Machine#hasRuntimeValidation()} is enabled),
+ * so executing a validated module never requires runtime validation.
+ * </p>
+ * <p>
+ * Validating a function stores {@link FunctionValidation} to the function
+ * declaration, which is used by the machine to reserve the value stack slots
+ * for the whole function when it is called.
+ * </p>
+ *
+ * @see <a href=
+ *      "https://webassembly.github.io/spec/core/appendix/algorithm.html">WebAssembly
+ *      Core Specification - Validation Algorithm</a>
+ */
+public class ModuleValidator {
+	private static final long MAX_PAGES = 65536;
+	private static final long MAX_PAGES_64 = 0xFFFFFFFFL;
+	private static final long MAX_TABLE_SIZE = 0xFFFFFFFFL;
+
+	private final WasmModule module;
+	private final Set<FunctionDecl> functions = identitySet();
+	private final Set<GlobalDecl> globals = identitySet();
+	private final Set<MemoryDecl> memories = identitySet();
+	private final Set<TableDecl> tables = identitySet();
+	private final Set<DataSegment> dataSegments = identitySet();
+	private final Set<ElementSegment> elementSegments = identitySet();
+
+	public ModuleValidator(WasmModule module) {
+		this.module = module;
+		functions.addAll(module.declaredFunctions());
+		globals.addAll(module.declaredGlobals());
+		memories.addAll(module.declaredMemories());
+		tables.addAll(module.declaredTables());
+		dataSegments.addAll(module.dataSegments());
+		elementSegments.addAll(module.elementSegments());
+	}
+
+	private static <T> Set<T> identitySet() {
+		return Collections.newSetFromMap(new IdentityHashMap<>());
+	}
+
+	public WasmModule getModule() { return module; }
+
+	/**
+	 * <p>
+	 * Validate the whole module and store the results to all functions declared
+	 * in the module. The module is marked as validated afterwards.
+	 * </p>
+	 *
+	 * @throws ValidationException if the module is not valid.
+	 */
+	public void validate() {
+		validateTypes();
+		validateImports();
+		List<GlobalDecl> globalList = module.declaredGlobals();
+
+		for (int i = 0; i < globalList.size(); i++) {
+			if (!(globalList.get(i) instanceof ModuleGlobalDecl global)) continue;
+
+			try {
+				validateConstant(global.init(), global.type().valType());
+			} catch (ValidationException e) {
+				throw new ValidationException("Invalid global %d: %s".formatted(i, e.getMessage()), e);
+			}
+		}
+
+		List<FunctionDecl> functionList = module.declaredFunctions();
+
+		for (int i = 0; i < functionList.size(); i++) {
+			if (!(functionList.get(i) instanceof ModuleFunctionDecl function)) continue;
+
+			try {
+				function.setValidation(validate(function));
+			} catch (ValidationException e) {
+				throw new ValidationException("Invalid function %d: %s".formatted(i, e.getMessage()), e);
+			}
+		}
+
+		validateSegments();
+		validateExports();
+		FunctionDecl start = module.startFunction();
+
+		if (start != null) {
+			if (!functions.contains(start)) throw new ValidationException("Start function is not in module");
+			if (!start.type().inputs().types().isEmpty() || !start.type().outputs().types().isEmpty())
+				throw new ValidationException("Start function must have no parameters and results, but %s found"
+					.formatted(start.type()));
+		}
+
+		module.setValidated(true);
+	}
+
+	/**
+	 * <p>
+	 * Validate the body of a function. The result is not stored to the function.
+	 * </p>
+	 *
+	 * @throws ValidationException if the function is not valid.
+	 */
+	public FunctionValidation validate(ModuleFunctionDecl function) {
+		List<ValueType> locals = function.allLocals();
+		List<ValueType> results = function.type().outputs().types();
+		FunctionValidator validator = new FunctionValidator(locals, results, false);
+		validator.validateBody(function.body());
+		return new FunctionValidation(locals.size(), validator.maxStackHeight, validator.maxLabelDepth);
+	}
+
+	private void validateConstant(List<Instruction> expression, ValueType type) {
+		new FunctionValidator(List.of(), List.of(type), true).validateBody(expression);
+	}
+
+	private static <T> T require(Collection<T> declared, T decl, String kind) {
+		if (!declared.contains(decl)) throw new ValidationException("Unknown %s %s".formatted(kind, decl));
+		return decl;
+	}
+
+	private ValueType addressType(MemoryDecl memory) {
+		require(memories, memory, "memory");
+		return memory.type().memory64() ? NumberType.I64 : NumberType.I32;
+	}
+
+	private static void validateLimit(Limit limit, long range) {
+		if (Integer.toUnsignedLong(limit.min()) > range)
+			throw new ValidationException("Minimum %s is larger than %d".formatted(
+				Integer.toUnsignedString(limit.min()), range));
+		if (!limit.hasMax()) return;
+		if (Integer.toUnsignedLong(limit.max()) > range)
+			throw new ValidationException("Maximum %s is larger than %d".formatted(
+				Integer.toUnsignedString(limit.max()), range));
+		if (Integer.compareUnsigned(limit.min(), limit.max()) > 0)
+			throw new ValidationException("Minimum %s is larger than maximum %s".formatted(
+				Integer.toUnsignedString(limit.min()), Integer.toUnsignedString(limit.max())));
+	}
+
+	private void validateTypes() {
+		List<MemoryDecl> memoryList = module.declaredMemories();
+
+		for (int i = 0; i < memoryList.size(); i++) {
+			MemoryType type = memoryList.get(i).type();
+
+			try {
+				validateLimit(type.limit(), type.memory64() ? MAX_PAGES_64 : MAX_PAGES);
+				if (type.shared() && !type.limit().hasMax())
+					throw new ValidationException("Shared memory must have maximum");
+			} catch (ValidationException e) {
+				throw new ValidationException("Invalid memory %d: %s".formatted(i, e.getMessage()), e);
+			}
+		}
+
+		List<TableDecl> tableList = module.declaredTables();
+
+		for (int i = 0; i < tableList.size(); i++) {
+			try {
+				validateLimit(tableList.get(i).type().limit(), MAX_TABLE_SIZE);
+			} catch (ValidationException e) {
+				throw new ValidationException("Invalid table %d: %s".formatted(i, e.getMessage()), e);
+			}
+		}
+	}
+
+	private void validateImports() {
+		Set<ImportDecl> imports = identitySet();
+		imports.addAll(module.declaredImports());
+		int count = 0;
+
+		for (FunctionDecl function : module.declaredFunctions()) {
+			if (!(function instanceof ImportFunctionDecl decl)) continue;
+			validateImport(imports, decl.declaration(), decl.type());
+			count++;
+		}
+
+		for (TableDecl table : module.declaredTables()) {
+			if (!(table instanceof ImportTableDecl decl)) continue;
+			validateImport(imports, decl.declaration(), decl.type());
+			count++;
+		}
+
+		for (MemoryDecl memory : module.declaredMemories()) {
+			if (!(memory instanceof ImportMemoryDecl decl)) continue;
+			validateImport(imports, decl.declaration(), decl.type());
+			count++;
+		}
+
+		for (GlobalDecl global : module.declaredGlobals()) {
+			if (!(global instanceof ImportGlobalDecl decl)) continue;
+			validateImport(imports, decl.declaration(), decl.type());
+			count++;
+		}
+
+		if (count != imports.size())
+			throw new ValidationException("%d imports are declared, but %d are imported"
+				.formatted(imports.size(), count));
+	}
+
+	private static void validateImport(Set<ImportDecl> imports, ImportDecl imp, Object type) {
+		if (!imports.contains(imp)) throw new ValidationException("Unknown import %s".formatted(imp));
+		ImportDescription description = imp.description();
+		Object declared;
+
+		if (description instanceof FunctionImportDescription function) declared = function.type();
+		else if (description instanceof TableImportDescription table) declared = table.type();
+		else if (description instanceof MemoryImportDescription memory) declared = memory.type();
+		else if (description instanceof GlobalImportDescription global) declared = global.type();
+		else throw new ValidationException("Unknown import description %s".formatted(description));
+
+		if (!declared.equals(type))
+			throw new ValidationException("Import %s.%s type mismatch: %s (declared) != %s (imported)"
+				.formatted(imp.module(), imp.name(), declared, type));
+	}
+
+	private void validateExports() {
+		Set<String> names = new HashSet<>();
+
+		for (ExportDecl export : module.declaredExports()) {
+			if (!names.add(export.name()))
+				throw new ValidationException("Duplicated export %s".formatted(export.name()));
+
+			try {
+				ExportDescription description = export.description();
+				if (description instanceof FunctionExportDescription function)
+					require(functions, function.function(), "function");
+				else if (description instanceof TableExportDescription table) require(tables, table.table(), "table");
+				else if (description instanceof MemoryExportDescription memory)
+					require(memories, memory.memory(), "memory");
+				else if (description instanceof GlobalExportDescription global)
+					require(globals, global.global(), "global");
+				else throw new ValidationException("Unknown export description %s".formatted(description));
+			} catch (ValidationException e) {
+				throw new ValidationException("Invalid export %s: %s".formatted(export.name(), e.getMessage()), e);
+			}
+		}
+	}
+
+	private void validateSegments() {
+		List<DataSegment> dataList = module.dataSegments();
+
+		for (int i = 0; i < dataList.size(); i++) {
+			if (!(dataList.get(i).mode() instanceof ActiveDataMode active)) continue;
+
+			try {
+				validateConstant(active.offsetExpr(), addressType(active.memory()));
+			} catch (ValidationException e) {
+				throw new ValidationException("Invalid data segment %d: %s".formatted(i, e.getMessage()), e);
+			}
+		}
+
+		List<ElementSegment> elementList = module.elementSegments();
+
+		for (int i = 0; i < elementList.size(); i++) {
+			ElementSegment segment = elementList.get(i);
+
+			try {
+				for (List<Instruction> init : segment.inits()) validateConstant(init, segment.type());
+
+				if (segment.mode() instanceof ActiveElementMode active) {
+					RefType type = require(tables, active.table(), "table").type().refType();
+					if (type != segment.type())
+						throw new ValidationException("Type mismatch: %s (segment) != %s (table)"
+							.formatted(segment.type(), type));
+					validateConstant(active.offsetExpr(), NumberType.I32);
+				}
+			} catch (ValidationException e) {
+				throw new ValidationException("Invalid element segment %d: %s".formatted(i, e.getMessage()), e);
+			}
+		}
+	}
+
+	private static void checkAlignment(MemoryArg memarg, int size) {
+		int naturalAlignment = Integer.numberOfTrailingZeros(size);
+		if (memarg.align() > naturalAlignment)
+			throw new ValidationException("Alignment 2^%d is larger than natural alignment 2^%d"
+				.formatted(memarg.align(), naturalAlignment));
+	}
+
+	private static class Control {
+		final List<ValueType> labelTypes;
+		final List<ValueType> endTypes;
+		final int height;
+		boolean unreachable = false;
+
+		Control(List<ValueType> labelTypes, List<ValueType> endTypes, int height) {
+			this.labelTypes = labelTypes;
+			this.endTypes = endTypes;
+			this.height = height;
+		}
+	}
+
+	private class FunctionValidator {
+		private final List<ValueType> locals;
+		private final List<ValueType> results;
+		private final boolean constant;
+		// Unknown operands in unreachable code are null
+		private final List<ValueType> stack = new ArrayList<>();
+		private final List<Control> controls = new ArrayList<>();
+		private int maxStackHeight = 0;
+		private int maxLabelDepth = 0;
+
+		FunctionValidator(List<ValueType> locals, List<ValueType> results, boolean constant) {
+			this.locals = locals;
+			this.results = results;
+			this.constant = constant;
+		}
+
+		void validateBody(List<Instruction> body) {
+			enter(results, results);
+			validateAll(body);
+			exit();
+		}
+
+		private void validateAll(List<Instruction> instructions) {
+			for (Instruction insn : instructions) validateNext(insn);
+		}
+
+		private void validateNext(Instruction insn) {
+			if (insn instanceof LinkedInsn linked) insn = linked.unlinked();
+
+			// Fused instructions are valid if the instructions they are fused from are valid
+			if (insn instanceof FusedInsn fused) {
+				for (Instruction part : fused.instructions()) validateNext(part);
+				return;
+			}
+
+			if (constant && !isConstant(insn))
+				throw new ValidationException("%s is not a constant instruction".formatted(insn));
+			validate(insn);
+		}
+
+		private boolean isConstant(Instruction insn) {
+			if (insn instanceof ConstInsn || insn instanceof RefFuncInsn) return true;
+			if (insn instanceof RefInsn ref) return ref != RefInsn.IS_NULL;
+			if (insn instanceof GlobalInsn global) return global.type() == GlobalInsnType.GET;
+			// Extended constant expressions proposal
+			if (insn instanceof NumericBinaryOpInsn op) return switch (op) {
+			case I32_ADD, I32_SUB, I32_MUL, I64_ADD, I64_SUB, I64_MUL -> true;
+			default -> false;
+			};
+			return false;
+		}
+
+		private void push(ValueType type) {
+			stack.add(type);
+			maxStackHeight = Math.max(maxStackHeight, stack.size());
+		}
+
+		private void pushAll(List<ValueType> types) {
+			for (ValueType type : types) push(type);
+		}
+
+		private ValueType pop() {
+			Control control = controls.get(controls.size() - 1);
+
+			if (stack.size() == control.height) {
+				if (control.unreachable) return null;
+				throw new ValidationException("Operand stack underflow");
+			}
+
+			return stack.remove(stack.size() - 1);
+		}
+
+		private ValueType pop(ValueType expected) {
+			ValueType actual = pop();
+			if (actual != null && expected != null && actual != expected)
+				throw new ValidationException("Type mismatch: %s (stack) != %s (expected)".formatted(actual, expected));
+			return actual != null ? actual : expected;
+		}
+
+		private List<ValueType> popAll(List<ValueType> types) {
+			ValueType[] popped = new ValueType[types.size()];
+			for (int i = types.size() - 1; i >= 0; i--) popped[i] = pop(types.get(i));
+			return List.of(popped);
+		}
+
+		private void enter(List<ValueType> labelTypes, List<ValueType> endTypes) {
+			controls.add(new Control(labelTypes, endTypes, stack.size()));
+			maxLabelDepth = Math.max(maxLabelDepth, controls.size());
+		}
+
+		private void exit() {
+			Control control = controls.get(controls.size() - 1);
+			popAll(control.endTypes);
+			if (stack.size() != control.height)
+				throw new ValidationException("%d operands left at the end of block"
+					.formatted(stack.size() - control.height));
+			controls.remove(controls.size() - 1);
+		}
+
+		private void unreachable() {
+			Control control = controls.get(controls.size() - 1);
+			stack.subList(control.height, stack.size()).clear();
+			control.unreachable = true;
+		}
+
+		private List<ValueType> label(BranchBaseInsn branch, int nestIndex) {
+			if (nestIndex < 0 || nestIndex >= controls.size())
+				throw new ValidationException("Unknown label %d".formatted(nestIndex));
+			List<ValueType> types = controls.get(controls.size() - nestIndex - 1).labelTypes;
+			// Arities are resolved when parsing, and the machine trusts them when branching
+			if (branch.arity() >= 0 && branch.arity() != types.size())
+				throw new ValidationException("Branch arity %d doesn't match label arity %d"
+					.formatted(branch.arity(), types.size()));
+			return types;
+		}
+
+		private int local(int index) {
+			if (index < 0 || index >= locals.size())
+				throw new ValidationException("Unknown local %d".formatted(index));
+			return index;
+		}
+
+		private void validate(Instruction insn) {
+			if (insn instanceof ConstInsn constInsn) {
+				push(constInsn.value().type());
+			} else if (insn instanceof NumericBinaryOpInsn op) {
+				pop(op.operandType());
+				pop(op.operandType());
+				push(op.resultType());
+			} else if (insn instanceof NumericUnaryOpInsn op) {
+				pop(op.operandType());
+				push(op.resultType());
+			} else if (insn instanceof NumericConvertInsn op) {
+				pop(op.operandType());
+				push(op.resultType());
+			} else if (insn instanceof LocalInsn local) {
+				ValueType type = locals.get(local(local.index()));
+
+				switch (local.type()) {
+				case GET -> push(type);
+				case SET -> pop(type);
+				case TEE -> {
+					pop(type);
+					push(type);
+				}
+				}
+			} else if (insn instanceof GlobalInsn global) {
+				GlobalDecl decl = require(globals, global.global(), "global");
+				ValueType type = decl.type().valType();
+
+				switch (global.type()) {
+				case GET -> push(type);
+				case SET -> {
+					if (decl.type().mutablity() != Mutability.VAR)
+						throw new ValidationException("Global is immutable");
+					pop(type);
+				}
+				}
+			} else if (insn instanceof LoadInsn load) {
+				ValueType address = addressType(load.memory());
+				checkAlignment(load.memarg(), load.type().size());
+				pop(address);
+				push(load.type().type());
+			} else if (insn instanceof StoreInsn store) {
+				ValueType address = addressType(store.memory());
+				checkAlignment(store.memarg(), store.type().size());
+				pop(store.type().type());
+				pop(address);
+			} else if (insn instanceof AtomicInsn atomic) {
+				validateAtomic(atomic);
+			} else if (insn instanceof AtomicFenceInsn) {
+				// No operands
+			} else if (insn instanceof MemoryInsn memory) {
+				ValueType address = addressType(memory.memory());
+
+				switch (memory.type()) {
+				case SIZE -> push(address);
+				case GROW -> {
+					pop(address);
+					push(address);
+				}
+				case COPY -> {
+					pop(address);
+					pop(address);
+					pop(address);
+				}
+				case FILL -> {
+					pop(address);
+					pop(NumberType.I32);
+					pop(address);
+				}
+				}
+			} else if (insn instanceof MemoryInitInsn init) {
+				ValueType address = addressType(init.memory());
+				require(dataSegments, init.segment(), "data segment");
+				pop(NumberType.I32);
+				pop(NumberType.I32);
+				pop(address);
+			} else if (insn instanceof DataDropInsn drop) {
+				require(dataSegments, drop.segment(), "data segment");
+			} else if (insn instanceof TableInsn table) {
+				RefType type = require(tables, table.table(), "table").type().refType();
+
+				switch (table.type()) {
+				case GET -> {
+					pop(NumberType.I32);
+					push(type);
+				}
+				case SET -> {
+					pop(type);
+					pop(NumberType.I32);
+				}
+				case GROW -> {
+					pop(NumberType.I32);
+					pop(type);
+					push(NumberType.I32);
+				}
+				case SIZE -> push(NumberType.I32);
+				case FILL -> {
+					pop(NumberType.I32);
+					pop(type);
+					pop(NumberType.I32);
+				}
+				}
+			} else if (insn instanceof TableInitInsn init) {
+				RefType type = require(tables, init.table(), "table").type().refType();
+				ElementSegment segment = require(elementSegments, init.segment(), "element segment");
+				if (segment.type() != type) throw new ValidationException("Type mismatch: %s (segment) != %s (table)"
+					.formatted(segment.type(), type));
+				pop(NumberType.I32);
+				pop(NumberType.I32);
+				pop(NumberType.I32);
+			} else if (insn instanceof ParametricInsn parametric) {
+				switch (parametric) {
+				case DROP -> pop();
+				case SELECT_AUTO -> {
+					pop(NumberType.I32);
+					ValueType top = pop();
+					ValueType bottom = pop(top);
+					ValueType type = bottom != null ? bottom : top;
+					if (type instanceof RefType)
+						throw new ValidationException("select without type can't select references");
+					push(type);
+				}
+				}
+			} else if (insn instanceof SelectExplictInsn select) {
+				pop(NumberType.I32);
+				pop(select.type());
+				pop(select.type());
+				push(select.type());
+			} else if (insn instanceof RefInsn ref) {
+				switch (ref) {
+				case NULL_EXTERN -> push(RefType.EXTERN);
+				case NULL_FUNC -> push(RefType.FUNC);
+				case IS_NULL -> {
+					ValueType type = pop();
+					if (type != null && !(type instanceof RefType))
+						throw new ValidationException("Expected funcref or externref, but %s found".formatted(type));
+					push(NumberType.I32);
+				}
+				}
+			} else if (insn instanceof RefFuncInsn ref) {
+				require(functions, ref.function(), "function");
+				push(RefType.FUNC);
+			} else if (insn instanceof BlockInsn block) {
+				List<ValueType> types = block.blockType().blockResults();
+				enter(types, types);
+				validateAll(block.instructions());
+				exit();
+				pushAll(types);
+			} else if (insn instanceof LoopInsn loop) {
+				List<ValueType> types = loop.blockType().blockResults();
+				enter(List.of(), types);
+				validateAll(loop.instructions());
+				exit();
+				pushAll(types);
+			} else if (insn instanceof IfInsn ifInsn) {
+				List<ValueType> types = ifInsn.blockType().blockResults();
+				pop(NumberType.I32);
+				enter(types, types);
+				validateAll(ifInsn.truePath());
+				exit();
+				// Missing else branch is an empty branch, which is only valid without results
+				enter(types, types);
+				validateAll(ifInsn.falsePath());
+				exit();
+				pushAll(types);
+			} else if (insn instanceof BranchIfInsn branch) {
+				List<ValueType> types = label(branch, branch.nestIndex());
+				pop(NumberType.I32);
+				pushAll(popAll(types));
+			} else if (insn instanceof BranchInsn branch) {
+				popAll(label(branch, branch.nestIndex()));
+				unreachable();
+			} else if (insn instanceof BranchTableInsn branch) {
+				List<ValueType> defaultTypes = label(branch, branch.defaultLabel());
+				pop(NumberType.I32);
+
+				for (int nestIndex : branch.labels()) {
+					List<ValueType> types = label(branch, nestIndex);
+					if (types.size() != defaultTypes.size())
+						throw new ValidationException("Label %d has arity %d, but default label has arity %d"
+							.formatted(nestIndex, types.size(), defaultTypes.size()));
+					pushAll(popAll(types));
+				}
+
+				popAll(defaultTypes);
+				unreachable();
+			} else if (insn instanceof ControlInsn control) {
+				switch (control) {
+				case NOP -> {}
+				case UNREACHABLE -> unreachable();
+				case RETURN -> {
+					popAll(results);
+					unreachable();
+				}
+				}
+			} else if (insn instanceof CallInsn call) {
+				FunctionType type = require(functions, call.function(), "function").type();
+				popAll(type.inputs().types());
+				pushAll(type.outputs().types());
+			} else if (insn instanceof CallIndirectInsn call) {
+				if (require(tables, call.table(), "table").type().refType() != RefType.FUNC)
+					throw new ValidationException("call_indirect on table of %s"
+						.formatted(call.table().type().refType()));
+				pop(NumberType.I32);
+				popAll(call.type().inputs().types());
+				pushAll(call.type().outputs().types());
+			} else {
+				throw new ValidationException("Unknown instruction %s".formatted(insn.getClass().getName()));
+			}
+		}
+
+		private void validateAtomic(AtomicInsn atomic) {
+			ValueType address = addressType(atomic.memory());
+			ValueType type = atomic.type().type();
+			// Atomic accesses must be naturally aligned
+			int alignment = Integer.numberOfTrailingZeros(atomic.type().size());
+			if (atomic.memarg().align() != alignment) throw new ValidationException(
+				"Alignment 2^%d of atomic access must be 2^%d".formatted(atomic.memarg().align(), alignment));
+
+			switch (atomic.insnType()) {
+			case LOAD -> {
+				pop(address);
+				push(type);
+			}
+			case STORE -> {
+				pop(type);
+				pop(address);
+			}
+			case RMW_CMPXCHG -> {
+				pop(type);
+				pop(type);
+				pop(address);
+				push(type);
+			}
+			case WAIT -> {
+				pop(NumberType.I64);
+				pop(type);
+				pop(address);
+				push(NumberType.I32);
+			}
+			case NOTIFY -> {
+				pop(NumberType.I32);
+				pop(address);
+				push(NumberType.I32);
+			}
+			default -> {
+				pop(type);
+				pop(address);
+				push(type);
+			}
+			}
+		}
+	}
+}
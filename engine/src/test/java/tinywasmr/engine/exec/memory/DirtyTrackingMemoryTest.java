@@ -0,0 +1,66 @@
+package tinywasmr.engine.exec.memory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static tinywasmr.engine.exec.memory.DirtyTrackingMemory.BLOCKS_PER_PAGE;
+
+import org.junit.jupiter.api.Test;
+
+class DirtyTrackingMemoryTest {
+	@Test
+	void testTypedWrites() {
+		DirtyTrackingMemory memory = new DirtyTrackingMemory(new LinearMemory(4));
+		assertEquals(-1, memory.nextDirtyBlock(0));
+
+		memory.writeI32(5000, 1234);
+		memory.writeI64(2 * Memory.PAGE_SIZE - 4, -1L);
+		assertEquals(1234, memory.readI32(5000));
+		assertEquals(3, memory.dirtyBlockCount());
+		assertEquals(1, memory.nextDirtyBlock(0));
+		assertEquals(2 * BLOCKS_PER_PAGE - 1, memory.nextDirtyBlock(2));
+		assertEquals(2 * BLOCKS_PER_PAGE, memory.nextDirtyBlock(2 * BLOCKS_PER_PAGE));
+		assertTrue(memory.isPageDirty(0));
+		assertTrue(memory.isPageDirty(1));
+		assertTrue(memory.isPageDirty(2));
+		assertFalse(memory.isPageDirty(3));
+		assertEquals(-1, memory.nextDirtyPage(3));
+
+		memory.resetDirty();
+		assertEquals(0, memory.dirtyBlockCount());
+		assertEquals(1234, memory.readI32(5000));
+	}
+
+	@Test
+	void testRanges() {
+		DirtyTrackingMemory memory = new DirtyTrackingMemory(new SparseMemory(8));
+		memory.fill(Memory.PAGE_SIZE + 100, 7, 5 * Memory.PAGE_SIZE);
+		assertEquals(5 * BLOCKS_PER_PAGE + 1, memory.dirtyBlockCount());
+		assertEquals(1, memory.nextDirtyPage(0));
+		assertTrue(memory.isPageDirty(6));
+		assertFalse(memory.isPageDirty(7));
+
+		memory.resetDirty();
+		memory.write(4095, new byte[] { 1, 2 });
+		assertEquals(2, memory.dirtyBlockCount());
+		assertTrue(memory.isBlockDirty(0));
+		assertTrue(memory.isBlockDirty(1));
+	}
+
+	@Test
+	void testFailedWrite() {
+		DirtyTrackingMemory memory = new DirtyTrackingMemory(new SparseMemory(1));
+		assertThrows(IndexOutOfBoundsException.class, () -> memory.writeI32(Memory.PAGE_SIZE - 2, 0));
+		assertEquals(0, memory.dirtyBlockCount());
+	}
+
+	@Test
+	void testGrow() {
+		DirtyTrackingMemory memory = new DirtyTrackingMemory(new LinearMemory(1));
+		assertEquals(1, memory.grow(8));
+		assertFalse(memory.isPageDirty(8));
+		memory.writeI8(8 * Memory.PAGE_SIZE, 1);
+		assertEquals(8, memory.nextDirtyPage(0));
+	}
+}
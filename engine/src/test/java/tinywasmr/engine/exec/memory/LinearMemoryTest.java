@@ -0,0 +1,42 @@
+package tinywasmr.engine.exec.memory;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+class LinearMemoryTest {
+	@Test
+	void testLittleEndian() {
+		LinearMemory memory = new LinearMemory(1);
+		memory.writeI32(0, 0x12345678);
+		assertArrayEquals(new byte[] { 0x78, 0x56, 0x34, 0x12 }, memory.read(0, 4));
+		memory.writeF32(4, 1f);
+		assertArrayEquals(new byte[] { 0x00, 0x00, (byte) 0x80, 0x3f }, memory.read(4, 4));
+		assertEquals(1f, memory.readF32(4));
+		memory.writeF64(8, -2.5);
+		assertEquals(-2.5, memory.readF64(8));
+		assertEquals(0xc004, memory.readU16(14));
+		assertEquals((short) 0xc004, memory.readS16(14));
+	}
+
+	@Test
+	void testBounds() {
+		LinearMemory memory = new LinearMemory(1);
+		memory.writeI64(Memory.PAGE_SIZE - 8, -1L);
+		assertEquals(-1L, memory.readI64(Memory.PAGE_SIZE - 8));
+		assertThrows(IndexOutOfBoundsException.class, () -> memory.readI32(Memory.PAGE_SIZE - 2));
+		assertThrows(IndexOutOfBoundsException.class, () -> memory.writeI8(-1, 0));
+	}
+
+	@Test
+	void testGrow() {
+		LinearMemory memory = new LinearMemory(null, 1, 2);
+		memory.writeI32(0, 42);
+		assertEquals(1, memory.grow(1));
+		assertEquals(2, memory.pageCount());
+		assertEquals(42, memory.readI32(0));
+		assertEquals(-1, memory.grow(1));
+	}
+}
@@ -0,0 +1,62 @@
+package tinywasmr.engine.exec.memory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+
+class MappedMemoryTest {
+	@Test
+	void testPersistent() throws IOException {
+		Path file = Files.createTempFile("tinywasmr", ".bin");
+
+		try {
+			try (MappedMemory memory = MappedMemory.open(file, 1)) {
+				memory.writeI32(12, 0xcafebabe);
+				assertEquals(1, memory.grow(1));
+				memory.writeI64(Memory.PAGE_SIZE + 4, 42L);
+			}
+
+			assertEquals(2L * Memory.PAGE_SIZE, Files.size(file));
+
+			try (MappedMemory memory = MappedMemory.open(file, 1)) {
+				assertEquals(2, memory.pageCount());
+				assertEquals(0xcafebabe, memory.readI32(12));
+				assertEquals(42L, memory.readI64(Memory.PAGE_SIZE + 4));
+			}
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	@Test
+	void testFill() throws IOException {
+		Path file = Files.createTempFile("tinywasmr", ".bin");
+
+		try (MappedMemory memory = MappedMemory.open(file, 1)) {
+			memory.fill(3, 0x7f, 1000);
+			assertEquals(0, memory.readU8(2));
+			assertEquals(0x7f, memory.readU8(3));
+			assertEquals(0x7f, memory.readU8(1002));
+			assertEquals(0, memory.readU8(1003));
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	@Test
+	void testLargerFile() throws IOException {
+		Path file = Files.createTempFile("tinywasmr", ".bin");
+
+		try {
+			Files.write(file, new byte[3 * Memory.PAGE_SIZE]);
+			assertThrows(IllegalArgumentException.class, () -> MappedMemory.open(file, null, 1, 2));
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+}
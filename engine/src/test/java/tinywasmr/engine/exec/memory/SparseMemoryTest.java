@@ -0,0 +1,69 @@
+package tinywasmr.engine.exec.memory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class SparseMemoryTest {
+	@Test
+	void testCommitOnWrite() {
+		SparseMemory memory = new SparseMemory(256);
+		assertEquals(256 * Memory.PAGE_SIZE, memory.byteSize());
+		assertEquals(0, memory.committedByteSize());
+		assertEquals(0L, memory.readI64(100 * Memory.PAGE_SIZE));
+		memory.fill(0, 0, 4 * Memory.PAGE_SIZE);
+		assertEquals(0, memory.committedByteSize());
+
+		memory.writeI32(3 * Memory.PAGE_SIZE + 4, 1234);
+		assertEquals(1234, memory.readI32(3 * Memory.PAGE_SIZE + 4));
+		assertTrue(memory.isCommitted(3));
+		assertFalse(memory.isCommitted(2));
+		assertEquals(Memory.PAGE_SIZE, memory.committedByteSize());
+	}
+
+	@Test
+	void testCrossPage() {
+		SparseMemory memory = new SparseMemory(2);
+		memory.writeI64(Memory.PAGE_SIZE - 3, 0x0102030405060708L);
+		assertEquals(0x0102030405060708L, memory.readI64(Memory.PAGE_SIZE - 3));
+		assertEquals(0x08, memory.readU8(Memory.PAGE_SIZE - 3));
+		assertEquals(2 * Memory.PAGE_SIZE, memory.committedByteSize());
+	}
+
+	@Test
+	void testLargerThan4GiB() {
+		SparseMemory memory = new SparseMemory(null, 1, SparseMemory.MAX_PAGES_64);
+		assertEquals(1, memory.grow(80000));
+		long offset = 80000L * Memory.PAGE_SIZE + 12;
+		memory.writeI64(offset, 42L);
+		assertEquals(42L, memory.readI64(offset));
+		assertEquals(80001L * Memory.PAGE_SIZE, memory.longByteSize());
+		assertEquals(Integer.MAX_VALUE, memory.byteSize());
+		assertEquals(Memory.PAGE_SIZE, memory.committedByteSize());
+		assertThrows(IndexOutOfBoundsException.class, () -> memory.readI32(memory.longByteSize() - 2));
+	}
+
+	@Test
+	void testFork() {
+		SparseMemory memory = new SparseMemory(2);
+		memory.writeI32(0, 42);
+		SparseMemory fork = memory.fork();
+		assertTrue(fork.isShared(0));
+		assertFalse(fork.isShared(1));
+		assertEquals(42, fork.readI32(0));
+
+		fork.writeI32(0, 727);
+		assertFalse(fork.isShared(0));
+		// The fork copied the page, so this memory writes to it without copying
+		assertFalse(memory.isShared(0));
+		assertEquals(42, memory.readI32(0));
+		assertEquals(727, fork.readI32(0));
+
+		memory.writeI32(4, 1);
+		assertFalse(memory.isShared(0));
+		assertEquals(0, fork.readI32(4));
+	}
+}
@@ -0,0 +1,32 @@
+package tinywasmr.engine.exec.vm;
+
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import tinywasmr.engine.exec.frame.Frame;
+import tinywasmr.engine.insn.control.BlockInsn;
+import tinywasmr.engine.type.ResultType;
+
+class DefaultMachineTest {
+	@Test
+	void testRecycleFrames() {
+		DefaultMachine vm = new DefaultMachine();
+		BlockInsn block = new BlockInsn(new ResultType(List.of()), List.of());
+
+		// Popped frames belong to the caller
+		Frame popped = vm.getFramePool().obtainBlock(block);
+		vm.pushFrame(popped);
+		assertSame(popped, vm.popFrame());
+		assertNotSame(popped, vm.getFramePool().obtainBlock(block));
+
+		// Unwound frames are reused by the pool
+		Frame unwound = vm.getFramePool().obtainBlock(block);
+		vm.pushFrame(unwound);
+		vm.unwind(vm.getFrameStack().size() - 2, 0);
+		assertSame(unwound, vm.getFramePool().obtainBlock(block));
+	}
+}
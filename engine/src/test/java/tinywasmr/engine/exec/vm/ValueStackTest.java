@@ -0,0 +1,45 @@
+package tinywasmr.engine.exec.vm;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+import tinywasmr.engine.exec.value.ExternRefValue;
+import tinywasmr.engine.exec.value.NumberI32Value;
+
+class ValueStackTest {
+	@Test
+	void testHold() {
+		ValueStack stack = new ValueStack(4);
+		stack.pushI32(1);
+		int depth = stack.enter(stack.size());
+		stack.pushI32(2);
+		stack.push(new ExternRefValue("a"));
+		stack.pushI64(3L);
+
+		stack.hold(2);
+		stack.leave(depth);
+		assertEquals(1, stack.size());
+		stack.release();
+
+		assertEquals(3, stack.size());
+		assertEquals(3L, stack.popI64());
+		assertEquals(new ExternRefValue("a"), stack.pop());
+		assertEquals(new NumberI32Value(1), stack.pop());
+		assertThrows(IllegalStateException.class, stack::release);
+	}
+
+	@Test
+	void testOverwriteRef() {
+		ValueStack stack = new ValueStack(4);
+		stack.push(new ExternRefValue("a"));
+		stack.set(0, new NumberI32Value(5));
+		stack.push(new ExternRefValue("b"));
+		stack.store(0);
+		assertEquals(new ExternRefValue("b"), stack.get(0));
+		stack.truncate(0);
+		stack.pushI32(7);
+		assertEquals(new NumberI32Value(7), stack.get(0));
+	}
+}
@@ -25,6 +25,7 @@ public class ParsedWasmModule implements WasmModule {
 	private List<GlobalDecl> globals = new ArrayList<>();
 	private List<FunctionDecl> functions = new ArrayList<>();
 	private FunctionDecl start = null;
+	private boolean validated = false;
 
 	@Override
 	public List<CustomSection> custom() {
@@ -77,4 +78,10 @@ public class ParsedWasmModule implements WasmModule {
 	}
 
 	public void setStart(FunctionDecl start) { this.start = start; }
+
+	@Override
+	public boolean isValidated() { return validated; }
+
+	@Override
+	public void setValidated(boolean validated) { this.validated = validated; }
 }
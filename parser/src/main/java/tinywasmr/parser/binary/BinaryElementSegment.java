@@ -54,6 +54,22 @@ public record BinaryElementSegment(RefType type, int mode, int table, List<List<
 
 			return new BinaryElementSegment(type, MODE_PASSIVE, -1, init, null);
 		}
+		case 2: { // tableidx; offsetExpr; elementkind; vec(funcidx)
+			int table = StreamReader.readUint32Var(stream);
+			List<BinaryInstructionBuilder> offsetExpr = CodeParser.parseExpression(stream);
+			int kind = stream.read();
+			if (kind == -1) throw new EOFException();
+			if (kind != 0x00) throw new IOException("Element kind 0x%02x not implemented".formatted(kind));
+			int count = StreamReader.readUint32Var(stream);
+			List<List<BinaryInstructionBuilder>> init = new ArrayList<>();
+
+			for (int i = 0; i < count; i++) {
+				int funcIdx = StreamReader.readUint32Var(stream);
+				init.add(List.of(view -> new RefFuncInsn(view.functions().get(funcIdx))));
+			}
+
+			return new BinaryElementSegment(RefType.FUNC, MODE_ACTIVE, table, init, offsetExpr);
+		}
 		case 5: { // reftype; vec(expr)
 			ValueType valType = StreamReader.parseValueType(stream);
 			if (!(valType instanceof RefType type)) throw new IOException("Not a reftype: %s".formatted(valType));
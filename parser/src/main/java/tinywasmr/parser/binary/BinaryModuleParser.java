@@ -13,6 +13,8 @@ import java.util.Set;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
+import tinywasmr.engine.exec.ValidationException;
+import tinywasmr.engine.insn.Instruction;
 import tinywasmr.engine.module.CustomSection;
 import tinywasmr.engine.module.WasmModule;
 import tinywasmr.engine.module.export.ExportDecl;
@@ -45,6 +47,7 @@ import tinywasmr.engine.module.table.TableDecl;
 import tinywasmr.engine.type.FunctionType;
 import tinywasmr.engine.type.MemoryType;
 import tinywasmr.engine.type.TableType;
+import tinywasmr.engine.validation.ModuleValidator;
 import tinywasmr.parser.ParsedWasmModule;
 import tinywasmr.parser.binary.imprt.BinaryImport;
 
@@ -65,6 +68,7 @@ public class BinaryModuleParser {
 	// Options
 	private boolean ignoreCustomSections;
 	private boolean ignoreUnknownSections;
+	private boolean validate;
 
 	private List<CustomSection> custom;
 	private List<FunctionType> types;
@@ -94,13 +98,22 @@ public class BinaryModuleParser {
 	 *                              {@link WasmModule}, but you can get them from
 	 *                              this parser after calling
 	 *                              {@link #parseModule(InputStream)} by using.
+	 * @param validate              Whether to validate the module with
+	 *                              {@link ModuleValidator} after parsing. The
+	 *                              validated module is marked, so machines skip
+	 *                              the checks of runtime validation for it.
 	 */
-	public BinaryModuleParser(boolean ignoreCustomSections, boolean ignoreUnknownSections) {
+	public BinaryModuleParser(boolean ignoreCustomSections, boolean ignoreUnknownSections, boolean validate) {
 		this.ignoreCustomSections = ignoreCustomSections;
 		this.ignoreUnknownSections = ignoreUnknownSections;
+		this.validate = validate;
 		reset();
 	}
 
+	public BinaryModuleParser(boolean ignoreCustomSections, boolean ignoreUnknownSections) {
+		this(ignoreCustomSections, ignoreUnknownSections, true);
+	}
+
 	/**
 	 * <p>
 	 * Create a new parser to parse binary module with default options.
@@ -110,6 +123,7 @@ public class BinaryModuleParser {
 	 * <ul>
 	 * <li>ignoreCustomSections set to {@code false}</li>
 	 * <li>ignoreUnknownSections set to {@code true}</li>
+	 * <li>validate set to {@code true}</li>
 	 * </ul>
 	 * </p>
 	 */
@@ -143,6 +157,8 @@ public class BinaryModuleParser {
 
 	public boolean isIgnoreUnknownSections() { return ignoreUnknownSections; }
 
+	public boolean isValidate() { return validate; }
+
 	/**
 	 * <p>
 	 * Parse module from bytes stream and return {@link ParsedWasmModule} for
@@ -152,13 +168,16 @@ public class BinaryModuleParser {
 	 * 
 	 * @param stream The stream to read from.
 	 * @return The parsed module.
-	 * @throws IOException if an IO error occurred or this parser got confused while
-	 *                     reading.
+	 * @throws IOException         if an IO error occurred or this parser got
+	 *                             confused while reading.
+	 * @throws ValidationException if the module is not valid.
 	 */
 	public ParsedWasmModule parseModule(InputStream stream) throws IOException {
 		parseHeader(stream);
 		while (stream.available() > 0) parseSection(stream);
-		return buildModule();
+		ParsedWasmModule module = buildModule();
+		if (validate) new ModuleValidator(module).validate();
+		return module;
 	}
 
 	public void parseHeader(InputStream stream) throws IOException {
@@ -301,7 +320,8 @@ public class BinaryModuleParser {
 		for (int i = 0; i < code.length; i++) {
 			ModuleFunctionDecl decl = moduleFunctions.get(i);
 			decl.extraLocals().addAll(code[i].locals());
-			code[i].body().forEach(b -> decl.body().add(b.build(indicesView)));
+			List<Instruction> body = code[i].body().stream().map(b -> b.build(indicesView)).toList();
+			decl.body().addAll(CodeParser.resolveLabels(body, decl.type().outputs()));
 		}
 
 		// Finalize
@@ -4,6 +4,7 @@ import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import tinywasmr.engine.exec.value.NumberF32Value;
@@ -23,6 +24,10 @@ import tinywasmr.engine.insn.control.CallInsn;
 import tinywasmr.engine.insn.control.ControlInsn;
 import tinywasmr.engine.insn.control.IfInsn;
 import tinywasmr.engine.insn.control.LoopInsn;
+import tinywasmr.engine.insn.memory.AtomicFenceInsn;
+import tinywasmr.engine.insn.memory.AtomicInsn;
+import tinywasmr.engine.insn.memory.AtomicInsnType;
+import tinywasmr.engine.insn.memory.AtomicType;
 import tinywasmr.engine.insn.memory.DataDropInsn;
 import tinywasmr.engine.insn.memory.LoadInsn;
 import tinywasmr.engine.insn.memory.LoadType;
@@ -250,8 +255,8 @@ public class CodeParser {
 	public static final int F64_CONVERT_I64_U = 0xBA;
 	public static final int F64_PROMOTE_F32 = 0xBB;
 	public static final int I32_REINTERPRET_F32 = 0xBC;
-	public static final int F32_REINTERPRET_I32 = 0xBD;
-	public static final int I64_REINTERPRET_F64 = 0xBE;
+	public static final int I64_REINTERPRET_F64 = 0xBD;
+	public static final int F32_REINTERPRET_I32 = 0xBE;
 	public static final int F64_REINTERPRET_I64 = 0xBF;
 
 	// Reference instructions
@@ -276,6 +281,88 @@ public class CodeParser {
 	// Vector instructions
 	public static final int V128_CONST = 0xFD0C;
 
+	// Atomic instructions (threads proposal)
+	public static final int MEMORY_ATOMIC_NOTIFY = 0xFE00;
+	public static final int MEMORY_ATOMIC_WAIT32 = 0xFE01;
+	public static final int MEMORY_ATOMIC_WAIT64 = 0xFE02;
+	public static final int ATOMIC_FENCE = 0xFE03;
+	public static final int I32_ATOMIC_LOAD = 0xFE10;
+	public static final int I64_ATOMIC_LOAD = 0xFE11;
+	public static final int I32_ATOMIC_LOAD8_U = 0xFE12;
+	public static final int I32_ATOMIC_LOAD16_U = 0xFE13;
+	public static final int I64_ATOMIC_LOAD8_U = 0xFE14;
+	public static final int I64_ATOMIC_LOAD16_U = 0xFE15;
+	public static final int I64_ATOMIC_LOAD32_U = 0xFE16;
+	public static final int I32_ATOMIC_STORE = 0xFE17;
+	public static final int I64_ATOMIC_STORE = 0xFE18;
+	public static final int I32_ATOMIC_STORE8 = 0xFE19;
+	public static final int I32_ATOMIC_STORE16 = 0xFE1A;
+	public static final int I64_ATOMIC_STORE8 = 0xFE1B;
+	public static final int I64_ATOMIC_STORE16 = 0xFE1C;
+	public static final int I64_ATOMIC_STORE32 = 0xFE1D;
+	public static final int I32_ATOMIC_RMW_ADD = 0xFE1E;
+	public static final int I64_ATOMIC_RMW_ADD = 0xFE1F;
+	public static final int I32_ATOMIC_RMW8_ADD_U = 0xFE20;
+	public static final int I32_ATOMIC_RMW16_ADD_U = 0xFE21;
+	public static final int I64_ATOMIC_RMW8_ADD_U = 0xFE22;
+	public static final int I64_ATOMIC_RMW16_ADD_U = 0xFE23;
+	public static final int I64_ATOMIC_RMW32_ADD_U = 0xFE24;
+	public static final int I32_ATOMIC_RMW_SUB = 0xFE25;
+	public static final int I64_ATOMIC_RMW_SUB = 0xFE26;
+	public static final int I32_ATOMIC_RMW8_SUB_U = 0xFE27;
+	public static final int I32_ATOMIC_RMW16_SUB_U = 0xFE28;
+	public static final int I64_ATOMIC_RMW8_SUB_U = 0xFE29;
+	public static final int I64_ATOMIC_RMW16_SUB_U = 0xFE2A;
+	public static final int I64_ATOMIC_RMW32_SUB_U = 0xFE2B;
+	public static final int I32_ATOMIC_RMW_AND = 0xFE2C;
+	public static final int I64_ATOMIC_RMW_AND = 0xFE2D;
+	public static final int I32_ATOMIC_RMW8_AND_U = 0xFE2E;
+	public static final int I32_ATOMIC_RMW16_AND_U = 0xFE2F;
+	public static final int I64_ATOMIC_RMW8_AND_U = 0xFE30;
+	public static final int I64_ATOMIC_RMW16_AND_U = 0xFE31;
+	public static final int I64_ATOMIC_RMW32_AND_U = 0xFE32;
+	public static final int I32_ATOMIC_RMW_OR = 0xFE33;
+	public static final int I64_ATOMIC_RMW_OR = 0xFE34;
+	public static final int I32_ATOMIC_RMW8_OR_U = 0xFE35;
+	public static final int I32_ATOMIC_RMW16_OR_U = 0xFE36;
+	public static final int I64_ATOMIC_RMW8_OR_U = 0xFE37;
+	public static final int I64_ATOMIC_RMW16_OR_U = 0xFE38;
+	public static final int I64_ATOMIC_RMW32_OR_U = 0xFE39;
+	public static final int I32_ATOMIC_RMW_XOR = 0xFE3A;
+	public static final int I64_ATOMIC_RMW_XOR = 0xFE3B;
+	public static final int I32_ATOMIC_RMW8_XOR_U = 0xFE3C;
+	public static final int I32_ATOMIC_RMW16_XOR_U = 0xFE3D;
+	public static final int I64_ATOMIC_RMW8_XOR_U = 0xFE3E;
+	public static final int I64_ATOMIC_RMW16_XOR_U = 0xFE3F;
+	public static final int I64_ATOMIC_RMW32_XOR_U = 0xFE40;
+	public static final int I32_ATOMIC_RMW_XCHG = 0xFE41;
+	public static final int I64_ATOMIC_RMW_XCHG = 0xFE42;
+	public static final int I32_ATOMIC_RMW8_XCHG_U = 0xFE43;
+	public static final int I32_ATOMIC_RMW16_XCHG_U = 0xFE44;
+	public static final int I64_ATOMIC_RMW8_XCHG_U = 0xFE45;
+	public static final int I64_ATOMIC_RMW16_XCHG_U = 0xFE46;
+	public static final int I64_ATOMIC_RMW32_XCHG_U = 0xFE47;
+	public static final int I32_ATOMIC_RMW_CMPXCHG = 0xFE48;
+	public static final int I64_ATOMIC_RMW_CMPXCHG = 0xFE49;
+	public static final int I32_ATOMIC_RMW8_CMPXCHG_U = 0xFE4A;
+	public static final int I32_ATOMIC_RMW16_CMPXCHG_U = 0xFE4B;
+	public static final int I64_ATOMIC_RMW8_CMPXCHG_U = 0xFE4C;
+	public static final int I64_ATOMIC_RMW16_CMPXCHG_U = 0xFE4D;
+	public static final int I64_ATOMIC_RMW32_CMPXCHG_U = 0xFE4E;
+
+	private static final AtomicType[] ATOMIC_TYPES = AtomicType.values();
+	private static final AtomicInsnType[] ATOMIC_ACCESS_TYPES = {
+		AtomicInsnType.LOAD,
+		AtomicInsnType.STORE,
+		AtomicInsnType.RMW_ADD,
+		AtomicInsnType.RMW_SUB,
+		AtomicInsnType.RMW_AND,
+		AtomicInsnType.RMW_OR,
+		AtomicInsnType.RMW_XOR,
+		AtomicInsnType.RMW_XCHG,
+		AtomicInsnType.RMW_CMPXCHG,
+	};
+
 	/**
 	 * <p>
 	 * Parse an instruction from byte stream.
@@ -293,6 +380,68 @@ public class CodeParser {
 		return parseInsn(insn, stream);
 	}
 
+	/**
+	 * <p>
+	 * Resolve the arity of all branch instructions in a function body. The arity
+	 * of a label is the number of results of its block (or the function for the
+	 * outermost label), except loop labels which have no arity. Resolving this
+	 * when parsing means the machine doesn't have to look up the target frame to
+	 * find out how many values to move when branching.
+	 * </p>
+	 * 
+	 * @param body    The body of function.
+	 * @param results The results of function.
+	 * @return A new list of instructions with arity of branches resolved.
+	 */
+	public static List<Instruction> resolveLabels(List<Instruction> body, BlockType results) {
+		return resolveLabels(body, new int[] { results.blockResults().size() });
+	}
+
+	private static List<Instruction> resolveLabels(List<Instruction> body, int[] labels) {
+		List<Instruction> resolved = new ArrayList<>(body.size());
+		for (Instruction insn : body) resolved.add(resolveLabels(insn, labels));
+		return resolved;
+	}
+
+	private static Instruction resolveLabels(Instruction insn, int[] labels) {
+		if (insn instanceof BlockInsn block) {
+			int[] inner = withLabel(labels, block.blockType().blockResults().size());
+			return new BlockInsn(block.blockType(), resolveLabels(block.instructions(), inner));
+		}
+
+		if (insn instanceof LoopInsn loop) {
+			int[] inner = withLabel(labels, 0);
+			return new LoopInsn(loop.blockType(), resolveLabels(loop.instructions(), inner));
+		}
+
+		if (insn instanceof IfInsn ifInsn) {
+			int[] inner = withLabel(labels, ifInsn.blockType().blockResults().size());
+			return new IfInsn(
+				ifInsn.blockType(),
+				resolveLabels(ifInsn.truePath(), inner),
+				resolveLabels(ifInsn.falsePath(), inner));
+		}
+
+		if (insn instanceof BranchInsn br) return new BranchInsn(br.nestIndex(), arityOf(labels, br.nestIndex()));
+		if (insn instanceof BranchIfInsn br) return new BranchIfInsn(br.nestIndex(), arityOf(labels, br.nestIndex()));
+		if (insn instanceof BranchTableInsn br) return new BranchTableInsn(
+			br.labels(),
+			br.defaultLabel(),
+			arityOf(labels, br.defaultLabel()));
+		return insn;
+	}
+
+	private static int[] withLabel(int[] labels, int arity) {
+		int[] inner = Arrays.copyOf(labels, labels.length + 1);
+		inner[labels.length] = arity;
+		return inner;
+	}
+
+	private static int arityOf(int[] labels, int nestIndex) {
+		// Out of range labels are left to the machine, which will throw when branching
+		return nestIndex >= 0 && nestIndex < labels.length ? labels[labels.length - nestIndex - 1] : -1;
+	}
+
 	/**
 	 * <p>
 	 * Parse an instruction. Most single-byte opcodes does not need a stream. Most
@@ -311,6 +460,7 @@ public class CodeParser {
 	 * @throws IOException if I/O operation error occurred or end of stream reached.
 	 */
 	public static BinaryInstructionBuilder parseInsn(int insn, InputStream stream) throws IOException {
+		if (insn >= I32_ATOMIC_LOAD && insn <= I64_ATOMIC_RMW32_CMPXCHG_U) return parseAtomicAccessInsn(insn, stream);
 		// @formatter:off
 		switch (insn) {
 		// Control instructions
@@ -687,9 +837,34 @@ public class CodeParser {
 			return $ -> new ConstInsn(val);
 		}
 
+		// Atomic instructions
+		case MEMORY_ATOMIC_NOTIFY:
+		case MEMORY_ATOMIC_WAIT32:
+		case MEMORY_ATOMIC_WAIT64: {
+			MemoryArg memarg = StreamReader.parseMemarg(stream);
+			int idx = 0; // Always 0 for the time being
+			return switch (insn) {
+			case MEMORY_ATOMIC_NOTIFY -> view -> new AtomicInsn(view.memories().get(idx), AtomicInsnType.NOTIFY,
+				AtomicType.I32, memarg);
+			case MEMORY_ATOMIC_WAIT32 -> view -> new AtomicInsn(view.memories().get(idx), AtomicInsnType.WAIT,
+				AtomicType.I32, memarg);
+			case MEMORY_ATOMIC_WAIT64 -> view -> new AtomicInsn(view.memories().get(idx), AtomicInsnType.WAIT,
+				AtomicType.I64, memarg);
+			default -> throw new RuntimeException("Unreachable");
+			};
+		}
+		case ATOMIC_FENCE: {
+			int reserved = stream.read();
+			if (reserved == -1) throw new EOFException();
+			if (reserved != 0x00)
+				throw new IOException("Expected 0x00 after atomic.fence, but 0x%02x found".formatted(reserved));
+			return $ -> AtomicFenceInsn.FENCE;
+		}
+
 		// Multi-byte instructions
 		case 0xFC:
-		case 0xFD: {
+		case 0xFD:
+		case 0xFE: {
 			int second = stream.read();
 			if (second == -1) throw new EOFException("EOF while reading 2nd byte of multi-byte instruction (0x%2x...)".formatted(insn));
 			return parseInsn(insn << 8 | second, stream);
@@ -700,6 +875,21 @@ public class CodeParser {
 		// @formatter:on
 	}
 
+	/**
+	 * <p>
+	 * Parse atomic load, store and read-modify-write instructions. Each family of
+	 * these instructions have 7 opcodes, one for each {@link AtomicType}.
+	 * </p>
+	 */
+	private static BinaryInstructionBuilder parseAtomicAccessInsn(int insn, InputStream stream) throws IOException {
+		MemoryArg memarg = StreamReader.parseMemarg(stream);
+		int idx = 0; // Always 0 for the time being
+		int index = insn - I32_ATOMIC_LOAD;
+		AtomicInsnType insnType = ATOMIC_ACCESS_TYPES[index / ATOMIC_TYPES.length];
+		AtomicType type = ATOMIC_TYPES[index % ATOMIC_TYPES.length];
+		return view -> new AtomicInsn(view.memories().get(idx), insnType, type, memarg);
+	}
+
 	public static List<BinaryInstructionBuilder> parseExpression(InputStream stream) throws IOException {
 		List<BinaryInstructionBuilder> expr = new ArrayList<>();
 		BinaryInstructionBuilder insn;
@@ -0,0 +1,541 @@
+package tinywasmr.parser.binary;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import tinywasmr.engine.exec.global.Global;
+import tinywasmr.engine.exec.instance.DefaultInstance;
+import tinywasmr.engine.exec.instance.Export;
+import tinywasmr.engine.exec.instance.Function;
+import tinywasmr.engine.exec.instance.Importer;
+import tinywasmr.engine.exec.instance.Instance;
+import tinywasmr.engine.exec.memory.Memory;
+import tinywasmr.engine.exec.memory.MemoryFactory;
+import tinywasmr.engine.exec.memory.SparseMemory;
+import tinywasmr.engine.exec.table.Table;
+import tinywasmr.engine.exec.value.FuncRefValue;
+import tinywasmr.engine.exec.value.NumberF32Value;
+import tinywasmr.engine.exec.value.NumberF64Value;
+import tinywasmr.engine.exec.value.NumberI32Value;
+import tinywasmr.engine.exec.value.NumberI64Value;
+import tinywasmr.engine.exec.value.RefValue;
+import tinywasmr.engine.exec.value.Value;
+import tinywasmr.engine.exec.value.Vector128Value;
+import tinywasmr.engine.module.WasmModule;
+import tinywasmr.engine.module.global.GlobalDecl;
+import tinywasmr.engine.module.global.ModuleGlobalDecl;
+import tinywasmr.engine.module.memory.MemoryDecl;
+import tinywasmr.engine.module.memory.ModuleMemoryDecl;
+import tinywasmr.engine.module.table.ModuleTableDecl;
+import tinywasmr.engine.module.table.TableDecl;
+import tinywasmr.engine.type.Limit;
+import tinywasmr.engine.type.Mutability;
+import tinywasmr.parser.ParsedWasmModule;
+
+/**
+ * <p>
+ * Pre-initialize binary modules at build time. The module is instantiated and
+ * initialized (which runs its start function), optionally followed by calling
+ * an exported init function. Then the state of the instance is written back to
+ * a new binary module, so instantiating the new module doesn't need to run the
+ * initialization again:
+ * <ul>
+ * <li>The start section and the export of init function are removed.</li>
+ * <li>The minimum size of memories and tables is the size after
+ * initialization.</li>
+ * <li>Globals are initialized with the values after initialization.</li>
+ * <li>Active data and element segments are replaced with empty passive
+ * segments, so the indices of other segments don't change.</li>
+ * <li>The contents of memories and tables are appended as active data and
+ * element segments.</li>
+ * </ul>
+ * </p>
+ * <p>
+ * Only the memories, tables and globals declared in module are written.
+ * Imported ones are left as they are, since their state belongs to the host.
+ * Tables can only hold null references and references to the functions of the
+ * instance.
+ * </p>
+ *
+ * @see #preInitialize(byte[], Importer, String)
+ */
+public class PreInitializer {
+	/**
+	 * <p>
+	 * The minimum number of zero bytes between 2 data segments. Shorter runs of
+	 * zeros are included in the segment, because a new segment costs more bytes
+	 * than the zeros.
+	 * </p>
+	 */
+	public static final int SEGMENT_GAP = 16;
+
+	/**
+	 * <p>
+	 * The maximum number of bytes in a single data segment.
+	 * </p>
+	 */
+	public static final int MAX_SEGMENT_SIZE = 1 << 24;
+
+	private static final byte[] SIGNATURE = new byte[] { 0x00, 0x61, 0x73, 0x6d, 0x01, 0x00, 0x00, 0x00 };
+
+	private record Section(int id, byte[] payload) {
+	}
+
+	/**
+	 * <p>
+	 * Instantiate, initialize and snapshot the binary module.
+	 * </p>
+	 *
+	 * @param bytes      The binary module.
+	 * @param importer   The importer to resolve imports, or {@code null} if the
+	 *                   module doesn't have imports.
+	 * @param initExport The name of exported function to call after the start
+	 *                   function, or {@code null} to only run the start function.
+	 * @return The pre-initialized binary module.
+	 * @throws IOException if the module can't be parsed.
+	 */
+	public static byte[] preInitialize(byte[] bytes, Importer importer, String initExport) throws IOException {
+		ParsedWasmModule module = BinaryModuleParser.parse(new ByteArrayInputStream(bytes));
+		// Sparse memories skip the pages that are never written when scanning
+		Instance instance = new DefaultInstance(module, importer, MemoryFactory.SPARSE);
+		instance.initialize();
+
+		if (initExport != null) {
+			Export export = instance.export(initExport);
+			if (export == null) throw new IllegalArgumentException("Module does not export %s".formatted(initExport));
+			export.asFunction().exec();
+		}
+
+		return snapshot(bytes, instance, initExport);
+	}
+
+	/**
+	 * <p>
+	 * Write the state of an instance back to the binary module that it is
+	 * instantiated from.
+	 * </p>
+	 *
+	 * @param bytes         The binary module of the instance.
+	 * @param instance      The initialized instance.
+	 * @param removedExport The name of export to remove, or {@code null}.
+	 * @return The new binary module.
+	 * @throws IOException if the module can't be parsed.
+	 */
+	public static byte[] snapshot(byte[] bytes, Instance instance, String removedExport) throws IOException {
+		List<Section> sections = readSections(bytes);
+		Map<Function, Integer> functions = new HashMap<>();
+		for (int i = 0; i < instance.functions().size(); i++) functions.put(instance.functions().get(i), i);
+
+		List<byte[]> dataSnapshot = snapshotMemories(instance);
+		List<byte[]> elementSnapshot = snapshotTables(instance, functions);
+		Section data = rewriteData(find(sections, 0x0B), dataSnapshot);
+		Section elements = rewriteElements(find(sections, 0x09), elementSnapshot);
+		List<Section> output = new ArrayList<>();
+
+		for (Section section : sections) {
+			switch (section.id()) {
+			case 0x04 -> output.add(new Section(0x04, writeTables(instance)));
+			case 0x05 -> output.add(new Section(0x05, writeMemories(instance)));
+			case 0x06 -> output.add(new Section(0x06, writeGlobals(instance, functions)));
+			case 0x07 -> output.add(new Section(0x07, rewriteExports(section.payload(), removedExport)));
+			case 0x08 -> {} // Start function is already executed
+			case 0x09 -> output.add(elements);
+			case 0x0B -> output.add(data);
+			case 0x0C -> output.add(new Section(0x0C, countOf(data)));
+			default -> output.add(section);
+			}
+		}
+
+		if (find(sections, 0x09) == null && !elementSnapshot.isEmpty()) insert(output, elements);
+		if (find(sections, 0x0B) == null && !dataSnapshot.isEmpty()) insert(output, data);
+
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		stream.write(SIGNATURE);
+
+		for (Section section : output) {
+			stream.write(section.id());
+			StreamWriter.writeBytes(stream, section.payload());
+		}
+
+		return stream.toByteArray();
+	}
+
+	private static List<Section> readSections(byte[] bytes) throws IOException {
+		if (bytes.length < SIGNATURE.length || !Arrays.equals(bytes, 0, SIGNATURE.length, SIGNATURE, 0,
+			SIGNATURE.length)) throw new IOException("Not a WebAssembly binary module (version 1)");
+		InputStream stream = new ByteArrayInputStream(bytes, SIGNATURE.length, bytes.length - SIGNATURE.length);
+		List<Section> sections = new ArrayList<>();
+
+		while (stream.available() > 0) {
+			SectionHeader header = SectionHeader.parse(stream);
+			byte[] payload = stream.readNBytes(header.size());
+			if (payload.length != header.size()) throw new EOFException();
+			sections.add(new Section(header.id(), payload));
+		}
+
+		return sections;
+	}
+
+	private static Section find(List<Section> sections, int id) {
+		for (Section section : sections) if (section.id() == id) return section;
+		return null;
+	}
+
+	private static int order(int id) {
+		// Data count section is placed between element and code section
+		return id == 0x0C ? 0x09 * 2 + 1 : id * 2;
+	}
+
+	private static void insert(List<Section> sections, Section section) {
+		int index = sections.size();
+
+		for (int i = 0; i < sections.size(); i++) {
+			int id = sections.get(i).id();
+			if (id != 0x00 && order(id) > order(section.id())) {
+				index = i;
+				break;
+			}
+		}
+
+		sections.add(index, section);
+	}
+
+	private static int position(byte[] payload, InputStream stream) throws IOException {
+		return payload.length - stream.available();
+	}
+
+	private static byte[] countOf(Section section) throws IOException {
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		StreamWriter.writeUint32Var(stream, StreamReader.readUint32Var(new ByteArrayInputStream(section.payload())));
+		return stream.toByteArray();
+	}
+
+	private static byte[] writeSegments(List<byte[]> segments) throws IOException {
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		StreamWriter.writeUint32Var(stream, segments.size());
+		for (byte[] segment : segments) stream.write(segment);
+		return stream.toByteArray();
+	}
+
+	private static void writeOffset(OutputStream stream, long offset, boolean memory64) throws IOException {
+		if (memory64) {
+			stream.write(CodeParser.I64_CONST);
+			StreamWriter.writeSint64Var(stream, offset);
+		} else {
+			stream.write(CodeParser.I32_CONST);
+			StreamWriter.writeSint32Var(stream, (int) offset);
+		}
+
+		stream.write(CodeParser.END);
+	}
+
+	private static Section rewriteData(Section original, List<byte[]> snapshot) throws IOException {
+		List<byte[]> segments = new ArrayList<>();
+
+		if (original != null) {
+			byte[] payload = original.payload();
+			InputStream stream = new ByteArrayInputStream(payload);
+			int count = StreamReader.readUint32Var(stream);
+
+			for (int i = 0; i < count; i++) {
+				int start = position(payload, stream);
+				int mode = StreamReader.readUint32Var(stream);
+				if (mode == BinaryDataSegment.MODE_ACTIVE_EXPLICT) StreamReader.readUint32Var(stream);
+				if (mode != BinaryDataSegment.MODE_PASSIVE) CodeParser.parseExpression(stream);
+				stream.skipNBytes(StreamReader.readUint32Var(stream));
+
+				// Active segments are already copied to memories
+				if (mode == BinaryDataSegment.MODE_PASSIVE)
+					segments.add(Arrays.copyOfRange(payload, start, position(payload, stream)));
+				else segments.add(new byte[] { BinaryDataSegment.MODE_PASSIVE, 0x00 });
+			}
+		}
+
+		segments.addAll(snapshot);
+		return new Section(0x0B, writeSegments(segments));
+	}
+
+	private static Section rewriteElements(Section original, List<byte[]> snapshot) throws IOException {
+		List<byte[]> segments = new ArrayList<>();
+
+		if (original != null) {
+			byte[] payload = original.payload();
+			InputStream stream = new ByteArrayInputStream(payload);
+			int count = StreamReader.readUint32Var(stream);
+
+			for (int i = 0; i < count; i++) {
+				int start = position(payload, stream);
+				BinaryElementSegment segment = BinaryElementSegment.parse(stream);
+
+				// Active segments are already copied to tables
+				if (segment.mode() != BinaryElementSegment.MODE_ACTIVE)
+					segments.add(Arrays.copyOfRange(payload, start, position(payload, stream)));
+				else segments.add(new byte[] { 0x01, 0x00, 0x00 });
+			}
+		}
+
+		segments.addAll(snapshot);
+		return new Section(0x09, writeSegments(segments));
+	}
+
+	private static byte[] rewriteExports(byte[] payload, String removedExport) throws IOException {
+		InputStream input = new ByteArrayInputStream(payload);
+		int count = StreamReader.readUint32Var(input);
+		List<BinaryExport> exports = new ArrayList<>();
+
+		for (int i = 0; i < count; i++) {
+			BinaryExport export = BinaryExport.parse(input);
+			if (!export.name().equals(removedExport)) exports.add(export);
+		}
+
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		StreamWriter.writeUint32Var(stream, exports.size());
+
+		for (BinaryExport export : exports) {
+			StreamWriter.writeName(stream, export.name());
+			stream.write(export.type());
+			StreamWriter.writeUint32Var(stream, export.index());
+		}
+
+		return stream.toByteArray();
+	}
+
+	private static byte[] writeTables(Instance instance) throws IOException {
+		WasmModule module = instance.module();
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		StreamWriter.writeUint32Var(stream, (int) module.declaredTables().stream()
+			.filter(decl -> decl instanceof ModuleTableDecl)
+			.count());
+
+		for (int i = 0; i < module.declaredTables().size(); i++) {
+			if (!(module.declaredTables().get(i) instanceof ModuleTableDecl decl)) continue;
+			Limit limit = decl.type().limit();
+			StreamWriter.writeValueType(stream, decl.type().refType());
+			StreamWriter.writeLimit(stream, new Limit(instance.tables().get(i).size(), limit.hasMax()
+				? limit.max()
+				: -1), 0x00);
+		}
+
+		return stream.toByteArray();
+	}
+
+	private static byte[] writeMemories(Instance instance) throws IOException {
+		WasmModule module = instance.module();
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		StreamWriter.writeUint32Var(stream, (int) module.declaredMemories().stream()
+			.filter(decl -> decl instanceof ModuleMemoryDecl)
+			.count());
+
+		for (int i = 0; i < module.declaredMemories().size(); i++) {
+			if (!(module.declaredMemories().get(i) instanceof ModuleMemoryDecl decl)) continue;
+			Limit limit = decl.type().limit();
+			StreamWriter.writeLimit(stream, new Limit(instance.memories().get(i).pageCount(), limit.hasMax()
+				? limit.max()
+				: -1), (decl.type().memory64() ? 0x04 : 0x00) | (decl.type().shared() ? 0x02 : 0x00));
+		}
+
+		return stream.toByteArray();
+	}
+
+	private static byte[] writeGlobals(Instance instance, Map<Function, Integer> functions) throws IOException {
+		WasmModule module = instance.module();
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		StreamWriter.writeUint32Var(stream, (int) module.declaredGlobals().stream()
+			.filter(decl -> decl instanceof ModuleGlobalDecl)
+			.count());
+
+		for (int i = 0; i < module.declaredGlobals().size(); i++) {
+			GlobalDecl decl = module.declaredGlobals().get(i);
+			if (!(decl instanceof ModuleGlobalDecl)) continue;
+			Global global = instance.globals().get(i);
+			StreamWriter.writeValueType(stream, decl.type().valType());
+			stream.write(decl.type().mutablity() == Mutability.VAR ? 0x01 : 0x00);
+			writeConst(stream, global.get(), functions);
+			stream.write(CodeParser.END);
+		}
+
+		return stream.toByteArray();
+	}
+
+	private static void writeConst(OutputStream stream, Value value, Map<Function, Integer> functions)
+		throws IOException {
+		if (value instanceof NumberI32Value i32) {
+			stream.write(CodeParser.I32_CONST);
+			StreamWriter.writeSint32Var(stream, i32.i32());
+		} else if (value instanceof NumberI64Value i64) {
+			stream.write(CodeParser.I64_CONST);
+			StreamWriter.writeSint64Var(stream, i64.i64());
+		} else if (value instanceof NumberF32Value f32) {
+			stream.write(CodeParser.F32_CONST);
+			StreamWriter.writeInt32LE(stream, Float.floatToRawIntBits(f32.f32()));
+		} else if (value instanceof NumberF64Value f64) {
+			stream.write(CodeParser.F64_CONST);
+			StreamWriter.writeInt64LE(stream, Double.doubleToRawLongBits(f64.f64()));
+		} else if (value instanceof Vector128Value v128) {
+			// Opcode of vector instructions is prefix byte followed by u32
+			stream.write(CodeParser.V128_CONST >> 8);
+			StreamWriter.writeUint32Var(stream, CodeParser.V128_CONST & 0xFF);
+			StreamWriter.writeInt64LE(stream, v128.lsb());
+			StreamWriter.writeInt64LE(stream, v128.msb());
+		} else if (value instanceof RefValue ref && ref.get() == null) {
+			stream.write(CodeParser.REF_NULL);
+			StreamWriter.writeValueType(stream, ref.type());
+		} else if (value instanceof FuncRefValue ref) {
+			stream.write(CodeParser.REF_FUNC);
+			StreamWriter.writeUint32Var(stream, indexOf(ref.function(), functions));
+		} else {
+			throw new UnsupportedOperationException("Can't write %s as constant".formatted(value));
+		}
+	}
+
+	private static int indexOf(Function function, Map<Function, Integer> functions) {
+		Integer index = functions.get(function);
+		if (index == null) throw new IllegalStateException("%s is not a function of the instance".formatted(function));
+		return index;
+	}
+
+	private static List<byte[]> snapshotMemories(Instance instance) throws IOException {
+		List<byte[]> segments = new ArrayList<>();
+		List<MemoryDecl> decls = instance.module().declaredMemories();
+
+		for (int i = 0; i < decls.size(); i++) {
+			if (!(decls.get(i) instanceof ModuleMemoryDecl decl)) continue;
+			snapshotMemory(instance.memories().get(i), i, decl.type().memory64(), segments);
+		}
+
+		return segments;
+	}
+
+	private static void snapshotMemory(Memory memory, int index, boolean memory64, List<byte[]> segments)
+		throws IOException {
+		byte[] page = new byte[Memory.PAGE_SIZE];
+		long start = -1;
+		long last = -1;
+
+		for (int p = 0; p < memory.pageCount(); p++) {
+			long pageOffset = (long) p * Memory.PAGE_SIZE;
+
+			if (memory instanceof SparseMemory sparse && !sparse.isCommitted(p)) {
+				if (start != -1) segments.add(dataSegment(memory, index, memory64, start, last + 1));
+				start = -1;
+				continue;
+			}
+
+			memory.read(pageOffset, page, 0, page.length);
+
+			for (int j = 0; j < page.length; j++) {
+				long offset = pageOffset + j;
+
+				if (page[j] != 0) {
+					if (start != -1 && offset - start >= MAX_SEGMENT_SIZE) {
+						segments.add(dataSegment(memory, index, memory64, start, last + 1));
+						start = -1;
+					}
+
+					if (start == -1) start = offset;
+					last = offset;
+				} else if (start != -1 && offset - last > SEGMENT_GAP) {
+					segments.add(dataSegment(memory, index, memory64, start, last + 1));
+					start = -1;
+				}
+			}
+		}
+
+		if (start != -1) segments.add(dataSegment(memory, index, memory64, start, last + 1));
+	}
+
+	private static byte[] dataSegment(Memory memory, int index, boolean memory64, long start, long end)
+		throws IOException {
+		byte[] data = new byte[(int) (end - start)];
+		memory.read(start, data, 0, data.length);
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+
+		if (index == 0) {
+			stream.write(BinaryDataSegment.MODE_ACTIVE_0);
+		} else {
+			stream.write(BinaryDataSegment.MODE_ACTIVE_EXPLICT);
+			StreamWriter.writeUint32Var(stream, index);
+		}
+
+		writeOffset(stream, start, memory64);
+		StreamWriter.writeBytes(stream, data);
+		return stream.toByteArray();
+	}
+
+	private static List<byte[]> snapshotTables(Instance instance, Map<Function, Integer> functions) throws IOException {
+		List<byte[]> segments = new ArrayList<>();
+		List<TableDecl> decls = instance.module().declaredTables();
+
+		for (int i = 0; i < decls.size(); i++) {
+			if (!(decls.get(i) instanceof ModuleTableDecl)) continue;
+			Table table = instance.tables().get(i);
+			List<Integer> run = new ArrayList<>();
+			int start = 0;
+
+			for (int j = 0; j <= table.size(); j++) {
+				RefValue value = j < table.size() ? table.get(j) : null;
+
+				if (value != null && value.get() != null) {
+					if (!(value instanceof FuncRefValue ref))
+						throw new UnsupportedOperationException("Can't write %s in table %d".formatted(value, i));
+					if (run.isEmpty()) start = j;
+					run.add(indexOf(ref.function(), functions));
+				} else if (!run.isEmpty()) {
+					segments.add(elementSegment(i, start, run));
+					run.clear();
+				}
+			}
+		}
+
+		return segments;
+	}
+
+	private static byte[] elementSegment(int table, int start, List<Integer> functions) throws IOException {
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+
+		if (table == 0) {
+			stream.write(0x00);
+			writeOffset(stream, start, false);
+		} else {
+			stream.write(0x02);
+			StreamWriter.writeUint32Var(stream, table);
+			writeOffset(stream, start, false);
+			stream.write(0x00);
+		}
+
+		StreamWriter.writeUint32Var(stream, functions.size());
+		for (int function : functions) StreamWriter.writeUint32Var(stream, function);
+		return stream.toByteArray();
+	}
+
+	/**
+	 * <p>
+	 * Pre-initialize a binary module file. Modules with imports are not supported
+	 * from command line.
+	 * </p>
+	 * <p>
+	 * Usage: {@code PreInitializer <input> <output> [init export]}
+	 * </p>
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2 || args.length > 3) {
+			System.err.println("Usage: PreInitializer <input> <output> [init export]");
+			System.exit(1);
+			return;
+		}
+
+		byte[] bytes = Files.readAllBytes(Path.of(args[0]));
+		Files.write(Path.of(args[1]), preInitialize(bytes, null, args.length == 3 ? args[2] : null));
+	}
+}
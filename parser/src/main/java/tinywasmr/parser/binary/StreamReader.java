@@ -58,7 +58,7 @@ public class StreamReader {
 			int b = stream.read();
 			if (b == -1) break;
 
-			result |= (b & 0x7f) << shift;
+			result |= (b & 0x7fL) << shift;
 			if ((b & 0x80) == 0) break;
 			shift += 7L;
 		}
@@ -231,23 +231,62 @@ public class StreamReader {
 
 	public static Limit parseLimit(InputStream stream) throws IOException {
 		int type = stream.read();
+		if (type == -1) throw new EOFException();
+		return parseLimit(type, stream);
+	}
+
+	/**
+	 * <p>
+	 * Parse the limit after its type. The limit of 64-bit memories (type
+	 * {@code 0x04} and {@code 0x05}) is encoded as {@code u64}, but the values
+	 * must still fit in {@code int}.
+	 * </p>
+	 * 
+	 * @param type   The type of limit.
+	 * @param stream The byte stream to read from.
+	 * @return The parsed limit.
+	 * @throws IOException if I/O operation failed, end of file reached or the limit
+	 *                     is too large.
+	 */
+	public static Limit parseLimit(int type, InputStream stream) throws IOException {
 		return switch (type) {
 		case 0x00 -> new Limit(StreamReader.readUint32Var(stream));
 		case 0x01 -> new Limit(StreamReader.readUint32Var(stream), StreamReader.readUint32Var(stream));
-		case -1 -> throw new EOFException();
+		case 0x04 -> new Limit(readLimitValue64(stream));
+		case 0x05 -> new Limit(readLimitValue64(stream), readLimitValue64(stream));
 		default -> throw new IOException("Limit type not implemented: 0x%02x".formatted(type));
 		};
 	}
 
+	private static int readLimitValue64(InputStream stream) throws IOException {
+		long value = readUint64Var(stream);
+		if (value < 0 || value > Integer.MAX_VALUE)
+			throw new IOException("Limit is too large: %s".formatted(Long.toUnsignedString(value)));
+		return (int) value;
+	}
+
+	/**
+	 * <p>
+	 * Parse the memory type. The type of limit have flag {@code 0x02} for shared
+	 * memories and {@code 0x04} for 64-bit memories.
+	 * </p>
+	 */
 	public static MemoryType parseMemoryType(InputStream stream) throws IOException {
-		return new MemoryType(parseLimit(stream));
+		int type = stream.read();
+		if (type == -1) throw new EOFException();
+		boolean shared = (type & 0x02) != 0;
+		if (shared && (type & 0x01) == 0) throw new IOException("Shared memory must have maximum size");
+		return new MemoryType(parseLimit(type & ~0x02, stream), (type & 0x04) != 0, shared);
 	}
 
 	public static TableType parseTableType(InputStream stream) throws IOException {
 		ValueType valueType = parseValueType(stream); // TODO replace with parseRefType()
 		if (!(valueType instanceof RefType refType))
 			throw new IOException("Expected RefType, but %s found".formatted(valueType));
-		Limit limit = parseLimit(stream);
+		int type = stream.read();
+		if (type == -1) throw new EOFException();
+		if ((type & 0x04) != 0) throw new IOException("64-bit tables are not implemented");
+		Limit limit = parseLimit(type, stream);
 		return new TableType(limit, refType);
 	}
 
@@ -296,7 +335,10 @@ public class StreamReader {
 
 	public static MemoryArg parseMemarg(InputStream stream) throws IOException {
 		int align = readUint32Var(stream);
-		int offset = readUint32Var(stream);
-		return new MemoryArg(offset, align);
+		// Offsets of 64-bit memories are u64, but only u32 offsets are supported
+		long offset = readUint64Var(stream);
+		if (offset < 0 || offset > 0xFFFFFFFFL)
+			throw new IOException("Memory offset is too large: %s".formatted(Long.toUnsignedString(offset)));
+		return new MemoryArg((int) offset, align);
 	}
 }
@@ -0,0 +1,101 @@
+package tinywasmr.parser.binary;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import tinywasmr.engine.type.Limit;
+import tinywasmr.engine.type.value.NumberType;
+import tinywasmr.engine.type.value.RefType;
+import tinywasmr.engine.type.value.ValueType;
+import tinywasmr.engine.type.value.VectorType;
+
+/**
+ * <p>
+ * A writer to write various type of data to {@link OutputStream}. This is the
+ * counterpart of {@link StreamReader}.
+ * </p>
+ */
+public class StreamWriter {
+	public static void writeInt32LE(OutputStream stream, int value) throws IOException {
+		stream.write(value);
+		stream.write(value >> 8);
+		stream.write(value >> 16);
+		stream.write(value >> 24);
+	}
+
+	public static void writeInt64LE(OutputStream stream, long value) throws IOException {
+		writeInt32LE(stream, (int) value);
+		writeInt32LE(stream, (int) (value >> 32));
+	}
+
+	public static void writeUint32Var(OutputStream stream, int value) throws IOException {
+		writeUint64Var(stream, value & 0xFFFFFFFFL);
+	}
+
+	public static void writeUint64Var(OutputStream stream, long value) throws IOException {
+		do {
+			int b = (int) (value & 0x7f);
+			value >>>= 7;
+			stream.write(value != 0 ? b | 0x80 : b);
+		} while (value != 0);
+	}
+
+	public static void writeSint32Var(OutputStream stream, int value) throws IOException {
+		writeSint64Var(stream, value);
+	}
+
+	public static void writeSint64Var(OutputStream stream, long value) throws IOException {
+		while (true) {
+			int b = (int) (value & 0x7f);
+			value >>= 7;
+
+			// Stop when the remaining bits are the sign extension of the last byte
+			if ((value == 0 && (b & 0x40) == 0) || (value == -1 && (b & 0x40) != 0)) {
+				stream.write(b);
+				return;
+			}
+
+			stream.write(b | 0x80);
+		}
+	}
+
+	public static void writeBytes(OutputStream stream, byte[] bytes) throws IOException {
+		writeUint32Var(stream, bytes.length);
+		stream.write(bytes);
+	}
+
+	public static void writeName(OutputStream stream, String name) throws IOException {
+		writeBytes(stream, name.getBytes(StandardCharsets.UTF_8));
+	}
+
+	public static int valueTypeId(ValueType type) {
+		if (type instanceof NumberType number) return switch (number) {
+		case I32 -> 0x7f;
+		case I64 -> 0x7e;
+		case F32 -> 0x7d;
+		case F64 -> 0x7c;
+		};
+		if (type == VectorType.V128) return 0x7b;
+		if (type == RefType.FUNC) return 0x70;
+		if (type == RefType.EXTERN) return 0x6f;
+		throw new IllegalArgumentException("Value type not implemented: %s".formatted(type));
+	}
+
+	public static void writeValueType(OutputStream stream, ValueType type) throws IOException {
+		stream.write(valueTypeId(type));
+	}
+
+	/**
+	 * <p>
+	 * Write the limit with its type. The type of the limit is {@code 0x00} or
+	 * {@code 0x01} for limits without and with maximum value, combined with the
+	 * given flags (like {@code 0x04} for 64-bit memories).
+	 * </p>
+	 */
+	public static void writeLimit(OutputStream stream, Limit limit, int flags) throws IOException {
+		stream.write((limit.hasMax() ? 0x01 : 0x00) | flags);
+		writeUint32Var(stream, limit.min());
+		if (limit.hasMax()) writeUint32Var(stream, limit.max());
+	}
+}
@@ -0,0 +1,101 @@
+package tinywasmr.engine.exec.checkpoint;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static tinywasmr.test.TestModules.load;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+import tinywasmr.engine.exec.executor.DefaultExecutor;
+import tinywasmr.engine.exec.executor.Executor;
+import tinywasmr.engine.exec.instance.DefaultInstance;
+import tinywasmr.engine.exec.instance.Function;
+import tinywasmr.engine.exec.instance.Instance;
+import tinywasmr.engine.exec.instance.SimpleImporter;
+import tinywasmr.engine.exec.value.Value;
+import tinywasmr.engine.exec.vm.DefaultMachine;
+import tinywasmr.engine.exec.vm.Machine;
+import tinywasmr.engine.type.value.NumberType;
+import tinywasmr.parser.ParsedWasmModule;
+
+class CheckpointTest {
+	final Executor executor = new DefaultExecutor();
+
+	Instance loop(ParsedWasmModule module, List<Integer> logs) {
+		return new DefaultInstance(module, SimpleImporter.builder()
+			.module("console", mod -> mod.<Integer>addVoidFunc("log", NumberType.I32, logs::add))
+			.build());
+	}
+
+	void finish(Machine vm) {
+		while (vm.peekFrame() != vm.getExternalFrame()) executor.step(vm);
+	}
+
+	@Test
+	void testLoop() throws IOException {
+		ParsedWasmModule module = load("binary/006_loop.wasm");
+		List<Integer> logs = new ArrayList<>();
+		Instance instance = loop(module, logs);
+		Machine vm = new DefaultMachine();
+		Function main = instance.export("main").asFunction();
+		vm.call(main, new Value[0]);
+		for (int i = 0; i < 60; i++) executor.step(vm);
+
+		ByteArrayOutputStream checkpoint = new ByteArrayOutputStream();
+		Checkpoint.save(vm, instance, checkpoint);
+		int checkpointFrames = vm.getFrameStack().size();
+		int logged = logs.size();
+		assertTrue(logged > 0 && logged < 10);
+		finish(vm);
+		assertEquals(IntStream.range(0, 10).boxed().toList(), logs);
+
+		List<Integer> restoredLogs = new ArrayList<>();
+		Instance restored = loop(module, restoredLogs);
+		Machine restoredVm = new DefaultMachine();
+		Checkpoint.restore(restoredVm, restored, new ByteArrayInputStream(checkpoint.toByteArray()));
+		assertEquals(checkpointFrames, restoredVm.getFrameStack().size());
+		finish(restoredVm);
+		assertEquals(logs.subList(logged, logs.size()), restoredLogs);
+	}
+
+	@Test
+	void testMemory() throws IOException {
+		Path file = Files.createTempFile("checkpoint", ".bin");
+
+		try {
+			ParsedWasmModule module = load("binary/007_data.wasm");
+			Instance instance = new DefaultInstance(module, null);
+			instance.initialize();
+			instance.export("main").asFunction().exec();
+			instance.export("memory").asMemory().writeI32(65532, 42);
+
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+				Checkpoint.save(new DefaultMachine(), instance, channel);
+			}
+
+			Instance restored = new DefaultInstance(module, null);
+
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+				Checkpoint.restore(new DefaultMachine(), restored, channel);
+			}
+
+			assertEquals(
+				new String(instance.export("memory").asMemory().read(0, 15)),
+				new String(restored.export("memory").asMemory().read(0, 15)));
+			assertEquals(42, restored.export("memory").asMemory().readI32(65532));
+		} finally {
+			Files.delete(file);
+		}
+	}
+}
@@ -0,0 +1,126 @@
+package tinywasmr.engine.exec.epoch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static tinywasmr.test.TestModules.instantiate;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import tinywasmr.engine.exec.StepResult;
+import tinywasmr.engine.exec.TrapException;
+import tinywasmr.engine.exec.executor.DefaultExecutor;
+import tinywasmr.engine.exec.executor.Executor;
+import tinywasmr.engine.exec.flat.FlatExecutor;
+import tinywasmr.engine.exec.frame.LoopFrame;
+import tinywasmr.engine.exec.instance.Function;
+import tinywasmr.engine.exec.jit.JitExecutor;
+import tinywasmr.engine.exec.value.Value;
+import tinywasmr.engine.exec.vm.DefaultMachine;
+import tinywasmr.engine.exec.vm.Machine;
+
+class EpochDeadlineTest {
+	Function export(String name) {
+		return instantiate("binary/014_spin.wasm").export(name).asFunction();
+	}
+
+	Function spin() {
+		return export("spin");
+	}
+
+	/**
+	 * <p>
+	 * Execute the function while the epoch is ticking, expecting the deadline to
+	 * trap the machine.
+	 * </p>
+	 */
+	void assertDeadlineTrap(Executor executor, Function function, InterruptAction action) {
+		Epoch epoch = new Epoch();
+		Machine vm = new DefaultMachine();
+		vm.setEpochDeadline(new EpochDeadline(epoch, 1, action));
+		ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+
+		try {
+			epoch.tick(timer, 10, TimeUnit.MILLISECONDS);
+			TrapException e = assertThrows(TrapException.class, () -> executor.execute(vm, function, new Value[0]));
+			assertTrue(e.getCause() instanceof DeadlineExceededException);
+		} finally {
+			timer.shutdownNow();
+		}
+	}
+
+	@Test
+	void testInterpreter() {
+		Epoch epoch = new Epoch();
+		Machine vm = new DefaultMachine();
+		Executor executor = new DefaultExecutor();
+		vm.setEpochDeadline(new EpochDeadline(epoch, 1));
+		vm.call(spin(), new Value[0]);
+
+		for (int i = 0; i < 1000; i++) assertNotEquals(StepResult.INTERRUPTED, executor.step(vm));
+		epoch.increment();
+		StepResult result = null;
+		for (int i = 0; i < 3 && result != StepResult.INTERRUPTED; i++) result = executor.step(vm);
+		assertEquals(StepResult.INTERRUPTED, result);
+		assertTrue(vm.peekFrame() instanceof LoopFrame);
+
+		// The interrupted step is executed after extending the deadline
+		assertEquals(StepResult.INTERRUPTED, executor.step(vm));
+		vm.getEpochDeadline().extend(1);
+		assertNotEquals(StepResult.INTERRUPTED, executor.step(vm));
+	}
+
+	@Test
+	void testCompiled() {
+		Epoch epoch = new Epoch();
+		Machine vm = new DefaultMachine();
+		JitExecutor executor = new JitExecutor();
+		Function spin = spin();
+		assertTrue(executor.isCompiled(spin));
+		vm.setEpochDeadline(new EpochDeadline(epoch, 1));
+		vm.call(spin, new Value[0]);
+		ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+
+		try {
+			epoch.tick(timer, 10, TimeUnit.MILLISECONDS);
+			StepResult result;
+			do result = executor.step(vm); while (result != StepResult.INTERRUPTED);
+			assertTrue(vm.peekFrame() instanceof LoopFrame);
+		} finally {
+			timer.shutdownNow();
+		}
+	}
+
+	@Test
+	void testTrap() {
+		Machine vm = new DefaultMachine();
+		vm.setEpochDeadline(new EpochDeadline(new Epoch(), 0, InterruptAction.TRAP));
+		TrapException e = assertThrows(TrapException.class, () -> new DefaultExecutor().execute(vm, spin(),
+			new Value[0]));
+		assertTrue(e.getCause() instanceof DeadlineExceededException);
+	}
+
+	@Test
+	void testFlat() {
+		FlatExecutor executor = new FlatExecutor();
+		Function spin = spin();
+		assertTrue(executor.canExecute(spin));
+		assertDeadlineTrap(executor, spin, InterruptAction.TRAP);
+		assertDeadlineTrap(executor, spin, InterruptAction.YIELD);
+	}
+
+	@Test
+	void testCompiledCallee() {
+		// The loop is in a function called by compiled code
+		JitExecutor executor = new JitExecutor();
+		Function outer = export("outer");
+		assertTrue(executor.isCompiled(outer));
+		assertDeadlineTrap(executor, outer, InterruptAction.TRAP);
+		assertDeadlineTrap(executor, outer, InterruptAction.YIELD);
+	}
+}
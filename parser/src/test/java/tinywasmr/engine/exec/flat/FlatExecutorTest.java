@@ -0,0 +1,92 @@
+package tinywasmr.engine.exec.flat;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static tinywasmr.test.TestModules.load;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import tinywasmr.engine.exec.instance.DefaultInstance;
+import tinywasmr.engine.exec.instance.Function;
+import tinywasmr.engine.exec.instance.Instance;
+import tinywasmr.engine.exec.instance.SimpleImporter;
+import tinywasmr.engine.exec.memory.Memory;
+import tinywasmr.engine.exec.value.NumberI32Value;
+import tinywasmr.engine.exec.value.Value;
+import tinywasmr.engine.type.value.NumberType;
+
+class FlatExecutorTest {
+	final FlatExecutor executor = new FlatExecutor();
+
+	Value[] exec(Function function, Value... params) {
+		assertTrue(executor.canExecute(function));
+		return executor.execute(function, params);
+	}
+
+	@Test
+	void testAddTwo() {
+		Instance instance = new DefaultInstance(load("binary/001_addtwo.wasm"), null);
+		Value[] results = exec(instance.export("addTwo").asFunction(), new NumberI32Value(1), new NumberI32Value(2));
+		assertEquals(3, results[0].i32());
+	}
+
+	@Test
+	void testBranching() {
+		Instance instance = new DefaultInstance(load("binary/004_branching.wasm"), null);
+		Value[] results = exec(instance.export("main").asFunction());
+		assertEquals(1, results[0].i32());
+		assertEquals(3, results[1].i32());
+		assertEquals(4, results[2].i32());
+	}
+
+	@Test
+	void testMemories() {
+		Instance instance = new DefaultInstance(load("binary/005_memories.wasm"), null);
+		Memory memory = instance.export("memory").asMemory();
+		memory.writeI32(0, 727);
+		exec(instance.export("main").asFunction());
+		assertEquals(727 + 42, memory.readI32(0));
+	}
+
+	@Test
+	void testLoop() {
+		AtomicInteger hits = new AtomicInteger(0);
+		Instance instance = new DefaultInstance(load("binary/006_loop.wasm"), SimpleImporter.builder()
+			.module("console", mod -> mod.<Integer>addVoidFunc("log", NumberType.I32, val -> {
+				assertEquals(hits.get(), val);
+				hits.incrementAndGet();
+			}))
+			.build());
+		exec(instance.export("main").asFunction());
+		assertEquals(10, hits.get());
+	}
+
+	@Test
+	void testBrTable() {
+		Instance instance = new DefaultInstance(load("suite/br_table_module.wasm"), null);
+		Function f = instance.export("multiple").asFunction();
+		int[] inputs = { 0, 1, 2, 3, 4, 5, 10, -1 };
+		int[] expected = { 103, 102, 101, 100, 104, 104, 104, 104 };
+
+		for (int i = 0; i < inputs.length; i++)
+			assertEquals(expected[i], exec(f, new NumberI32Value(inputs[i]))[0].i32());
+	}
+
+	@Test
+	void testCodeInProfile() {
+		Instance instance = new DefaultInstance(load("binary/001_addtwo.wasm"), null);
+		Function f = instance.export("addTwo").asFunction();
+		assertEquals(3, exec(f, new NumberI32Value(1), new NumberI32Value(2))[0].i32());
+
+		// The lowered code belongs to the instance, so other executors reuse it
+		Object code = instance.profile(f).getFlatCode();
+		assertNotNull(code);
+		Value[] params = { new NumberI32Value(3), new NumberI32Value(4) };
+		assertEquals(7, new FlatExecutor().execute(f, params)[0].i32());
+		assertSame(code, instance.profile(f).getFlatCode());
+	}
+}
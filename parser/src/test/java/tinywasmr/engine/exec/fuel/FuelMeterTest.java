@@ -0,0 +1,76 @@
+package tinywasmr.engine.exec.fuel;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static tinywasmr.test.TestModules.instantiate;
+
+import org.junit.jupiter.api.Test;
+
+import tinywasmr.engine.exec.StepResult;
+import tinywasmr.engine.exec.TrapException;
+import tinywasmr.engine.exec.executor.DefaultExecutor;
+import tinywasmr.engine.exec.instance.Function;
+import tinywasmr.engine.exec.jit.JitExecutor;
+import tinywasmr.engine.exec.value.NumberI32Value;
+import tinywasmr.engine.exec.value.Value;
+import tinywasmr.engine.exec.vm.DefaultMachine;
+import tinywasmr.engine.exec.vm.Machine;
+import tinywasmr.engine.insn.variable.LocalInsn;
+
+class FuelMeterTest {
+	Function sum() {
+		return instantiate("binary/013_sum.wasm").export("sum").asFunction();
+	}
+
+	@Test
+	void testDeterministic() {
+		long[] consumed = new long[2];
+
+		for (int i = 0; i < consumed.length; i++) {
+			Machine vm = new DefaultMachine();
+			vm.setFuelMeter(new FuelMeter(Long.MAX_VALUE));
+			// Compiled code is not used while the fuel is metered
+			Value[] results = new JitExecutor().execute(vm, sum(), new Value[] { new NumberI32Value(100) });
+			assertEquals(new NumberI32Value(5050), results[0]);
+			consumed[i] = vm.getFuelMeter().getConsumed();
+		}
+
+		// 1 loop, 9 instructions per iteration, 1 local.get
+		assertEquals(1 + 9 * 100 + 1, consumed[0]);
+		assertEquals(consumed[0], consumed[1]);
+	}
+
+	@Test
+	void testYield() {
+		Machine vm = new DefaultMachine();
+		DefaultExecutor executor = new DefaultExecutor();
+		WeightedFuelCosts costs = new WeightedFuelCosts(1, 0, 64).withCost(LocalInsn.class, 0);
+		vm.setFuelMeter(new FuelMeter(50, costs, FuelExhaustion.YIELD));
+		vm.call(sum(), new Value[] { new NumberI32Value(100) });
+		int refuels = 0;
+
+		while (vm.peekFrame() != vm.getExternalFrame()) {
+			StepResult result = executor.step(vm);
+
+			if (result == StepResult.OUT_OF_FUEL) {
+				assertEquals(0, vm.getFuelMeter().getFuel());
+				vm.getFuelMeter().addFuel(50);
+				refuels++;
+			}
+		}
+
+		assertEquals(new NumberI32Value(5050), vm.getExternalFrame().popOprand());
+		assertEquals(1 + 4 * 100, vm.getFuelMeter().getConsumed());
+		assertEquals(8, refuels);
+	}
+
+	@Test
+	void testTrap() {
+		Machine vm = new DefaultMachine();
+		vm.setFuelMeter(new FuelMeter(100, FuelCosts.DEFAULT, FuelExhaustion.TRAP));
+		TrapException e = assertThrows(TrapException.class, () -> new DefaultExecutor().execute(vm, sum(),
+			new Value[] { new NumberI32Value(100) }));
+		assertTrue(e.getCause() instanceof OutOfFuelException);
+	}
+}
@@ -0,0 +1,61 @@
+package tinywasmr.engine.exec.instance;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static tinywasmr.test.TestModules.load;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+import tinywasmr.engine.exec.memory.MemoryFactory;
+import tinywasmr.engine.exec.memory.SparseMemory;
+import tinywasmr.engine.exec.value.NumberI32Value;
+
+class InstanceForkTest {
+
+	@Test
+	void testMemory() {
+		Instance parent = new DefaultInstance(load("binary/007_data.wasm"), null, MemoryFactory.SPARSE);
+		parent.initialize();
+		Instance fork = parent.fork();
+		SparseMemory memory = (SparseMemory) fork.export("memory").asMemory();
+		assertNotSame(parent.export("memory").asMemory(), memory);
+		assertTrue(memory.isShared(0));
+
+		// Active segment is not replayed, but the fork sees it
+		fork.export("main").asFunction().exec();
+		assertFalse(memory.isShared(0));
+		assertArrayEquals("hello".getBytes(StandardCharsets.US_ASCII), memory.read(0, 5));
+		assertArrayEquals("world".getBytes(StandardCharsets.US_ASCII), memory.read(10, 5));
+		assertArrayEquals("hello".getBytes(StandardCharsets.US_ASCII), parent.export("memory").asMemory().read(0, 5));
+		assertEquals(0, parent.export("memory").asMemory().readU8(10));
+	}
+
+	@Test
+	void testGlobal() {
+		Instance parent = new DefaultInstance(load("binary/008_global.wasm"), null);
+		parent.initialize();
+		Instance fork = parent.fork();
+		assertEquals(42, fork.export("main").asFunction().exec());
+		assertEquals(727, fork.export("answer").asGlobal().get().i32());
+		assertEquals(42, parent.export("answer").asGlobal().get().i32());
+
+		parent.export("answer").asGlobal().set(new NumberI32Value(1));
+		assertEquals(1, parent.fork().export("answer").asGlobal().get().i32());
+	}
+
+	@Test
+	void testFunctions() {
+		Instance parent = new DefaultInstance(load("binary/001_addtwo.wasm"), null);
+		Instance fork = parent.fork();
+		Function addTwo = fork.export("addTwo").asFunction();
+		assertSame(fork, addTwo.instance());
+		assertNotSame(parent.export("addTwo").asFunction(), addTwo);
+		assertEquals(3, addTwo.exec(1, 2));
+	}
+}
@@ -0,0 +1,120 @@
+package tinywasmr.engine.exec.jit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static tinywasmr.test.TestModules.load;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import tinywasmr.engine.exec.instance.DefaultInstance;
+import tinywasmr.engine.exec.instance.Function;
+import tinywasmr.engine.exec.instance.Instance;
+import tinywasmr.engine.exec.instance.SimpleImporter;
+import tinywasmr.engine.exec.memory.Memory;
+import tinywasmr.engine.exec.value.NumberI32Value;
+import tinywasmr.engine.exec.value.Value;
+import tinywasmr.engine.exec.vm.DefaultMachine;
+import tinywasmr.engine.exec.vm.Machine;
+import tinywasmr.engine.type.value.NumberType;
+
+class JitExecutorTest {
+	final JitExecutor executor = new JitExecutor();
+
+	Value[] exec(Function function, Value... params) {
+		assertTrue(executor.isCompiled(function));
+		return executor.execute(function, params);
+	}
+
+	@Test
+	void testAddTwo() {
+		Instance instance = new DefaultInstance(load("binary/001_addtwo.wasm"), null);
+		Value[] results = exec(instance.export("addTwo").asFunction(), new NumberI32Value(1), new NumberI32Value(2));
+		assertEquals(3, results[0].i32());
+	}
+
+	@Test
+	void testCallWithoutOperands() {
+		Instance instance = new DefaultInstance(load("binary/009_call.wasm"), null);
+		assertEquals(0, exec(instance.export("f").asFunction()).length);
+	}
+
+	@Test
+	void testFallback() {
+		// Functions with multiple results can't be compiled
+		Instance instance = new DefaultInstance(load("binary/004_branching.wasm"), null);
+		Function main = instance.export("main").asFunction();
+		assertFalse(executor.isCompiled(main));
+		Value[] results = executor.execute(main, new Value[0]);
+		assertEquals(1, results[0].i32());
+		assertEquals(3, results[1].i32());
+		assertEquals(4, results[2].i32());
+	}
+
+	@Test
+	void testMemories() {
+		Instance instance = new DefaultInstance(load("binary/005_memories.wasm"), null);
+		Memory memory = instance.export("memory").asMemory();
+		memory.writeI32(0, 727);
+		exec(instance.export("main").asFunction());
+		assertEquals(727 + 42, memory.readI32(0));
+	}
+
+	@Test
+	void testLoop() {
+		AtomicInteger hits = new AtomicInteger(0);
+		Instance instance = new DefaultInstance(load("binary/006_loop.wasm"), SimpleImporter.builder()
+			.module("console", mod -> mod.<Integer>addVoidFunc("log", NumberType.I32, val -> {
+				assertEquals(hits.get(), val);
+				hits.incrementAndGet();
+			}))
+			.build());
+		exec(instance.export("main").asFunction());
+		assertEquals(10, hits.get());
+	}
+
+	@Test
+	void testDeoptimize() {
+		Machine vm = new DefaultMachine();
+		AtomicInteger hits = new AtomicInteger(0);
+		Instance instance = new DefaultInstance(load("binary/006_loop.wasm"), SimpleImporter.builder()
+			.module("console", mod -> mod.<Integer>addVoidFunc("log", NumberType.I32, val -> {
+				assertEquals(hits.get(), val);
+				hits.incrementAndGet();
+
+				// Compiled code calls host functions without pushing frames on top of main,
+				// but the loop is interpreted after deoptimization
+				boolean compiled = vm.getFrameStack().size() == 2;
+				assertEquals(val <= 3, compiled);
+				if (val == 3) executor.setDeoptimized(true);
+			}))
+			.build());
+		Function main = instance.export("main").asFunction();
+		assertTrue(executor.isCompiled(main));
+		executor.execute(vm, main, new Value[0]);
+		assertEquals(10, hits.get());
+		executor.setDeoptimized(false);
+	}
+
+	@Test
+	void testGlobal() {
+		Instance instance = new DefaultInstance(load("binary/008_global.wasm"), null);
+		instance.initialize();
+		instance.export("answer").asGlobal().set(new NumberI32Value(420));
+		assertEquals(420, exec(instance.export("main").asFunction())[0].i32());
+		assertEquals(727, instance.export("answer").asGlobal().get().i32());
+	}
+
+	@Test
+	void testBrTable() {
+		Instance instance = new DefaultInstance(load("suite/br_table_module.wasm"), null);
+		Function f = instance.export("multiple").asFunction();
+		int[] inputs = { 0, 1, 2, 3, 4, 5, 10, -1 };
+		int[] expected = { 103, 102, 101, 100, 104, 104, 104, 104 };
+
+		for (int i = 0; i < inputs.length; i++)
+			assertEquals(expected[i], exec(f, new NumberI32Value(inputs[i]))[0].i32());
+	}
+}
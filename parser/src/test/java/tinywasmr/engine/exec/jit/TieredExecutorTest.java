@@ -0,0 +1,86 @@
+package tinywasmr.engine.exec.jit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static tinywasmr.test.TestModules.load;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import tinywasmr.engine.exec.instance.DefaultInstance;
+import tinywasmr.engine.exec.instance.Function;
+import tinywasmr.engine.exec.instance.Instance;
+import tinywasmr.engine.exec.instance.SimpleImporter;
+import tinywasmr.engine.exec.value.NumberI32Value;
+import tinywasmr.engine.exec.value.Value;
+import tinywasmr.engine.exec.vm.DefaultMachine;
+import tinywasmr.engine.exec.vm.Machine;
+import tinywasmr.engine.type.value.NumberType;
+
+class TieredExecutorTest {
+	// Compile on the interpreting thread so the tests are deterministic
+	final TieredExecutor executor = new TieredExecutor(new TierPolicy(3, 5, 0, 1));
+
+	int call(Function function, int a, int b) {
+		return executor.execute(function, new Value[] { new NumberI32Value(a), new NumberI32Value(b) })[0].i32();
+	}
+
+	@Test
+	void testCallThreshold() {
+		Instance instance = new DefaultInstance(load("binary/001_addtwo.wasm"), null);
+		Function addTwo = instance.export("addTwo").asFunction();
+
+		for (int i = 0; i < 2; i++) {
+			assertEquals(3, call(addTwo, 1, 2));
+			assertEquals(FunctionTier.INTERPRETED, instance.tier(addTwo));
+		}
+
+		assertEquals(3, call(addTwo, 1, 2));
+		assertEquals(FunctionTier.COMPILED, instance.tier(addTwo));
+		assertEquals(3, instance.profile(addTwo).getCalls());
+
+		// Compiled calls are no longer counted
+		assertEquals(7, call(addTwo, 3, 4));
+		assertEquals(3, instance.profile(addTwo).getCalls());
+	}
+
+	@Test
+	void testBackEdgeThreshold() {
+		Machine vm = new DefaultMachine();
+		AtomicInteger hits = new AtomicInteger(0);
+		AtomicInteger compiledHits = new AtomicInteger(0);
+		Instance instance = new DefaultInstance(load("binary/006_loop.wasm"), SimpleImporter.builder()
+			.module("console", mod -> mod.<Integer>addVoidFunc("log", NumberType.I32, val -> {
+				assertEquals(hits.get() % 10, val);
+				hits.incrementAndGet();
+
+				// Compiled code calls host functions without pushing frames on top of main
+				if (vm.getFrameStack().size() == 2) compiledHits.incrementAndGet();
+			}))
+			.build());
+		Function main = instance.export("main").asFunction();
+
+		// The call that made the function hot is moved to compiled code
+		executor.execute(vm, main, new Value[0]);
+		assertEquals(10, hits.get());
+		assertTrue(compiledHits.get() > 0);
+		assertTrue(instance.profile(main).getBackEdges() >= 5);
+		assertTrue(executor.isCompiled(main));
+
+		executor.execute(main, new Value[0]);
+		assertEquals(20, hits.get());
+		assertEquals(1, instance.profile(main).getCalls());
+	}
+
+	@Test
+	void testFailed() {
+		// Functions with multiple results can't be compiled
+		Instance instance = new DefaultInstance(load("binary/004_branching.wasm"), null);
+		Function main = instance.export("main").asFunction();
+		for (int i = 0; i < 4; i++) assertEquals(3, executor.execute(main, new Value[0])[1].i32());
+		assertEquals(FunctionTier.FAILED, instance.tier(main));
+		assertFalse(executor.isCompiled(main));
+	}
+}
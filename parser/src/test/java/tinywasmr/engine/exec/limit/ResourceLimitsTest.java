@@ -0,0 +1,138 @@
+package tinywasmr.engine.exec.limit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static tinywasmr.test.TestModules.load;
+
+import org.junit.jupiter.api.Test;
+
+import tinywasmr.engine.exec.StepResult;
+import tinywasmr.engine.exec.TrapException;
+import tinywasmr.engine.exec.executor.DefaultExecutor;
+import tinywasmr.engine.exec.executor.Executor;
+import tinywasmr.engine.exec.flat.FlatExecutor;
+import tinywasmr.engine.exec.instance.DefaultInstance;
+import tinywasmr.engine.exec.instance.Instance;
+import tinywasmr.engine.exec.jit.JitExecutor;
+import tinywasmr.engine.exec.memory.LinearMemory;
+import tinywasmr.engine.exec.memory.MemoryFactory;
+import tinywasmr.engine.exec.memory.SparseMemory;
+import tinywasmr.engine.exec.table.DefaultTable;
+import tinywasmr.engine.exec.trap.ExternalTrap;
+import tinywasmr.engine.exec.value.RefValue;
+import tinywasmr.engine.exec.value.NumberI32Value;
+import tinywasmr.engine.exec.value.Value;
+import tinywasmr.engine.exec.vm.DefaultMachine;
+import tinywasmr.engine.exec.vm.Machine;
+import tinywasmr.engine.type.Limit;
+import tinywasmr.engine.type.TableType;
+import tinywasmr.engine.type.value.RefType;
+
+class ResourceLimitsTest {
+	Instance instance(ResourceLimiter limiter) {
+		DefaultInstance instance = new DefaultInstance(load("binary/015_limits.wasm"), null, MemoryFactory.DEFAULT,
+			limiter);
+		instance.initialize();
+		return instance;
+	}
+
+	@Test
+	void testMemoryQuotas() {
+		ResourceGroup group = new ResourceGroup(3, Long.MAX_VALUE);
+		ResourceLimits limits1 = ResourceLimits.builder().memoryPages(2).group(group).build();
+		ResourceLimits limits2 = ResourceLimits.builder().memoryPages(2).group(group).build();
+		Instance instance1 = instance(limits1);
+		assertEquals(1, instance1.export("grow").asFunction().exec(1));
+		assertEquals(-1, instance1.export("grow").asFunction().exec(1));
+		assertEquals(2, limits1.getMemoryPages());
+
+		// The group has 3 pages, so the second instance can't grow
+		Instance instance2 = instance(limits2);
+		assertEquals(3, group.getMemoryPages());
+		assertEquals(-1, instance2.export("grow").asFunction().exec(1));
+
+		limits1.release();
+		assertEquals(1, group.getMemoryPages());
+		assertEquals(1, instance2.export("grow").asFunction().exec(1));
+		assertEquals(2, instance2.memories().get(0).pageCount());
+	}
+
+	@Test
+	void testInstantiate() {
+		ResourceLimits limits = ResourceLimits.builder().memoryPages(0).build();
+		assertThrows(ResourceLimitException.class, () -> instance(limits));
+	}
+
+	@Test
+	void testFork() {
+		ResourceLimits limits = ResourceLimits.builder().memoryPages(3).build();
+		Instance instance = instance(limits);
+		Instance fork = instance.fork();
+		assertEquals(2, limits.getMemoryPages());
+		assertEquals(1, fork.export("grow").asFunction().exec(1));
+		assertEquals(3, limits.getMemoryPages());
+		assertEquals(-1, fork.export("grow").asFunction().exec(1));
+		assertThrows(ResourceLimitException.class, () -> instance.fork());
+	}
+
+	@Test
+	void testCallDepth() {
+		Instance instance = instance(ResourceLimiter.UNLIMITED);
+		Machine vm = new DefaultMachine();
+		vm.setResourceLimiter(ResourceLimits.builder().callDepth(50).build());
+		DefaultExecutor executor = new DefaultExecutor();
+		Value[] results = executor.execute(vm, instance.export("rec").asFunction(),
+			new Value[] { new NumberI32Value(40) });
+		assertEquals(new NumberI32Value(40), results[0]);
+
+		Machine vm2 = new DefaultMachine();
+		vm2.setResourceLimiter(ResourceLimits.builder().callDepth(50).build());
+		TrapException e = assertThrows(TrapException.class, () -> executor.execute(vm2,
+			instance.export("rec").asFunction(), new Value[] { new NumberI32Value(100) }));
+		assertTrue(e.getCause() instanceof ResourceLimitException);
+	}
+
+	@Test
+	void testStackSlots() {
+		Instance instance = instance(ResourceLimiter.UNLIMITED);
+		Machine vm = new DefaultMachine();
+		vm.setResourceLimiter(ResourceLimits.builder().stackSlots(512).build());
+		TrapException e = assertThrows(TrapException.class, () -> new DefaultExecutor().execute(vm,
+			instance.export("rec").asFunction(), new Value[] { new NumberI32Value(1000) }));
+		assertTrue(e.getCause() instanceof ResourceLimitException);
+	}
+
+	@Test
+	void testStepCallDepth() {
+		Instance instance = instance(ResourceLimiter.UNLIMITED);
+		Machine vm = new DefaultMachine();
+		vm.setResourceLimiter(ResourceLimits.builder().callDepth(10).build());
+		vm.call(instance.export("rec").asFunction(), new Value[] { new NumberI32Value(100) });
+		DefaultExecutor executor = new DefaultExecutor();
+		StepResult result = null;
+		for (int i = 0; i < 10000 && result != StepResult.TRAP; i++) result = executor.step(vm);
+		assertEquals(StepResult.TRAP, result);
+		assertTrue(((ExternalTrap) vm.getTrap()).throwable() instanceof ResourceLimitException);
+		assertSame(StepResult.TRAP, executor.step(vm));
+	}
+
+	@Test
+	void testNegativeGrow() {
+		// memory.grow takes unsigned delta, so -1 is too large for any memory
+		for (Executor executor : new Executor[] { new DefaultExecutor(), new FlatExecutor(), new JitExecutor() }) {
+			Instance instance = instance(ResourceLimiter.UNLIMITED);
+			Value[] results = executor.execute(new DefaultMachine(), instance.export("grow").asFunction(),
+				new Value[] { new NumberI32Value(-1) });
+			assertEquals(new NumberI32Value(-1), results[0]);
+			assertEquals(1, instance.memories().get(0).pageCount());
+		}
+
+		assertEquals(-1, new LinearMemory(1).grow(-1));
+		assertEquals(-1, new SparseMemory(1).grow(Integer.MIN_VALUE));
+		DefaultTable table = new DefaultTable(new TableType(new Limit(1), RefType.FUNC), 1);
+		assertEquals(-1, table.grow(-1, RefValue.NULL_FUNC));
+		assertEquals(1, table.size());
+	}
+}
@@ -0,0 +1,112 @@
+package tinywasmr.engine.exec.scheduler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static tinywasmr.test.TestModules.instantiate;
+import static tinywasmr.test.TestModules.load;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import tinywasmr.engine.exec.instance.DefaultInstance;
+import tinywasmr.engine.exec.instance.Function;
+import tinywasmr.engine.exec.instance.Instance;
+import tinywasmr.engine.exec.instance.SimpleImporter;
+import tinywasmr.engine.exec.value.NumberI32Value;
+import tinywasmr.engine.exec.value.Value;
+import tinywasmr.engine.module.func.extern.AsyncFunctionDecl;
+import tinywasmr.engine.type.FunctionType;
+import tinywasmr.engine.type.value.NumberType;
+import tinywasmr.engine.type.value.ValueType;
+
+class SchedulerTest {
+	Instance instance() {
+		return instantiate("binary/013_sum.wasm");
+	}
+
+	@Test
+	void testInfiniteLoop() throws Exception {
+		try (Scheduler scheduler = new Scheduler(1, 1000)) {
+			List<ScheduledMachine> spinning = new ArrayList<>();
+			for (int i = 0; i < 3; i++) spinning.add(scheduler.submit(instance().export("spin").asFunction(),
+				new Value[0]));
+
+			// The spinning machines take turns with the other machine on the only worker
+			ScheduledMachine sum = scheduler.submit(instance().export("sum").asFunction(),
+				new Value[] { new NumberI32Value(1000) });
+			assertEquals(new NumberI32Value(500500), sum.getResult().get(10, TimeUnit.SECONDS)[0]);
+
+			for (ScheduledMachine machine : spinning) {
+				assertFalse(machine.isDone());
+				assertTrue(machine.getSteps() > 0);
+				machine.cancel();
+				assertTrue(machine.getResult().isCompletedExceptionally());
+			}
+		}
+	}
+
+	@Test
+	void testManyMachines() throws Exception {
+		try (Scheduler scheduler = new Scheduler(2, 100)) {
+			Function function = instance().export("sum").asFunction();
+			List<ScheduledMachine> machines = new ArrayList<>();
+			for (int i = 1; i <= 500; i++) machines.add(scheduler.submit(function,
+				new Value[] { new NumberI32Value(i) }));
+
+			for (int i = 1; i <= 500; i++) {
+				Value[] results = machines.get(i - 1).getResult().get(30, TimeUnit.SECONDS);
+				assertEquals(new NumberI32Value(i * (i + 1) / 2), results[0]);
+			}
+
+			assertEquals(0, scheduler.getScheduledCount());
+		}
+	}
+
+	@Test
+	void testClose() {
+		Scheduler scheduler = new Scheduler(1);
+		ScheduledMachine machine = scheduler.submit(instance().export("spin").asFunction(), new Value[0]);
+		scheduler.close();
+		assertTrue(machine.isDone());
+		assertTrue(machine.getResult().isCancelled());
+	}
+
+	@Test
+	void testAsyncHostFunction() throws Exception {
+		CompletableFuture<Value[]> answer = new CompletableFuture<>();
+		AtomicInteger printed = new AtomicInteger();
+		Instance instance = new DefaultInstance(load("binary/002_importfunc.wasm"), SimpleImporter.builder()
+			.module("myModule", mod -> mod
+				.addVoidFunc("printI32", NumberType.I32, printed::set)
+				.add("answer", AsyncFunctionDecl.of(
+					new FunctionType(new ValueType[0], new ValueType[] { NumberType.I32 }),
+					(inst, params) -> answer)))
+			.build());
+
+		try (Scheduler scheduler = new Scheduler(1, 100)) {
+			ScheduledMachine machine = scheduler.submit(instance.export("main").asFunction(), new Value[0]);
+			ScheduledMachine other = scheduler.submit(instance().export("sum").asFunction(),
+				new Value[] { new NumberI32Value(100) });
+
+			// The suspended machine doesn't prevent other machines from running
+			assertEquals(new NumberI32Value(5050), other.getResult().get(10, TimeUnit.SECONDS)[0]);
+			assertFalse(machine.isDone());
+			assertEquals(0, printed.get());
+
+			answer.complete(new Value[] { new NumberI32Value(42) });
+			machine.getResult().get(10, TimeUnit.SECONDS);
+			assertEquals(42, printed.get());
+		}
+
+		// Synchronous execution waits for the future
+		printed.set(0);
+		instance.export("main").asFunction().exec();
+		assertEquals(42, printed.get());
+	}
+}
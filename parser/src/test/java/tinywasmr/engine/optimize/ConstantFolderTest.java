@@ -0,0 +1,105 @@
+package tinywasmr.engine.optimize;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import tinywasmr.engine.exec.instance.DefaultInstance;
+import tinywasmr.engine.exec.value.NumberF32Value;
+import tinywasmr.engine.exec.value.NumberI32Value;
+import tinywasmr.engine.insn.ConstInsn;
+import tinywasmr.engine.insn.Instruction;
+import tinywasmr.engine.insn.control.BlockInsn;
+import tinywasmr.engine.insn.control.BranchIfInsn;
+import tinywasmr.engine.insn.control.BranchInsn;
+import tinywasmr.engine.insn.control.BranchTableInsn;
+import tinywasmr.engine.insn.control.ControlInsn;
+import tinywasmr.engine.insn.control.IfInsn;
+import tinywasmr.engine.insn.control.LoopInsn;
+import tinywasmr.engine.insn.numeric.NumericBinaryOpInsn;
+import tinywasmr.engine.insn.numeric.NumericConvertInsn;
+import tinywasmr.engine.insn.numeric.NumericUnaryOpInsn;
+import tinywasmr.engine.insn.parametric.ParametricInsn;
+import tinywasmr.engine.insn.variable.GlobalInsn;
+import tinywasmr.engine.insn.variable.GlobalInsnType;
+import tinywasmr.engine.insn.variable.LocalInsn;
+import tinywasmr.engine.insn.variable.LocalInsnType;
+import tinywasmr.engine.module.func.ModuleFunctionDecl;
+import tinywasmr.engine.module.global.ModuleGlobalDecl;
+import tinywasmr.engine.type.FunctionType;
+import tinywasmr.engine.type.GlobalType;
+import tinywasmr.engine.type.Mutability;
+import tinywasmr.engine.type.ResultType;
+import tinywasmr.engine.type.value.NumberType;
+import tinywasmr.parser.ParsedWasmModule;
+
+class ConstantFolderTest {
+	static ConstInsn i32(int value) {
+		return new ConstInsn(new NumberI32Value(value));
+	}
+
+	static List<Instruction> fold(Instruction... instructions) {
+		return ConstantFolder.fold(List.of(instructions));
+	}
+
+	@Test
+	void testFoldNumeric() {
+		assertEquals(List.of(i32(20)), fold(i32(2), i32(3), NumericBinaryOpInsn.I32_ADD, i32(4),
+			NumericBinaryOpInsn.I32_MUL));
+		assertEquals(List.of(i32(0)), fold(i32(4), i32(1), ParametricInsn.DROP, ControlInsn.NOP,
+			NumericUnaryOpInsn.I32_EQZ));
+		// Division by zero must still trap when executed
+		assertEquals(List.of(i32(1), i32(0), NumericBinaryOpInsn.I32_DIV_S),
+			fold(i32(1), i32(0), NumericBinaryOpInsn.I32_DIV_S));
+		// So does truncating NaN
+		ConstInsn nan = new ConstInsn(new NumberF32Value(Float.NaN));
+		assertEquals(List.of(new ConstInsn(new NumberF32Value(3f))),
+			fold(i32(3), NumericConvertInsn.F32_CONVERT_I32_S));
+		assertEquals(List.of(nan, NumericConvertInsn.I32_TRUNC_F32_S), fold(nan, NumericConvertInsn.I32_TRUNC_F32_S));
+	}
+
+	@Test
+	void testFoldControl() {
+		LocalInsn get = new LocalInsn(LocalInsnType.GET, 0);
+		assertEquals(List.of(i32(7)), fold(i32(1), new IfInsn(NumberType.I32, List.of(i32(7)), List.of(i32(8)))));
+		assertEquals(List.of(i32(1), ControlInsn.RETURN), fold(i32(1), ControlInsn.RETURN, i32(2),
+			ParametricInsn.DROP));
+		assertEquals(List.of(new BranchInsn(0, 0)), fold(i32(5), new BranchTableInsn(new int[] { 1 }, 0, 0), get));
+		assertEquals(List.of(), fold(i32(0), new BranchIfInsn(0, 0)));
+
+		// The inner block is not branched to, so the outer br_if targets the loop
+		assertEquals(List.of(new LoopInsn(new ResultType(List.of()), List.of(get, new BranchIfInsn(0, 0)))),
+			fold(new LoopInsn(new ResultType(List.of()), List.of(
+				new BlockInsn(new ResultType(List.of()), List.of(get, new BranchIfInsn(1, 0)))))));
+	}
+
+	@Test
+	void testFoldGlobals() {
+		ParsedWasmModule module = new ParsedWasmModule();
+		ModuleGlobalDecl constant = new ModuleGlobalDecl(module, new GlobalType(Mutability.CONST, NumberType.I32),
+			List.of(i32(5)));
+		ModuleGlobalDecl variable = new ModuleGlobalDecl(module, new GlobalType(Mutability.VAR, NumberType.I32),
+			List.of(i32(6)));
+		module.declaredGlobals().add(constant);
+		module.declaredGlobals().add(variable);
+
+		FunctionType type = new FunctionType(new ResultType(List.of()), new ResultType(List.of(NumberType.I32)));
+		ModuleFunctionDecl function = new ModuleFunctionDecl(module, type, List.of(), List.of(
+			new GlobalInsn(GlobalInsnType.GET, constant),
+			i32(2),
+			NumericBinaryOpInsn.I32_MUL,
+			new GlobalInsn(GlobalInsnType.GET, variable),
+			NumericBinaryOpInsn.I32_ADD));
+		module.declaredFunctions().add(function);
+
+		ConstantFolder.fold(module);
+		assertEquals(List.of(i32(10), new GlobalInsn(GlobalInsnType.GET, variable), NumericBinaryOpInsn.I32_ADD),
+			function.body());
+
+		DefaultInstance instance = new DefaultInstance(module, null);
+		instance.initialize();
+		assertEquals(16, instance.function(function).exec());
+	}
+}
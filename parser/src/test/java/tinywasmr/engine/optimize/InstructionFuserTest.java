@@ -0,0 +1,139 @@
+package tinywasmr.engine.optimize;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static tinywasmr.test.TestModules.load;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import tinywasmr.engine.exec.executor.DefaultExecutor;
+import tinywasmr.engine.exec.executor.Executor;
+import tinywasmr.engine.exec.flat.FlatExecutor;
+import tinywasmr.engine.exec.fuel.FuelMeter;
+import tinywasmr.engine.exec.instance.DefaultInstance;
+import tinywasmr.engine.exec.instance.Function;
+import tinywasmr.engine.exec.instance.Instance;
+import tinywasmr.engine.exec.instance.SimpleImporter;
+import tinywasmr.engine.exec.jit.JitExecutor;
+import tinywasmr.engine.exec.value.NumberI32Value;
+import tinywasmr.engine.exec.value.Value;
+import tinywasmr.engine.exec.vm.DefaultMachine;
+import tinywasmr.engine.exec.vm.Machine;
+import tinywasmr.engine.insn.Instruction;
+import tinywasmr.engine.insn.control.BranchIfInsn;
+import tinywasmr.engine.insn.control.CallInsn;
+import tinywasmr.engine.insn.control.LoopInsn;
+import tinywasmr.engine.insn.fused.CompareBranchIfInsn;
+import tinywasmr.engine.insn.fused.LocalBinaryOpInsn;
+import tinywasmr.engine.insn.fused.LocalConstBinaryOpInsn;
+import tinywasmr.engine.insn.fused.LocalConstUpdateInsn;
+import tinywasmr.engine.insn.variable.LocalInsn;
+import tinywasmr.engine.module.func.ModuleFunctionDecl;
+import tinywasmr.engine.type.value.NumberType;
+import tinywasmr.parser.ParsedWasmModule;
+
+class InstructionFuserTest {
+	ParsedWasmModule module() {
+		return load("binary/013_sum.wasm");
+	}
+
+	Function sum(ParsedWasmModule module) {
+		DefaultInstance instance = new DefaultInstance(module, null);
+		instance.initialize();
+		return instance.export("sum").asFunction();
+	}
+
+	List<Instruction> loopBody(ParsedWasmModule module, int function) {
+		ModuleFunctionDecl decl = (ModuleFunctionDecl) module.declaredFunctions().get(function);
+		return decl.body().stream()
+			.filter(insn -> insn instanceof LoopInsn)
+			.map(insn -> ((LoopInsn) insn).instructions())
+			.findFirst()
+			.orElseThrow();
+	}
+
+	@Test
+	void testFuse() {
+		ParsedWasmModule module = module();
+		ModuleFunctionDecl decl = (ModuleFunctionDecl) module.declaredFunctions().get(1);
+		assertNotNull(decl.validation());
+		InstructionFuser.fuse(module);
+		assertNull(decl.validation());
+		List<Instruction> loop = loopBody(module, 1);
+		assertEquals(4, loop.size());
+		assertTrue(loop.get(0) instanceof LocalBinaryOpInsn);
+		assertTrue(loop.get(1) instanceof LocalInsn);
+		assertTrue(loop.get(2) instanceof LocalConstUpdateInsn);
+		assertTrue(loop.get(3) instanceof BranchIfInsn);
+
+		Function sum = sum(module);
+		FlatExecutor flat = new FlatExecutor();
+		JitExecutor jit = new JitExecutor();
+		assertTrue(flat.canExecute(sum));
+		assertTrue(jit.isCompiled(sum));
+
+		for (Executor executor : List.of(new DefaultExecutor(), flat, jit)) {
+			Value[] results = executor.execute(sum, new Value[] { new NumberI32Value(100) });
+			assertEquals(new NumberI32Value(5050), results[0]);
+		}
+	}
+
+	@Test
+	void testCompareBranch() {
+		ParsedWasmModule module = load("binary/006_loop.wasm");
+		InstructionFuser.fuse(module);
+		List<Instruction> loop = loopBody(module, 1);
+		assertEquals(4, loop.size());
+		assertTrue(loop.get(1) instanceof CallInsn);
+		assertTrue(loop.get(3) instanceof CompareBranchIfInsn branch
+			&& branch.compare() instanceof LocalConstBinaryOpInsn);
+
+		AtomicInteger hits = new AtomicInteger(0);
+		Instance instance = new DefaultInstance(module, SimpleImporter.builder()
+			.module("console", mod -> mod.<Integer>addVoidFunc("log", NumberType.I32, val -> {
+				assertEquals(hits.get(), val);
+				hits.incrementAndGet();
+			}))
+			.build());
+		instance.export("main").asFunction().exec();
+		assertEquals(10, hits.get());
+	}
+
+	@Test
+	void testFuelCosts() {
+		ParsedWasmModule fused = module();
+		InstructionFuser.fuse(fused);
+		long[] consumed = new long[2];
+		Function[] functions = { sum(module()), sum(fused) };
+
+		for (int i = 0; i < functions.length; i++) {
+			Machine vm = new DefaultMachine();
+			vm.setFuelMeter(new FuelMeter(Long.MAX_VALUE));
+			new DefaultExecutor().execute(vm, functions[i], new Value[] { new NumberI32Value(100) });
+			consumed[i] = vm.getFuelMeter().getConsumed();
+		}
+
+		// Fused instructions cost the same as the instructions they are fused from
+		assertEquals(1 + 9 * 100 + 1, consumed[0]);
+		assertEquals(consumed[0], consumed[1]);
+	}
+
+	@Test
+	void testInstructionMix() {
+		// 11 instructions of sum and 2 instructions of spin
+		InstructionMix mix = InstructionMix.of(module());
+		assertEquals(13, mix.getTotal());
+		assertEquals(4, (long) mix.getCounts().get("LOCAL_GET"));
+		assertEquals(1, (long) mix.getPairs().get("LOCAL_GET LOCAL_GET"));
+		assertEquals(1, (long) mix.getPairs().get("LOCAL_TEE BranchIfInsn"));
+
+		ParsedWasmModule fused = module();
+		InstructionFuser.fuse(fused);
+		assertEquals(8, InstructionMix.of(fused).getTotal());
+	}
+}
@@ -0,0 +1,178 @@
+package tinywasmr.engine.validation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static tinywasmr.test.TestModules.bytes;
+import static tinywasmr.test.TestModules.load;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import tinywasmr.engine.exec.ValidationException;
+import tinywasmr.engine.exec.instance.DefaultInstance;
+import tinywasmr.engine.exec.instance.Instance;
+import tinywasmr.engine.exec.value.NumberI32Value;
+import tinywasmr.engine.exec.value.NumberI64Value;
+import tinywasmr.engine.insn.ConstInsn;
+import tinywasmr.engine.insn.Instruction;
+import tinywasmr.engine.insn.control.BlockInsn;
+import tinywasmr.engine.insn.control.BranchInsn;
+import tinywasmr.engine.insn.numeric.NumericBinaryOpInsn;
+import tinywasmr.engine.insn.variable.LocalInsn;
+import tinywasmr.engine.insn.variable.LocalInsnType;
+import tinywasmr.engine.module.export.ExportDecl;
+import tinywasmr.engine.module.export.FunctionExportDescription;
+import tinywasmr.engine.module.func.FunctionDecl;
+import tinywasmr.engine.module.func.ImportFunctionDecl;
+import tinywasmr.engine.module.func.ModuleFunctionDecl;
+import tinywasmr.engine.module.imprt.FunctionImportDescription;
+import tinywasmr.engine.module.imprt.ImportDecl;
+import tinywasmr.engine.module.memory.ActiveDataMode;
+import tinywasmr.engine.module.memory.DataSegment;
+import tinywasmr.engine.module.memory.ModuleMemoryDecl;
+import tinywasmr.engine.module.table.ActiveElementMode;
+import tinywasmr.engine.module.table.ElementSegment;
+import tinywasmr.engine.module.table.ModuleTableDecl;
+import tinywasmr.engine.type.FunctionType;
+import tinywasmr.engine.type.Limit;
+import tinywasmr.engine.type.MemoryType;
+import tinywasmr.engine.type.ResultType;
+import tinywasmr.engine.type.TableType;
+import tinywasmr.engine.type.value.NumberType;
+import tinywasmr.engine.type.value.RefType;
+import tinywasmr.engine.type.value.ValueType;
+import tinywasmr.parser.ParsedWasmModule;
+import tinywasmr.parser.binary.BinaryModuleParser;
+
+class ModuleValidatorTest {
+
+	FunctionValidation validate(List<ValueType> results, Instruction... body) {
+		ParsedWasmModule module = new ParsedWasmModule();
+		FunctionType type = new FunctionType(new ResultType(List.of(NumberType.I32)), new ResultType(results));
+		ModuleFunctionDecl function = new ModuleFunctionDecl(module, type, List.of(), List.of(body));
+		module.declaredFunctions().add(function);
+		return new ModuleValidator(module).validate(function);
+	}
+
+	void assertInvalid(ParsedWasmModule module) {
+		assertThrows(ValidationException.class, () -> new ModuleValidator(module).validate());
+		assertFalse(module.isValidated());
+	}
+
+	@Test
+	void testValidModules() {
+		for (String file : List.of(
+			"binary/001_addtwo.wasm",
+			"binary/002_importfunc.wasm",
+			"binary/003_callindirect.wasm",
+			"binary/004_branching.wasm",
+			"binary/005_memories.wasm",
+			"binary/006_loop.wasm",
+			"binary/007_data.wasm",
+			"binary/008_global.wasm",
+			"suite/br_table_module.wasm",
+			"suite/memory_000.wasm")) {
+			ParsedWasmModule module = load(file);
+			new ModuleValidator(module).validate();
+
+			for (FunctionDecl function : module.declaredFunctions()) {
+				if (function instanceof ModuleFunctionDecl decl) assertNotNull(decl.validation());
+			}
+		}
+	}
+
+	@Test
+	void testStackHeights() throws IOException {
+		// The parser validates the module by default
+		ParsedWasmModule module = load("binary/016_rec.wasm");
+		assertTrue(module.isValidated());
+		assertFalse(new BinaryModuleParser(false, true, false)
+			.parseModule(new ByteArrayInputStream(bytes("binary/016_rec.wasm")))
+			.isValidated());
+		FunctionValidation validation = ((ModuleFunctionDecl) module.declaredFunctions().get(0)).validation();
+		assertEquals(new FunctionValidation(1, 2, 2), validation);
+		assertEquals(3, validation.frameSize());
+
+		// Validated functions reserve their slots when called
+		Instance instance = new DefaultInstance(module, null);
+		assertEquals(100, instance.export("rec").asFunction().exec(100));
+	}
+
+	@Test
+	void testInvalidFunctions() {
+		ConstInsn one = new ConstInsn(new NumberI32Value(1));
+		assertEquals(new FunctionValidation(1, 2, 1), validate(List.of(NumberType.I32),
+			new LocalInsn(LocalInsnType.GET, 0), one, NumericBinaryOpInsn.I32_ADD));
+		assertThrows(ValidationException.class, () -> validate(List.of(NumberType.I64), one));
+		assertThrows(ValidationException.class, () -> validate(List.of(NumberType.I32), one, one));
+		assertThrows(ValidationException.class, () -> validate(List.of(NumberType.I32), NumericBinaryOpInsn.I32_ADD));
+		assertThrows(ValidationException.class, () -> validate(List.of(), new LocalInsn(LocalInsnType.GET, 1)));
+		assertThrows(ValidationException.class, () -> validate(List.of(), new BranchInsn(1)));
+		assertThrows(ValidationException.class, () -> validate(List.of(NumberType.I32),
+			new BlockInsn(NumberType.I32, List.of(new BranchInsn(0, 0)))));
+		// Operands after unconditional branch are polymorphic
+		assertEquals(new FunctionValidation(1, 1, 2), validate(List.of(NumberType.I32),
+			new BlockInsn(NumberType.I32, List.of(one, new BranchInsn(0), NumericBinaryOpInsn.I32_ADD))));
+	}
+
+	@Test
+	void testInvalidModules() {
+		ConstInsn zero = new ConstInsn(new NumberI32Value(0));
+		FunctionType empty = new FunctionType(new ResultType(List.of()), new ResultType(List.of()));
+
+		// Minimum is larger than maximum
+		ParsedWasmModule module = new ParsedWasmModule();
+		module.declaredMemories().add(new ModuleMemoryDecl(module, new MemoryType(new Limit(2, 1))));
+		assertInvalid(module);
+		module = new ParsedWasmModule();
+		module.declaredTables().add(new ModuleTableDecl(module, new TableType(new Limit(2, 1), RefType.FUNC)));
+		assertInvalid(module);
+
+		// Data segment offset doesn't match the address type of memory
+		ParsedWasmModule dataModule = new ParsedWasmModule();
+		ModuleMemoryDecl memory = new ModuleMemoryDecl(dataModule, new MemoryType(new Limit(1)));
+		dataModule.declaredMemories().add(memory);
+		dataModule.dataSegments().add(new DataSegment(new ActiveDataMode(memory, List.of(
+			new ConstInsn(new NumberI64Value(0)))), new byte[1]));
+		assertInvalid(dataModule);
+
+		// Element segment type doesn't match the table, or the init expressions
+		module = new ParsedWasmModule();
+		ModuleTableDecl table = new ModuleTableDecl(module, new TableType(new Limit(1), RefType.EXTERN));
+		module.declaredTables().add(table);
+		module.elementSegments().add(new ElementSegment(RefType.FUNC, List.of(),
+			new ActiveElementMode(table, List.of(zero))));
+		assertInvalid(module);
+		module = new ParsedWasmModule();
+		module.declaredTables().add(table);
+		module.elementSegments().add(new ElementSegment(RefType.EXTERN, List.of(List.of(zero)),
+			new ActiveElementMode(table, List.of(zero))));
+		assertInvalid(module);
+
+		// Imported function type doesn't match the import
+		module = new ParsedWasmModule();
+		ImportDecl imp = new ImportDecl("env", "f", new FunctionImportDescription(empty));
+		module.declaredImports().add(imp);
+		module.declaredFunctions().add(new ImportFunctionDecl(module, new FunctionType(
+			new ResultType(List.of(NumberType.I32)), new ResultType(List.of())), imp));
+		assertInvalid(module);
+
+		// Exported function is not in module, or exported twice
+		module = new ParsedWasmModule();
+		ModuleFunctionDecl function = new ModuleFunctionDecl(module, empty, List.of(), List.of());
+		module.declaredExports().add(new ExportDecl("f", new FunctionExportDescription(function)));
+		assertInvalid(module);
+		module = new ParsedWasmModule();
+		function = new ModuleFunctionDecl(module, empty, List.of(), List.of());
+		module.declaredFunctions().add(function);
+		module.declaredExports().add(new ExportDecl("f", new FunctionExportDescription(function)));
+		module.declaredExports().add(new ExportDecl("f", new FunctionExportDescription(function)));
+		assertInvalid(module);
+	}
+}
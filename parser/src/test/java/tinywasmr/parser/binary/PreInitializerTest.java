@@ -0,0 +1,34 @@
+package tinywasmr.parser.binary;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static tinywasmr.test.TestModules.bytes;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+
+import tinywasmr.engine.exec.instance.DefaultInstance;
+import tinywasmr.engine.exec.instance.Instance;
+import tinywasmr.engine.exec.value.RefValue;
+import tinywasmr.parser.ParsedWasmModule;
+
+class PreInitializerTest {
+	@Test
+	void testPreInitialize() throws IOException {
+		byte[] snapshot = PreInitializer.preInitialize(bytes("binary/011_preinit.wasm"), null, "init");
+		ParsedWasmModule module = BinaryModuleParser.parse(snapshot);
+		assertNull(module.startFunction());
+
+		Instance instance = new DefaultInstance(module, null);
+		instance.initialize();
+		assertEquals(0x12345678, instance.export("memory").asMemory().readI32(100));
+		assertEquals(42, instance.export("g").asGlobal().get().i32());
+		assertNull(instance.export("init"));
+
+		RefValue ref = instance.export("table").asTable().get(1);
+		assertSame(instance.functions().get(1), ref.get());
+		assertNull(instance.export("table").asTable().get(0).get());
+	}
+}
@@ -0,0 +1,53 @@
+package tinywasmr.test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+import tinywasmr.engine.exec.instance.DefaultInstance;
+import tinywasmr.engine.exec.instance.Instance;
+import tinywasmr.parser.ParsedWasmModule;
+import tinywasmr.parser.binary.BinaryModuleParser;
+
+/**
+ * <p>
+ * Load the modules in test resources. The binary modules are in
+ * {@code binary/} and their sources are in {@code text/}.
+ * </p>
+ */
+public final class TestModules {
+	private TestModules() {}
+
+	public static ParsedWasmModule load(String file) {
+		try (InputStream stream = TestModules.class.getClassLoader().getResourceAsStream(file)) {
+			return BinaryModuleParser.parse(stream);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * <p>
+	 * Read the bytes of the module, for tests that process the binary format
+	 * directly.
+	 * </p>
+	 */
+	public static byte[] bytes(String file) {
+		try (InputStream stream = TestModules.class.getClassLoader().getResourceAsStream(file)) {
+			return stream.readAllBytes();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * <p>
+	 * Load the module and create an initialized instance without imports.
+	 * </p>
+	 */
+	public static Instance instantiate(String file) {
+		DefaultInstance instance = new DefaultInstance(load(file), null);
+		instance.initialize();
+		return instance;
+	}
+}
@@ -0,0 +1,28 @@
+package tinywasmr.test.suite;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static tinywasmr.test.TestModules.instantiate;
+
+import org.junit.jupiter.api.Test;
+
+import tinywasmr.engine.exec.instance.Instance;
+import tinywasmr.engine.exec.memory.SparseMemory;
+
+class Memory64Test {
+	Instance instance() {
+		return instantiate("binary/010_memory64.wasm");
+	}
+
+	@Test
+	void testLoadStore() {
+		Instance instance = instance();
+		assertTrue(instance.memories().get(0) instanceof SparseMemory);
+		assertEquals(0x1234, instance.export("a").asFunction().exec());
+	}
+
+	@Test
+	void testGrow() {
+		assertEquals(2L, instance().export("b").asFunction().exec());
+	}
+}
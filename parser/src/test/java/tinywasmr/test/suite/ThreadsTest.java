@@ -0,0 +1,63 @@
+package tinywasmr.test.suite;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static tinywasmr.test.TestModules.instantiate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+import tinywasmr.engine.exec.instance.Instance;
+import tinywasmr.engine.exec.memory.SharedMemory;
+
+class ThreadsTest {
+	Instance instance() {
+		return instantiate("binary/012_threads.wasm");
+	}
+
+	@Test
+	void testAtomicAdd() throws InterruptedException {
+		Instance instance = instance();
+		assertTrue(instance.memories().get(0) instanceof SharedMemory);
+		List<Thread> threads = new ArrayList<>();
+
+		for (int i = 0; i < 4; i++) {
+			Thread thread = new Thread(() -> instance.export("inc").asFunction().exec(5000));
+			threads.add(thread);
+			thread.start();
+		}
+
+		for (Thread thread : threads) thread.join();
+		assertEquals(20000, instance.export("get").asFunction().exec());
+	}
+
+	@Test
+	void testCompareExchange() {
+		Instance instance = instance();
+		assertEquals(0, instance.export("cas").asFunction().exec(0, 0x1ff));
+		assertEquals(0xff, instance.memories().get(0).readI32(4));
+		assertEquals(0xff, instance.export("cas").asFunction().exec(0, 5));
+		assertEquals(0xff, instance.export("cas").asFunction().exec(0xff, 5));
+		assertEquals(5, instance.memories().get(0).readI32(4));
+	}
+
+	@Test
+	void testWaitNotify() throws InterruptedException {
+		Instance instance = instance();
+		assertEquals(SharedMemory.WAIT_TIMED_OUT, instance.export("wait").asFunction().exec(1000000L));
+		assertEquals(0, instance.export("notify").asFunction().exec());
+
+		AtomicReference<Object> result = new AtomicReference<>();
+		Thread thread = new Thread(() -> result.set(instance.export("wait").asFunction().exec(-1L)));
+		thread.start();
+		while ((int) instance.export("notify").asFunction().exec() == 0) Thread.onSpinWait();
+		thread.join();
+		assertEquals(SharedMemory.WAIT_OK, result.get());
+
+		instance.memories().get(0).writeI32(8, 1);
+		assertEquals(SharedMemory.WAIT_NOT_EQUAL, instance.export("wait").asFunction().exec(-1L));
+	}
+}
@@ -0,0 +1,6 @@
+(module
+  (func $d)
+  (func (export "f")
+    (call $d)
+  )
+)
\ No newline at end of file
@@ -0,0 +1,11 @@
+(module
+  (memory i64 1)
+  (func (export "a") (result i32)
+    (i32.store (i64.const 65532) (i32.const 0x1234))
+    (i32.load (i64.const 65532))
+  )
+  (func (export "b") (result i64)
+    (drop (memory.grow (i64.const 1)))
+    (memory.size)
+  )
+)
\ No newline at end of file
@@ -0,0 +1,13 @@
+(module
+  (memory (export "memory") 1)
+  (global (export "g") (mut i32) (i32.const 1))
+  (table (export "table") 2 funcref)
+  (func $start
+    (i32.store (i32.const 100) (i32.const 0x12345678))
+    (global.set 0 (i32.add (global.get 0) (i32.const 41)))
+  )
+  (func (export "init")
+    (table.set 0 (i32.const 1) (ref.func 1))
+  )
+  (start $start)
+)
\ No newline at end of file
@@ -0,0 +1,22 @@
+(module
+  (memory 1 1 shared)
+  (func (export "inc") (param i32)
+    (loop
+      (drop (i32.atomic.rmw.add (i32.const 0) (i32.const 1)))
+      (br_if 0 (local.tee 0 (i32.sub (local.get 0) (i32.const 1))))
+    )
+  )
+  (func (export "get") (result i32)
+    (atomic.fence)
+    (i32.atomic.load (i32.const 0))
+  )
+  (func (export "cas") (param i32 i32) (result i32)
+    (i32.atomic.rmw8.cmpxchg_u (i32.const 4) (local.get 0) (local.get 1))
+  )
+  (func (export "wait") (param i64) (result i32)
+    (memory.atomic.wait32 (i32.const 8) (i32.const 0) (local.get 0))
+  )
+  (func (export "notify") (result i32)
+    (memory.atomic.notify (i32.const 8) (i32.const 1))
+  )
+)
\ No newline at end of file
@@ -0,0 +1,10 @@
+(module
+  (func (export "spin")
+    (loop
+      (br 0)
+    )
+  )
+  (func (export "outer")
+    (call 0)
+  )
+)
\ No newline at end of file
@@ -0,0 +1,12 @@
+(module
+  (memory 1)
+  (func (export "grow") (param i32) (result i32)
+    (memory.grow (local.get 0))
+  )
+  (func (export "rec") (param i32) (result i32)
+    (if (result i32) (local.get 0)
+      (then (i32.add (call 1 (i32.sub (local.get 0) (i32.const 1))) (i32.const 1)))
+      (else (i32.const 0))
+    )
+  )
+)
\ No newline at end of file
@@ -3,6 +3,7 @@ package tinywasmr.dbg.gui;
 import imgui.ImGui;
 import tinywasmr.engine.exec.memory.ByteArrayMemoryView;
 import tinywasmr.engine.exec.memory.DefaultMemory;
+import tinywasmr.engine.exec.memory.LinearMemory;
 import tinywasmr.engine.exec.memory.Memory;
 
 public class MemoryViewer {
@@ -36,6 +37,9 @@ public class MemoryViewer {
 		if (memory instanceof DefaultMemory defaulted) {
 			bs = defaulted.getPages()[page[0]];
 			fullMemoryView = false;
+		} else if (memory instanceof LinearMemory linear) {
+			bs = linear.getBytes();
+			fullMemoryView = true;
 		} else if (memory instanceof ByteArrayMemoryView view) {
 			bs = view.content();
 			fullMemoryView = true;
@@ -22,6 +22,7 @@ import tinywasmr.engine.exec.value.NumberI32Value;
 import tinywasmr.engine.exec.value.NumberI64Value;
 import tinywasmr.engine.insn.ConstInsn;
 import tinywasmr.engine.insn.Instruction;
+import tinywasmr.engine.insn.LinkedInsn;
 import tinywasmr.engine.insn.control.BlockInsn;
 import tinywasmr.engine.insn.control.BranchIfInsn;
 import tinywasmr.engine.insn.control.BranchInsn;
@@ -29,6 +30,7 @@ import tinywasmr.engine.insn.control.CallInsn;
 import tinywasmr.engine.insn.control.ControlInsn;
 import tinywasmr.engine.insn.control.IfInsn;
 import tinywasmr.engine.insn.control.LoopInsn;
+import tinywasmr.engine.insn.fused.FusedInsn;
 import tinywasmr.engine.insn.memory.LoadInsn;
 import tinywasmr.engine.insn.memory.StoreInsn;
 import tinywasmr.engine.insn.variable.GlobalInsn;
@@ -176,19 +178,19 @@ public class CodeViewer {
 				if (!(function.getDeclaration() instanceof ModuleFunctionDecl decl)) continue;
 				if (decl.body().size() == 0) continue;
 				Instruction exec = decl.body().get(function.getStep() + (isLast ? 0 : -1));
-				if (insn == exec) return true;
+				if (isSameInstruction(insn, exec)) return true;
 			}
 
 			if (frame instanceof BlockFrame block) {
 				if (block.getBlock().instructions().size() == 0) continue;
 				Instruction exec = block.getBlock().instructions().get(block.getStep() + (isLast ? 0 : -1));
-				if (insn == exec) return true;
+				if (isSameInstruction(insn, exec)) return true;
 			}
 
 			if (frame instanceof LoopFrame block) {
 				if (block.getBlock().instructions().size() == 0) continue;
 				Instruction exec = block.getBlock().instructions().get(block.getStep() + (isLast ? 0 : -1));
-				if (insn == exec) return true;
+				if (isSameInstruction(insn, exec)) return true;
 			}
 
 			if (frame instanceof IfFrame block) {
@@ -197,13 +199,19 @@ public class CodeViewer {
 					: block.getBlock().falsePath();
 				if (branch.size() == 0) continue;
 				Instruction exec = branch.get(block.getStep() + (isLast ? 0 : -1));
-				if (insn == exec) return true;
+				if (isSameInstruction(insn, exec)) return true;
 			}
 		}
 
 		return false;
 	}
 
+	private static boolean isSameInstruction(Instruction insn, Instruction exec) {
+		// Frames execute the body linked to the instance, which wraps the instructions in declaration
+		if (exec instanceof LinkedInsn linked) exec = linked.unlinked();
+		return insn == exec;
+	}
+
 	public void instruction(Instruction insn, DebugSymbols symbols, DebugInterface debug, int stepIndex) {
 		ImGui.beginGroup();
 		String prefix = "%03d".formatted(stepIndex);
@@ -353,6 +361,9 @@ public class CodeViewer {
 		if (insn instanceof BranchInsn br) return "br %d".formatted(br.nestIndex());
 		if (insn instanceof BranchIfInsn br) return "br_if %d".formatted(br.nestIndex());
 		if (insn instanceof CallInsn call) return "call $%s".formatted(symbols.nameOf(call.function()));
+		if (insn instanceof FusedInsn fused) return fused.instructions().stream()
+			.map(part -> nameOf(part instanceof LinkedInsn linked ? linked.unlinked() : part, symbols))
+			.collect(Collectors.joining("; "));
 
 		return insn.toString();
 	}
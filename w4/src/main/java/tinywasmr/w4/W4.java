@@ -15,6 +15,7 @@ import tinywasmr.engine.exec.instance.DefaultInstance;
 import tinywasmr.engine.exec.instance.Export;
 import tinywasmr.engine.exec.instance.Instance;
 import tinywasmr.engine.exec.instance.SimpleImporter;
+import tinywasmr.engine.exec.jit.JitExecutor;
 import tinywasmr.engine.exec.trap.ExternalTrap;
 import tinywasmr.engine.exec.value.Value;
 import tinywasmr.engine.exec.vm.DefaultMachine;
@@ -95,11 +96,15 @@ public class W4 implements DebugInterface {
 	@Override
 	public void pause() {
 		running = false;
+
+		// Leave compiled code at next loop header, so the cart can be stepped
+		if (executor instanceof JitExecutor jit) jit.setDeoptimized(true);
 	}
 
 	@Override
 	public void resume() {
 		running = true;
+		if (executor instanceof JitExecutor jit) jit.setDeoptimized(false);
 	}
 
 	@Override